@@ -0,0 +1,88 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.resources.files
+
+import com.owncloud.android.AbstractIT
+import com.owncloud.android.lib.resources.files.model.FolderPage
+import com.owncloud.android.lib.resources.files.model.RemoteFile
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class ReadFolderPageRemoteOperationIT : AbstractIT() {
+    private val remotePath = "/paginated/"
+
+    private fun createFiles() {
+        assertTrue(CreateFolderRemoteOperation(remotePath, true).execute(client).isSuccess)
+        val filePath = createFile("text")
+        for (i in 1..FILE_COUNT) {
+            assertTrue(
+                UploadFileRemoteOperation(filePath, "$remotePath$i.txt", "text/markdown", RANDOM_MTIME)
+                    .execute(client).isSuccess
+            )
+        }
+    }
+
+    @Test
+    fun readAllPages() {
+        createFiles()
+
+        val files = ArrayList<RemoteFile>()
+        var page: FolderPage? = null
+        var pages = 0
+        do {
+            pages++
+            val result = ReadFolderPageRemoteOperation(remotePath, PAGE_SIZE, page).execute(nextcloudClient)
+            assertTrue(result.isSuccess)
+            page = result.resultData
+            assertEquals(files.size, page.offset)
+            files.addAll(page.files)
+        } while (page!!.hasMore)
+
+        assertTrue("expected more than one page, got $pages", pages > 1)
+        assertEntries(files)
+    }
+
+    @Test
+    fun iterateWithPrefetch() {
+        createFiles()
+
+        val sut = FolderPageIterator(nextcloudClient, remotePath, PAGE_SIZE)
+        val files = sut.asSequence().toList()
+        sut.close()
+
+        assertNull(sut.failure)
+        assertEntries(files)
+    }
+
+    @Test
+    fun collectFlow() {
+        createFiles()
+
+        val files = runBlocking { FolderPageIterator.flow(nextcloudClient, remotePath, PAGE_SIZE).toList() }
+
+        assertEntries(files)
+    }
+
+    private fun assertEntries(files: List<RemoteFile>) {
+        // folder itself plus its files, each exactly once
+        assertEquals(FILE_COUNT + 1, files.size)
+        assertEquals(remotePath, files[0].remotePath)
+        assertEquals(
+            (1..FILE_COUNT).map { "$remotePath$it.txt" }.toSet(),
+            files.drop(1).map { it.remotePath }.toSet()
+        )
+    }
+
+    companion object {
+        private const val FILE_COUNT = 5
+        private const val PAGE_SIZE = 2
+    }
+}
@@ -9,12 +9,14 @@ package com.nextcloud.android.lib.resources.files
 
 import com.nextcloud.common.NextcloudClient
 import com.nextcloud.common.OkHttpMethodBase
+import com.nextcloud.common.SuspendingRemoteOperation
 import com.nextcloud.operations.LockMethod
 import com.nextcloud.operations.UnlockMethod
 import com.owncloud.android.lib.common.operations.RemoteOperation
 import com.owncloud.android.lib.common.operations.RemoteOperationResult
 import com.owncloud.android.lib.common.utils.Log_OC
 import org.apache.commons.httpclient.HttpStatus
+import java.util.concurrent.CancellationException
 
 /**
  * Lock or unlock a file.
@@ -22,9 +24,18 @@ import org.apache.commons.httpclient.HttpStatus
  * @param toLock `true` if file is to be locked, `false` if it is to be unlocked
  */
 class ToggleFileLockRemoteOperation(private val toLock: Boolean, private val filePath: String) :
-    RemoteOperation<Void>() {
+    RemoteOperation<Void>(),
+    SuspendingRemoteOperation<Void> {
+    override fun run(client: NextcloudClient): RemoteOperationResult<Void> = toggle(client) { client.execute(it) }
+
+    override suspend fun runSuspending(client: NextcloudClient): RemoteOperationResult<Void> =
+        toggle(client) { client.await(it) }
+
     @Suppress("TooGenericExceptionCaught")
-    override fun run(client: NextcloudClient): RemoteOperationResult<Void> {
+    private inline fun toggle(
+        client: NextcloudClient,
+        execute: (OkHttpMethodBase) -> Int
+    ): RemoteOperationResult<Void> {
         var method: OkHttpMethodBase? = null
         var result: RemoteOperationResult<Void>?
 
@@ -38,13 +49,15 @@ class ToggleFileLockRemoteOperation(private val toLock: Boolean, private val fil
                 }
             method.addRequestHeader(HEADER_USER_LOCK, HEADER_USER_LOCK_VALUE)
 
-            val status: Int = client.execute(method)
+            val status: Int = execute(method)
             if (isSuccess(status)) {
                 result = RemoteOperationResult(true, method)
             } else {
                 result = RemoteOperationResult(false, method)
                 method.releaseConnection()
             }
+        } catch (e: CancellationException) {
+            throw e
         } catch (e: Exception) {
             result = RemoteOperationResult(e)
             Log_OC.e(TAG, "Lock toggle failed: " + result.logMessage, result.exception)
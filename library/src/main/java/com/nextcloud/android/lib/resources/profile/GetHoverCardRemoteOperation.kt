@@ -9,25 +9,38 @@ package com.nextcloud.android.lib.resources.profile
 
 import com.google.gson.reflect.TypeToken
 import com.nextcloud.common.NextcloudClient
+import com.nextcloud.common.SuspendingRemoteOperation
 import com.nextcloud.operations.GetMethod
 import com.owncloud.android.lib.common.operations.RemoteOperationResult
 import com.owncloud.android.lib.common.utils.Log_OC
 import com.owncloud.android.lib.ocs.ServerResponse
 import com.owncloud.android.lib.resources.OCSRemoteOperation
 import org.apache.commons.httpclient.HttpStatus
+import java.util.concurrent.CancellationException
 
 /**
  * Get hoverCard of an user
  */
-class GetHoverCardRemoteOperation(private val userId: String) : OCSRemoteOperation<HoverCard?>() {
+class GetHoverCardRemoteOperation(private val userId: String) :
+    OCSRemoteOperation<HoverCard?>(),
+    SuspendingRemoteOperation<HoverCard?> {
+    override fun run(client: NextcloudClient): RemoteOperationResult<HoverCard?> =
+        getHoverCard(client) { client.execute(it) }
+
+    override suspend fun runSuspending(client: NextcloudClient): RemoteOperationResult<HoverCard?> =
+        getHoverCard(client) { client.await(it) }
+
     @Suppress("TooGenericExceptionCaught")
-    override fun run(client: NextcloudClient): RemoteOperationResult<HoverCard?> {
+    private inline fun getHoverCard(
+        client: NextcloudClient,
+        execute: (GetMethod) -> Int
+    ): RemoteOperationResult<HoverCard?> {
         var result: RemoteOperationResult<HoverCard?>
         var getMethod: GetMethod? = null
         try {
             getMethod =
                 GetMethod(client.baseUri.toString() + DIRECT_ENDPOINT + userId + JSON_FORMAT, true)
-            val status = client.execute(getMethod)
+            val status = execute(getMethod)
             if (status == HttpStatus.SC_OK) {
                 val serverResponse: ServerResponse<HoverCard>? =
                     getServerResponse(
@@ -46,6 +59,8 @@ class GetHoverCardRemoteOperation(private val userId: String) : OCSRemoteOperati
             } else {
                 result = RemoteOperationResult(false, getMethod)
             }
+        } catch (e: CancellationException) {
+            throw e
         } catch (e: Exception) {
             result = RemoteOperationResult(e)
             Log_OC.e(
@@ -0,0 +1,104 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.nextcloud.common
+
+import android.os.Build
+import androidx.annotation.RequiresApi
+import com.owncloud.android.lib.common.network.RetryBudget
+import com.owncloud.android.lib.common.operations.RemoteOperation
+import com.owncloud.android.lib.common.operations.RemoteOperationResult
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.future.future
+import kotlinx.coroutines.runInterruptible
+import kotlinx.coroutines.suspendCancellableCoroutine
+import kotlinx.coroutines.withContext
+import okhttp3.Call
+import okhttp3.Callback
+import okhttp3.Response
+import java.io.IOException
+import java.util.concurrent.CompletableFuture
+import kotlin.coroutines.resumeWithException
+
+/**
+ * Glue between [RemoteOperation], OkHttp's asynchronous [Call.enqueue] and coroutines / [CompletableFuture].
+ */
+object AsyncExecution {
+    /**
+     * Coroutines are started unconfined: they run on the caller's thread until the first network call is enqueued
+     * and continue on the OkHttp dispatcher thread that delivered the response.
+     */
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.Unconfined)
+
+    @JvmStatic
+    @RequiresApi(Build.VERSION_CODES.N)
+    fun <T> future(
+        operation: RemoteOperation<T>,
+        client: NextcloudClient
+    ): CompletableFuture<RemoteOperationResult<T>> = launchFuture { operation.await(client) }
+
+    @RequiresApi(Build.VERSION_CODES.N)
+    internal fun <T> launchFuture(block: suspend CoroutineScope.() -> T): CompletableFuture<T> =
+        scope.future(block = block)
+}
+
+/**
+ * Executes the operation without blocking the calling thread.
+ *
+ * Operations implementing [SuspendingRemoteOperation] only hold a thread while processing the response; all others
+ * fall back to [RemoteOperation.run] on [Dispatchers.IO]. Cancelling the calling coroutine cancels the underlying
+ * HTTP calls, respectively interrupts the blocking fallback. Like [NextcloudClient.execute], the operation runs with
+ * a [RetryBudget] of its own, unless the calling coroutine runs with one already.
+ */
+@Suppress("TooGenericExceptionCaught")
+suspend fun <T> RemoteOperation<T>.await(client: NextcloudClient): RemoteOperationResult<T> =
+    withContext(RetryBudget.asContextElement(RetryBudget.current() ?: RetryBudget(maxRetries))) {
+        try {
+            if (this@await is SuspendingRemoteOperation<*>) {
+                @Suppress("UNCHECKED_CAST")
+                (this@await as SuspendingRemoteOperation<T>).runSuspending(client)
+            } else {
+                runInterruptible(Dispatchers.IO) { this@await.run(client) }
+            }
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Exception) {
+            RemoteOperationResult(e)
+        }
+    }
+
+/**
+ * Enqueues the call and suspends until the response headers arrived; cancellation is propagated to the call.
+ */
+@OptIn(ExperimentalCoroutinesApi::class)
+internal suspend fun Call.await(): Response =
+    suspendCancellableCoroutine { continuation ->
+        continuation.invokeOnCancellation { cancel() }
+
+        enqueue(
+            object : Callback {
+                override fun onResponse(
+                    call: Call,
+                    response: Response
+                ) {
+                    continuation.resume(response) { response.close() }
+                }
+
+                override fun onFailure(
+                    call: Call,
+                    e: IOException
+                ) {
+                    if (!continuation.isCancelled) {
+                        continuation.resumeWithException(e)
+                    }
+                }
+            }
+        )
+    }
@@ -0,0 +1,106 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.nextcloud.common
+
+import com.owncloud.android.lib.common.network.CircuitBreaker
+import com.owncloud.android.lib.common.network.CircuitBreakerOpenException
+import com.owncloud.android.lib.common.network.CircuitBreakers
+import okhttp3.Interceptor
+import okhttp3.Request
+import okhttp3.Response
+import java.io.IOException
+import java.util.concurrent.TimeUnit
+
+/**
+ * Fails calls fast while the [CircuitBreaker] of their server is open, and reports the outcome of every call to it.
+ *
+ * Added after [RetryInterceptor], so that every attempt is gated and recorded on its own, and retries stop as soon
+ * as the circuit opens. Calls sending a body or tagged with [CustomTimeouts] are not timed, see
+ * [CircuitBreaker.onResponse].
+ */
+internal class CircuitBreakerInterceptor : Interceptor {
+    /**
+     * Tag of requests sent with timeouts of their own, which are expected to take longer than others.
+     */
+    object CustomTimeouts
+
+    override fun intercept(chain: Interceptor.Chain): Response {
+        val request = chain.request()
+        if (!CircuitBreakers.enabled) {
+            return chain.proceed(request)
+        }
+
+        val url = request.url
+        val breaker = CircuitBreakers.get(url.scheme, url.host, url.port)
+        when (breaker.tryAcquire()) {
+            CircuitBreaker.Permission.REJECTED -> throw openException(breaker)
+            CircuitBreaker.Permission.PROBE -> probe(chain, breaker)
+            CircuitBreaker.Permission.ALLOWED -> Unit
+        }
+
+        val start = System.nanoTime()
+        try {
+            val response = chain.proceed(request)
+            val durationMillis =
+                if (isTimed(request)) {
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+                } else {
+                    CircuitBreaker.UNTIMED
+                }
+            breaker.onResponse(response.code, durationMillis, response.header(RETRY_AFTER))
+            return response
+        } catch (e: IOException) {
+            if (!chain.call().isCanceled()) {
+                breaker.onError(e)
+            }
+            throw e
+        }
+    }
+
+    /**
+     * Sends the status request of the server, failing if the server is still failing.
+     */
+    private fun probe(
+        chain: Interceptor.Chain,
+        breaker: CircuitBreaker
+    ) {
+        val probeUrl =
+            breaker.probeUrl
+                ?: chain.request().url.newBuilder().encodedPath(STATUS_PATH).query(null).build().toString()
+        val success =
+            try {
+                chain
+                    .withConnectTimeout(PROBE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+                    .withReadTimeout(PROBE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+                    .proceed(Request.Builder().url(probeUrl).build())
+                    .use { !breaker.isFailure(it.code) }
+            } catch (e: IOException) {
+                if (chain.call().isCanceled()) {
+                    breaker.onProbeCanceled()
+                } else {
+                    breaker.onProbeError(e)
+                }
+                throw e
+            }
+        breaker.onProbeResult(success)
+        if (!success) {
+            throw openException(breaker)
+        }
+    }
+
+    private fun isTimed(request: Request): Boolean =
+        request.body == null && request.tag(CustomTimeouts::class.java) == null
+
+    private fun openException(breaker: CircuitBreaker) =
+        CircuitBreakerOpenException(breaker.host, breaker.getRemainingOpenMillis())
+
+    companion object {
+        private const val RETRY_AFTER = "Retry-After"
+        private const val STATUS_PATH = "/status.php"
+        private const val PROBE_TIMEOUT_MILLIS = 5000
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.nextcloud.common
+
+import com.owncloud.android.lib.common.utils.Log_OC
+import okhttp3.Headers
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.IOException
+
+/**
+ * [ResponseCacheStore] keeping one file per response in [directory], evicting the least recently used responses
+ * once they take more than [maxSizeBytes] together.
+ *
+ * The directory is scanned on first use, not in the constructor, so that the store can be created on any thread.
+ * Responses are written unencrypted, so [directory] has to be private to the app, e.g. within its cache directory,
+ * never on shared storage.
+ */
+class DiskResponseCacheStore(
+    private val directory: File,
+    private val maxSizeBytes: Long
+) : ResponseCacheStore {
+    // guarded by this; file sizes by key, in access order
+    private val entries = LinkedHashMap<String, Long>(INITIAL_CAPACITY, LOAD_FACTOR, true)
+    private var size = 0L
+    private var initialized = false
+
+    @Synchronized
+    fun getSize(): Long {
+        initialize()
+        return size
+    }
+
+    @Synchronized
+    override fun get(key: String): CachedResponse? {
+        initialize()
+        if (entries[key] == null) {
+            return null
+        }
+        val file = getFile(key)
+        return try {
+            DataInputStream(BufferedInputStream(FileInputStream(file))).use { read(it) }.also {
+                // keeps the order of use across restarts
+                file.setLastModified(System.currentTimeMillis())
+            }
+        } catch (e: IOException) {
+            Log_OC.w(TAG, "Removing unreadable response: " + e.message)
+            remove(key)
+            null
+        }
+    }
+
+    @Synchronized
+    override fun put(
+        key: String,
+        response: CachedResponse
+    ) {
+        initialize()
+        val file = getFile(key)
+        val temp = File(directory, key + TEMP_SUFFIX)
+        try {
+            DataOutputStream(BufferedOutputStream(FileOutputStream(temp))).use { write(it, response) }
+            if (!temp.renameTo(file)) {
+                throw IOException("Cannot rename " + temp.name)
+            }
+        } catch (e: IOException) {
+            Log_OC.w(TAG, "Cannot store response: " + e.message)
+            temp.delete()
+            remove(key)
+            return
+        }
+        size += file.length() - (entries.put(key, file.length()) ?: 0)
+        trim()
+    }
+
+    @Synchronized
+    override fun remove(key: String) {
+        initialize()
+        entries.remove(key)?.let { size -= it }
+        getFile(key).delete()
+    }
+
+    @Synchronized
+    override fun removeAll(prefix: String) {
+        initialize()
+        entries.keys.filter { it.startsWith(prefix) }.forEach { remove(it) }
+    }
+
+    @Synchronized
+    override fun clear() {
+        initialize()
+        entries.keys.toList().forEach { remove(it) }
+    }
+
+    private fun initialize() {
+        if (initialized) {
+            return
+        }
+        initialized = true
+        if (!directory.isDirectory && !directory.mkdirs()) {
+            Log_OC.e(TAG, "Cannot create " + directory.absolutePath)
+        }
+        directory.listFiles()?.filter { it.name.endsWith(TEMP_SUFFIX) }?.forEach { it.delete() }
+        directory
+            .listFiles()
+            ?.filter { it.name.endsWith(SUFFIX) }
+            ?.sortedBy { it.lastModified() }
+            ?.forEach {
+                entries[it.name.removeSuffix(SUFFIX)] = it.length()
+                size += it.length()
+            }
+        trim()
+    }
+
+    private fun trim() {
+        val iterator = entries.entries.iterator()
+        while (size > maxSizeBytes && iterator.hasNext()) {
+            val eldest = iterator.next()
+            iterator.remove()
+            size -= eldest.value
+            getFile(eldest.key).delete()
+        }
+    }
+
+    private fun getFile(key: String): File = File(directory, key + SUFFIX)
+
+    private fun write(
+        output: DataOutputStream,
+        response: CachedResponse
+    ) {
+        output.writeInt(FORMAT_VERSION)
+        output.writeLong(response.storedAt)
+        output.writeInt(response.code)
+        output.writeUTF(response.message)
+        output.writeInt(response.headers.size)
+        response.headers.forEach { (name, value) ->
+            output.writeUTF(name)
+            output.writeUTF(value)
+        }
+        output.writeInt(response.body.size)
+        output.write(response.body)
+    }
+
+    private fun read(input: DataInputStream): CachedResponse {
+        if (input.readInt() != FORMAT_VERSION) {
+            throw IOException("Unknown format")
+        }
+        val storedAt = input.readLong()
+        val code = input.readInt()
+        val message = input.readUTF()
+        val headers = Headers.Builder()
+        repeat(input.readInt()) { headers.addUnsafeNonAscii(input.readUTF(), input.readUTF()) }
+        val body = ByteArray(input.readInt())
+        input.readFully(body)
+        return CachedResponse(code, message, headers.build(), body, storedAt)
+    }
+
+    companion object {
+        private val TAG = DiskResponseCacheStore::class.java.simpleName
+
+        private const val FORMAT_VERSION = 1
+        private const val SUFFIX = ".response"
+        private const val TEMP_SUFFIX = ".tmp"
+        private const val INITIAL_CAPACITY = 16
+        private const val LOAD_FACTOR = 0.75f
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.nextcloud.common
+
+import com.owncloud.android.lib.common.network.BandwidthLimiter
+import com.owncloud.android.lib.common.network.ContentChecksum
+import com.owncloud.android.lib.common.network.FileRequestEntity
+import com.owncloud.android.lib.common.network.OnDatatransferProgressListener
+import com.owncloud.android.lib.common.network.ProgressiveDataTransfer
+import okhttp3.MediaType
+import okhttp3.RequestBody
+import okio.BufferedSink
+import okio.source
+import java.io.EOFException
+import java.io.File
+import java.io.FileInputStream
+import java.io.OutputStream
+import java.util.concurrent.CopyOnWriteArraySet
+
+/**
+ * [RequestBody] streaming a file, or a range of it, e.g. a chunk.
+ *
+ * Data is read straight into the segments of the sink's buffer, so every byte is copied once on its way from the
+ * file to the socket. Progress listeners are notified every [FileRequestEntity.DEFAULT_BUFFER_SIZE] bytes, with
+ * `totalTransferredSoFar` counted from the start of the file, like [FileRequestEntity] and
+ * [com.owncloud.android.lib.common.network.ChunkFromFileChannelRequestEntity] do.
+ */
+class FileRequestBody
+    @JvmOverloads
+    constructor(
+        private val file: File,
+        private val contentType: MediaType?,
+        private val offset: Long = 0,
+        private val length: Long = file.length() - offset
+    ) : RequestBody(), ProgressiveDataTransfer {
+        private val dataTransferListeners = CopyOnWriteArraySet<OnDatatransferProgressListener>()
+
+        /**
+         * Updated with every byte written; reset whenever the body is written again.
+         */
+        var checksum: ContentChecksum? = null
+
+        /**
+         * Every buffer has to pass the limiter before it is written; null writes unthrottled.
+         */
+        var bandwidthLimiter: BandwidthLimiter? = null
+
+        private val checksumStream =
+            object : OutputStream() {
+                override fun write(b: Int) {
+                    write(byteArrayOf(b.toByte()), 0, 1)
+                }
+
+                override fun write(
+                    b: ByteArray,
+                    off: Int,
+                    len: Int
+                ) {
+                    checksum?.update(b, off, len)
+                }
+            }
+
+        init {
+            require(offset >= 0) { "Offset must not be negative" }
+            require(length >= 0) { "Length must not be negative" }
+        }
+
+        override fun contentType(): MediaType? = contentType
+
+        override fun contentLength(): Long = length
+
+        override fun writeTo(sink: BufferedSink) {
+            FileInputStream(file).use { input ->
+                input.channel.position(offset)
+                val source = input.source()
+                val size = file.length().takeIf { it > 0 } ?: -1
+                var remaining = length
+                var transferred = offset
+                var unreported = 0L
+                checksum?.reset()
+
+                while (remaining > 0) {
+                    val read = source.read(sink.buffer, minOf(remaining, BUFFER_SIZE))
+                    if (read == -1L) {
+                        throw EOFException("Unexpected end of file: ${file.absolutePath}")
+                    }
+                    if (checksum != null) {
+                        // hashed straight from the segments, before complete ones are handed to the socket
+                        sink.buffer.copyTo(checksumStream, sink.buffer.size - read, read)
+                    }
+                    bandwidthLimiter?.acquire(read.toInt())
+                    sink.emitCompleteSegments()
+                    remaining -= read
+                    unreported += read
+
+                    if (unreported >= BUFFER_SIZE || remaining == 0L) {
+                        transferred += unreported
+                        notifyProgress(unreported, transferred, size)
+                        unreported = 0
+                    }
+                }
+            }
+        }
+
+        override fun addDataTransferProgressListener(listener: OnDatatransferProgressListener) {
+            dataTransferListeners.add(listener)
+        }
+
+        override fun addDataTransferProgressListeners(listeners: Collection<OnDatatransferProgressListener>) {
+            dataTransferListeners.addAll(listeners)
+        }
+
+        override fun removeDataTransferProgressListener(listener: OnDatatransferProgressListener) {
+            dataTransferListeners.remove(listener)
+        }
+
+        private fun notifyProgress(
+            progressRate: Long,
+            transferred: Long,
+            size: Long
+        ) {
+            dataTransferListeners.forEach { it.onTransferProgress(progressRate, transferred, size, file.absolutePath) }
+        }
+
+        companion object {
+            private const val BUFFER_SIZE = FileRequestEntity.DEFAULT_BUFFER_SIZE.toLong()
+        }
+    }
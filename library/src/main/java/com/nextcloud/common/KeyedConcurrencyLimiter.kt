@@ -0,0 +1,92 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.nextcloud.common
+
+import okhttp3.Interceptor
+import okhttp3.Request
+import java.io.InterruptedIOException
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+/**
+ * Caps the number of concurrently executing calls per key (e.g. host or account).
+ *
+ * Keys without a configured limit are not restricted. Limits can be changed at any time; waiting calls
+ * re-evaluate the limit when a permit is released or the limit changes.
+ *
+ * A permit is held until the response headers have been received, not until the body is consumed.
+ */
+internal class KeyedConcurrencyLimiter {
+    private val lock = ReentrantLock()
+    private val released = lock.newCondition()
+    private val limits: MutableMap<String, Int> = HashMap()
+    private val inFlight: MutableMap<String, Int> = HashMap()
+
+    /**
+     * @param limit maximum number of concurrent calls for [key]; values <= 0 remove the limit
+     */
+    fun setLimit(
+        key: String,
+        limit: Int
+    ) {
+        lock.withLock {
+            if (limit > 0) {
+                limits[key] = limit
+            } else {
+                limits.remove(key)
+            }
+            released.signalAll()
+        }
+    }
+
+    fun getLimit(key: String): Int = lock.withLock { limits[key] ?: 0 }
+
+    fun getInFlight(key: String): Int = lock.withLock { inFlight[key] ?: 0 }
+
+    @Throws(InterruptedIOException::class)
+    fun acquire(key: String) {
+        lock.withLock {
+            try {
+                while (isSaturated(key)) {
+                    released.await()
+                }
+            } catch (e: InterruptedException) {
+                Thread.currentThread().interrupt()
+                throw InterruptedIOException("Interrupted while waiting for a free slot for $key")
+            }
+            inFlight[key] = (inFlight[key] ?: 0) + 1
+        }
+    }
+
+    fun release(key: String) {
+        lock.withLock {
+            val count = (inFlight[key] ?: 1) - 1
+            if (count <= 0) {
+                inFlight.remove(key)
+            } else {
+                inFlight[key] = count
+            }
+            released.signalAll()
+        }
+    }
+
+    fun interceptor(keyOf: (Request) -> String): Interceptor =
+        Interceptor { chain ->
+            val key = keyOf(chain.request())
+            acquire(key)
+            try {
+                chain.proceed(chain.request())
+            } finally {
+                release(key)
+            }
+        }
+
+    private fun isSaturated(key: String): Boolean {
+        val limit = limits[key] ?: return false
+        return (inFlight[key] ?: 0) >= limit
+    }
+}
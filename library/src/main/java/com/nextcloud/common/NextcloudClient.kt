@@ -12,29 +12,20 @@ package com.nextcloud.common
 
 import android.content.Context
 import android.net.Uri
-import android.text.TextUtils
 import com.owncloud.android.lib.common.OwnCloudClient
-import com.owncloud.android.lib.common.OwnCloudClientFactory.DEFAULT_CONNECTION_TIMEOUT_LONG
-import com.owncloud.android.lib.common.OwnCloudClientFactory.DEFAULT_DATA_TIMEOUT_LONG
-import com.owncloud.android.lib.common.OwnCloudClientManagerFactory
 import com.owncloud.android.lib.common.accounts.AccountUtils
 import com.owncloud.android.lib.common.network.AdvancedX509KeyManager
-import com.owncloud.android.lib.common.network.AdvancedX509TrustManager
-import com.owncloud.android.lib.common.network.NetworkUtils
+import com.owncloud.android.lib.common.network.CircuitBreakers
 import com.owncloud.android.lib.common.network.RedirectionPath
+import com.owncloud.android.lib.common.network.RetryBudget
+import com.owncloud.android.lib.common.network.RetryPolicy
 import com.owncloud.android.lib.common.operations.RemoteOperation
 import com.owncloud.android.lib.common.operations.RemoteOperationResult
 import com.owncloud.android.lib.common.utils.Log_OC
-import okhttp3.CookieJar
 import okhttp3.OkHttpClient
 import okhttp3.Request
 import org.apache.commons.httpclient.HttpStatus
 import java.io.IOException
-import java.net.InetSocketAddress
-import java.net.Proxy
-import java.util.concurrent.TimeUnit
-import javax.net.ssl.SSLSession
-import javax.net.ssl.TrustManager
 
 class NextcloudClient private constructor(
     val delegate: NextcloudUriDelegate,
@@ -44,6 +35,15 @@ class NextcloudClient private constructor(
 ) : NextcloudUriProvider by delegate {
     var followRedirects = true
 
+    /**
+     * Policy for retrying methods of this client, unless a method has its own, see [OkHttpMethodBase.retryPolicy].
+     */
+    var retryPolicy: RetryPolicy = RetryPolicy.DEFAULT
+
+    init {
+        CircuitBreakers.registerServer(delegate.baseUri.toString())
+    }
+
     constructor(
         baseUri: Uri,
         userId: String,
@@ -61,40 +61,6 @@ class NextcloudClient private constructor(
     companion object {
         @JvmStatic
         val TAG = NextcloudClient::class.java.simpleName
-
-        private fun createDefaultClient(context: Context): OkHttpClient {
-            val trustManager = AdvancedX509TrustManager(NetworkUtils.getKnownServersStore(context))
-            val keyManager = AdvancedX509KeyManager(context)
-
-            val sslContext = NetworkUtils.getSSLContext()
-
-            sslContext.init(arrayOf(keyManager), arrayOf<TrustManager>(trustManager), null)
-            val sslSocketFactory = sslContext.socketFactory
-
-            var proxy: Proxy? = null
-
-            val proxyHost = OwnCloudClientManagerFactory.getProxyHost()
-            val proxyPort = OwnCloudClientManagerFactory.getProxyPort()
-
-            if (!TextUtils.isEmpty(proxyHost) && proxyPort > 0) {
-                proxy = Proxy(Proxy.Type.HTTP, InetSocketAddress(proxyHost, proxyPort))
-                Log_OC.d(this, "Proxy settings: $proxyHost:$proxyPort")
-            }
-
-            return OkHttpClient.Builder()
-                .cookieJar(CookieJar.NO_COOKIES)
-                .connectTimeout(DEFAULT_CONNECTION_TIMEOUT_LONG, TimeUnit.MILLISECONDS)
-                .readTimeout(DEFAULT_DATA_TIMEOUT_LONG, TimeUnit.MILLISECONDS)
-                .callTimeout(
-                    DEFAULT_CONNECTION_TIMEOUT_LONG + DEFAULT_DATA_TIMEOUT_LONG,
-                    TimeUnit.MILLISECONDS
-                )
-                .sslSocketFactory(sslSocketFactory, trustManager)
-                .hostnameVerifier { _: String?, _: SSLSession? -> true }
-                .fastFallback(true)
-                .proxy(proxy)
-                .build()
-        }
     }
 
     constructor(
@@ -102,13 +68,19 @@ class NextcloudClient private constructor(
         userId: String,
         credentials: String,
         context: Context
-    ) : this(baseUri, userId, credentials, createDefaultClient(context), context)
+    ) : this(
+        baseUri,
+        userId,
+        credentials,
+        TransportRegistry.newNextcloudClient(context, AccountUtils.buildAccountName(baseUri, userId)),
+        context
+    )
 
     @Suppress("TooGenericExceptionCaught")
     fun <T> execute(remoteOperation: RemoteOperation<T>): RemoteOperationResult<T> {
         val result =
             try {
-                remoteOperation.run(this)
+                RetryBudget.runWith(RetryBudget(remoteOperation.maxRetries)) { remoteOperation.run(this) }
             } catch (ex: Exception) {
                 RemoteOperationResult(ex)
             }
@@ -127,12 +99,28 @@ class NextcloudClient private constructor(
     @Throws(IOException::class)
     fun execute(method: OkHttpMethodBase): Int {
         val httpStatus = method.execute(this)
+        checkClientCertificate(method, httpStatus)
+        return httpStatus
+    }
+
+    /**
+     * Non-blocking variant of [execute], see [OkHttpMethodBase.await].
+     */
+    suspend fun await(method: OkHttpMethodBase): Int {
+        val httpStatus = method.await(this)
+        checkClientCertificate(method, httpStatus)
+        return httpStatus
+    }
+
+    private fun checkClientCertificate(
+        method: OkHttpMethodBase,
+        httpStatus: Int
+    ) {
         if (httpStatus == HttpStatus.SC_BAD_REQUEST) {
             val uri = method.uri
             Log_OC.e(TAG, "Received http status 400 for $uri -> removing client certificate")
             AdvancedX509KeyManager(context).removeKeys(uri)
         }
-        return httpStatus
     }
 
     internal fun execute(request: Request): ResponseOrError {
@@ -150,16 +138,24 @@ class NextcloudClient private constructor(
     }
 
     @Throws(IOException::class)
-    fun followRedirection(method: OkHttpMethodBase): RedirectionPath {
+    fun followRedirection(method: OkHttpMethodBase): RedirectionPath =
+        followRedirection(method) { method.executeOnce(this) }
+
+    /**
+     * Non-blocking variant of [followRedirection], re-sending [method] without blocking the calling thread.
+     */
+    internal suspend fun awaitRedirection(method: OkHttpMethodBase): RedirectionPath =
+        followRedirection(method) { method.awaitOnce(this) }
+
+    private inline fun followRedirection(
+        method: OkHttpMethodBase,
+        execute: () -> Int
+    ): RedirectionPath {
         var redirectionsCount = 0
         var status = method.getStatusCode()
         val result = RedirectionPath(status, OwnCloudClient.MAX_REDIRECTIONS_COUNT)
 
-        val statusIsRedirection =
-            status == HttpStatus.SC_MOVED_PERMANENTLY ||
-                status == HttpStatus.SC_MOVED_TEMPORARILY ||
-                status == HttpStatus.SC_TEMPORARY_REDIRECT
-        while (redirectionsCount < OwnCloudClient.MAX_REDIRECTIONS_COUNT && statusIsRedirection) {
+        while (redirectionsCount < OwnCloudClient.MAX_REDIRECTIONS_COUNT && isRedirection(status)) {
             val location =
                 method.getResponseHeader("Location")
                     ?: method.getResponseHeader("location")
@@ -179,7 +175,7 @@ class NextcloudClient private constructor(
                     setRedirectedDestinationHeader(method, location, destination)
                 }
 
-                status = method.execute(this)
+                status = execute()
                 result.addStatus(status)
                 redirectionsCount++
             } else {
@@ -191,6 +187,11 @@ class NextcloudClient private constructor(
         return result
     }
 
+    private fun isRedirection(status: Int): Boolean =
+        status == HttpStatus.SC_MOVED_PERMANENTLY ||
+            status == HttpStatus.SC_MOVED_TEMPORARILY ||
+            status == HttpStatus.SC_TEMPORARY_REDIRECT
+
     private fun setRedirectedDestinationHeader(
         method: OkHttpMethodBase,
         location: String,
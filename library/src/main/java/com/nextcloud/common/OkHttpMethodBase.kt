@@ -9,16 +9,29 @@
  */
 package com.nextcloud.common
 
+import android.os.Build
+import androidx.annotation.RequiresApi
 import com.owncloud.android.lib.common.OwnCloudClientManagerFactory
+import com.owncloud.android.lib.common.network.RetryBudget
+import com.owncloud.android.lib.common.network.RetryPolicy
 import com.owncloud.android.lib.common.operations.RemoteOperation
 import com.owncloud.android.lib.common.utils.Log_OC
+import okhttp3.Call
 import okhttp3.Headers
 import okhttp3.HttpUrl
 import okhttp3.HttpUrl.Companion.toHttpUrlOrNull
 import okhttp3.Request
 import okhttp3.Response
+import org.apache.jackrabbit.webdav.DavException
+import org.apache.jackrabbit.webdav.MultiStatus
+import org.apache.jackrabbit.webdav.xml.DomUtil
+import org.xml.sax.SAXException
 import java.io.IOException
+import java.io.InputStream
 import java.net.HttpURLConnection
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
+import javax.xml.parsers.ParserConfigurationException
 
 /**
  * Common base class for all new OkHttpMethods
@@ -39,6 +52,29 @@ abstract class OkHttpMethodBase(
     private val requestHeaders: MutableMap<String, String> = HashMap()
     private val requestBuilder: Request.Builder = Request.Builder()
     private var request: Request? = null
+    private var readTimeout: Long = 0
+    private var connectionTimeout: Long = 0
+
+    @Volatile
+    private var call: Call? = null
+
+    /**
+     * Whether [abort] was called.
+     */
+    @Volatile
+    var isAborted = false
+        private set
+
+    /**
+     * Policy for retrying this method, overriding the one of the client; e.g. [RetryPolicy.NONE].
+     */
+    var retryPolicy: RetryPolicy? = null
+
+    /**
+     * Whether redirects are followed for this method, if [NextcloudClient.followRedirects] is set as well; clearing
+     * it leaves the shared client untouched, unlike clearing the flag of the client.
+     */
+    var followRedirects = true
 
     init {
         requestHeaders["http.protocol.single-cookie-header"] = "true"
@@ -78,6 +114,21 @@ abstract class OkHttpMethodBase(
         requestHeaders[header] = value
     }
 
+    /**
+     * Overrides the timeouts of the client for this method only, e.g. for long running server side operations.
+     * The overall call timeout of the client does not apply then.
+     *
+     * @param readTimeout read timeout in milliseconds, 0 to keep the client's value
+     * @param connectionTimeout connection timeout in milliseconds, 0 to keep the client's value
+     */
+    fun setTimeouts(
+        readTimeout: Long,
+        connectionTimeout: Long
+    ) {
+        this.readTimeout = readTimeout
+        this.connectionTimeout = connectionTimeout
+    }
+
     fun setQueryString(params: Map<String, String>) {
         queryMap = params
     }
@@ -86,6 +137,30 @@ abstract class OkHttpMethodBase(
         return response?.body?.string() ?: ""
     }
 
+    fun getResponseBodyAsStream(): InputStream? {
+        return response?.body?.byteStream()
+    }
+
+    /**
+     * Parses a WebDAV multi status response into the same jackrabbit [MultiStatus] model the legacy
+     * [org.apache.jackrabbit.webdav.client.methods.DavMethodBase] produces, so that existing consumers like
+     * [com.owncloud.android.lib.common.network.WebdavEntry] can be used unchanged.
+     *
+     * @return parsed response; call only after a 207 status
+     */
+    @Throws(IOException::class, DavException::class)
+    fun getResponseBodyAsMultiStatus(): MultiStatus {
+        val stream = getResponseBodyAsStream() ?: throw DavException(getStatusCode(), "Empty response body")
+
+        try {
+            return stream.use { MultiStatus.createFromXml(DomUtil.parseDocument(it).documentElement) }
+        } catch (e: ParserConfigurationException) {
+            throw IOException("XML parser configuration error", e)
+        } catch (e: SAXException) {
+            throw DavException(getStatusCode(), "Invalid multi status response", e, null)
+        }
+    }
+
     fun getResponseContentLength(): Long {
         return response?.body?.contentLength() ?: -1
     }
@@ -94,6 +169,15 @@ abstract class OkHttpMethodBase(
         response?.body?.close()
     }
 
+    /**
+     * Cancels the call of this method, whether it is running or not yet started, e.g. to cancel an upload from
+     * another thread; the method returns [UNKNOWN_STATUS_CODE] then.
+     */
+    fun abort() {
+        isAborted = true
+        call?.cancel()
+    }
+
     fun getStatusCode(): Int {
         return response?.code ?: UNKNOWN_STATUS_CODE
     }
@@ -114,12 +198,7 @@ abstract class OkHttpMethodBase(
         return request?.header(name)
     }
 
-    /**
-     * Execute operation using nextcloud client.
-     *
-     * @return HTTP return code or [UNKNOWN_STATUS_CODE] in case of network error.
-     */
-    fun execute(nextcloudClient: NextcloudClient): Int {
+    private fun buildRequest(nextcloudClient: NextcloudClient): Request {
         val temp = requestBuilder.url(buildQueryParameter())
 
         requestHeaders[AUTHORIZATION] = nextcloudClient.credentials
@@ -130,23 +209,112 @@ abstract class OkHttpMethodBase(
             temp.header(RemoteOperation.OCS_API_HEADER, RemoteOperation.OCS_API_HEADER_VALUE)
         }
 
+        // read by the RetryInterceptor of the transport; the budget is the one of the operation running this method
+        temp.tag(RetryPolicy::class.java, retryPolicy ?: nextcloudClient.retryPolicy)
+        temp.tag(RetryBudget::class.java, RetryBudget.current())
+        // read by the CircuitBreakerInterceptor, as calls with timeouts of their own may take long
+        temp.tag(
+            CircuitBreakerInterceptor.CustomTimeouts::class.java,
+            CircuitBreakerInterceptor.CustomTimeouts.takeIf { readTimeout > 0 || connectionTimeout > 0 }
+        )
+
         applyType(temp)
 
-        val request = temp.build()
+        return temp.build()
+    }
 
-        try {
-            response = nextcloudClient.client.newCall(request).execute()
-        } catch (ex: IOException) {
-            return UNKNOWN_STATUS_CODE
+    private fun newCall(nextcloudClient: NextcloudClient): Call {
+        var client = nextcloudClient.client
+        if (readTimeout > 0 || connectionTimeout > 0) {
+            val builder = client.newBuilder().callTimeout(0, TimeUnit.MILLISECONDS)
+            if (readTimeout > 0) {
+                builder.readTimeout(readTimeout, TimeUnit.MILLISECONDS)
+            }
+            if (connectionTimeout > 0) {
+                builder.connectTimeout(connectionTimeout, TimeUnit.MILLISECONDS)
+            }
+            client = builder.build()
+        }
+
+        return client.newCall(buildRequest(nextcloudClient)).also {
+            call = it
+            if (isAborted) {
+                it.cancel()
+            }
         }
+    }
 
-        return if (nextcloudClient.followRedirects) {
+    /**
+     * Execute operation using nextcloud client.
+     *
+     * @return HTTP return code or [UNKNOWN_STATUS_CODE] in case of network error.
+     */
+    fun execute(nextcloudClient: NextcloudClient): Int {
+        val status = executeOnce(nextcloudClient)
+        return if (nextcloudClient.followRedirects && followRedirects && status != UNKNOWN_STATUS_CODE) {
             nextcloudClient.followRedirection(this).lastStatus
         } else {
-            response?.code ?: UNKNOWN_STATUS_CODE
+            status
+        }
+    }
+
+    /**
+     * Sends the request once, without following redirects.
+     */
+    internal fun executeOnce(nextcloudClient: NextcloudClient): Int {
+        response =
+            try {
+                newCall(nextcloudClient).execute()
+            } catch (ex: IOException) {
+                return UNKNOWN_STATUS_CODE
+            }
+
+        return response?.code ?: UNKNOWN_STATUS_CODE
+    }
+
+    /**
+     * Execute operation using nextcloud client without blocking the calling thread.
+     *
+     * The call is enqueued on the OkHttp dispatcher; redirects are followed like in [execute], if
+     * [NextcloudClient.followRedirects] and [followRedirects] are set. Cancelling the calling coroutine cancels the underlying
+     * [okhttp3.Call].
+     *
+     * @return HTTP return code or [UNKNOWN_STATUS_CODE] in case of network error.
+     */
+    suspend fun await(nextcloudClient: NextcloudClient): Int {
+        val status = awaitOnce(nextcloudClient)
+        return if (nextcloudClient.followRedirects && followRedirects && status != UNKNOWN_STATUS_CODE) {
+            nextcloudClient.awaitRedirection(this).lastStatus
+        } else {
+            status
         }
     }
 
+    /**
+     * Sends the request once, without following redirects.
+     */
+    internal suspend fun awaitOnce(nextcloudClient: NextcloudClient): Int {
+        val call = newCall(nextcloudClient)
+
+        response =
+            try {
+                call.await()
+            } catch (ex: IOException) {
+                return UNKNOWN_STATUS_CODE
+            }
+
+        return response?.code ?: UNKNOWN_STATUS_CODE
+    }
+
+    /**
+     * Java friendly variant of [await]. Cancelling the returned future cancels the underlying [okhttp3.Call].
+     *
+     * @return future completing with the HTTP return code or [UNKNOWN_STATUS_CODE] in case of network error.
+     */
+    @RequiresApi(Build.VERSION_CODES.N)
+    fun executeAsync(nextcloudClient: NextcloudClient): CompletableFuture<Int> =
+        AsyncExecution.launchFuture { await(nextcloudClient) }
+
     fun execute(client: PlainClient): Int {
         val temp = requestBuilder.url(buildQueryParameter())
 
@@ -0,0 +1,182 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.nextcloud.common
+
+import com.owncloud.android.lib.common.utils.Log_OC
+import okhttp3.Interceptor
+import okhttp3.Request
+import okhttp3.Response
+import okhttp3.ResponseBody.Companion.toResponseBody
+import java.io.IOException
+import java.io.InterruptedIOException
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Lets identical GET requests in flight at the same time share one network call.
+ *
+ * The first request is sent, identical requests issued before its response arrives wait for it and get a copy of
+ * it. Requests are identical if their URL and all their headers, credentials included, are equal. Responses are
+ * only buffered for sharing if requests are waiting, and only up to [maxBodyBytes]; waiting requests are sent on
+ * their own if the response is too large, or if the first request was canceled.
+ */
+class RequestCoalescer internal constructor(
+    private val maxBodyBytes: Long = DEFAULT_MAX_BODY_BYTES
+) : Interceptor {
+    /**
+     * @param networkCalls GET requests sent to the server
+     * @param collapsedCalls GET requests answered with the response of another request instead
+     */
+    data class Stats(
+        val networkCalls: Long,
+        val collapsedCalls: Long
+    )
+
+    private class Flight {
+        val done = CountDownLatch(1)
+        val followers = AtomicInteger()
+
+        @Volatile
+        var response: Response? = null
+
+        @Volatile
+        var bytes: ByteArray? = null
+
+        @Volatile
+        var error: IOException? = null
+    }
+
+    private val flights = ConcurrentHashMap<String, Flight>()
+    private val networkCalls = AtomicLong()
+    private val collapsedCalls = AtomicLong()
+
+    val stats: Stats
+        get() = Stats(networkCalls.get(), collapsedCalls.get())
+
+    override fun intercept(chain: Interceptor.Chain): Response {
+        val request = chain.request()
+        if (request.method != GET || request.body != null) {
+            return chain.proceed(request)
+        }
+
+        val key = getKey(request)
+        val flight = Flight()
+        val leader = flights.putIfAbsent(key, flight)
+        return if (leader == null) lead(chain, key, flight) else follow(chain, leader)
+    }
+
+    private fun lead(
+        chain: Interceptor.Chain,
+        key: String,
+        flight: Flight
+    ): Response {
+        networkCalls.incrementAndGet()
+        try {
+            val response = chain.proceed(chain.request())
+            // requests issued from now on are sent on their own, as this response may be outdated for them
+            flights.remove(key, flight)
+            if (flight.followers.get() > 0) {
+                share(response, flight)
+            }
+            return response
+        } catch (e: IOException) {
+            if (!chain.call().isCanceled()) {
+                flight.error = e
+            }
+            throw e
+        } finally {
+            flights.remove(key, flight)
+            flight.done.countDown()
+        }
+    }
+
+    /**
+     * Buffers the body of [response] for the followers of [flight]; if it cannot be read, nothing is shared and the
+     * followers are sent on their own, while the caller of the first request gets the same error reading the body.
+     */
+    private fun share(
+        response: Response,
+        flight: Flight
+    ) {
+        val length = response.body.contentLength()
+        if (length <= maxBodyBytes) {
+            // peeked, so that the body of the response stays readable
+            val peeked =
+                try {
+                    response.peekBody(maxBodyBytes + 1)
+                } catch (e: IOException) {
+                    Log_OC.w(this, "Response not shared, reading its body failed: " + e.message)
+                    return
+                }
+            if (peeked.contentLength() <= maxBodyBytes) {
+                flight.bytes = peeked.bytes()
+                flight.response = response
+            }
+        }
+    }
+
+    private fun follow(
+        chain: Interceptor.Chain,
+        flight: Flight
+    ): Response {
+        flight.followers.incrementAndGet()
+        await(chain, flight)
+
+        val response = flight.response
+        val bytes = flight.bytes
+        val error = flight.error
+        return when {
+            response != null && bytes != null -> {
+                collapsedCalls.incrementAndGet()
+                response
+                    .newBuilder()
+                    .request(chain.request())
+                    .body(bytes.toResponseBody(response.body.contentType()))
+                    .build()
+            }
+            // the same exception, so that it is reported the same way to every caller
+            error != null -> throw error
+            else -> {
+                networkCalls.incrementAndGet()
+                chain.proceed(chain.request())
+            }
+        }
+    }
+
+    private fun await(
+        chain: Interceptor.Chain,
+        flight: Flight
+    ) {
+        try {
+            while (!flight.done.await(CANCEL_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (chain.call().isCanceled()) {
+                    throw IOException("Canceled")
+                }
+            }
+        } catch (e: InterruptedException) {
+            Thread.currentThread().interrupt()
+            throw InterruptedIOException("Interrupted while waiting for an identical request")
+        }
+    }
+
+    private fun getKey(request: Request): String {
+        val key = StringBuilder(request.url.toString())
+        request.headers
+            .sortedWith(compareBy({ it.first.lowercase() }, { it.second }))
+            .forEach { (name, value) -> key.append('\n').append(name.lowercase()).append(':').append(value) }
+        return key.toString()
+    }
+
+    companion object {
+        const val DEFAULT_MAX_BODY_BYTES = 1024 * 1024L
+        private const val GET = "GET"
+        private const val CANCEL_CHECK_MILLIS = 100L
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.nextcloud.common
+
+import com.nextcloud.android.lib.core.Clock
+import com.nextcloud.android.lib.core.ClockImpl
+import okhttp3.Headers
+import okhttp3.Interceptor
+import okhttp3.MediaType.Companion.toMediaTypeOrNull
+import okhttp3.Protocol
+import okhttp3.Request
+import okhttp3.Response
+import okhttp3.ResponseBody.Companion.toResponseBody
+import java.security.MessageDigest
+import java.util.Locale
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Caches GET responses of [NextcloudClient]s as their [ResponseCachePolicy] allows, see
+ * [TransportRegistry.responseCache].
+ *
+ * Responses are stored per account: keys are derived from the account, the credentials, the URL and the headers
+ * the response depends on, so that a response is never served to a request with other credentials. Requests
+ * sending their own conditional or range headers bypass the cache, so that their callers get the server's answer.
+ * Cookies and hop-by-hop headers of responses are not stored.
+ *
+ * Stored bodies, e.g. OCS responses with user data, are not encrypted by the cache; [DiskResponseCacheStore] writes
+ * them as they are, so its directory has to be private to the app.
+ *
+ * @param maxEntryBytes responses with larger bodies are not stored
+ */
+class ResponseCache
+    @JvmOverloads
+    constructor(
+        private val store: ResponseCacheStore,
+        private val policies: List<ResponseCachePolicy> = ResponseCachePolicy.DEFAULT_POLICIES,
+        private val maxEntryBytes: Long = DEFAULT_MAX_ENTRY_BYTES,
+        private val clock: Clock = ClockImpl()
+    ) {
+        /**
+         * @param hits responses served from the cache without asking the server
+         * @param revalidations stored responses the server confirmed to be unchanged
+         * @param misses responses fetched from the server, as none was stored or it was outdated
+         */
+        data class Stats(
+            val hits: Long,
+            val revalidations: Long,
+            val misses: Long
+        )
+
+        private val hits = AtomicLong()
+        private val revalidations = AtomicLong()
+        private val misses = AtomicLong()
+
+        val stats: Stats
+            get() = Stats(hits.get(), revalidations.get(), misses.get())
+
+        /**
+         * Serves the request of a client of [accountKey] from the cache, or proceeds with it and stores the response.
+         */
+        fun intercept(
+            chain: Interceptor.Chain,
+            accountKey: String?
+        ): Response {
+            val request = chain.request()
+            val policy = getPolicy(request)
+            return if (policy == null) {
+                chain.proceed(request)
+            } else {
+                intercept(chain, policy, getPartition(accountKey) + KEY_SEPARATOR + getKey(request))
+            }
+        }
+
+        /**
+         * Removes all responses stored for [accountKey], e.g. after the account was removed.
+         */
+        fun evictAccount(accountKey: String?) {
+            store.removeAll(getPartition(accountKey) + KEY_SEPARATOR)
+        }
+
+        fun clear() {
+            store.clear()
+        }
+
+        private fun intercept(
+            chain: Interceptor.Chain,
+            policy: ResponseCachePolicy,
+            key: String
+        ): Response {
+            val request = chain.request()
+            val cached = store.get(key)
+            return if (cached != null && clock.currentTimeMillis - cached.storedAt < policy.maxAgeMillis) {
+                hits.incrementAndGet()
+                toResponse(cached, request)
+            } else {
+                fetch(chain, policy, key, cached)
+            }
+        }
+
+        private fun fetch(
+            chain: Interceptor.Chain,
+            policy: ResponseCachePolicy,
+            key: String,
+            cached: CachedResponse?
+        ): Response {
+            val request = chain.request()
+            val validators = cached?.let { getValidators(it.headers) } ?: Headers.headersOf()
+            val conditional = request.newBuilder()
+            validators.forEach { (name, value) -> conditional.header(name, value) }
+            val response = chain.proceed(conditional.build())
+
+            return if (cached != null && response.code == HTTP_NOT_MODIFIED && validators.size > 0) {
+                response.close()
+                revalidations.incrementAndGet()
+                val refreshed =
+                    CachedResponse(
+                        cached.code,
+                        cached.message,
+                        merge(cached.headers, response.headers),
+                        cached.body,
+                        clock.currentTimeMillis
+                    )
+                store.put(key, refreshed)
+                toResponse(refreshed, request)
+            } else {
+                misses.incrementAndGet()
+                if (response.code == HTTP_OK) {
+                    store(key, policy, response)
+                }
+                response
+            }
+        }
+
+        private fun store(
+            key: String,
+            policy: ResponseCachePolicy,
+            response: Response
+        ) {
+            val storable = policy.maxAgeMillis > 0 || getValidators(response.headers).size > 0
+            if (storable && response.body.contentLength() <= maxEntryBytes) {
+                // peeked, so that the body of the response stays readable
+                val peeked = response.peekBody(maxEntryBytes + 1)
+                if (peeked.contentLength() <= maxEntryBytes) {
+                    val cached =
+                        CachedResponse(
+                            response.code,
+                            response.message,
+                            getStoredHeaders(response.headers),
+                            peeked.bytes(),
+                            clock.currentTimeMillis
+                        )
+                    store.put(key, cached)
+                }
+            }
+        }
+
+        private fun getPolicy(request: Request): ResponseCachePolicy? {
+            val bypass =
+                request.method != GET ||
+                    request.body != null ||
+                    BYPASS_HEADERS.any { request.header(it) != null }
+            return if (bypass) null else policies.firstOrNull { it.matches(request.url.encodedPath) }
+        }
+
+        private fun getValidators(headers: Headers): Headers {
+            val builder = Headers.Builder()
+            headers[ETAG]?.let { builder.add(IF_NONE_MATCH, it) }
+            headers[LAST_MODIFIED]?.let { builder.add(IF_MODIFIED_SINCE, it) }
+            return builder.build()
+        }
+
+        /**
+         * @return the stored headers, updated by those of a 304 response
+         */
+        private fun merge(
+            stored: Headers,
+            notModified: Headers
+        ): Headers {
+            val builder = stored.newBuilder()
+            notModified.names().filter { !it.equals(CONTENT_LENGTH, ignoreCase = true) }.forEach { name ->
+                builder.removeAll(name)
+                notModified.values(name).forEach { builder.add(name, it) }
+            }
+            return getStoredHeaders(builder.build())
+        }
+
+        /**
+         * @return the headers without those that must not be stored, as they are private or only valid for the
+         * connection they were received on
+         */
+        private fun getStoredHeaders(headers: Headers): Headers {
+            val builder = headers.newBuilder()
+            UNSTORED_HEADERS.forEach { builder.removeAll(it) }
+            return builder.build()
+        }
+
+        private fun toResponse(
+            cached: CachedResponse,
+            request: Request
+        ): Response {
+            val now = clock.currentTimeMillis
+            return Response
+                .Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(cached.code)
+                .message(cached.message)
+                .headers(cached.headers)
+                .body(cached.body.toResponseBody(cached.headers[CONTENT_TYPE]?.toMediaTypeOrNull()))
+                .sentRequestAtMillis(now)
+                .receivedResponseAtMillis(now)
+                .build()
+        }
+
+        private fun getPartition(accountKey: String?): String =
+            hash(accountKey.orEmpty()).substring(0, PARTITION_LENGTH)
+
+        private fun getKey(request: Request): String {
+            val key = StringBuilder(request.url.toString())
+            KEY_HEADERS.forEach { key.append('\n').append(request.header(it).orEmpty()) }
+            return hash(key.toString())
+        }
+
+        private fun hash(value: String): String =
+            MessageDigest
+                .getInstance("SHA-256")
+                .digest(value.toByteArray(Charsets.UTF_8))
+                .joinToString("") { String.format(Locale.US, "%02x", it) }
+
+        companion object {
+            const val DEFAULT_MAX_ENTRY_BYTES = 512 * 1024L
+
+            private const val GET = "GET"
+            private const val HTTP_OK = 200
+            private const val HTTP_NOT_MODIFIED = 304
+            private const val PARTITION_LENGTH = 16
+            private const val KEY_SEPARATOR = "-"
+            private const val ETAG = "ETag"
+            private const val LAST_MODIFIED = "Last-Modified"
+            private const val IF_NONE_MATCH = "If-None-Match"
+            private const val IF_MODIFIED_SINCE = "If-Modified-Since"
+            private const val CONTENT_LENGTH = "Content-Length"
+            private const val CONTENT_TYPE = "Content-Type"
+
+            private val BYPASS_HEADERS = listOf(IF_NONE_MATCH, IF_MODIFIED_SINCE, "If-Match", "Range", "Cache-Control")
+
+            private val UNSTORED_HEADERS =
+                listOf(
+                    "Set-Cookie",
+                    "Set-Cookie2",
+                    "Connection",
+                    "Keep-Alive",
+                    "Proxy-Authenticate",
+                    "Proxy-Authorization",
+                    "TE",
+                    "Trailer",
+                    "Trailers",
+                    "Transfer-Encoding",
+                    "Upgrade"
+                )
+
+            /**
+             * Headers responses depend on; the credentials keep responses apart even for clients without account key.
+             */
+            private val KEY_HEADERS =
+                listOf(OkHttpMethodBase.AUTHORIZATION, "Accept", "Accept-Language", "OCS-APIRequest", "Depth")
+        }
+    }
@@ -0,0 +1,64 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.nextcloud.common
+
+/**
+ * How [ResponseCache] caches GET responses of an endpoint.
+ *
+ * Stored responses are served without asking the server for [maxAgeMillis]. Afterwards they are revalidated with
+ * `If-None-Match` or `If-Modified-Since` if the server sent an `ETag` or `Last-Modified`, or fetched again
+ * otherwise. Cache headers of the server are not taken into account, as Nextcloud marks OCS responses as not
+ * cacheable.
+ *
+ * @param pathPattern pattern the encoded path of request URLs has to end with, starting at a slash; e.g. the
+ * path `/nextcloud/ocs/v2.php/cloud/user` of a server in a subdirectory matches `/ocs/v2\.php/cloud/user`
+ * @param maxAgeMillis milliseconds a stored response is served without asking the server; 0 to always revalidate
+ */
+data class ResponseCachePolicy(
+    val pathPattern: Regex,
+    val maxAgeMillis: Long
+) {
+    constructor(pathPattern: String, maxAgeMillis: Long) : this(Regex(pathPattern), maxAgeMillis)
+
+    fun matches(encodedPath: String): Boolean =
+        encodedPath.indices.any { encodedPath[it] == '/' && pathPattern.matches(encodedPath.substring(it)) }
+
+    companion object {
+        private const val MINUTE = 60_000L
+
+        @JvmField
+        val CAPABILITIES = ResponseCachePolicy("/ocs/v[12]\\.php/cloud/capabilities", MINUTE)
+
+        @JvmField
+        val USER_INFO = ResponseCachePolicy("/ocs/v[12]\\.php/cloud/(user|users/[^/]+)", MINUTE)
+
+        @JvmField
+        val SHAREES = ResponseCachePolicy("/ocs/v[12]\\.php/apps/files_sharing/api/v1/sharees", MINUTE / 2)
+
+        @JvmField
+        val DASHBOARD = ResponseCachePolicy("/ocs/v[12]\\.php/apps/dashboard/api/v[12]/.+", MINUTE)
+
+        @JvmField
+        val GROUPFOLDERS = ResponseCachePolicy("(/index\\.php)?/apps/groupfolders/folders", MINUTE)
+
+        @JvmField
+        val HOVER_CARD = ResponseCachePolicy("/ocs/v2\\.php/hovercard/v1/.+", 5 * MINUTE)
+
+        @JvmField
+        val NOTIFICATIONS = ResponseCachePolicy("/ocs/v[12]\\.php/apps/notifications/api/v2/notifications", 0)
+
+        /**
+         * Files and WebDAV resources are always revalidated, their ETags change with every modification.
+         */
+        @JvmField
+        val DAV = ResponseCachePolicy("/remote\\.php/(web)?dav/.+", 0)
+
+        @JvmField
+        val DEFAULT_POLICIES =
+            listOf(CAPABILITIES, USER_INFO, SHAREES, DASHBOARD, GROUPFOLDERS, HOVER_CARD, NOTIFICATIONS, DAV)
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.nextcloud.common
+
+import okhttp3.Headers
+
+/**
+ * Storage of [ResponseCache]; implementations have to be thread safe.
+ *
+ * Keys consist of hexadecimal digits and dashes only, and start with the partition of the account they belong to.
+ */
+interface ResponseCacheStore {
+    /**
+     * @return the stored response, null if there is none or it cannot be read
+     */
+    fun get(key: String): CachedResponse?
+
+    fun put(
+        key: String,
+        response: CachedResponse
+    )
+
+    fun remove(key: String)
+
+    /**
+     * Removes all responses with keys starting with [prefix], e.g. of a removed account.
+     */
+    fun removeAll(prefix: String)
+
+    fun clear()
+}
+
+/**
+ * Response of a GET request as stored by a [ResponseCacheStore].
+ *
+ * @param storedAt time the response was received or last revalidated, in epoch milliseconds
+ */
+class CachedResponse(
+    val code: Int,
+    val message: String,
+    val headers: Headers,
+    val body: ByteArray,
+    val storedAt: Long
+)
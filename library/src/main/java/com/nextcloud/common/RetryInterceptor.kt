@@ -0,0 +1,92 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.nextcloud.common
+
+import com.owncloud.android.lib.common.network.RetryBudget
+import com.owncloud.android.lib.common.network.RetryPolicy
+import com.owncloud.android.lib.common.utils.Log_OC
+import okhttp3.Interceptor
+import okhttp3.Request
+import okhttp3.Response
+import java.io.IOException
+import java.io.InterruptedIOException
+
+/**
+ * Sends failed calls again as their [RetryPolicy] allows, within their [RetryBudget].
+ *
+ * Policy and budget are taken from the tags of the request, see [OkHttpMethodBase]; requests without a policy use
+ * [defaultPolicy]. Being an application interceptor, retries run within the call timeout of the client, and
+ * concurrency permits of the interceptors added later are released while waiting.
+ *
+ * The delay before a retry is waited for on the thread running the call. For calls enqueued by [await] that is
+ * a thread of the OkHttp dispatcher, which keeps counting the call against its limits per host and in total while
+ * waiting. Each delay is bounded by [RetryPolicy.maxDelayMillis], respectively [RetryPolicy.maxRetryAfterMillis],
+ * and the number of delays by the [RetryBudget]; clients enqueueing many calls to a failing server should use a
+ * policy with short delays.
+ */
+internal class RetryInterceptor(
+    private val defaultPolicy: RetryPolicy
+) : Interceptor {
+    override fun intercept(chain: Interceptor.Chain): Response {
+        val request = chain.request()
+        val policy = request.tag(RetryPolicy::class.java) ?: defaultPolicy
+        val budget = request.tag(RetryBudget::class.java)
+
+        var attempt = 1
+        while (true) {
+            val delay =
+                try {
+                    val response = chain.proceed(request)
+                    val responseDelay =
+                        policy.getRetryDelay(request.method, attempt, response.code, response.header(RETRY_AFTER))
+                    if (!isRetryAllowed(chain, request, responseDelay, budget)) {
+                        return response
+                    }
+                    Log_OC.d(TAG, "Status ${response.code} for ${request.method}, retrying in $responseDelay ms")
+                    response.close()
+                    responseDelay
+                } catch (e: IOException) {
+                    val errorDelay = policy.getRetryDelay(request.method, attempt, e)
+                    if (!isRetryAllowed(chain, request, errorDelay, budget)) {
+                        throw e
+                    }
+                    Log_OC.d(TAG, "${e.javaClass.simpleName} for ${request.method}, retrying in $errorDelay ms")
+                    errorDelay
+                }
+            sleep(delay)
+            if (chain.call().isCanceled()) {
+                throw IOException("Canceled")
+            }
+            attempt++
+        }
+    }
+
+    private fun isRetryAllowed(
+        chain: Interceptor.Chain,
+        request: Request,
+        delay: Long,
+        budget: RetryBudget?
+    ): Boolean =
+        delay >= 0 &&
+            request.body?.isOneShot() != true &&
+            !chain.call().isCanceled() &&
+            budget?.tryAcquire() != false
+
+    private fun sleep(millis: Long) {
+        try {
+            Thread.sleep(millis)
+        } catch (e: InterruptedException) {
+            Thread.currentThread().interrupt()
+            throw InterruptedIOException("Interrupted while waiting to retry")
+        }
+    }
+
+    companion object {
+        private val TAG = RetryInterceptor::class.java.simpleName
+        private const val RETRY_AFTER = "Retry-After"
+    }
+}
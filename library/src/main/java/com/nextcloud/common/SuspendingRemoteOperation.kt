@@ -0,0 +1,20 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.nextcloud.common
+
+import com.owncloud.android.lib.common.operations.RemoteOperationResult
+
+/**
+ * Implemented by operations whose network calls can be enqueued instead of executed on the calling thread,
+ * see [OkHttpMethodBase.await].
+ *
+ * Such operations are picked up by [com.owncloud.android.lib.common.operations.RemoteOperation.executeAsync]
+ * and the `await` extension, so that many in-flight requests only need a handful of threads.
+ */
+interface SuspendingRemoteOperation<T> {
+    suspend fun runSuspending(client: NextcloudClient): RemoteOperationResult<T>
+}
@@ -0,0 +1,245 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.nextcloud.common
+
+import android.content.Context
+import android.text.TextUtils
+import androidx.annotation.VisibleForTesting
+import com.owncloud.android.lib.common.OwnCloudClientFactory.DEFAULT_CONNECTION_TIMEOUT_LONG
+import com.owncloud.android.lib.common.OwnCloudClientFactory.DEFAULT_DATA_TIMEOUT_LONG
+import com.owncloud.android.lib.common.OwnCloudClientManagerFactory
+import com.owncloud.android.lib.common.network.AdvancedX509KeyManager
+import com.owncloud.android.lib.common.network.AdvancedX509TrustManager
+import com.owncloud.android.lib.common.network.NetworkUtils
+import com.owncloud.android.lib.common.network.RetryPolicy
+import com.owncloud.android.lib.common.utils.Log_OC
+import okhttp3.ConnectionPool
+import okhttp3.CookieJar
+import okhttp3.Dispatcher
+import okhttp3.Interceptor
+import okhttp3.OkHttpClient
+import java.net.InetSocketAddress
+import java.net.Proxy
+import java.util.concurrent.TimeUnit
+import javax.net.ssl.SSLSession
+import javax.net.ssl.TrustManager
+
+/**
+ * Process-wide OkHttp transport shared by all [NextcloudClient] and [PlainClient] instances.
+ *
+ * Every client handed out here is derived from one base client via [OkHttpClient.newBuilder], so all of them
+ * share a single [ConnectionPool], a single [Dispatcher] and a single SSL context, and with it the TLS session
+ * cache. Concurrency can additionally be capped per host and per account.
+ *
+ * Identical GET requests of [NextcloudClient]s in flight at the same time share one network call, see
+ * [RequestCoalescer], and their responses can be cached, see [responseCache].
+ */
+object TransportRegistry {
+    private val TAG = TransportRegistry::class.java.simpleName
+
+    const val DEFAULT_MAX_REQUESTS = 64
+    const val DEFAULT_MAX_REQUESTS_PER_HOST = 16
+    const val DEFAULT_MAX_IDLE_CONNECTIONS = 16
+    const val DEFAULT_KEEP_ALIVE_MINUTES = 5L
+
+    /**
+     * Transport wide limits.
+     *
+     * [maxRequests] and [maxRequestsPerHost] apply to asynchronous calls, as enforced by OkHttp's [Dispatcher].
+     * Use [setHostLimit] and [setAccountLimit] to cap synchronous calls as well.
+     */
+    data class Limits(
+        val maxRequests: Int = DEFAULT_MAX_REQUESTS,
+        val maxRequestsPerHost: Int = DEFAULT_MAX_REQUESTS_PER_HOST,
+        val maxIdleConnections: Int = DEFAULT_MAX_IDLE_CONNECTIONS,
+        val keepAliveMinutes: Long = DEFAULT_KEEP_ALIVE_MINUTES
+    )
+
+    private val hostLimiter = KeyedConcurrencyLimiter()
+    private val accountLimiter = KeyedConcurrencyLimiter()
+    private val requestCoalescer = RequestCoalescer()
+
+    @Volatile
+    var limits = Limits()
+        private set
+
+    val dispatcher: Dispatcher =
+        Dispatcher().apply {
+            maxRequests = limits.maxRequests
+            maxRequestsPerHost = limits.maxRequestsPerHost
+        }
+
+    /**
+     * Cache for GET responses of all [NextcloudClient]s, including those created before it was set; null for none.
+     */
+    @JvmStatic
+    @Volatile
+    var responseCache: ResponseCache? = null
+
+    @Volatile
+    var connectionPool: ConnectionPool = createConnectionPool(limits)
+        private set
+
+    /**
+     * Client all others are derived from; created on first use, holding the shared SSL context.
+     */
+    @VisibleForTesting
+    @Volatile
+    var baseClient: OkHttpClient? = null
+
+    @JvmStatic
+    @Synchronized
+    fun setLimits(newLimits: Limits) {
+        dispatcher.maxRequests = newLimits.maxRequests
+        dispatcher.maxRequestsPerHost = newLimits.maxRequestsPerHost
+
+        if (newLimits.maxIdleConnections != limits.maxIdleConnections ||
+            newLimits.keepAliveMinutes != limits.keepAliveMinutes
+        ) {
+            // clients created from now on use the new pool, idle connections of the old pool expire on their own
+            connectionPool = createConnectionPool(newLimits)
+        }
+        limits = newLimits
+    }
+
+    /**
+     * Limits the number of concurrent calls to [host], shared by all clients; values <= 0 remove the limit.
+     */
+    @JvmStatic
+    fun setHostLimit(
+        host: String,
+        maxConcurrentCalls: Int
+    ) {
+        hostLimiter.setLimit(host, maxConcurrentCalls)
+    }
+
+    /**
+     * Limits the number of concurrent calls issued by clients of [accountKey]; values <= 0 remove the limit.
+     */
+    @JvmStatic
+    fun setAccountLimit(
+        accountKey: String,
+        maxConcurrentCalls: Int
+    ) {
+        accountLimiter.setLimit(accountKey, maxConcurrentCalls)
+    }
+
+    @JvmStatic
+    fun getHostCallsInFlight(host: String): Int = hostLimiter.getInFlight(host)
+
+    @JvmStatic
+    fun getAccountCallsInFlight(accountKey: String): Int = accountLimiter.getInFlight(accountKey)
+
+    /**
+     * @return how many GET requests of [NextcloudClient]s were sent, and how many shared the call of another one
+     */
+    @JvmStatic
+    fun getCoalescingStats(): RequestCoalescer.Stats = requestCoalescer.stats
+
+    /**
+     * @param accountKey key the per account limit is tracked with, e.g. the account name; null for no limit
+     * @return client configured for use by [NextcloudClient]
+     */
+    @JvmStatic
+    fun newNextcloudClient(
+        context: Context,
+        accountKey: String?
+    ): OkHttpClient =
+        derive(context, accountKey)
+            .apply {
+                // first, so that waiting requests hold neither concurrency permits nor retries
+                interceptors().add(0, requestCoalescer)
+                // before retries, so that responses served from the cache take no retries
+                interceptors().add(
+                    1,
+                    Interceptor { chain ->
+                        responseCache?.intercept(chain, accountKey) ?: chain.proceed(chain.request())
+                    }
+                )
+            }.connectTimeout(DEFAULT_CONNECTION_TIMEOUT_LONG, TimeUnit.MILLISECONDS)
+            .readTimeout(DEFAULT_DATA_TIMEOUT_LONG, TimeUnit.MILLISECONDS)
+            .callTimeout(DEFAULT_CONNECTION_TIMEOUT_LONG + DEFAULT_DATA_TIMEOUT_LONG, TimeUnit.MILLISECONDS)
+            .build()
+
+    /**
+     * @return client configured for use by [PlainClient]
+     */
+    @JvmStatic
+    fun newPlainClient(context: Context): OkHttpClient =
+        derive(context, null)
+            .callTimeout(DEFAULT_DATA_TIMEOUT_LONG, TimeUnit.MILLISECONDS)
+            .build()
+
+    /**
+     * Closes all idle pooled connections, e.g. after the network changed or a certificate got (un)trusted.
+     */
+    @JvmStatic
+    fun evictAll() {
+        connectionPool.evictAll()
+    }
+
+    private fun derive(
+        context: Context,
+        accountKey: String?
+    ): OkHttpClient.Builder {
+        val builder =
+            getBaseClient(context)
+                .newBuilder()
+                .connectionPool(connectionPool)
+                .dispatcher(dispatcher)
+                .proxy(getProxy())
+                // first, so that concurrency permits are not held while waiting to retry
+                .addInterceptor(RetryInterceptor(RetryPolicy.DEFAULT))
+                .addInterceptor(CircuitBreakerInterceptor())
+                .addInterceptor(hostLimiter.interceptor { it.url.host })
+
+        if (accountKey != null) {
+            builder.addInterceptor(accountLimiter.interceptor { accountKey })
+        }
+
+        return builder
+    }
+
+    @Synchronized
+    private fun getBaseClient(context: Context): OkHttpClient {
+        return baseClient ?: createBaseClient(context.applicationContext ?: context).also { baseClient = it }
+    }
+
+    private fun createBaseClient(context: Context): OkHttpClient {
+        val trustManager = AdvancedX509TrustManager(NetworkUtils.getKnownServersStore(context))
+        val keyManager = AdvancedX509KeyManager(context)
+
+        val sslContext = NetworkUtils.getSSLContext()
+        sslContext.init(arrayOf(keyManager), arrayOf<TrustManager>(trustManager), null)
+
+        Log_OC.d(TAG, "Creating shared transport")
+
+        return OkHttpClient.Builder()
+            .cookieJar(CookieJar.NO_COOKIES)
+            .sslSocketFactory(sslContext.socketFactory, trustManager)
+            .hostnameVerifier { _: String?, _: SSLSession? -> true }
+            .fastFallback(true)
+            .connectionPool(connectionPool)
+            .dispatcher(dispatcher)
+            .build()
+    }
+
+    private fun getProxy(): Proxy? {
+        val proxyHost = OwnCloudClientManagerFactory.getProxyHost()
+        val proxyPort = OwnCloudClientManagerFactory.getProxyPort()
+
+        return if (!TextUtils.isEmpty(proxyHost) && proxyPort > 0) {
+            Log_OC.d(this, "Proxy settings: $proxyHost:$proxyPort")
+            Proxy(Proxy.Type.HTTP, InetSocketAddress(proxyHost, proxyPort))
+        } else {
+            null
+        }
+    }
+
+    private fun createConnectionPool(limits: Limits): ConnectionPool =
+        ConnectionPool(limits.maxIdleConnections, limits.keepAliveMinutes, TimeUnit.MINUTES)
+}
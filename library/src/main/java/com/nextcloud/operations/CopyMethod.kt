@@ -0,0 +1,33 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.nextcloud.operations
+
+import com.nextcloud.common.OkHttpMethodBase
+import com.nextcloud.operations.MoveMethod.Companion.HEADER_DESTINATION
+import com.nextcloud.operations.MoveMethod.Companion.HEADER_OVERWRITE
+import okhttp3.Request
+
+/**
+ * WebDAV COPY method that uses OkHttp with new NextcloudClient
+ *
+ * @param destination absolute, encoded URI to copy the resource to
+ * @param overwrite whether an existing resource at [destination] is replaced
+ */
+class CopyMethod(
+    uri: String,
+    destination: String,
+    overwrite: Boolean
+) : OkHttpMethodBase(uri, false) {
+    init {
+        addRequestHeader(HEADER_DESTINATION, destination)
+        addRequestHeader(HEADER_OVERWRITE, if (overwrite) "T" else "F")
+    }
+
+    override fun applyType(temp: Request.Builder) {
+        temp.method("COPY", null)
+    }
+}
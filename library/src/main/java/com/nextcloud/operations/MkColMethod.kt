@@ -0,0 +1,22 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.nextcloud.operations
+
+import com.nextcloud.common.OkHttpMethodBase
+import okhttp3.Request
+
+/**
+ * WebDAV MKCOL method that uses OkHttp with new NextcloudClient
+ */
+class MkColMethod(
+    uri: String,
+    useOcsApiRequestHeader: Boolean
+) : OkHttpMethodBase(uri, useOcsApiRequestHeader) {
+    override fun applyType(temp: Request.Builder) {
+        temp.method("MKCOL", null)
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.nextcloud.operations
+
+import com.nextcloud.common.OkHttpMethodBase
+import okhttp3.Request
+
+/**
+ * WebDAV MOVE method that uses OkHttp with new NextcloudClient
+ *
+ * @param destination absolute, encoded URI to move the resource to
+ * @param overwrite whether an existing resource at [destination] is replaced
+ */
+class MoveMethod(
+    uri: String,
+    destination: String,
+    overwrite: Boolean
+) : OkHttpMethodBase(uri, false) {
+    init {
+        addRequestHeader(HEADER_DESTINATION, destination)
+        addRequestHeader(HEADER_OVERWRITE, if (overwrite) "T" else "F")
+    }
+
+    override fun applyType(temp: Request.Builder) {
+        temp.method("MOVE", null)
+    }
+
+    companion object {
+        const val HEADER_DESTINATION = "Destination"
+        const val HEADER_OVERWRITE = "Overwrite"
+    }
+}
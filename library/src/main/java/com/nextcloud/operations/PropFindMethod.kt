@@ -0,0 +1,65 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.nextcloud.operations
+
+import com.nextcloud.common.OkHttpMethodBase
+import com.owncloud.android.lib.common.network.PropFindBody
+import com.owncloud.android.lib.common.network.PropertyProfile
+import okhttp3.MediaType.Companion.toMediaType
+import okhttp3.Request
+import okhttp3.RequestBody.Companion.toRequestBody
+import org.apache.jackrabbit.webdav.DavConstants
+import org.apache.jackrabbit.webdav.property.DavPropertyNameSet
+
+/**
+ * WebDAV PROPFIND method that uses OkHttp with new NextcloudClient
+ *
+ * Read the response with [getResponseBodyAsMultiStatus].
+ *
+ * @param depth [DavConstants.DEPTH_0], [DavConstants.DEPTH_1] or [DavConstants.DEPTH_INFINITY]
+ */
+class PropFindMethod private constructor(
+    uri: String,
+    private val body: ByteArray,
+    depth: Int
+) : OkHttpMethodBase(uri, false) {
+    /**
+     * @param propertySet properties to request; an empty set requests all properties
+     */
+    constructor(
+        uri: String,
+        propertySet: DavPropertyNameSet,
+        depth: Int
+    ) : this(uri, PropFindBody.build(propertySet).toByteArray(Charsets.UTF_8), depth)
+
+    /**
+     * @param profile properties to request; uses the precomputed body of the profile
+     */
+    constructor(
+        uri: String,
+        profile: PropertyProfile,
+        depth: Int
+    ) : this(uri, profile.bodyBytes, depth)
+
+    init {
+        addRequestHeader(DavConstants.HEADER_DEPTH, depthToString(depth))
+    }
+
+    override fun applyType(temp: Request.Builder) {
+        temp.method("PROPFIND", body.toRequestBody(XML_MEDIA_TYPE))
+    }
+
+    companion object {
+        private val XML_MEDIA_TYPE = "application/xml; charset=utf-8".toMediaType()
+
+        private fun depthToString(depth: Int): String =
+            when (depth) {
+                DavConstants.DEPTH_INFINITY -> DavConstants.HEADER_DEPTH_INFINITY
+                else -> depth.toString()
+            }
+    }
+}
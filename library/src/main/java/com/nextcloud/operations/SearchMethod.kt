@@ -0,0 +1,31 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.nextcloud.operations
+
+import com.nextcloud.common.OkHttpMethodBase
+import okhttp3.MediaType.Companion.toMediaType
+import okhttp3.Request
+import okhttp3.RequestBody.Companion.toRequestBody
+
+/**
+ * WebDAV SEARCH method (RFC 5323) that uses OkHttp with new NextcloudClient
+ *
+ * @param uri WebDAV root, e.g. [com.nextcloud.common.NextcloudClient.davUri]
+ * @param body serialized `d:searchrequest`
+ */
+class SearchMethod(
+    uri: String,
+    private val body: String
+) : OkHttpMethodBase(uri, false) {
+    override fun applyType(temp: Request.Builder) {
+        temp.method("SEARCH", body.toRequestBody(XML_MEDIA_TYPE))
+    }
+
+    companion object {
+        private val XML_MEDIA_TYPE = "text/xml; charset=utf-8".toMediaType()
+    }
+}
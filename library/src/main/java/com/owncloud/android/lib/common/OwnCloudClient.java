@@ -24,10 +24,16 @@ import com.nextcloud.common.DNSCache;
 import com.nextcloud.common.NextcloudUriDelegate;
 import com.owncloud.android.lib.common.accounts.AccountUtils;
 import com.owncloud.android.lib.common.network.AdvancedX509KeyManager;
+import com.owncloud.android.lib.common.network.CircuitBreaker;
+import com.owncloud.android.lib.common.network.CircuitBreakerOpenException;
+import com.owncloud.android.lib.common.network.CircuitBreakers;
 import com.owncloud.android.lib.common.network.RedirectionPath;
+import com.owncloud.android.lib.common.network.RetryBudget;
+import com.owncloud.android.lib.common.network.RetryPolicy;
 import com.owncloud.android.lib.common.utils.Log_OC;
 
 import org.apache.commons.httpclient.Cookie;
+import org.apache.commons.httpclient.DefaultHttpMethodRetryHandler;
 import org.apache.commons.httpclient.Header;
 import org.apache.commons.httpclient.HostConfiguration;
 import org.apache.commons.httpclient.HttpClient;
@@ -38,14 +44,19 @@ import org.apache.commons.httpclient.HttpStatus;
 import org.apache.commons.httpclient.HttpVersion;
 import org.apache.commons.httpclient.URI;
 import org.apache.commons.httpclient.cookie.CookiePolicy;
+import org.apache.commons.httpclient.methods.EntityEnclosingMethod;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.methods.RequestEntity;
 import org.apache.commons.httpclient.params.HttpMethodParams;
 import org.apache.commons.httpclient.params.HttpParams;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.ConnectException;
 import java.net.SocketTimeoutException;
 import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
@@ -56,8 +67,13 @@ public class OwnCloudClient extends HttpClient {
     private static final String PARAM_SINGLE_COOKIE_HEADER = "http.protocol.single-cookie-header";
     private static final boolean PARAM_SINGLE_COOKIE_HEADER_VALUE = true;
     private static final String PARAM_PROTOCOL_VERSION = "http.protocol.version";
-
-    private static byte[] sExhaustBuffer = new byte[1024];
+    private static final String PARAM_CONNECTION_TIMEOUT = "nextcloud.connection.timeout";
+    private static final String PARAM_DEADLINE = "nextcloud.deadline";
+    private static final String PARAM_RETRY_POLICY = "nextcloud.retry.policy";
+    private static final String HEADER_RETRY_AFTER = "Retry-After";
+    private static final int EXHAUST_BUFFER_SIZE = 1024;
+    private static final String STATUS_PATH = "/status.php";
+    private static final int PROBE_TIMEOUT = 5000;
 
     private static int sInstanceCounter = 0;
     private final NextcloudUriDelegate nextcloudUriDelegate;
@@ -66,18 +82,22 @@ public class OwnCloudClient extends HttpClient {
     private int mInstanceNumber;
 
     private AdvancedX509KeyManager keyManager;
+    private volatile RetryPolicy retryPolicy = RetryPolicy.DEFAULT;
 
     /**
      * Constructor
+     * <p>
+     * The connection manager may be shared with other clients; timeouts of this client never change its parameters.
      */
     public OwnCloudClient(Uri baseUri, HttpConnectionManager connectionMgr, Context context) {
-        super(connectionMgr);
+        super(new RequestTimeoutConnectionManager(connectionMgr));
 
         if (baseUri == null) {
         	throw new IllegalArgumentException("Parameter 'baseUri' cannot be NULL");
         }
         this.keyManager = new AdvancedX509KeyManager(context);
         nextcloudUriDelegate = new NextcloudUriDelegate(baseUri);
+        CircuitBreakers.registerServer(baseUri.toString());
 
         mInstanceNumber = sInstanceCounter++;
         Log_OC.d(TAG + " #" + mInstanceNumber, "Creating OwnCloudClient");
@@ -91,6 +111,8 @@ public class OwnCloudClient extends HttpClient {
         getParams().setCookiePolicy(CookiePolicy.IGNORE_COOKIES);
         // to avoid problems with some web servers
         getParams().setParameter(PARAM_SINGLE_COOKIE_HEADER, PARAM_SINGLE_COOKIE_HEADER_VALUE);
+        // retries are decided by the retry policy, see executeMethod(HttpMethod)
+        getParams().setParameter(HttpMethodParams.RETRY_HANDLER, new DefaultHttpMethodRetryHandler(0, false));
 
         applyProxySettings();
 
@@ -131,7 +153,8 @@ public class OwnCloudClient extends HttpClient {
      * <p>
      * Executes the method through the inherited HttpClient.executedMethod(method).
      * <p>
-     * Sets the socket and connection timeouts only for the method received.
+     * Sets the socket and connection timeouts only for the method received, kept in its parameters; the defaults of
+     * this client and of the shared connection manager are not touched, so concurrent requests do not interfere.
      * <p>
      * The timeouts are both in milliseconds; 0 means 'infinite';
      * < 0 means 'do not change the default'
@@ -141,40 +164,109 @@ public class OwnCloudClient extends HttpClient {
      * @param connectionTimeout Timeout to set for connection establishment
      */
     public int executeMethod(HttpMethodBase method, int readTimeout, int connectionTimeout) throws IOException {
-
-        int oldSoTimeout = getParams().getSoTimeout();
-        int oldConnectionTimeout = getHttpConnectionManager().getParams().getConnectionTimeout();
-        try {
-            if (readTimeout >= 0) {
-                method.getParams().setSoTimeout(readTimeout);   // this should be enough...
-                getParams().setSoTimeout(readTimeout);          // ... but HTTPS needs this
-            }
-            if (connectionTimeout >= 0) {
-                getHttpConnectionManager().getParams().setConnectionTimeout(connectionTimeout);
-            }
-            int httpStatus = executeMethod(method);
-            if (httpStatus == HttpStatus.SC_BAD_REQUEST) {
-                URI uri = method.getURI();
-                Log_OC.e(TAG, "Received http status 400 for " + uri + " -> removing client certificate");
-                keyManager.removeKeys(uri);
-            }
-            return httpStatus;
-        } finally {
-            getParams().setSoTimeout(oldSoTimeout);
-            getHttpConnectionManager().getParams().setConnectionTimeout(oldConnectionTimeout);
+        if (readTimeout >= 0) {
+            method.getParams().setSoTimeout(readTimeout);
         }
+        if (connectionTimeout >= 0) {
+            method.getParams().setIntParameter(PARAM_CONNECTION_TIMEOUT, connectionTimeout);
+        }
+        int httpStatus = executeMethod(method);
+        if (httpStatus == HttpStatus.SC_BAD_REQUEST) {
+            URI uri = method.getURI();
+            Log_OC.e(TAG, "Received http status 400 for " + uri + " -> removing client certificate");
+            keyManager.removeKeys(uri);
+        }
+        return httpStatus;
+    }
+
+    /**
+     * Limits the total time the method may take, including redirections and retries: the timeouts of every attempt
+     * are shortened to the time left, and no attempt is started once the time is up.
+     *
+     * @param method    HTTP method request.
+     * @param timeout   Time in milliseconds from now on the method has to be completed in
+     */
+    public static void setDeadline(HttpMethod method, long timeout) {
+        method.getParams().setLongParameter(PARAM_DEADLINE, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout));
     }
 
 
+    /**
+     * Sets the retry policy for the method only, overriding the one of the client; e.g. {@link RetryPolicy#NONE}.
+     */
+    public static void setRetryPolicy(HttpMethod method, RetryPolicy retryPolicy) {
+        method.getParams().setParameter(PARAM_RETRY_POLICY, retryPolicy);
+    }
+
     /**
      * Requests the received method.
      *
-     * Executes the method through the inherited HttpClient.executedMethod(method).
+     * Executes the method through the inherited HttpClient.executedMethod(method), retrying it as the retry policy
+     * of the method or the client allows, within the {@link RetryBudget} of the current operation.
      *
      * @param method                HTTP method request.
      */
     @Override
     public int executeMethod(HttpMethod method) throws IOException {
+        Object methodRetryPolicy = method.getParams().getParameter(PARAM_RETRY_POLICY);
+        RetryPolicy policy = methodRetryPolicy instanceof RetryPolicy ? (RetryPolicy) methodRetryPolicy : retryPolicy;
+        RetryBudget budget = RetryBudget.current();
+
+        for (int attempt = 1; ; attempt++) {
+            long delay;
+            try {
+                int status = executeWithIPv4Fallback(method);
+                Header retryAfter = method.getResponseHeader(HEADER_RETRY_AFTER);
+                delay = policy.getRetryDelay(method.getName(), attempt, status,
+                                             retryAfter != null ? retryAfter.getValue() : null);
+                if (!isRetryAllowed(method, delay, budget)) {
+                    return status;
+                }
+                Log_OC.d(TAG + " #" + mInstanceNumber, "Status " + status + " for " + method.getName() + " " +
+                        method.getPath() + ", retrying in " + delay + " ms");
+                exhaustResponse(method.getResponseBodyAsStream());
+            } catch (IOException e) {
+                delay = policy.getRetryDelay(method.getName(), attempt, e);
+                if (!isRetryAllowed(method, delay, budget)) {
+                    throw e;
+                }
+                Log_OC.d(TAG + " #" + mInstanceNumber, e.getClass().getSimpleName() + " for " + method.getName() +
+                        " " + method.getPath() + ", retrying in " + delay + " ms");
+            }
+            method.releaseConnection();
+            sleep(delay);
+        }
+    }
+
+    /**
+     * @return true if the method can be sent again after the delay, taking a retry from the budget
+     */
+    private static boolean isRetryAllowed(HttpMethod method, long delay, RetryBudget budget) {
+        if (delay < 0) {
+            return false;
+        }
+        if (method instanceof EntityEnclosingMethod) {
+            RequestEntity entity = ((EntityEnclosingMethod) method).getRequestEntity();
+            if (entity != null && !entity.isRepeatable()) {
+                return false;
+            }
+        }
+        if (delay >= getRemainingMillis(method)) {
+            return false;
+        }
+        return budget == null || budget.tryAcquire();
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry");
+        }
+    }
+
+    private int executeWithIPv4Fallback(HttpMethod method) throws IOException {
         final String hostname = method.getURI().getHost();
 
         try {
@@ -189,7 +281,7 @@ public class OwnCloudClient extends HttpClient {
 //	        logCookiesAtState("before");
             method.setFollowRedirects(false);
 
-            int status = super.executeMethod(method);
+            int status = executeAttempt(method);
 
             if (status >= 500 && status < 600 && DNSCache.isIPV6First(hostname)) {
                 return retryMethodWithIPv4(method, hostname);
@@ -224,7 +316,147 @@ public class OwnCloudClient extends HttpClient {
     private int retryMethodWithIPv4(HttpMethod method, String hostname) throws IOException {
         Log_OC.d(TAG, "IPv6 connection failed. Retrying with IPV4");
         DNSCache.setIPVersionPreference(hostname, true);
-        return executeMethod(method);
+        return executeWithIPv4Fallback(method);
+    }
+
+    /**
+     * Executes the method once, unless the circuit breaker of its server is open, and reports the outcome to the
+     * circuit breaker.
+     */
+    private int executeAttempt(HttpMethod method) throws IOException {
+        // checked first, as an expired deadline is no failure of the server
+        checkDeadline(method);
+        if (!CircuitBreakers.getEnabled()) {
+            return executeWithTimeouts(method);
+        }
+
+        URI uri = method.getURI();
+        CircuitBreaker breaker = CircuitBreakers.get(uri.getScheme(), uri.getHost(), uri.getPort());
+        CircuitBreaker.Permission permission = breaker.tryAcquire();
+        if (permission == CircuitBreaker.Permission.REJECTED ||
+                (permission == CircuitBreaker.Permission.PROBE && !probe(breaker, uri))) {
+            throw new CircuitBreakerOpenException(breaker.getHost(), breaker.getRemainingOpenMillis());
+        }
+
+        boolean timed = isTimed(method);
+        long start = System.nanoTime();
+        try {
+            int status = executeWithTimeouts(method);
+            Header retryAfter = method.getResponseHeader(HEADER_RETRY_AFTER);
+            long durationMillis = timed ?
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) : CircuitBreaker.UNTIMED;
+            breaker.onResponse(status, durationMillis, retryAfter != null ? retryAfter.getValue() : null);
+            return status;
+        } catch (IOException e) {
+            if (!method.isAborted()) {
+                breaker.onError(e);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return true if the duration of the method counts for the circuit breaker; methods sending a body, like uploads,
+     * and methods with timeouts of their own may take long without the server failing
+     */
+    private static boolean isTimed(HttpMethod method) {
+        if (method instanceof EntityEnclosingMethod && ((EntityEnclosingMethod) method).getRequestEntity() != null) {
+            return false;
+        }
+        HttpParams params = method.getParams();
+        return !params.isParameterSetLocally(HttpMethodParams.SO_TIMEOUT) &&
+            !params.isParameterSetLocally(PARAM_CONNECTION_TIMEOUT);
+    }
+
+    /**
+     * Sends the status request of the server as probe of its circuit breaker.
+     *
+     * @return true if the server answered the probe properly
+     */
+    private boolean probe(CircuitBreaker breaker, URI uri) throws IOException {
+        String probeUrl = breaker.getProbeUrl();
+        if (probeUrl == null) {
+            probeUrl = uri.getScheme() + "://" + uri.getAuthority() + STATUS_PATH;
+        }
+        GetMethod get = null;
+        try {
+            get = new GetMethod(probeUrl);
+            get.getParams().setParameter(HttpMethodParams.USER_AGENT, OwnCloudClientManagerFactory.getUserAgent());
+            get.getParams().setSoTimeout(PROBE_TIMEOUT);
+            get.getParams().setIntParameter(PARAM_CONNECTION_TIMEOUT, PROBE_TIMEOUT);
+            boolean success = !breaker.isFailure(executeWithTimeouts(get));
+            breaker.onProbeResult(success);
+            return success;
+        } catch (IOException e) {
+            breaker.onProbeError(e);
+            throw e;
+        } catch (RuntimeException e) {
+            breaker.onProbeCanceled();
+            throw e;
+        } finally {
+            if (get != null) {
+                get.releaseConnection();
+            }
+        }
+    }
+
+    /**
+     * @return milliseconds left until the deadline of the method, {@link Long#MAX_VALUE} if it has none
+     */
+    private static long getRemainingMillis(HttpMethod method) {
+        HttpParams params = method.getParams();
+        if (!params.isParameterSetLocally(PARAM_DEADLINE)) {
+            return Long.MAX_VALUE;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(params.getLongParameter(PARAM_DEADLINE, 0) - System.nanoTime());
+    }
+
+    /**
+     * @return see {@link #getRemainingMillis(HttpMethod)}
+     * @throws SocketTimeoutException if the deadline has passed
+     */
+    private static long checkDeadline(HttpMethod method) throws SocketTimeoutException {
+        long remaining = getRemainingMillis(method);
+        if (remaining <= 0) {
+            throw new SocketTimeoutException("Deadline exceeded before " + method.getName() + " " +
+                                                     method.getPath());
+        }
+        return remaining;
+    }
+
+    /**
+     * Executes the method once with its own timeouts, or those of the client, shortened to its deadline if any.
+     */
+    private int executeWithTimeouts(HttpMethod method) throws IOException {
+        HttpParams params = method.getParams();
+        boolean soTimeoutSet = params.isParameterSetLocally(HttpMethodParams.SO_TIMEOUT);
+        int soTimeout = soTimeoutSet ? params.getIntParameter(HttpMethodParams.SO_TIMEOUT, 0) : getDataTimeout();
+        int connectionTimeout = params.isParameterSetLocally(PARAM_CONNECTION_TIMEOUT) ?
+                params.getIntParameter(PARAM_CONNECTION_TIMEOUT, 0) : getConnectionTimeout();
+
+        long remaining = checkDeadline(method);
+        if (remaining != Long.MAX_VALUE) {
+            soTimeout = limitTimeout(soTimeout, remaining);
+            connectionTimeout = limitTimeout(connectionTimeout, remaining);
+        }
+
+        Object configuredSoTimeout = params.getParameter(HttpMethodParams.SO_TIMEOUT);
+        params.setIntParameter(HttpMethodParams.SO_TIMEOUT, soTimeout);
+        RequestTimeoutConnectionManager.setRequestTimeouts(connectionTimeout, soTimeout);
+        try {
+            return super.executeMethod(method);
+        } finally {
+            RequestTimeoutConnectionManager.clearRequestTimeouts();
+            params.setParameter(HttpMethodParams.SO_TIMEOUT, soTimeoutSet ? configuredSoTimeout : null);
+        }
+    }
+
+    /**
+     * @return the timeout, 0 meaning 'infinite', limited to the remaining milliseconds
+     */
+    private static int limitTimeout(int timeout, long remaining) {
+        long limit = Math.min(remaining, Integer.MAX_VALUE);
+        return timeout == 0 ? (int) limit : (int) Math.min(timeout, limit);
     }
 
 
@@ -270,7 +502,7 @@ public class OwnCloudClient extends HttpClient {
                     destination.setValue(redirectedDestination);
                     method.setRequestHeader(destination);
                 }
-                status = super.executeMethod(method);
+                status = executeAttempt(method);
                 result.addStatus(status);
                 redirectionsCount++;
 
@@ -289,8 +521,10 @@ public class OwnCloudClient extends HttpClient {
      */
     public void exhaustResponse(InputStream responseBodyAsStream) {
         if (responseBodyAsStream != null) {
+            // not shared, as responses are exhausted concurrently
+            byte[] exhaustBuffer = new byte[EXHAUST_BUFFER_SIZE];
             try {
-                while (responseBodyAsStream.read(sExhaustBuffer) >= 0);
+                while (responseBodyAsStream.read(exhaustBuffer) >= 0);
                 responseBodyAsStream.close();
 
             } catch (IOException io) {
@@ -302,7 +536,7 @@ public class OwnCloudClient extends HttpClient {
 
     /**
      * Sets the connection and wait-for-data timeouts to be applied by default to the methods
-     * performed by this client.
+     * performed by this client, not affecting other clients sharing its connection manager.
      */
     public void setDefaultTimeouts(int defaultDataTimeout, int defaultConnectionTimeout) {
         if (defaultDataTimeout >= 0) {
@@ -313,6 +547,17 @@ public class OwnCloudClient extends HttpClient {
         }
     }
 
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Sets the policy for retrying methods of this client, unless a method has its own.
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy != null ? retryPolicy : RetryPolicy.NONE;
+    }
+
     public String getFilesDavUri(String path) {
         return nextcloudUriDelegate.getFilesDavUri(path);
     }
@@ -340,6 +585,7 @@ public class OwnCloudClient extends HttpClient {
 
     public void setBaseUri(Uri uri) {
         nextcloudUriDelegate.setBaseUri(uri);
+        CircuitBreakers.registerServer(String.valueOf(uri));
     }
 
     public void setUserId(String userId) {
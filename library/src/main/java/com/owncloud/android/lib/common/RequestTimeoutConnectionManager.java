@@ -0,0 +1,121 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.common;
+
+import org.apache.commons.httpclient.ConnectionPoolTimeoutException;
+import org.apache.commons.httpclient.HostConfiguration;
+import org.apache.commons.httpclient.HttpConnection;
+import org.apache.commons.httpclient.HttpConnectionManager;
+import org.apache.commons.httpclient.HttpException;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.commons.httpclient.params.HttpConnectionParams;
+
+/**
+ * Connection manager of a single {@link OwnCloudClient}, handing out connections of a manager shared by all clients.
+ * <p>
+ * The parameters of the shared manager are process wide, so timeouts are never changed there. Instead, every
+ * connection gets the timeouts of the request executed on the calling thread, see {@link #setRequestTimeouts}, or the
+ * defaults of this manager, which belong to its client only.
+ */
+class RequestTimeoutConnectionManager implements HttpConnectionManager {
+
+    private static final ThreadLocal<RequestTimeouts> REQUEST_TIMEOUTS = new ThreadLocal<>();
+
+    private final HttpConnectionManager delegate;
+    private HttpConnectionManagerParams params = new HttpConnectionManagerParams();
+
+    RequestTimeoutConnectionManager(HttpConnectionManager delegate) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Parameter 'delegate' cannot be NULL");
+        }
+        this.delegate = delegate;
+    }
+
+    /**
+     * Sets the timeouts for connections got on the calling thread, until {@link #clearRequestTimeouts()}.
+     *
+     * @param connectionTimeout timeout for connection establishment in milliseconds, 0 means 'infinite'
+     * @param soTimeout         timeout for data reception in milliseconds, 0 means 'infinite'
+     */
+    static void setRequestTimeouts(int connectionTimeout, int soTimeout) {
+        REQUEST_TIMEOUTS.set(new RequestTimeouts(connectionTimeout, soTimeout));
+    }
+
+    static void clearRequestTimeouts() {
+        REQUEST_TIMEOUTS.remove();
+    }
+
+    @Override
+    public HttpConnection getConnection(HostConfiguration hostConfiguration) {
+        return applyTimeouts(delegate.getConnection(hostConfiguration));
+    }
+
+    /**
+     * @deprecated use {@link #getConnectionWithTimeout(HostConfiguration, long)}
+     */
+    @Override
+    @Deprecated
+    public HttpConnection getConnection(HostConfiguration hostConfiguration, long timeout)
+            throws HttpException {
+        return applyTimeouts(delegate.getConnection(hostConfiguration, timeout));
+    }
+
+    @Override
+    public HttpConnection getConnectionWithTimeout(HostConfiguration hostConfiguration, long timeout)
+            throws ConnectionPoolTimeoutException {
+        return applyTimeouts(delegate.getConnectionWithTimeout(hostConfiguration, timeout));
+    }
+
+    @Override
+    public void releaseConnection(HttpConnection connection) {
+        delegate.releaseConnection(connection);
+    }
+
+    @Override
+    public void closeIdleConnections(long idleTimeout) {
+        delegate.closeIdleConnections(idleTimeout);
+    }
+
+    @Override
+    public HttpConnectionManagerParams getParams() {
+        return params;
+    }
+
+    @Override
+    public void setParams(HttpConnectionManagerParams params) {
+        if (params == null) {
+            throw new IllegalArgumentException("Parameter 'params' cannot be NULL");
+        }
+        this.params = params;
+    }
+
+    /**
+     * Sets both timeouts explicitly, as pooled connections keep those of the request that used them before.
+     */
+    private HttpConnection applyTimeouts(HttpConnection connection) {
+        RequestTimeouts timeouts = REQUEST_TIMEOUTS.get();
+        HttpConnectionParams connectionParams = connection.getParams();
+        if (timeouts != null) {
+            connectionParams.setConnectionTimeout(timeouts.connectionTimeout);
+            connectionParams.setSoTimeout(timeouts.soTimeout);
+        } else {
+            connectionParams.setConnectionTimeout(params.getConnectionTimeout());
+            connectionParams.setSoTimeout(params.getSoTimeout());
+        }
+        return connection;
+    }
+
+    private static final class RequestTimeouts {
+        private final int connectionTimeout;
+        private final int soTimeout;
+
+        private RequestTimeouts(int connectionTimeout, int soTimeout) {
+            this.connectionTimeout = connectionTimeout;
+            this.soTimeout = soTimeout;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.common.network
+
+import java.io.InterruptedIOException
+import java.util.concurrent.TimeUnit
+
+/**
+ * Token bucket limiting the bytes transferred per second, shared by any number of concurrent transfers.
+ *
+ * Transfers take tokens for every buffer before sending or after receiving it, see [acquire]. Tokens are refilled
+ * at [bytesPerSecond] up to a burst of [BURST_MILLIS] worth of bytes. A transfer taking more tokens than available
+ * runs into debt and waits until it is paid back; as every following transfer waits for the debt of the former
+ * ones, bandwidth is handed out in order of the requests, so concurrent transfers get equal shares.
+ *
+ * @param parent limiter every transfer has to pass as well, e.g. the global limit of a per account limiter
+ * @param nanoTime source of the time tokens are refilled by
+ * @param sleepNanos waits for the given number of nanoseconds; may throw [InterruptedException]
+ */
+class BandwidthLimiter
+    @JvmOverloads
+    constructor(
+        bytesPerSecond: Long = UNLIMITED,
+        private val parent: BandwidthLimiter? = null,
+        private val nanoTime: () -> Long = System::nanoTime,
+        private val sleepNanos: (Long) -> Unit = { TimeUnit.NANOSECONDS.sleep(it) }
+    ) {
+        /**
+         * Limit in bytes per second, [UNLIMITED] or any value <= 0 for none; can be changed while transfers run.
+         */
+        @Volatile
+        var bytesPerSecond: Long = bytesPerSecond
+
+        // guarded by this
+        private var tokens = 0.0
+        private var lastRefillNanos = 0L
+        private var started = false
+
+        /**
+         * Takes tokens for the given number of bytes, waiting until the limit allows to transfer them.
+         *
+         * @throws InterruptedIOException if the thread is interrupted while waiting
+         */
+        @Throws(InterruptedIOException::class)
+        fun acquire(bytes: Int) {
+            val rate = bytesPerSecond
+            if (rate > 0 && bytes > 0) {
+                val waitNanos = reserve(bytes, rate)
+                if (waitNanos > 0) {
+                    try {
+                        sleepNanos(waitNanos)
+                    } catch (e: InterruptedException) {
+                        Thread.currentThread().interrupt()
+                        throw InterruptedIOException("Interrupted while waiting for bandwidth")
+                    }
+                }
+            }
+            parent?.acquire(bytes)
+        }
+
+        /**
+         * @return nanoseconds to wait until the bytes may be transferred
+         */
+        @Synchronized
+        private fun reserve(
+            bytes: Int,
+            rate: Long
+        ): Long {
+            val now = nanoTime()
+            val capacity = maxOf(rate * BURST_MILLIS / MILLIS_PER_SECOND, 1L).toDouble()
+            tokens =
+                if (started) {
+                    minOf(capacity, tokens + (now - lastRefillNanos) * rate.toDouble() / NANOS_PER_SECOND)
+                } else {
+                    capacity
+                }
+            started = true
+            lastRefillNanos = now
+
+            tokens -= bytes
+            return if (tokens >= 0) 0 else (-tokens * NANOS_PER_SECOND / rate).toLong()
+        }
+
+        companion object {
+            const val UNLIMITED = 0L
+
+            /**
+             * Bytes that may be transferred at once after a pause, in milliseconds at the limit.
+             */
+            const val BURST_MILLIS = 100L
+
+            private const val MILLIS_PER_SECOND = 1000L
+            private const val NANOS_PER_SECOND = 1_000_000_000.0
+        }
+    }
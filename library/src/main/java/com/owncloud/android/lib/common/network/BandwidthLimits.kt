@@ -0,0 +1,39 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.common.network
+
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Bandwidth limits of the process: global ones for all uploads and downloads, and one per account nested within
+ * the global ones. All limits are unlimited until set, e.g. `BandwidthLimits.globalUpload.bytesPerSecond = ...`,
+ * and can be changed while transfers run.
+ */
+object BandwidthLimits {
+    @JvmField
+    val globalUpload = BandwidthLimiter()
+
+    @JvmField
+    val globalDownload = BandwidthLimiter()
+
+    private val uploads = ConcurrentHashMap<String, BandwidthLimiter>()
+    private val downloads = ConcurrentHashMap<String, BandwidthLimiter>()
+
+    /**
+     * @return upload limiter of the account, limited by [globalUpload] as well
+     */
+    @JvmStatic
+    fun upload(accountName: String): BandwidthLimiter =
+        uploads.getOrPut(accountName) { BandwidthLimiter(BandwidthLimiter.UNLIMITED, globalUpload) }
+
+    /**
+     * @return download limiter of the account, limited by [globalDownload] as well
+     */
+    @JvmStatic
+    fun download(accountName: String): BandwidthLimiter =
+        downloads.getOrPut(accountName) { BandwidthLimiter(BandwidthLimiter.UNLIMITED, globalDownload) }
+}
@@ -0,0 +1,24 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.common.network
+
+/**
+ * Checksum algorithms known to the `OC-Checksum` header, by the name used in the header.
+ *
+ * @property isCombinable whether checksums of consecutive ranges can be combined into the checksum of the whole,
+ * so that the chunks of an upload can be hashed independently and in parallel
+ */
+enum class ChecksumType(
+    val headerName: String,
+    internal val algorithm: String?,
+    val isCombinable: Boolean
+) {
+    MD5("MD5", "MD5", false),
+    SHA1("SHA1", "SHA-1", false),
+    SHA256("SHA256", "SHA-256", false),
+    ADLER32("ADLER32", null, true)
+}
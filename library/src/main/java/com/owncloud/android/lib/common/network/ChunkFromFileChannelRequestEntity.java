@@ -19,9 +19,8 @@ import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 
 /**
@@ -36,11 +35,18 @@ public class ChunkFromFileChannelRequestEntity implements RequestEntity, Progres
     private final File mFile;
     private long mOffset;
     private long mTransferred;
-    private final Set<OnDatatransferProgressListener> mDataTransferListeners = new HashSet<>();
-    private ByteBuffer mBuffer = ByteBuffer.allocate(4096);
+    private final Set<OnDatatransferProgressListener> mDataTransferListeners = new CopyOnWriteArraySet<>();
+    private final ByteBuffer mBuffer;
+    private ContentChecksum mChecksum;
+    private BandwidthLimiter mBandwidthLimiter;
 
     public ChunkFromFileChannelRequestEntity(final FileChannel channel, final String contentType, long offset, 
                                              long chunkSize, final File file) {
+        this(channel, contentType, offset, chunkSize, file, FileRequestEntity.DEFAULT_BUFFER_SIZE);
+    }
+
+    public ChunkFromFileChannelRequestEntity(final FileChannel channel, final String contentType, long offset,
+                                             long chunkSize, final File file, int bufferSize) {
         super();
         if (channel == null) {
             throw new IllegalArgumentException("File may not be null");
@@ -48,12 +54,17 @@ public class ChunkFromFileChannelRequestEntity implements RequestEntity, Progres
         if (chunkSize <= 0) {
             throw new IllegalArgumentException("Chunk length must be greater than zero");
         }
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be greater than zero");
+        }
         mChannel = channel;
         mContentType = contentType;
         length = chunkSize;
         mFile = file;
         mOffset = offset;
         mTransferred = offset;
+        // never larger than the chunk, chunks of large files are uploaded by several entities at once
+        mBuffer = ByteBuffer.allocate((int) Math.min(bufferSize, chunkSize));
     }
     
     public long getContentLength() {
@@ -71,31 +82,40 @@ public class ChunkFromFileChannelRequestEntity implements RequestEntity, Progres
     public boolean isRepeatable() {
         return true;
     }
+
+    /**
+     * Sets a checksum to be updated with every byte of the chunk; it is reset whenever the chunk is written again.
+     */
+    public void setChecksum(ContentChecksum checksum) {
+        mChecksum = checksum;
+    }
+
+    /**
+     * Sets a limiter every buffer has to pass before it is written; null, the default, writes unthrottled.
+     */
+    public void setBandwidthLimiter(BandwidthLimiter bandwidthLimiter) {
+        mBandwidthLimiter = bandwidthLimiter;
+    }
     
     @Override
     public void addDataTransferProgressListener(OnDatatransferProgressListener listener) {
-        synchronized (mDataTransferListeners) {
-            mDataTransferListeners.add(listener);
-        }
+        mDataTransferListeners.add(listener);
     }
     
     @Override
     public void addDataTransferProgressListeners(Collection<OnDatatransferProgressListener> listeners) {
-        synchronized (mDataTransferListeners) {
-            mDataTransferListeners.addAll(listeners);
-        }
+        mDataTransferListeners.addAll(listeners);
     }
     
     @Override
     public void removeDataTransferProgressListener(OnDatatransferProgressListener listener) {
-        synchronized (mDataTransferListeners) {
-            mDataTransferListeners.remove(listener);
-        }
+        mDataTransferListeners.remove(listener);
     }
 
     public void writeRequest(final OutputStream out) throws IOException {
         int readCount;
-        Iterator<OnDatatransferProgressListener> progressListenerIterator;
+        ProgressDispatcher progress = new ProgressDispatcher();
+        progress.addDataTransferProgressListener(this::notifyListeners);
 
         try {
             mChannel.position(mOffset);
@@ -103,27 +123,31 @@ public class ChunkFromFileChannelRequestEntity implements RequestEntity, Progres
             if (size == 0) {
                 size = -1;
             }
-            long maxCount = Math.min(mOffset + length - 1, mChannel.size());
+            long maxCount = Math.min(mOffset + length, mChannel.size());
+            if (mChecksum != null) {
+                mChecksum.reset();
+            }
             while (mChannel.position() < maxCount) {
+                // never read beyond the end of the chunk, chunk sizes need not be a multiple of the buffer size
+                mBuffer.limit((int) Math.min(mBuffer.capacity(), maxCount - mChannel.position()));
                 readCount = mChannel.read(mBuffer);
                 try {
+                    if (mBandwidthLimiter != null) {
+                        mBandwidthLimiter.acquire(readCount);
+                    }
                     out.write(mBuffer.array(), 0, readCount);
                 } catch (IOException io) {
                     // work-around try catch to filter exception in writing
                     throw new FileRequestEntity.WriteException(io);
                 }
+                if (mChecksum != null) {
+                    mChecksum.update(mBuffer.array(), 0, readCount);
+                }
                 mBuffer.clear();
                 if (mTransferred < maxCount) {  // condition to avoid accumulate progress for repeated chunks
                     mTransferred += readCount;
                 }
-                synchronized (mDataTransferListeners) {
-                    progressListenerIterator = mDataTransferListeners.iterator();
-
-                    while (progressListenerIterator.hasNext()) {
-                        progressListenerIterator.next().onTransferProgress(readCount, mTransferred, size, 
-                                                                           mFile.getAbsolutePath());
-                    }
-                }
+                progress.onTransferProgress(readCount, mTransferred, size, mFile.getAbsolutePath());
             }
 
         } catch (IOException io) {
@@ -138,8 +162,19 @@ public class ChunkFromFileChannelRequestEntity implements RequestEntity, Progres
 
         } catch (FileRequestEntity.WriteException we) {
             throw we.getWrapped();
+        } finally {
+            progress.flush();
         }
             
     }
 
+    /**
+     * Hands the progress coalesced by the dispatcher of a write on to the listeners registered at that time.
+     */
+    private void notifyListeners(long progressRate, long transferred, long totalToTransfer, String fileName) {
+        for (OnDatatransferProgressListener listener : mDataTransferListeners) {
+            listener.onTransferProgress(progressRate, transferred, totalToTransfer, fileName);
+        }
+    }
+
 }
@@ -0,0 +1,266 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.common.network
+
+import com.nextcloud.android.lib.core.Clock
+import com.nextcloud.android.lib.core.ClockImpl
+import com.owncloud.android.lib.common.utils.Log_OC
+import java.io.IOException
+import java.io.InterruptedIOException
+import java.net.SocketTimeoutException
+import java.net.UnknownHostException
+import java.util.concurrent.CopyOnWriteArraySet
+import javax.net.ssl.SSLException
+
+/**
+ * Circuit breaker of a single server, shared by all clients through [CircuitBreakers].
+ *
+ * After [failureThreshold] consecutive failures the circuit opens, and requests fail fast with a
+ * [CircuitBreakerOpenException] instead of running into connect and read timeouts. Once [openMillis] passed, the
+ * next request first probes the server with a cheap status request (half-open): if it succeeds, the circuit closes,
+ * otherwise it opens again for twice as long, up to [maxOpenMillis].
+ *
+ * Failures are connection errors, timeouts and 502, 503 and 504 responses, as well as requests slower than
+ * [slowCallMillis], as the brute force protection of the server delays requests before refusing them. Only requests
+ * expected to be fast are timed, see [onResponse]. A 429 response opens the circuit right away, for the time asked
+ * for in its `Retry-After`.
+ */
+@Suppress("TooManyFunctions")
+class CircuitBreaker
+    @JvmOverloads
+    constructor(
+        val host: String,
+        val failureThreshold: Int = DEFAULT_FAILURE_THRESHOLD,
+        val slowCallMillis: Long = DEFAULT_SLOW_CALL_MILLIS,
+        val openMillis: Long = DEFAULT_OPEN_MILLIS,
+        val maxOpenMillis: Long = DEFAULT_MAX_OPEN_MILLIS,
+        private val clock: Clock = ClockImpl()
+    ) {
+        enum class State {
+            /**
+             * Requests are sent.
+             */
+            CLOSED,
+
+            /**
+             * Requests fail fast.
+             */
+            OPEN,
+
+            /**
+             * A probe decides whether the circuit closes; other requests fail fast meanwhile.
+             */
+            HALF_OPEN
+        }
+
+        enum class Permission {
+            ALLOWED,
+
+            /**
+             * The caller has to probe the server first and report the result with [onProbeResult].
+             */
+            PROBE,
+            REJECTED
+        }
+
+        fun interface StateListener {
+            fun onStateChanged(
+                breaker: CircuitBreaker,
+                state: State
+            )
+        }
+
+        /**
+         * URL of the status request probing the server, e.g. `https://cloud.example.com/status.php`.
+         */
+        @Volatile
+        var probeUrl: String? = null
+
+        private val listeners = CopyOnWriteArraySet<StateListener>()
+
+        // guarded by this
+        private var state = State.CLOSED
+        private var consecutiveFailures = 0
+        private var openUntil = 0L
+        private var currentOpenMillis = openMillis
+
+        @Synchronized
+        fun getState(): State = state
+
+        /**
+         * @return milliseconds until the server is probed again, 0 if the circuit is not open
+         */
+        @Synchronized
+        fun getRemainingOpenMillis(): Long =
+            if (state == State.OPEN) maxOf(openUntil - clock.currentTimeMillis, 0L) else 0L
+
+        fun addStateListener(listener: StateListener) {
+            listeners.add(listener)
+        }
+
+        fun removeStateListener(listener: StateListener) {
+            listeners.remove(listener)
+        }
+
+        /**
+         * Asks for permission to send a request; a caller getting [Permission.PROBE] is the only one probing.
+         */
+        fun tryAcquire(): Permission {
+            var permission = Permission.REJECTED
+            update {
+                when {
+                    state == State.CLOSED -> permission = Permission.ALLOWED
+                    state == State.OPEN && clock.currentTimeMillis >= openUntil -> {
+                        permission = Permission.PROBE
+                        state = State.HALF_OPEN
+                    }
+                }
+            }
+            return permission
+        }
+
+        /**
+         * Records the response to the probe; see [isFailure].
+         */
+        fun onProbeResult(success: Boolean) {
+            update {
+                if (success) {
+                    close()
+                } else {
+                    // at least [openMillis], as a throttling server may have asked for less
+                    open(minOf(maxOf(currentOpenMillis * 2, openMillis), maxOpenMillis))
+                }
+            }
+        }
+
+        /**
+         * Records a probe failed with an exception; if the server is not to blame, the next request probes again.
+         */
+        fun onProbeError(exception: IOException) {
+            if (isServerFailure(exception)) {
+                onProbeResult(false)
+            } else {
+                onProbeCanceled()
+            }
+        }
+
+        /**
+         * Gives up a probe without result, e.g. as its call was canceled; the next request probes again.
+         */
+        fun onProbeCanceled() {
+            update {
+                if (state == State.HALF_OPEN) {
+                    state = State.OPEN
+                    openUntil = clock.currentTimeMillis
+                }
+            }
+        }
+
+        /**
+         * @return true if the status is counted as failure of the server
+         */
+        fun isFailure(status: Int): Boolean = status == HTTP_TOO_MANY_REQUESTS || status in FAILURE_STATUS_CODES
+
+        /**
+         * Records the response of a request.
+         *
+         * @param durationMillis time the request took until the response was received, [UNTIMED] for requests that
+         * may take long without the server failing, i.e. requests sending a body, like uploads, and requests with
+         * timeouts of their own
+         * @param retryAfter value of the `Retry-After` header of the response, if any
+         */
+        fun onResponse(
+            status: Int,
+            durationMillis: Long,
+            retryAfter: String?
+        ) {
+            when {
+                status == HTTP_TOO_MANY_REQUESTS -> {
+                    val requested = retryAfter?.let { RetryPolicy.parseRetryAfter(it, clock.currentTimeMillis) }
+                    Log_OC.d(TAG, "$host is throttling requests")
+                    update { open(minOf(requested ?: openMillis, maxOpenMillis)) }
+                }
+                status in FAILURE_STATUS_CODES -> onFailure()
+                durationMillis != UNTIMED && durationMillis >= slowCallMillis -> onFailure()
+                else -> update { consecutiveFailures = 0 }
+            }
+        }
+
+        /**
+         * Records a request failed with an exception; errors not caused by the server are ignored.
+         */
+        fun onError(exception: IOException) {
+            if (isServerFailure(exception)) {
+                onFailure()
+            }
+        }
+
+        private fun isServerFailure(exception: IOException): Boolean =
+            when (exception) {
+                // caused by the device or its configuration, or by the caller
+                is CircuitBreakerOpenException, is UnknownHostException, is SSLException -> false
+                is InterruptedIOException -> exception is SocketTimeoutException
+                else -> true
+            }
+
+        private fun onFailure() {
+            update {
+                consecutiveFailures++
+                if (state == State.CLOSED && consecutiveFailures >= failureThreshold) {
+                    Log_OC.d(TAG, "$consecutiveFailures consecutive failures of $host")
+                    open(currentOpenMillis)
+                }
+            }
+        }
+
+        // called with the lock held
+        private fun open(millis: Long) {
+            state = State.OPEN
+            currentOpenMillis = millis
+            openUntil = clock.currentTimeMillis + millis
+        }
+
+        // called with the lock held
+        private fun close() {
+            state = State.CLOSED
+            consecutiveFailures = 0
+            currentOpenMillis = openMillis
+        }
+
+        /**
+         * Runs the change with the lock held, notifying listeners afterwards if the state changed.
+         */
+        private fun update(change: () -> Unit) {
+            val changed =
+                synchronized(this) {
+                    val before = state
+                    change()
+                    state.takeIf { it != before }
+                }
+            if (changed != null) {
+                Log_OC.d(TAG, "Circuit of $host is $changed")
+                listeners.forEach { it.onStateChanged(this, changed) }
+            }
+        }
+
+        companion object {
+            private val TAG = CircuitBreaker::class.java.simpleName
+
+            const val DEFAULT_FAILURE_THRESHOLD = 5
+            const val DEFAULT_SLOW_CALL_MILLIS = 20_000L
+            const val DEFAULT_OPEN_MILLIS = 30_000L
+            const val DEFAULT_MAX_OPEN_MILLIS = 5 * 60_000L
+
+            /**
+             * Duration of requests not counting as slow call, see [onResponse].
+             */
+            const val UNTIMED = -1L
+
+            private const val HTTP_TOO_MANY_REQUESTS = 429
+            private val FAILURE_STATUS_CODES = setOf(502, 503, 504)
+        }
+    }
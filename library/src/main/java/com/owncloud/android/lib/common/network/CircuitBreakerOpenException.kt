@@ -0,0 +1,19 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.common.network
+
+import java.io.IOException
+
+/**
+ * Thrown instead of sending a request to a server whose [CircuitBreaker] is open.
+ *
+ * @param retryAfterMillis milliseconds until the server is probed again
+ */
+class CircuitBreakerOpenException(
+    val host: String,
+    val retryAfterMillis: Long
+) : IOException("Circuit breaker of $host is open, retry in $retryAfterMillis ms")
@@ -0,0 +1,94 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.common.network
+
+import okhttp3.HttpUrl.Companion.toHttpUrlOrNull
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Circuit breakers per server, shared by [com.owncloud.android.lib.common.OwnCloudClient] and
+ * [com.nextcloud.common.NextcloudClient], so that both stop sending requests to a failing server together.
+ *
+ * Servers are identified by host, plus port if it is not the default one of the scheme.
+ */
+object CircuitBreakers {
+    private const val STATUS_PATH = "/status.php"
+    private const val HTTP_PORT = 80
+    private const val HTTPS_PORT = 443
+
+    private val breakers = ConcurrentHashMap<String, CircuitBreaker>()
+
+    /**
+     * Disables the circuit breakers of all clients, e.g. for tests exercising failures.
+     */
+    @Volatile
+    @JvmStatic
+    var enabled = true
+
+    /**
+     * Duration after which requests count as failure, see [CircuitBreaker.slowCallMillis]; applies to circuit
+     * breakers created afterwards.
+     */
+    @Volatile
+    @JvmStatic
+    var slowCallMillis = CircuitBreaker.DEFAULT_SLOW_CALL_MILLIS
+
+    @JvmStatic
+    fun get(
+        scheme: String?,
+        host: String,
+        port: Int
+    ): CircuitBreaker {
+        val key = getKey(scheme, host, port)
+        return breakers[key] ?: breakers.getOrPut(key) { CircuitBreaker(key, slowCallMillis = slowCallMillis) }
+    }
+
+    /**
+     * @return the state of the circuit of the server, [CircuitBreaker.State.CLOSED] if none was used yet
+     */
+    @JvmStatic
+    fun getState(
+        scheme: String?,
+        host: String,
+        port: Int
+    ): CircuitBreaker.State = breakers[getKey(scheme, host, port)]?.getState() ?: CircuitBreaker.State.CLOSED
+
+    @JvmStatic
+    fun getAll(): Collection<CircuitBreaker> = breakers.values.toList()
+
+    /**
+     * Forgets all circuit breakers, closing all circuits.
+     */
+    @JvmStatic
+    fun reset() {
+        breakers.clear()
+    }
+
+    /**
+     * Sets the status request of the server at [baseUrl] as probe of its circuit breaker; invalid URLs are ignored.
+     */
+    @JvmStatic
+    fun registerServer(baseUrl: String) {
+        val url = baseUrl.toHttpUrlOrNull() ?: return
+        get(url.scheme, url.host, url.port).probeUrl = baseUrl.trimEnd('/') + STATUS_PATH
+    }
+
+    private fun getKey(
+        scheme: String?,
+        host: String,
+        port: Int
+    ): String {
+        val defaultPort =
+            when (scheme?.lowercase()) {
+                "http" -> HTTP_PORT
+                "https" -> HTTPS_PORT
+                else -> -1
+            }
+        val lowercaseHost = host.lowercase()
+        return if (port < 0 || port == defaultPort) lowercaseHost else "$lowercaseHost:$port"
+    }
+}
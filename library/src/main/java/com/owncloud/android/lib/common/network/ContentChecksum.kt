@@ -0,0 +1,162 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.common.network
+
+import java.io.EOFException
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.security.MessageDigest
+import java.util.zip.Adler32
+
+/**
+ * Checksum of uploaded content, updated with the bytes as they are written to the connection, so that files are not
+ * read a second time just for hashing.
+ *
+ * Values are formatted like the `OC-Checksum` header, e.g. `SHA1:2fd4e1c67a2d28fced849ee1bb76e7391b93eb12`. Hex
+ * digits are lower case and not padded, as the desktop client does.
+ */
+class ContentChecksum(val type: ChecksumType) {
+    private val digest: MessageDigest? = type.algorithm?.let { MessageDigest.getInstance(it) }
+    private val adler32: Adler32? = if (type == ChecksumType.ADLER32) Adler32() else null
+    private var hexValue: String? = null
+
+    /**
+     * Number of bytes hashed since the last [reset].
+     */
+    var length: Long = 0
+        private set
+
+    fun update(
+        bytes: ByteArray,
+        offset: Int,
+        count: Int
+    ) {
+        check(hexValue == null) { "Checksum already completed" }
+        digest?.update(bytes, offset, count)
+        adler32?.update(bytes, offset, count)
+        length += count
+    }
+
+    /**
+     * Starts over, e.g. when a request body is written again after a retry.
+     */
+    fun reset() {
+        digest?.reset()
+        adler32?.reset()
+        hexValue = null
+        length = 0
+    }
+
+    /**
+     * Completes the checksum; no bytes can be added afterwards, until the next [reset].
+     *
+     * @return checksum as hex string, without the type
+     */
+    fun getValue(): String {
+        val value = hexValue ?: adler32?.let { java.lang.Long.toHexString(it.value) } ?: toHex(digest!!.digest())
+        hexValue = value
+        return value
+    }
+
+    /**
+     * @return checksum as sent in the `OC-Checksum` header
+     */
+    fun getHeaderValue(): String = type.headerName + ":" + getValue()
+
+    companion object {
+        private const val ADLER_BASE = 65521L
+        private const val ADLER_HALF_MASK = 0xffffL
+        private const val ADLER_HALF_BITS = 16
+        private const val BYTE_MASK = 0xff
+        private const val NIBBLE_BITS = 4
+        private const val NIBBLE_MASK = 0xf
+        private const val HEX_DIGITS = "0123456789abcdef"
+        private const val READ_BUFFER_SIZE = 64 * 1024
+
+        /**
+         * Combines the checksums of consecutive ranges into the checksum of the whole content, without reading any
+         * byte again.
+         *
+         * @param parts checksums of the ranges, in content order, all of the same combinable [ChecksumType]
+         * @return combined checksum as sent in the `OC-Checksum` header
+         */
+        @JvmStatic
+        fun combine(parts: List<ContentChecksum>): String {
+            require(parts.isNotEmpty()) { "Nothing to combine" }
+            val type = parts[0].type
+            require(type.isCombinable && parts.all { it.type == type }) { "Checksums cannot be combined" }
+
+            var combined = 1L // Adler-32 of empty content
+            for (part in parts) {
+                combined = combineAdler32(combined, part.adler32!!.value, part.length)
+            }
+            return type.headerName + ":" + java.lang.Long.toHexString(combined)
+        }
+
+        /**
+         * Hashes a range of a file, e.g. a chunk uploaded by an earlier attempt.
+         */
+        @JvmStatic
+        @Throws(IOException::class)
+        fun fromFile(
+            type: ChecksumType,
+            file: File,
+            offset: Long,
+            length: Long
+        ): ContentChecksum {
+            val checksum = ContentChecksum(type)
+            val buffer = ByteArray(READ_BUFFER_SIZE)
+            RandomAccessFile(file, "r").use { raf ->
+                raf.seek(offset)
+                var remaining = length
+                while (remaining > 0) {
+                    val read = raf.read(buffer, 0, minOf(remaining, buffer.size.toLong()).toInt())
+                    if (read < 0) {
+                        throw EOFException("Unexpected end of file: ${file.absolutePath}")
+                    }
+                    checksum.update(buffer, 0, read)
+                    remaining -= read
+                }
+            }
+            return checksum
+        }
+
+        /**
+         * Port of zlib's `adler32_combine`.
+         *
+         * @return Adler-32 of the concatenation of two ranges, given their checksums and the length of the second
+         */
+        @JvmStatic
+        fun combineAdler32(
+            first: Long,
+            second: Long,
+            secondLength: Long
+        ): Long {
+            val remainder = secondLength % ADLER_BASE
+            var sum1 = first and ADLER_HALF_MASK
+            var sum2 = remainder * sum1 % ADLER_BASE
+            sum1 += (second and ADLER_HALF_MASK) + ADLER_BASE - 1
+            sum2 += (first shr ADLER_HALF_BITS and ADLER_HALF_MASK) +
+                (second shr ADLER_HALF_BITS and ADLER_HALF_MASK) + ADLER_BASE - remainder
+            if (sum1 >= ADLER_BASE) sum1 -= ADLER_BASE
+            if (sum1 >= ADLER_BASE) sum1 -= ADLER_BASE
+            if (sum2 >= ADLER_BASE shl 1) sum2 -= ADLER_BASE shl 1
+            if (sum2 >= ADLER_BASE) sum2 -= ADLER_BASE
+            return sum1 or (sum2 shl ADLER_HALF_BITS)
+        }
+
+        private fun toHex(bytes: ByteArray): String {
+            val hex = StringBuilder(bytes.size * 2)
+            for (byte in bytes) {
+                val value = byte.toInt() and BYTE_MASK
+                hex.append(HEX_DIGITS[value shr NIBBLE_BITS]).append(HEX_DIGITS[value and NIBBLE_MASK])
+            }
+            return hex.toString()
+        }
+    }
+}
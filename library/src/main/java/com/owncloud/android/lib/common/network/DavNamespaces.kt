@@ -0,0 +1,37 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.common.network
+
+import org.apache.jackrabbit.webdav.DavConstants
+import org.apache.jackrabbit.webdav.property.DavPropertyName
+
+/**
+ * Namespace prefixes of a WebDAV request body that is written as plain text: `d` for `DAV:`, `ns1`, `ns2`, ... for
+ * all others, in order of first use. The declarations are written once, on the root element.
+ */
+internal class DavNamespaces {
+    private val prefixes = linkedMapOf(DavConstants.NAMESPACE.uri to DAV_PREFIX)
+
+    fun prefix(namespaceUri: String): String = prefixes.getOrPut(namespaceUri) { NAMESPACE_PREFIX + prefixes.size }
+
+    /**
+     * @return empty element for the property, e.g. `<d:getetag/>`
+     */
+    fun emptyElement(name: DavPropertyName): String = "<" + prefix(name.namespace.uri) + ":" + name.name + "/>"
+
+    fun appendDeclarations(out: StringBuilder): StringBuilder {
+        prefixes.forEach { (uri, prefix) ->
+            out.append(" xmlns:").append(prefix).append("=\"").append(uri).append('"')
+        }
+        return out
+    }
+
+    companion object {
+        const val DAV_PREFIX = "d"
+        private const val NAMESPACE_PREFIX = "ns"
+    }
+}
@@ -20,26 +20,42 @@ import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 /**
  * A RequestEntity that represents a File.
  */
 public class FileRequestEntity implements RequestEntity, ProgressiveDataTransfer {
 
+    /**
+     * Size of the buffer files are copied through; large enough to keep system calls and progress notifications
+     * per byte low, small enough to not matter for the heap.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
     private final File file;
     private final String contentType;
-    private final Set<OnDatatransferProgressListener> dataTransferListeners = new HashSet<>();
+    private final int bufferSize;
+    private final Set<OnDatatransferProgressListener> dataTransferListeners = new CopyOnWriteArraySet<>();
+    private ContentChecksum checksum;
+    private BandwidthLimiter bandwidthLimiter;
 
     public FileRequestEntity(final File file, final String contentType) {
+        this(file, contentType, DEFAULT_BUFFER_SIZE);
+    }
+
+    public FileRequestEntity(final File file, final String contentType, int bufferSize) {
         super();
         this.file = file;
         this.contentType = contentType;
+        this.bufferSize = bufferSize;
         if (file == null) {
             throw new IllegalArgumentException("File may not be null");
         }
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be greater than zero");
+        }
     }
     
     @Override
@@ -57,55 +73,68 @@ public class FileRequestEntity implements RequestEntity, ProgressiveDataTransfer
         return true;
     }
 
+    /**
+     * Sets a checksum to be updated with every byte written; it is reset whenever the entity is written again.
+     */
+    public void setChecksum(ContentChecksum checksum) {
+        this.checksum = checksum;
+    }
+
+    /**
+     * Sets a limiter every buffer has to pass before it is written; null, the default, writes unthrottled.
+     */
+    public void setBandwidthLimiter(BandwidthLimiter bandwidthLimiter) {
+        this.bandwidthLimiter = bandwidthLimiter;
+    }
+
     @Override
     public void addDataTransferProgressListener(OnDatatransferProgressListener listener) {
-        synchronized (dataTransferListeners) {
-            dataTransferListeners.add(listener);
-        }
+        dataTransferListeners.add(listener);
     }
     
     @Override
     public void addDataTransferProgressListeners(Collection<OnDatatransferProgressListener> listeners) {
-        synchronized (dataTransferListeners) {
-            dataTransferListeners.addAll(listeners);
-        }
+        dataTransferListeners.addAll(listeners);
     }
     
     @Override
     public void removeDataTransferProgressListener(OnDatatransferProgressListener listener) {
-        synchronized (dataTransferListeners) {
-            dataTransferListeners.remove(listener);
-        }
+        dataTransferListeners.remove(listener);
     }
     
     
     @Override
     public void writeRequest(final OutputStream out) throws IOException {
-        ByteBuffer tmp = ByteBuffer.allocate(4096);
+        ByteBuffer tmp = ByteBuffer.allocate(bufferSize);
         int readResult;
 
         RandomAccessFile raf = new RandomAccessFile(file, "r");
         FileChannel channel = raf.getChannel();
-        Iterator<OnDatatransferProgressListener> it;
         long transferred = 0;
         long size = file.length();
         if (size == 0) size = -1;
+        ProgressDispatcher progress = new ProgressDispatcher();
+        progress.addDataTransferProgressListener(this::notifyListeners);
+        if (checksum != null) {
+            checksum.reset();
+        }
         try {
             while ((readResult = channel.read(tmp)) >= 0) {
                 try {
+                    if (bandwidthLimiter != null) {
+                        bandwidthLimiter.acquire(readResult);
+                    }
                     out.write(tmp.array(), 0, readResult);
                 } catch (IOException io) {
                     // work-around try catch to filter exception in writing
                     throw new WriteException(io);
                 }
+                if (checksum != null) {
+                    checksum.update(tmp.array(), 0, readResult);
+                }
                 tmp.clear();
                 transferred += readResult;
-                synchronized (dataTransferListeners) {
-                    it = dataTransferListeners.iterator();
-                    while (it.hasNext()) {
-                        it.next().onTransferProgress(readResult, transferred, size, file.getAbsolutePath());
-                    }
-                }
+                progress.onTransferProgress(readResult, transferred, size, file.getAbsolutePath());
             }
 
         } catch (IOException io) {
@@ -122,6 +151,7 @@ public class FileRequestEntity implements RequestEntity, ProgressiveDataTransfer
             throw we.getWrapped();
 
         } finally {
+            progress.flush();
             try {
                 channel.close();
                 raf.close();
@@ -131,6 +161,15 @@ public class FileRequestEntity implements RequestEntity, ProgressiveDataTransfer
         }
     }
 
+    /**
+     * Hands the progress coalesced by the dispatcher of a write on to the listeners registered at that time.
+     */
+    private void notifyListeners(long progressRate, long transferred, long totalToTransfer, String fileName) {
+        for (OnDatatransferProgressListener listener : dataTransferListeners) {
+            listener.onTransferProgress(progressRate, transferred, totalToTransfer, fileName);
+        }
+    }
+
     static class WriteException extends Exception {
         IOException mWrapped;
 
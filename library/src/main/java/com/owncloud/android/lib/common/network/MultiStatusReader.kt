@@ -0,0 +1,283 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.common.network
+
+import com.owncloud.android.lib.common.utils.Log_OC
+import com.owncloud.android.lib.resources.files.model.RemoteFile
+import org.apache.jackrabbit.webdav.DavConstants
+import org.apache.jackrabbit.webdav.MultiStatusResponse
+import org.apache.jackrabbit.webdav.property.DavPropertyName
+import org.apache.jackrabbit.webdav.property.DefaultDavProperty
+import org.apache.jackrabbit.webdav.xml.Namespace
+import org.w3c.dom.Document
+import org.w3c.dom.Element
+import org.xmlpull.v1.XmlPullParser
+import org.xmlpull.v1.XmlPullParserException
+import org.xmlpull.v1.XmlPullParserFactory
+import java.io.Closeable
+import java.io.IOException
+import java.io.InputStream
+import javax.xml.parsers.DocumentBuilderFactory
+
+/**
+ * Streaming reader for WebDAV multi status responses.
+ *
+ * Unlike [org.apache.jackrabbit.webdav.MultiStatus.createFromXml], the document is never held in memory as a
+ * whole: every `d:response` element is pulled from the stream and handed out on its own, so memory use does not
+ * grow with the number of entries. Responses are returned in the jackrabbit model, so [WebdavEntry] maps them
+ * exactly like responses of the DOM based parser. Only properties of `200 OK` propstats are kept; responses without
+ * any, e.g. of a resource that vanished while being listed, are kept with the names of their failed properties only,
+ * so that positions within the listing hold, e.g. the folder itself being the first response.
+ *
+ * Use [nextResponse] to get read errors as [IOException]; as [Iterator] cannot declare them, [hasNext] and [next]
+ * wrap them in a [ReadException].
+ *
+ * Property values follow jackrabbit's [DefaultDavProperty.createFromXml]: text for simple properties, an
+ * [Element] for a single child element and a list of [Element]s for several.
+ */
+class MultiStatusReader
+    @Throws(XmlPullParserException::class)
+    constructor(private val input: InputStream) : Iterator<MultiStatusResponse>, Closeable {
+        private val parser: XmlPullParser =
+            XmlPullParserFactory.newInstance()
+                .apply { isNamespaceAware = true }
+                .newPullParser()
+                .apply { setInput(input, null) }
+
+        private var nextResponse: MultiStatusResponse? = null
+        private var document: Document? = null
+
+        /**
+         * Unchecked wrapper of the [IOException] thrown if reading or parsing the stream fails while iterating.
+         */
+        class ReadException(
+            cause: IOException
+        ) : RuntimeException(cause.message, cause)
+
+        /**
+         * @return the next response, or null if there are none left
+         * @throws IOException if reading or parsing the stream fails
+         */
+        @Throws(IOException::class)
+        fun nextResponse(): MultiStatusResponse? {
+            val response = nextResponse ?: readNextResponse()
+            nextResponse = null
+            return response
+        }
+
+        /**
+         * @throws ReadException if reading or parsing the stream fails
+         */
+        override fun hasNext(): Boolean {
+            if (nextResponse == null) {
+                nextResponse =
+                    try {
+                        readNextResponse()
+                    } catch (e: IOException) {
+                        throw ReadException(e)
+                    }
+            }
+            return nextResponse != null
+        }
+
+        /**
+         * @throws ReadException if reading or parsing the stream fails
+         */
+        override fun next(): MultiStatusResponse {
+            if (!hasNext()) {
+                throw NoSuchElementException()
+            }
+            val response = nextResponse!!
+            nextResponse = null
+            return response
+        }
+
+        /**
+         * Maps the remaining responses lazily to [RemoteFile]s.
+         *
+         * @param davFilesPath encoded path of the WebDAV files endpoint, see [WebdavEntry]
+         */
+        fun remoteFiles(davFilesPath: String): Iterator<RemoteFile> =
+            object : Iterator<RemoteFile> {
+                override fun hasNext(): Boolean = this@MultiStatusReader.hasNext()
+
+                override fun next(): RemoteFile =
+                    RemoteFile(WebdavEntry(this@MultiStatusReader.next(), davFilesPath))
+            }
+
+        override fun close() {
+            input.close()
+        }
+
+        @Throws(IOException::class)
+        private fun readNextResponse(): MultiStatusResponse? =
+            try {
+                var response: MultiStatusResponse? = null
+                var eventType = parser.eventType
+                while (response == null && eventType != XmlPullParser.END_DOCUMENT) {
+                    if (eventType == XmlPullParser.START_TAG && isDav(XML_RESPONSE)) {
+                        response = readResponse()
+                    }
+                    eventType = parser.next()
+                }
+                response
+            } catch (e: XmlPullParserException) {
+                throw IOException("Invalid multi status response", e)
+            }
+
+        /**
+         * Reads one `d:response`; skips responses without href, which cannot be mapped to any resource.
+         */
+        private fun readResponse(): MultiStatusResponse? {
+            var href: String? = null
+            val properties = ArrayList<DefaultDavProperty<*>>()
+            val failed = ArrayList<Pair<DavPropertyName, Int>>()
+            val depth = parser.depth
+
+            while (parser.next() != XmlPullParser.END_TAG || parser.depth > depth) {
+                if (parser.eventType != XmlPullParser.START_TAG) {
+                    continue
+                }
+                when {
+                    isDav(XML_HREF) -> href = parser.nextText().trim()
+                    isDav(XML_PROPSTAT) -> readPropstat(properties, failed)
+                    else -> skipElement()
+                }
+            }
+            // new document per response, so that elements of complex properties do not pile up
+            document = null
+
+            if (href == null) {
+                Log_OC.w(TAG, "Skipping multi status response without href")
+                return null
+            }
+
+            val response = MultiStatusResponse(href, null as String?)
+            properties.forEach { response.add(it, STATUS_OK) }
+            if (properties.isEmpty()) {
+                // only names, so that the entry has a status, but no properties to map
+                failed.forEach { (name, status) -> response.add(name, status) }
+            }
+            return response
+        }
+
+        /**
+         * Reads one `d:propstat`; properties of a `200 OK` one are added to [properties], the names of all others
+         * to [failed] along with their status.
+         */
+        private fun readPropstat(
+            properties: MutableList<DefaultDavProperty<*>>,
+            failed: MutableList<Pair<DavPropertyName, Int>>
+        ) {
+            val propstatProperties = ArrayList<DefaultDavProperty<*>>()
+            var status = 0
+            val depth = parser.depth
+
+            while (parser.next() != XmlPullParser.END_TAG || parser.depth > depth) {
+                if (parser.eventType != XmlPullParser.START_TAG) {
+                    continue
+                }
+                when {
+                    isDav(XML_PROP) -> readProp(propstatProperties)
+                    isDav(XML_STATUS) -> status = parseStatus(parser.nextText())
+                    else -> skipElement()
+                }
+            }
+
+            if (status == STATUS_OK) {
+                properties.addAll(propstatProperties)
+            } else {
+                propstatProperties.forEach { failed.add(it.name to status) }
+            }
+        }
+
+        private fun readProp(properties: MutableList<DefaultDavProperty<*>>) {
+            val depth = parser.depth
+            while (parser.next() != XmlPullParser.END_TAG || parser.depth > depth) {
+                if (parser.eventType == XmlPullParser.START_TAG) {
+                    properties.add(readProperty())
+                }
+            }
+        }
+
+        private fun readProperty(): DefaultDavProperty<*> {
+            val namespace = Namespace.getNamespace(parser.prefix ?: "", parser.namespace)
+            val name = DavPropertyName.create(parser.name, namespace)
+            val text = StringBuilder()
+            val children = ArrayList<Element>()
+            val depth = parser.depth
+
+            while (parser.next() != XmlPullParser.END_TAG || parser.depth > depth) {
+                when (parser.eventType) {
+                    XmlPullParser.TEXT -> text.append(parser.text)
+                    XmlPullParser.START_TAG -> children.add(readElement())
+                }
+            }
+
+            val value: Any? =
+                when {
+                    children.size == 1 -> children[0]
+                    children.isNotEmpty() -> children
+                    text.isBlank() -> null
+                    else -> text.toString()
+                }
+            return DefaultDavProperty(name, value)
+        }
+
+        /**
+         * Builds the DOM of a nested element, e.g. a single sharee; only used for complex properties.
+         */
+        private fun readElement(): Element {
+            val doc = document ?: newDocument().also { document = it }
+            val qualifiedName = if (parser.prefix.isNullOrEmpty()) parser.name else parser.prefix + ":" + parser.name
+            val element = doc.createElementNS(parser.namespace.ifEmpty { null }, qualifiedName)
+            val depth = parser.depth
+
+            while (parser.next() != XmlPullParser.END_TAG || parser.depth > depth) {
+                when (parser.eventType) {
+                    XmlPullParser.TEXT -> element.appendChild(doc.createTextNode(parser.text))
+                    XmlPullParser.START_TAG -> element.appendChild(readElement())
+                }
+            }
+            return element
+        }
+
+        private fun skipElement() {
+            var level = 1
+            while (level > 0) {
+                when (parser.next()) {
+                    XmlPullParser.START_TAG -> level++
+                    XmlPullParser.END_TAG -> level--
+                }
+            }
+        }
+
+        private fun isDav(name: String): Boolean = parser.name == name && parser.namespace == DavConstants.NAMESPACE.uri
+
+        private fun newDocument(): Document =
+            DocumentBuilderFactory.newInstance()
+                .apply { isNamespaceAware = true }
+                .newDocumentBuilder()
+                .newDocument()
+
+        companion object {
+            private val TAG = MultiStatusReader::class.java.simpleName
+            private const val STATUS_OK = 200
+            private const val XML_RESPONSE = "response"
+            private const val XML_HREF = "href"
+            private const val XML_PROPSTAT = "propstat"
+            private const val XML_PROP = "prop"
+            private const val XML_STATUS = "status"
+
+            /**
+             * @param statusLine e.g. "HTTP/1.1 200 OK"
+             * @return status code, or 0 if the line cannot be parsed
+             */
+            private fun parseStatus(statusLine: String): Int =
+                statusLine.trim().split(' ').getOrNull(1)?.toIntOrNull() ?: 0
+        }
+    }
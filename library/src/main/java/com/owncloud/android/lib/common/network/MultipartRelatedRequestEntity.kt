@@ -0,0 +1,106 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.common.network
+
+import org.apache.commons.httpclient.methods.RequestEntity
+import java.io.EOFException
+import java.io.File
+import java.io.FileInputStream
+import java.io.IOException
+import java.io.OutputStream
+import java.util.UUID
+import java.util.concurrent.CopyOnWriteArraySet
+
+/**
+ * A multipart/related request body with one part per file, streamed from disk while writing.
+ *
+ * The length of every file is taken when the entity is created and sent as the `Content-Length` of its part, so the
+ * length of the whole body is known up front; a file shrinking before it is sent fails the request.
+ */
+class MultipartRelatedRequestEntity
+    @JvmOverloads
+    constructor(
+        private val parts: List<Part>,
+        private val boundary: String = "boundary_" + UUID.randomUUID()
+    ) : RequestEntity, ProgressiveDataTransfer {
+        /**
+         * @param headers part headers besides `Content-Length`
+         */
+        class Part(
+            val file: File,
+            val headers: Map<String, String>
+        ) {
+            val length: Long = file.length()
+        }
+
+        private val dataTransferListeners = CopyOnWriteArraySet<OnDatatransferProgressListener>()
+        private val heads = parts.map { head(it) }
+        private val closing = "--$boundary--$CRLF".toByteArray(Charsets.UTF_8)
+        private val length = parts.indices.sumOf { heads[it].size + parts[it].length + CRLF.length } + closing.size
+
+        // progress is reported in bytes of the files, without part headers
+        private val filesLength = parts.sumOf { it.length }
+
+        var bandwidthLimiter: BandwidthLimiter? = null
+
+        override fun isRepeatable(): Boolean = true
+
+        override fun getContentType(): String = "multipart/related; boundary=$boundary"
+
+        override fun getContentLength(): Long = length
+
+        @Throws(IOException::class)
+        override fun writeRequest(out: OutputStream) {
+            val buffer = ByteArray(FileRequestEntity.DEFAULT_BUFFER_SIZE)
+            var transferred = 0L
+            parts.forEachIndexed { index, part ->
+                out.write(heads[index])
+                FileInputStream(part.file).use { input ->
+                    var remaining = part.length
+                    while (remaining > 0) {
+                        val read = input.read(buffer, 0, minOf(remaining, buffer.size.toLong()).toInt())
+                        if (read < 0) {
+                            throw EOFException("File shrank while uploading: ${part.file.absolutePath}")
+                        }
+                        bandwidthLimiter?.acquire(read)
+                        out.write(buffer, 0, read)
+                        remaining -= read
+                        transferred += read
+                        dataTransferListeners.forEach {
+                            it.onTransferProgress(read.toLong(), transferred, filesLength, part.file.absolutePath)
+                        }
+                    }
+                }
+                out.write(CRLF.toByteArray(Charsets.UTF_8))
+            }
+            out.write(closing)
+        }
+
+        override fun addDataTransferProgressListener(listener: OnDatatransferProgressListener) {
+            dataTransferListeners.add(listener)
+        }
+
+        override fun addDataTransferProgressListeners(listeners: Collection<OnDatatransferProgressListener>) {
+            dataTransferListeners.addAll(listeners)
+        }
+
+        override fun removeDataTransferProgressListener(listener: OnDatatransferProgressListener) {
+            dataTransferListeners.remove(listener)
+        }
+
+        private fun head(part: Part): ByteArray {
+            val head = StringBuilder("--").append(boundary).append(CRLF)
+            part.headers.forEach { (name, value) -> head.append(name).append(": ").append(value).append(CRLF) }
+            head.append(CONTENT_LENGTH).append(": ").append(part.length).append(CRLF).append(CRLF)
+            return head.toString().toByteArray(Charsets.UTF_8)
+        }
+
+        companion object {
+            private const val CRLF = "\r\n"
+            private const val CONTENT_LENGTH = "Content-Length"
+        }
+    }
@@ -0,0 +1,173 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.common.network
+
+import com.nextcloud.android.lib.core.Clock
+import com.nextcloud.android.lib.core.ClockImpl
+import java.util.concurrent.CopyOnWriteArraySet
+
+/**
+ * Coalesces the progress of a transfer: byte counts reported by entities and operations on every buffer are summed
+ * up and handed on at most every [intervalMillis], or as soon as [byteThreshold] bytes are pending, and always when
+ * the transfer completes. The `progressRate` handed on is the sum of all coalesced rates, so listeners see every
+ * byte once.
+ *
+ * Register the dispatcher as the listener of a transfer and the actual listeners, e.g. UI, on the dispatcher.
+ * Listeners are kept copy-on-write and are notified outside of the lock guarding the pending progress, so that a
+ * slow listener never holds up the threads reporting progress: while one thread notifies the listeners, progress
+ * reported by other threads is left to it. Listeners are therefore called by one thread at a time, with the
+ * highest total reported so far, even if progress is reported from several threads, as by parallel chunk uploads.
+ */
+class ProgressDispatcher
+    @JvmOverloads
+    constructor(
+        private val intervalMillis: Long = DEFAULT_INTERVAL_MILLIS,
+        private val byteThreshold: Long = DEFAULT_BYTE_THRESHOLD,
+        private val clock: Clock = ClockImpl()
+    ) : OnDatatransferProgressListener, ProgressiveDataTransfer {
+        private val listeners = CopyOnWriteArraySet<OnDatatransferProgressListener>()
+        private val lock = Any()
+
+        // guarded by lock
+        private var pendingBytes = 0L
+        private var lastTotal = 0L
+        private var lastTotalToTransfer = 0L
+        private var lastFileName: String? = null
+        private var lastDispatchMillis = 0L
+        private var dispatched = false
+        private var taken: Progress? = null
+        private var notifying = false
+
+        init {
+            require(intervalMillis >= 0) { "Interval must not be negative" }
+            require(byteThreshold > 0) { "Byte threshold must be greater than zero" }
+        }
+
+        override fun onTransferProgress(
+            progressRate: Long,
+            totalTransferredSoFar: Long,
+            totalToTransfer: Long,
+            fileAbsoluteName: String?
+        ) {
+            val notify =
+                synchronized(lock) {
+                    pendingBytes += progressRate
+                    // totals counted by several threads may be reported out of order
+                    lastTotal = maxOf(lastTotal, totalTransferredSoFar)
+                    lastTotalToTransfer = totalToTransfer
+                    lastFileName = fileAbsoluteName
+
+                    val now = clock.currentTimeMillis
+                    val completed = totalToTransfer in 1..lastTotal
+                    val due = !dispatched || now - lastDispatchMillis >= intervalMillis
+                    if (due || completed || pendingBytes >= byteThreshold) {
+                        take(now)
+                    }
+                    claimNotification()
+                }
+            if (notify) {
+                notifyListeners()
+            }
+        }
+
+        /**
+         * Hands on pending progress right away, e.g. when a transfer failed or was cancelled.
+         */
+        fun flush() {
+            val notify =
+                synchronized(lock) {
+                    if (pendingBytes > 0) {
+                        take(clock.currentTimeMillis)
+                    }
+                    claimNotification()
+                }
+            if (notify) {
+                notifyListeners()
+            }
+        }
+
+        override fun addDataTransferProgressListener(listener: OnDatatransferProgressListener) {
+            listeners.add(listener)
+        }
+
+        override fun addDataTransferProgressListeners(listeners: Collection<OnDatatransferProgressListener>) {
+            this.listeners.addAll(listeners)
+        }
+
+        override fun removeDataTransferProgressListener(listener: OnDatatransferProgressListener) {
+            listeners.remove(listener)
+        }
+
+        /**
+         * Takes the pending progress, adding it to progress taken but not handed on yet; called with the lock held.
+         */
+        private fun take(now: Long) {
+            val rate = (taken?.rate ?: 0) + pendingBytes
+            taken = Progress(rate, lastTotal, lastTotalToTransfer, lastFileName)
+            pendingBytes = 0
+            lastDispatchMillis = now
+            dispatched = true
+        }
+
+        /**
+         * @return true if the calling thread has to notify the listeners of the taken progress; called with the lock
+         * held
+         */
+        private fun claimNotification(): Boolean {
+            if (taken == null || notifying) {
+                return false
+            }
+            notifying = true
+            return true
+        }
+
+        /**
+         * Hands on taken progress until there is none left, including progress taken by other threads meanwhile.
+         */
+        private fun notifyListeners() {
+            var progress = next()
+            try {
+                while (progress != null) {
+                    val current = progress
+                    listeners.forEach {
+                        it.onTransferProgress(current.rate, current.total, current.totalToTransfer, current.fileName)
+                    }
+                    progress = next()
+                }
+            } finally {
+                if (progress != null) {
+                    // a listener failed, the next report notifies again
+                    synchronized(lock) { notifying = false }
+                }
+            }
+        }
+
+        /**
+         * @return taken progress to hand on, null if there is none left, which ends the notification
+         */
+        private fun next(): Progress? =
+            synchronized(lock) {
+                val progress = taken
+                taken = null
+                if (progress == null) {
+                    notifying = false
+                }
+                progress
+            }
+
+        private class Progress(
+            val rate: Long,
+            val total: Long,
+            val totalToTransfer: Long,
+            val fileName: String?
+        )
+
+        companion object {
+            const val DEFAULT_INTERVAL_MILLIS = 100L
+            const val DEFAULT_BYTE_THRESHOLD = 4L * 1024 * 1024
+        }
+    }
@@ -0,0 +1,35 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.common.network
+
+import org.apache.jackrabbit.webdav.property.DavPropertyNameSet
+
+/**
+ * Serializes PROPFIND request bodies, for [PropertyProfile] and [com.nextcloud.operations.PropFindMethod].
+ */
+object PropFindBody {
+    /**
+     * Serializes the request body; every namespace gets declared once on the root element.
+     *
+     * @param propertySet properties to request; an empty set requests all properties
+     */
+    @JvmStatic
+    fun build(propertySet: DavPropertyNameSet): String {
+        val namespaces = DavNamespaces()
+        val props = StringBuilder()
+        propertySet.content.forEach { props.append(namespaces.emptyElement(it)) }
+
+        val body = StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><d:propfind")
+        namespaces.appendDeclarations(body).append('>')
+        if (props.isEmpty()) {
+            body.append("<d:allprop/>")
+        } else {
+            body.append("<d:prop>").append(props).append("</d:prop>")
+        }
+        return body.append("</d:propfind>").toString()
+    }
+}
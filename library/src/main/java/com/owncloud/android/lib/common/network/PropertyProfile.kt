@@ -0,0 +1,149 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.common.network
+
+import org.apache.jackrabbit.webdav.property.DavPropertyName
+import org.apache.jackrabbit.webdav.property.DavPropertyNameSet
+import org.apache.jackrabbit.webdav.xml.Namespace
+
+/**
+ * Predefined sets of properties to request with PROPFIND, from cheapest to most expensive.
+ *
+ * Properties like sharees, locks or tags require additional lookups on the server; callers that only need a
+ * subset should pick the smallest sufficient profile. The request body of every profile is serialized once and
+ * reused by all requests.
+ */
+enum class PropertyProfile(
+    vararg properties: DavPropertyName
+) {
+    /**
+     * Just enough to detect changes, e.g. when checking whether a folder needs to be synced.
+     */
+    ETAG_ONLY(
+        *Properties.ETAG_ONLY
+    ),
+
+    /**
+     * Name, type, size, modification time and identity; what is needed to mirror a folder.
+     */
+    SYNC_MINIMAL(
+        *Properties.ETAG_ONLY,
+        *Properties.SYNC
+    ),
+
+    /**
+     * [SYNC_MINIMAL] plus previews and photo metadata, for media listings.
+     */
+    GALLERY(
+        *Properties.ETAG_ONLY,
+        *Properties.SYNC,
+        Properties.oc(WebdavEntry.EXTENDED_PROPERTY_FAVORITE),
+        Properties.nc(WebdavEntry.EXTENDED_PROPERTY_HAS_PREVIEW),
+        Properties.nc(WebdavEntry.EXTENDED_PROPERTY_HIDDEN),
+        Properties.nc(WebdavEntry.EXTENDED_PROPERTY_CREATION_TIME),
+        Properties.nc(WebdavEntry.EXTENDED_PROPERTY_UPLOAD_TIME),
+        Properties.nc(WebdavEntry.EXTENDED_PROPERTY_METADATA_SIZE),
+        Properties.nc(WebdavEntry.EXTENDED_PROPERTY_METADATA_GPS),
+        Properties.nc(WebdavEntry.EXTENDED_PROPERTY_METADATA_PHOTOS_SIZE),
+        Properties.nc(WebdavEntry.EXTENDED_PROPERTY_METADATA_PHOTOS_GPS),
+        Properties.nc(WebdavEntry.EXTENDED_PROPERTY_METADATA_LIVE_PHOTO)
+    ),
+
+    /**
+     * Properties shown for a single file, including shares and locks; backs [WebdavUtils.getFilePropSet].
+     */
+    FILE(
+        *Properties.FILE
+    ),
+
+    /**
+     * All properties known to [WebdavEntry]; backs [WebdavUtils.getAllPropSet].
+     */
+    FULL(
+        *Properties.FILE,
+        Properties.nc(WebdavEntry.EXTENDED_PROPERTY_MOUNT_TYPE),
+        Properties.oc(WebdavEntry.EXTENDED_PROPERTY_OWNER_ID),
+        Properties.oc(WebdavEntry.EXTENDED_PROPERTY_OWNER_DISPLAY_NAME),
+        Properties.oc(WebdavEntry.EXTENDED_PROPERTY_UNREAD_COMMENTS),
+        Properties.nc(WebdavEntry.EXTENDED_PROPERTY_NOTE),
+        Properties.nc(WebdavEntry.EXTENDED_PROPERTY_RICH_WORKSPACE)
+    );
+
+    private val properties: List<DavPropertyName> = properties.distinct()
+
+    /**
+     * Serialized PROPFIND request body.
+     */
+    val body: String = PropFindBody.build(newPropertySet())
+
+    /**
+     * [body] encoded as UTF-8, shared by all requests; must not be modified.
+     */
+    internal val bodyBytes: ByteArray = body.toByteArray(Charsets.UTF_8)
+
+    /**
+     * @return new mutable set of the properties of this profile, e.g. for legacy jackrabbit methods
+     */
+    fun newPropertySet(): DavPropertyNameSet = DavPropertyNameSet().apply { properties.forEach { add(it) } }
+}
+
+/**
+ * Shared property lists; not kept in a companion object, which is only initialized after the enum entries.
+ */
+private object Properties {
+    val ETAG_ONLY =
+        arrayOf(
+            DavPropertyName.RESOURCETYPE,
+            DavPropertyName.GETETAG
+        )
+
+    val SYNC =
+        arrayOf(
+            DavPropertyName.DISPLAYNAME,
+            DavPropertyName.GETCONTENTTYPE,
+            DavPropertyName.GETCONTENTLENGTH,
+            DavPropertyName.GETLASTMODIFIED,
+            oc(WebdavEntry.EXTENDED_PROPERTY_NAME_PERMISSIONS),
+            oc(WebdavEntry.EXTENDED_PROPERTY_NAME_LOCAL_ID),
+            oc(WebdavEntry.EXTENDED_PROPERTY_NAME_REMOTE_ID),
+            oc(WebdavEntry.EXTENDED_PROPERTY_NAME_SIZE)
+        )
+
+    val FILE =
+        arrayOf(
+            *ETAG_ONLY,
+            *SYNC,
+            DavPropertyName.CREATIONDATE,
+            oc(WebdavEntry.EXTENDED_PROPERTY_FAVORITE),
+            nc(WebdavEntry.EXTENDED_PROPERTY_HAS_PREVIEW),
+            nc(WebdavEntry.EXTENDED_PROPERTY_SHAREES),
+            nc(WebdavEntry.EXTENDED_PROPERTY_CREATION_TIME),
+            nc(WebdavEntry.EXTENDED_PROPERTY_UPLOAD_TIME),
+            nc(WebdavEntry.EXTENDED_PROPERTY_LOCK),
+            nc(WebdavEntry.EXTENDED_PROPERTY_LOCK_OWNER_TYPE),
+            nc(WebdavEntry.EXTENDED_PROPERTY_LOCK_OWNER),
+            nc(WebdavEntry.EXTENDED_PROPERTY_LOCK_OWNER_DISPLAY_NAME),
+            nc(WebdavEntry.EXTENDED_PROPERTY_LOCK_OWNER_EDITOR),
+            nc(WebdavEntry.EXTENDED_PROPERTY_LOCK_TIME),
+            nc(WebdavEntry.EXTENDED_PROPERTY_LOCK_TIMEOUT),
+            nc(WebdavEntry.EXTENDED_PROPERTY_LOCK_TOKEN),
+            nc(WebdavEntry.EXTENDED_PROPERTY_IS_ENCRYPTED),
+            nc(WebdavEntry.EXTENDED_PROPERTY_SYSTEM_TAGS),
+            nc(WebdavEntry.EXTENDED_PROPERTY_METADATA_SIZE),
+            nc(WebdavEntry.EXTENDED_PROPERTY_METADATA_GPS),
+            nc(WebdavEntry.EXTENDED_PROPERTY_METADATA_PHOTOS_SIZE),
+            nc(WebdavEntry.EXTENDED_PROPERTY_METADATA_PHOTOS_GPS),
+            nc(WebdavEntry.EXTENDED_PROPERTY_METADATA_LIVE_PHOTO),
+            nc(WebdavEntry.EXTENDED_PROPERTY_HIDDEN)
+        )
+
+    fun oc(name: String): DavPropertyName =
+        DavPropertyName.create(name, Namespace.getNamespace(WebdavEntry.NAMESPACE_OC))
+
+    fun nc(name: String): DavPropertyName =
+        DavPropertyName.create(name, Namespace.getNamespace(WebdavEntry.NAMESPACE_NC))
+}
@@ -0,0 +1,83 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.common.network
+
+import kotlinx.coroutines.ThreadContextElement
+import kotlinx.coroutines.asContextElement
+import java.util.concurrent.Callable
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Retries all requests of one operation may take together, so that an operation sending many requests to a failing
+ * server gives up after a bounded number of retries, instead of retrying every single request.
+ *
+ * [com.owncloud.android.lib.common.operations.RemoteOperation] runs with a budget of its own as the current budget
+ * of the calling thread, see [runWith]; operations run by other operations on the same thread share the outer
+ * budget. Work handed to other threads takes the budget along by [wrap], coroutines by [asContextElement].
+ */
+class RetryBudget(maxRetries: Int) {
+    private val remaining = AtomicInteger(maxRetries)
+
+    val remainingRetries: Int
+        get() = maxOf(remaining.get(), 0)
+
+    /**
+     * @return true if a retry is left, which is used up then
+     */
+    fun tryAcquire(): Boolean {
+        var current = remaining.get()
+        while (current > 0 && !remaining.compareAndSet(current, current - 1)) {
+            current = remaining.get()
+        }
+        return current > 0
+    }
+
+    companion object {
+        const val DEFAULT_MAX_RETRIES = 5
+
+        private val CURRENT = ThreadLocal<RetryBudget>()
+
+        /**
+         * @return budget of the operation running on the calling thread, null if none
+         */
+        @JvmStatic
+        fun current(): RetryBudget? = CURRENT.get()
+
+        /**
+         * Runs the task with [budget] as current budget of the calling thread, unless a budget is current already.
+         */
+        @JvmStatic
+        fun <T> runWith(
+            budget: RetryBudget,
+            task: Callable<T>
+        ): T {
+            if (CURRENT.get() != null) {
+                return task.call()
+            }
+            CURRENT.set(budget)
+            try {
+                return task.call()
+            } finally {
+                CURRENT.remove()
+            }
+        }
+
+        /**
+         * @return task running with the budget current on the calling thread, the task itself if there is none
+         */
+        @JvmStatic
+        fun wrap(task: Runnable): Runnable {
+            val budget = CURRENT.get() ?: return task
+            return Runnable { runWith(budget) { task.run() } }
+        }
+
+        /**
+         * @return coroutine context element making [budget] the current budget of every thread the coroutine runs on
+         */
+        fun asContextElement(budget: RetryBudget): ThreadContextElement<RetryBudget?> = CURRENT.asContextElement(budget)
+    }
+}
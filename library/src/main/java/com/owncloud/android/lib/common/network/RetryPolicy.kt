@@ -0,0 +1,184 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.common.network
+
+import org.apache.commons.httpclient.ConnectTimeoutException
+import org.apache.commons.httpclient.util.DateParseException
+import org.apache.commons.httpclient.util.DateUtil
+import java.io.IOException
+import java.io.InterruptedIOException
+import java.net.ConnectException
+import java.net.NoRouteToHostException
+import java.net.SocketTimeoutException
+import java.net.UnknownHostException
+import java.util.Locale
+import java.util.Random
+import java.util.concurrent.TimeUnit
+import javax.net.ssl.SSLException
+
+/**
+ * Decides whether and when a failed request is sent again, for both [com.owncloud.android.lib.common.OwnCloudClient]
+ * and [com.nextcloud.common.NextcloudClient].
+ *
+ * Only requests that may safely be repeated are retried: requests that could not even be sent, requests refused
+ * with 429 by the brute force protection, and requests of idempotent methods after 502, 503, 504 or I/O errors.
+ * The delay grows exponentially with every attempt, with random jitter so that clients do not retry in lockstep;
+ * the `Retry-After` of 429 and 503 responses is honoured instead, unless the server asks to wait longer than
+ * [maxRetryAfterMillis].
+ *
+ * How many retries all requests of an operation may take together is limited by a [RetryBudget].
+ *
+ * @param maxAttempts attempts per request including the first one, 1 for no retries
+ */
+class RetryPolicy
+    @JvmOverloads
+    constructor(
+        val maxAttempts: Int = DEFAULT_MAX_ATTEMPTS,
+        val baseDelayMillis: Long = DEFAULT_BASE_DELAY_MILLIS,
+        val maxDelayMillis: Long = DEFAULT_MAX_DELAY_MILLIS,
+        val maxRetryAfterMillis: Long = DEFAULT_MAX_RETRY_AFTER_MILLIS,
+        private val random: Random = Random()
+    ) {
+        init {
+            require(maxAttempts > 0) { "maxAttempts must be positive" }
+            require(baseDelayMillis >= 0 && maxDelayMillis >= baseDelayMillis) { "Invalid delays" }
+        }
+
+        /**
+         * @param method HTTP or WebDAV method, e.g. "PROPFIND"
+         */
+        fun isIdempotent(method: String): Boolean = method.uppercase(Locale.ROOT) in IDEMPOTENT_METHODS
+
+        /**
+         * @param attempt number of the failed attempt, starting at 1
+         * @param retryAfter value of the `Retry-After` header of the response, if any
+         * @return milliseconds to wait before the next attempt, [NO_RETRY] if the response is final
+         */
+        fun getRetryDelay(
+            method: String,
+            attempt: Int,
+            status: Int,
+            retryAfter: String?
+        ): Long {
+            val retryable =
+                when (status) {
+                    HTTP_TOO_MANY_REQUESTS -> true
+                    in IDEMPOTENT_RETRY_STATUS_CODES -> isIdempotent(method)
+                    else -> false
+                }
+            if (!retryable || attempt >= maxAttempts) {
+                return NO_RETRY
+            }
+
+            val requested =
+                if (status == HTTP_TOO_MANY_REQUESTS || status == HTTP_UNAVAILABLE) {
+                    retryAfter?.let { parseRetryAfter(it, System.currentTimeMillis()) }
+                } else {
+                    null
+                }
+            return when {
+                requested == null -> getBackoff(attempt)
+                requested > maxRetryAfterMillis -> NO_RETRY
+                else -> requested
+            }
+        }
+
+        /**
+         * @param attempt number of the failed attempt, starting at 1
+         * @return milliseconds to wait before the next attempt, [NO_RETRY] if the error is final
+         */
+        fun getRetryDelay(
+            method: String,
+            attempt: Int,
+            exception: IOException
+        ): Long {
+            val retryable =
+                when (exception) {
+                    // never reached the server
+                    is ConnectException, is NoRouteToHostException -> true
+                    // e.g. a connection timeout of commons-httpclient
+                    is ConnectTimeoutException -> true
+                    // offline, untrusted certificates and cancellations do not go away by retrying
+                    is UnknownHostException, is SSLException -> false
+                    // the server is known to be failing, see CircuitBreaker
+                    is CircuitBreakerOpenException -> false
+                    is InterruptedIOException -> exception is SocketTimeoutException && isIdempotent(method)
+                    else -> isIdempotent(method)
+                }
+            return if (retryable && attempt < maxAttempts) getBackoff(attempt) else NO_RETRY
+        }
+
+        /**
+         * Exponential backoff with "equal jitter": a random delay between half of and the full backoff.
+         */
+        private fun getBackoff(attempt: Int): Long {
+            val shift = minOf(attempt - 1, MAX_SHIFT)
+            val ceiling = minOf(maxDelayMillis, baseDelayMillis shl shift)
+            val half = ceiling / 2
+            return half + (random.nextDouble() * (ceiling - half)).toLong()
+        }
+
+        companion object {
+            const val NO_RETRY = -1L
+            const val DEFAULT_MAX_ATTEMPTS = 3
+            const val DEFAULT_BASE_DELAY_MILLIS = 500L
+            const val DEFAULT_MAX_DELAY_MILLIS = 30_000L
+            const val DEFAULT_MAX_RETRY_AFTER_MILLIS = 60_000L
+
+            /**
+             * Retries per default, shared by all clients.
+             */
+            @JvmField
+            val DEFAULT = RetryPolicy()
+
+            /**
+             * Never retries, e.g. for uploads the caller retries on its own.
+             */
+            @JvmField
+            val NONE = RetryPolicy(maxAttempts = 1)
+
+            private const val HTTP_TOO_MANY_REQUESTS = 429
+            private const val HTTP_UNAVAILABLE = 503
+            private const val MAX_SHIFT = 20
+
+            private val IDEMPOTENT_RETRY_STATUS_CODES = setOf(502, HTTP_UNAVAILABLE, 504)
+
+            /**
+             * Methods that have the same effect when sent twice and are answered the same. MKCOL, COPY and MOVE are
+             * idempotent by RFC 4918, but fail when repeated after a lost response, so they are not retried.
+             */
+            private val IDEMPOTENT_METHODS =
+                setOf("GET", "HEAD", "OPTIONS", "PUT", "DELETE", "PROPFIND", "PROPPATCH", "REPORT", "SEARCH")
+
+            /**
+             * Parses a `Retry-After` value, either seconds or an HTTP date.
+             *
+             * @param now current time in milliseconds since the epoch, to compute the delay until a date
+             * @return milliseconds to wait, null if the value is invalid
+             */
+            @JvmStatic
+            fun parseRetryAfter(
+                value: String,
+                now: Long
+            ): Long? {
+                val trimmed = value.trim()
+                val seconds = trimmed.toLongOrNull()
+                return when {
+                    seconds != null -> TimeUnit.SECONDS.toMillis(maxOf(seconds, 0))
+                    trimmed.isEmpty() -> null
+                    else -> parseDate(trimmed)?.let { maxOf(it - now, 0) }
+                }
+            }
+
+            private fun parseDate(value: String): Long? =
+                try {
+                    DateUtil.parseDate(value).time
+                } catch (e: DateParseException) {
+                    null
+                }
+        }
+    }
@@ -111,7 +111,7 @@ class WebdavEntry constructor(ms: MultiStatusResponse, splitElement: String) {
             path =
                 uri!!.split(splitElement.toRegex(), limit = 2).toTypedArray()[1].replace("//", "/")
             var status = ms.status[0].statusCode
-            if (status == CODE_PROP_NOT_FOUND) {
+            if (status == CODE_PROP_NOT_FOUND && ms.status.size > 1) {
                 status = ms.status[1].statusCode
             }
             val propSet = ms.getProperties(status)
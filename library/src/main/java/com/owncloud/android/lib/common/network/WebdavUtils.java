@@ -79,49 +79,7 @@ public class WebdavUtils {
      * @return
      */
     public static DavPropertyNameSet getAllPropSet() {
-        Namespace ocNamespace = Namespace.getNamespace(WebdavEntry.NAMESPACE_OC);
-        Namespace ncNamespace = Namespace.getNamespace(WebdavEntry.NAMESPACE_NC);
-        DavPropertyNameSet propSet = new DavPropertyNameSet();
-        propSet.add(DavPropertyName.DISPLAYNAME);
-        propSet.add(DavPropertyName.GETCONTENTTYPE);
-        propSet.add(DavPropertyName.RESOURCETYPE);
-        propSet.add(DavPropertyName.GETCONTENTLENGTH);
-        propSet.add(DavPropertyName.GETLASTMODIFIED);
-        propSet.add(DavPropertyName.CREATIONDATE);
-        propSet.add(DavPropertyName.GETETAG);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_NAME_PERMISSIONS, ocNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_NAME_LOCAL_ID, ocNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_NAME_REMOTE_ID, ocNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_NAME_SIZE, ocNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_FAVORITE, ocNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_IS_ENCRYPTED, ncNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_MOUNT_TYPE, ncNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_OWNER_ID, ocNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_OWNER_DISPLAY_NAME, ocNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_UNREAD_COMMENTS, ocNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_HAS_PREVIEW, ncNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_NOTE, ncNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_SHAREES, ncNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_RICH_WORKSPACE, ncNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_CREATION_TIME, ncNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_UPLOAD_TIME, ncNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_LOCK, ncNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_LOCK_OWNER_TYPE, ncNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_LOCK_OWNER, ncNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_LOCK_OWNER_DISPLAY_NAME, ncNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_LOCK_OWNER_EDITOR, ncNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_LOCK_TIME, ncNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_LOCK_TIMEOUT, ncNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_LOCK_TOKEN, ncNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_SYSTEM_TAGS, ncNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_METADATA_SIZE, ncNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_METADATA_GPS, ncNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_METADATA_PHOTOS_SIZE, ncNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_METADATA_PHOTOS_GPS, ncNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_METADATA_LIVE_PHOTO, ncNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_HIDDEN, ncNamespace);
-
-        return propSet;
+        return PropertyProfile.FULL.newPropertySet();
     }
 
     /**
@@ -129,44 +87,7 @@ public class WebdavUtils {
      * @return
      */
     public static DavPropertyNameSet getFilePropSet() {
-        Namespace ocNamespace = Namespace.getNamespace(WebdavEntry.NAMESPACE_OC);
-        Namespace ncNamespace = Namespace.getNamespace(WebdavEntry.NAMESPACE_NC);
-        
-        DavPropertyNameSet propSet = new DavPropertyNameSet();
-        propSet.add(DavPropertyName.DISPLAYNAME);
-        propSet.add(DavPropertyName.GETCONTENTTYPE);
-        propSet.add(DavPropertyName.RESOURCETYPE);
-        propSet.add(DavPropertyName.GETCONTENTLENGTH);
-        propSet.add(DavPropertyName.GETLASTMODIFIED);
-        propSet.add(DavPropertyName.CREATIONDATE);
-        propSet.add(DavPropertyName.GETETAG);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_NAME_PERMISSIONS, ocNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_NAME_LOCAL_ID, ocNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_NAME_REMOTE_ID, ocNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_NAME_SIZE, ocNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_FAVORITE, ocNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_HAS_PREVIEW, ncNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_SHAREES, ncNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_CREATION_TIME, ncNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_UPLOAD_TIME, ncNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_LOCK, ncNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_LOCK_OWNER_TYPE, ncNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_LOCK_OWNER, ncNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_LOCK_OWNER_DISPLAY_NAME, ncNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_LOCK_OWNER_EDITOR, ncNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_LOCK_TIME, ncNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_LOCK_TIMEOUT, ncNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_LOCK_TOKEN, ncNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_IS_ENCRYPTED, ncNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_SYSTEM_TAGS, ncNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_METADATA_SIZE, ncNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_METADATA_GPS, ncNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_METADATA_PHOTOS_SIZE, ncNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_METADATA_PHOTOS_GPS, ncNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_METADATA_LIVE_PHOTO, ncNamespace);
-        propSet.add(WebdavEntry.EXTENDED_PROPERTY_HIDDEN, ncNamespace);
-
-        return propSet;
+        return PropertyProfile.FILE.newPropertySet();
     }
 
     /**
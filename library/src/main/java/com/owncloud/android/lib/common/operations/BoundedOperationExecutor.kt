@@ -0,0 +1,154 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.common.operations
+
+import java.util.concurrent.Future
+import java.util.concurrent.FutureTask
+import java.util.concurrent.PriorityBlockingQueue
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * [OperationExecutor] backed by a fixed number of worker threads and a priority queue.
+ *
+ * Workers are created on demand and terminate after [keepAliveSeconds] without work, so an idle executor holds
+ * no threads. The queue is unbounded: bursts queue up instead of spawning threads or being rejected.
+ */
+class BoundedOperationExecutor
+    @JvmOverloads
+    constructor(
+        maxThreads: Int = DEFAULT_MAX_THREADS,
+        keepAliveSeconds: Long = DEFAULT_KEEP_ALIVE_SECONDS,
+        private val nanoTime: () -> Long = System::nanoTime
+    ) : OperationExecutor {
+        private val sequence = AtomicLong()
+        private val submitted = AtomicLong()
+        private val started = AtomicLong()
+        private val completed = AtomicLong()
+        private val active = AtomicInteger()
+        private val maxQueueDepth = AtomicInteger()
+        private val waitTimeTotal = AtomicLong()
+        private val waitTimeMax = AtomicLong()
+        private val runTimeTotal = AtomicLong()
+        private val runTimeMax = AtomicLong()
+
+        private val queue = PriorityBlockingQueue<Runnable>()
+        private val pool =
+            ThreadPoolExecutor(
+                maxThreads,
+                maxThreads,
+                keepAliveSeconds,
+                TimeUnit.SECONDS,
+                queue,
+                WorkerFactory()
+            ).apply { allowCoreThreadTimeOut(true) }
+
+        override fun submit(
+            task: Runnable,
+            priority: Int
+        ): Future<*> {
+            val prioritized = PrioritizedTask(task, priority, sequence.getAndIncrement(), nanoTime())
+            submitted.incrementAndGet()
+            pool.execute(prioritized)
+            maxOf(maxQueueDepth, queue.size)
+            return prioritized
+        }
+
+        override fun getMetrics(): OperationExecutor.Metrics =
+            OperationExecutor.Metrics(
+                queueDepth = queue.size,
+                maxQueueDepth = maxQueueDepth.get(),
+                active = active.get(),
+                submitted = submitted.get(),
+                started = started.get(),
+                completed = completed.get(),
+                waitTimeTotal = waitTimeTotal.get(),
+                waitTimeMax = waitTimeMax.get(),
+                runTimeTotal = runTimeTotal.get(),
+                runTimeMax = runTimeMax.get()
+            )
+
+        /**
+         * Stops accepting tasks; queued tasks are still run.
+         */
+        fun shutdown() {
+            pool.shutdown()
+        }
+
+        fun awaitTermination(
+            timeout: Long,
+            unit: TimeUnit
+        ): Boolean = pool.awaitTermination(timeout, unit)
+
+        private fun maxOf(
+            max: AtomicInteger,
+            value: Int
+        ) {
+            var current = max.get()
+            while (value > current && !max.compareAndSet(current, value)) {
+                current = max.get()
+            }
+        }
+
+        private fun maxOf(
+            max: AtomicLong,
+            value: Long
+        ) {
+            var current = max.get()
+            while (value > current && !max.compareAndSet(current, value)) {
+                current = max.get()
+            }
+        }
+
+        private inner class PrioritizedTask(
+            task: Runnable,
+            private val priority: Int,
+            private val sequence: Long,
+            private val enqueuedAt: Long
+        ) : FutureTask<Unit>(task, Unit), Comparable<PrioritizedTask> {
+            override fun run() {
+                val startedAt = nanoTime()
+                val waitTime = startedAt - enqueuedAt
+                started.incrementAndGet()
+                waitTimeTotal.addAndGet(waitTime)
+                maxOf(waitTimeMax, waitTime)
+                active.incrementAndGet()
+                try {
+                    super.run()
+                } finally {
+                    active.decrementAndGet()
+                    val runTime = nanoTime() - startedAt
+                    runTimeTotal.addAndGet(runTime)
+                    maxOf(runTimeMax, runTime)
+                    completed.incrementAndGet()
+                }
+            }
+
+            override fun compareTo(other: PrioritizedTask): Int =
+                if (priority != other.priority) {
+                    other.priority.compareTo(priority)
+                } else {
+                    sequence.compareTo(other.sequence)
+                }
+        }
+
+        private class WorkerFactory : ThreadFactory {
+            private val count = AtomicInteger()
+
+            override fun newThread(runnable: Runnable): Thread =
+                Thread(runnable, THREAD_NAME_PREFIX + count.incrementAndGet()).apply { isDaemon = true }
+        }
+
+        companion object {
+            const val DEFAULT_MAX_THREADS = 4
+            const val DEFAULT_KEEP_ALIVE_SECONDS = 30L
+            private const val THREAD_NAME_PREFIX = "RemoteOperation-"
+        }
+    }
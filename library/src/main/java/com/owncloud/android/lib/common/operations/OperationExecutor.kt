@@ -0,0 +1,62 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.common.operations
+
+import java.util.concurrent.Future
+
+/**
+ * Runs asynchronously executed [RemoteOperation]s, see [RemoteOperation.setDefaultExecutor].
+ */
+interface OperationExecutor {
+    /**
+     * Schedules [task]; among waiting tasks, higher [priority] runs first, equal priorities in submission order.
+     *
+     * @return future to wait for or cancel the task with
+     */
+    fun submit(
+        task: Runnable,
+        priority: Int
+    ): Future<*>
+
+    /**
+     * @return snapshot of the executor's counters
+     */
+    fun getMetrics(): Metrics
+
+    /**
+     * Counters of an [OperationExecutor]; times are in nanoseconds.
+     *
+     * @param queueDepth tasks submitted but not yet started
+     * @param active tasks currently running
+     * @param waitTimeTotal time tasks spent in the queue, summed over all [started] tasks
+     * @param runTimeTotal time tasks spent running, summed over all [completed] tasks
+     */
+    data class Metrics(
+        val queueDepth: Int,
+        val maxQueueDepth: Int,
+        val active: Int,
+        val submitted: Long,
+        val started: Long,
+        val completed: Long,
+        val waitTimeTotal: Long,
+        val waitTimeMax: Long,
+        val runTimeTotal: Long,
+        val runTimeMax: Long
+    ) {
+        val waitTimeAverage: Long
+            get() = if (started == 0L) 0 else waitTimeTotal / started
+
+        val runTimeAverage: Long
+            get() = if (completed == 0L) 0 else runTimeTotal / completed
+    }
+
+    companion object {
+        const val PRIORITY_LOW = -10
+        const val PRIORITY_NORMAL = 0
+        const val PRIORITY_HIGH = 10
+    }
+}
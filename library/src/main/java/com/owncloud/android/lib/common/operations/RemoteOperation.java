@@ -15,12 +15,16 @@ import android.accounts.AccountManager;
 import android.accounts.AccountsException;
 import android.app.Activity;
 import android.content.Context;
+import android.os.Build;
 import android.os.Handler;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
 
 import com.google.gson.Gson;
+import com.nextcloud.common.AsyncExecution;
 import com.nextcloud.common.NextcloudClient;
+import com.nextcloud.common.SuspendingRemoteOperation;
 import com.nextcloud.common.User;
 import com.owncloud.android.lib.common.OwnCloudAccount;
 import com.owncloud.android.lib.common.OwnCloudClient;
@@ -28,10 +32,14 @@ import com.owncloud.android.lib.common.OwnCloudClientFactory;
 import com.owncloud.android.lib.common.OwnCloudClientManagerFactory;
 import com.owncloud.android.lib.common.OwnCloudCredentials;
 import com.owncloud.android.lib.common.accounts.AccountUtils;
+import com.owncloud.android.lib.common.network.RetryBudget;
 import com.owncloud.android.lib.common.operations.RemoteOperationResult.ResultCode;
 import com.owncloud.android.lib.common.utils.Log_OC;
 
 import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
 
 /**
  * Operation which execution involves one or several interactions with an ownCloud server.
@@ -56,6 +64,9 @@ public abstract class RemoteOperation<T> implements Runnable {
      */
     public static final String OCS_API_HEADER_VALUE = "true";
 
+    /** Transfers run at the same time by the default {@link #getTransferExecutor()} */
+    public static final int DEFAULT_MAX_TRANSFERS = 2;
+
     public static final String CONTENT_TYPE = "Content-Type";
     public static final String FORM_URLENCODED = "application/x-www-form-urlencoded";
     public static final String JSON_ENCODED = "application/json";
@@ -82,6 +93,18 @@ public abstract class RemoteOperation<T> implements Runnable {
 	/** Activity */
     private Activity mCallerActivity;
 
+    /** Priority of the asynchronous execution, see {@link OperationExecutor#submit(Runnable, int)} */
+    private int mPriority = OperationExecutor.PRIORITY_NORMAL;
+
+    /** Executor running asynchronously executed operations, except transfers */
+    private static volatile OperationExecutor sDefaultExecutor = null;
+
+    /** Executor running asynchronously executed transfers, see {@link #isTransfer()} */
+    private static volatile OperationExecutor sTransferExecutor = null;
+
+    /** Retries all requests of a single execution may take together, see {@link RetryBudget} */
+    private int maxRetries = RetryBudget.DEFAULT_MAX_RETRIES;
+
 
     /**
      * Abstract method to implement the operation in derived classes.
@@ -129,7 +152,7 @@ public abstract class RemoteOperation<T> implements Runnable {
             Log_OC.e(TAG, "Error while trying to access to " + mAccount.name, e);
             return new RemoteOperationResult<T>(e);
         }
-        return run(mClient);
+        return runWithRetryBudget(() -> run(mClient));
     }
 
     /**
@@ -164,7 +187,7 @@ public abstract class RemoteOperation<T> implements Runnable {
             Log_OC.e(TAG, "Error while trying to access to " + mAccount.name, e);
             return new RemoteOperationResult<T>(e);
         }
-        return run(clientNew);
+        return runWithRetryBudget(() -> run(clientNew));
     }
 
     /**
@@ -190,7 +213,7 @@ public abstract class RemoteOperation<T> implements Runnable {
         }
         mClient = client;
 
-        return run(client);
+        return runWithRetryBudget(() -> run(client));
     }
 
     /**
@@ -205,7 +228,25 @@ public abstract class RemoteOperation<T> implements Runnable {
     public RemoteOperationResult<T> execute(@NonNull NextcloudClient client) {
         clientNew = client;
 
-        return run(client);
+        return runWithRetryBudget(() -> run(client));
+    }
+
+    /**
+     * Asynchronously executes the remote operation without blocking a thread for the network round trip.
+     * <p>
+     * Operations implementing {@link SuspendingRemoteOperation} enqueue their calls on the OkHttp dispatcher; all
+     * others run {@link #run(NextcloudClient)} on a background thread. Cancelling the returned future cancels the
+     * underlying HTTP call.
+     *
+     * @param client Client object to reach an ownCloud server during the execution of the operation.
+     * @return Future completing with the result of the operation; it never completes exceptionally, except when
+     * cancelled.
+     */
+    @RequiresApi(api = Build.VERSION_CODES.N)
+    public CompletableFuture<RemoteOperationResult<T>> executeAsync(@NonNull NextcloudClient client) {
+        clientNew = client;
+
+        return AsyncExecution.future(this, client);
     }
 
     /**
@@ -215,7 +256,7 @@ public abstract class RemoteOperation<T> implements Runnable {
      * {@link #execute(OwnCloudClient)}.
      * 
      * @deprecated 	This method will be removed in version 1.0.
-     *  			Use {@link #execute(Account, Context, OnRemoteOperationListener,
+     *  			Use {@link #submit(Account, Context, OnRemoteOperationListener,
      *  			Handler)} instead.
      * 
      * @param account           ownCloud account in remote ownCloud server to reach during
@@ -229,23 +270,8 @@ public abstract class RemoteOperation<T> implements Runnable {
 	@Deprecated
     public Thread execute(Account account, Context context, OnRemoteOperationListener listener,
                           Handler listenerHandler, Activity callerActivity) {
-        if (account == null) {
-            throw new IllegalArgumentException("Trying to execute a remote operation with a NULL Account");
-        }
-        if (context == null) {
-            throw new IllegalArgumentException("Trying to execute a remote operation with a NULL Context");
-        }
-        mAccount = account;
-        mContext = context.getApplicationContext();
-        mCallerActivity = callerActivity;
-        mClient = null;     // client instance will be created from mAccount and mContext in the runnerThread below
-        mListener = listener;
-        
-        mListenerHandler = listenerHandler;
-        
-        Thread runnerThread = new Thread(this);
-        runnerThread.start();
-        return runnerThread;
+        prepareAsync(account, context, callerActivity, listener, listenerHandler);
+        return startThread();
     }
 
     /**
@@ -259,10 +285,10 @@ public abstract class RemoteOperation<T> implements Runnable {
     }
     
     /**
-     * Asynchronously executes the remote operation
-     * 
-     * This method should be used whenever an ownCloud account is available, 
-     * instead of {@link #execute(OwnCloudClient, OnRemoteOperationListener, Handler))}.
+     * Asynchronously executes the remote operation on a thread of its own.
+     *
+     * @deprecated Starts one thread per operation; use {@link #submit(Account, Context, OnRemoteOperationListener,
+     *             Handler)} to run it on a shared executor instead.
      * 
      * @param account           ownCloud account in remote ownCloud server to reach during the 
      * 							execution of the operation.
@@ -272,42 +298,64 @@ public abstract class RemoteOperation<T> implements Runnable {
      * 							objects must be called.
      * @return                  Thread were the remote operation is executed.
      */
+    @Deprecated
     public Thread execute(Account account, Context context,
                           OnRemoteOperationListener listener, Handler listenerHandler) {
-
-        if (account == null) {
-            throw new IllegalArgumentException("Trying to execute a remote operation with a NULL Account");
-        }
-        if (context == null) {
-            throw new IllegalArgumentException("Trying to execute a remote operation with a NULL Context");
-        }
-        mAccount = account;
-        mContext = context.getApplicationContext();
-        mCallerActivity = null;
-        mClient = null;     // the client instance will be created from
-                            // mAccount and mContext in the runnerThread to create below
-        
-        mListener = listener;
-        
-        mListenerHandler = listenerHandler;
-        
-        Thread runnerThread = new Thread(this);
-        runnerThread.start();
-        return runnerThread;
+        prepareAsync(account, context, null, listener, listenerHandler);
+        return startThread();
     }
 
     /**
      * This is a transitional wrapper around
      * {@link #execute(Account, Context, OnRemoteOperationListener, Handler)}
      * using modern {@link User} interface instead of platform {@link Account}
+     *
+     * @deprecated Use {@link #submit(User, Context, OnRemoteOperationListener, Handler)} instead.
      */
+    @Deprecated
     public Thread execute(User user, Context context,
                           OnRemoteOperationListener listener, Handler listenerHandler) {
         return execute(user.toPlatformAccount(), context, listener, listenerHandler);
     }
-    
+
+    /**
+     * Asynchronously executes the remote operation
+     * 
+     * This method should be used whenever an ownCloud account is available, 
+     * instead of {@link #submit(OwnCloudClient, OnRemoteOperationListener, Handler)}.
+     * <p>
+     * The operation is queued on {@link #getTransferExecutor()} if it is a transfer, see {@link #isTransfer()}, on
+     * {@link #getDefaultExecutor()} otherwise.
+     * 
+     * @param account           ownCloud account in remote ownCloud server to reach during the 
+     * 							execution of the operation.
+     * @param context           Android context for the component calling the method.
+     * @param listener          Listener to be notified about the execution of the operation.
+     * @param listenerHandler   Handler associated to the thread where the methods of the listener 
+     * 							objects must be called.
+     * @return                  Future of the execution, can be used to cancel it while still queued.
+     */
+    public Future<?> submit(Account account, Context context,
+                            OnRemoteOperationListener listener, Handler listenerHandler) {
+        prepareAsync(account, context, null, listener, listenerHandler);
+        return getExecutor().submit(this, mPriority);
+    }
+
+    /**
+     * This is a transitional wrapper around
+     * {@link #submit(Account, Context, OnRemoteOperationListener, Handler)}
+     * using modern {@link User} interface instead of platform {@link Account}
+     */
+    public Future<?> submit(User user, Context context,
+                            OnRemoteOperationListener listener, Handler listenerHandler) {
+        return submit(user.toPlatformAccount(), context, listener, listenerHandler);
+    }
+
 	/**
-	 * Asynchronously executes the remote operation
+	 * Asynchronously executes the remote operation on a thread of its own.
+	 *
+	 * @deprecated Starts one thread per operation; use {@link #submit(OwnCloudClient, OnRemoteOperationListener,
+	 *             Handler)} to run it on a shared executor instead.
 	 * 
 	 * @param client			Client object to reach an ownCloud server
      *                          during the execution of the operation.
@@ -316,7 +364,50 @@ public abstract class RemoteOperation<T> implements Runnable {
      *                          the listener objects must be called.
 	 * @return					Thread were the remote operation is executed.
 	 */
+    @Deprecated
     public Thread execute(OwnCloudClient client, OnRemoteOperationListener listener, Handler listenerHandler) {
+        prepareAsync(client, listener, listenerHandler);
+        return startThread();
+    }
+
+	/**
+	 * Asynchronously executes the remote operation
+	 * <p>
+	 * The operation is queued on {@link #getTransferExecutor()} if it is a transfer, see {@link #isTransfer()}, on
+	 * {@link #getDefaultExecutor()} otherwise.
+	 * 
+	 * @param client			Client object to reach an ownCloud server
+     *                          during the execution of the operation.
+	 * @param listener			Listener to be notified about the execution of the operation.
+	 * @param listenerHandler	Handler associated to the thread where the methods of
+     *                          the listener objects must be called.
+	 * @return					Future of the execution, can be used to cancel it while still queued.
+	 */
+    public Future<?> submit(OwnCloudClient client, OnRemoteOperationListener listener, Handler listenerHandler) {
+        prepareAsync(client, listener, listenerHandler);
+        return getExecutor().submit(this, mPriority);
+    }
+
+    private void prepareAsync(Account account, Context context, Activity callerActivity,
+                              OnRemoteOperationListener listener, Handler listenerHandler) {
+        if (account == null) {
+            throw new IllegalArgumentException("Trying to execute a remote operation with a NULL Account");
+        }
+        if (context == null) {
+            throw new IllegalArgumentException("Trying to execute a remote operation with a NULL Context");
+        }
+        mAccount = account;
+        mContext = context.getApplicationContext();
+        mCallerActivity = callerActivity;
+        mClient = null;     // the client instance will be created from
+                            // mAccount and mContext when the operation runs
+        
+        mListener = listener;
+        
+        mListenerHandler = listenerHandler;
+    }
+
+    private void prepareAsync(OwnCloudClient client, OnRemoteOperationListener listener, Handler listenerHandler) {
 		if (client == null) {
             throw new IllegalArgumentException("Trying to execute a remote operation with a NULL OwnCloudClient");
 		}
@@ -333,15 +424,17 @@ public abstract class RemoteOperation<T> implements Runnable {
                                                        "without a handler to the listener's thread");
 		}
 		mListenerHandler = listenerHandler;
-		
-		Thread runnerThread = new Thread(this);
-		runnerThread.start();
-		return runnerThread;
-	}
+    }
+
+    private Thread startThread() {
+        Thread runnerThread = new Thread(this);
+        runnerThread.start();
+        return runnerThread;
+    }
 	
 	/**
 	 * Asynchronous execution of the operation 
-	 * started by {@link RemoteOperation#execute(OwnCloudClient,
+	 * started by {@link RemoteOperation#submit(OwnCloudClient,
      *              OnRemoteOperationListener, Handler)},
 	 * and result posting.
 	 * 
@@ -384,7 +477,7 @@ public abstract class RemoteOperation<T> implements Runnable {
             }
     	
             if (result == null)
-                result = run(mClient);
+                result = runWithRetryBudget(() -> run(mClient));
         
             repeat = false;
         	/** DEPRECATED BLOCK - will be removed at version 1.0 ; don't trust in this code 
@@ -434,6 +527,103 @@ public abstract class RemoteOperation<T> implements Runnable {
     }
 
 
+    /**
+     * Sets the priority used when the operation is executed asynchronously; among queued operations, higher
+     * priorities are started first.
+     *
+     * @param priority  e.g. {@link OperationExecutor#PRIORITY_HIGH}
+     */
+    public void setPriority(int priority) {
+        mPriority = priority;
+    }
+
+    public int getPriority() {
+        return mPriority;
+    }
+
+    /**
+     * Replaces the executor used by the asynchronous {@code submit(...)} overloads for all operations but transfers.
+     *
+     * @param executor  Executor to use, null to restore the default {@link BoundedOperationExecutor}.
+     */
+    public static void setDefaultExecutor(OperationExecutor executor) {
+        sDefaultExecutor = executor;
+    }
+
+    /**
+     * Returns the executor used by the asynchronous {@code submit(...)} overloads for all operations but transfers,
+     * e.g. to read its metrics.
+     */
+    public static OperationExecutor getDefaultExecutor() {
+        OperationExecutor executor = sDefaultExecutor;
+        if (executor == null) {
+            synchronized (RemoteOperation.class) {
+                executor = sDefaultExecutor;
+                if (executor == null) {
+                    executor = new BoundedOperationExecutor();
+                    sDefaultExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Replaces the executor used by the asynchronous {@code submit(...)} overloads for transfers.
+     *
+     * @param executor  Executor to use, null to restore the default {@link BoundedOperationExecutor} with
+     *                  {@link #DEFAULT_MAX_TRANSFERS} workers.
+     */
+    public static void setTransferExecutor(OperationExecutor executor) {
+        sTransferExecutor = executor;
+    }
+
+    /**
+     * Returns the executor used by the asynchronous {@code submit(...)} overloads for transfers, e.g. to read its
+     * metrics. Transfers have an executor of their own, so that long uploads and downloads cannot take all workers
+     * needed by short metadata requests.
+     */
+    public static OperationExecutor getTransferExecutor() {
+        OperationExecutor executor = sTransferExecutor;
+        if (executor == null) {
+            synchronized (RemoteOperation.class) {
+                executor = sTransferExecutor;
+                if (executor == null) {
+                    executor = new BoundedOperationExecutor(DEFAULT_MAX_TRANSFERS);
+                    sTransferExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Returns whether the operation transfers file contents, so that it is run on {@link #getTransferExecutor()}
+     * when executed asynchronously.
+     */
+    protected boolean isTransfer() {
+        return false;
+    }
+
+    private OperationExecutor getExecutor() {
+        return isTransfer() ? getTransferExecutor() : getDefaultExecutor();
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Sets how many retries all requests of a single execution may take together; 0 disables retries.
+     */
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    private RemoteOperationResult<T> runWithRetryBudget(Callable<RemoteOperationResult<T>> task) {
+        return RetryBudget.runWith(new RetryBudget(maxRetries), task);
+    }
+
     /**
      * Returns the current client instance to access the remote server.
      * 
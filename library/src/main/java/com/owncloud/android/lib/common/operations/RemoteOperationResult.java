@@ -24,6 +24,7 @@ import android.system.OsConstants;
 import com.nextcloud.common.OkHttpMethodBase;
 import com.owncloud.android.lib.common.accounts.AccountUtils.AccountNotFoundException;
 import com.owncloud.android.lib.common.network.CertificateCombinedException;
+import com.owncloud.android.lib.common.network.CircuitBreakerOpenException;
 import com.owncloud.android.lib.common.utils.Log_OC;
 import com.owncloud.android.lib.resources.files.CreateLocalFileException;
 
@@ -130,7 +131,8 @@ public class RemoteOperationResult<T extends Object> implements Serializable {
         VIRUS_DETECTED,
         FOLDER_ALREADY_EXISTS,
         CANNOT_CREATE_FILE,
-        LOCKED
+        LOCKED,
+        CIRCUIT_BREAKER_OPEN
     }
 
     private boolean mSuccess = false;
@@ -142,6 +144,7 @@ public class RemoteOperationResult<T extends Object> implements Serializable {
     private String mRedirectedLocation;
     private ArrayList<String> mAuthenticateHeaders = new ArrayList<>();
     private String mLastPermanentLocation = null;
+    private String checksum;
 
     private ArrayList<Object> mData;
     private T resultData;
@@ -260,6 +263,8 @@ public class RemoteOperationResult<T extends Object> implements Serializable {
 
         if (e instanceof OperationCancelledException) {
             mCode = ResultCode.CANCELLED;
+        } else if (e instanceof CircuitBreakerOpenException) {
+            mCode = ResultCode.CIRCUIT_BREAKER_OPEN;
         } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP && e instanceof ErrnoException && ((ErrnoException) e).errno == OsConstants.ENOTCONN) {
             mCode = ResultCode.NO_NETWORK_CONNECTION;
         } else if (e instanceof ConnectException) {
@@ -582,6 +587,9 @@ public class RemoteOperationResult<T extends Object> implements Serializable {
             if (mException instanceof OperationCancelledException) {
                 return "Operation cancelled by the caller";
 
+            } else if (mException instanceof CircuitBreakerOpenException) {
+                return "Server is failing, request not sent";
+
             } else if (mException instanceof SocketException) {
                 return "Socket exception";
 
@@ -717,6 +725,19 @@ public class RemoteOperationResult<T extends Object> implements Serializable {
         this.message = message;
     }
 
+    public void setChecksum(String checksum) {
+        this.checksum = checksum;
+    }
+
+    /**
+     * Checksum of uploaded content, computed while uploading, e.g. for local bookkeeping
+     *
+     * @return checksum formatted as in the OC-Checksum header, e.g. "ADLER32:1a2b3c4d", or null if none was computed
+     */
+    public String getChecksum() {
+        return checksum;
+    }
+
     /**
      * Message that is returned by server, e.g. password policy violation on ocs share api
      *
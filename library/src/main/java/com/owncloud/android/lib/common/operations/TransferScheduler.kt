@@ -0,0 +1,436 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.common.operations
+
+import com.owncloud.android.lib.common.OwnCloudClient
+import java.util.EnumMap
+import java.util.EnumSet
+import java.util.concurrent.Callable
+import java.util.concurrent.Future
+import java.util.concurrent.FutureTask
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Runs uploads and downloads of any number of accounts, so that no single transfer queue can take all connections.
+ *
+ * Transfers are queued per [Priority] and account. Whenever a transfer completes, the next one is picked by
+ * self-clocked weighted fair queuing: every queue gets a share of the transfers started in proportion to its weight,
+ * the weight of its priority times the weight of its account, see [setAccountWeight]. A transfer is only started
+ * while fewer than [maxConcurrent] transfers run, fewer than [maxPerHost] run against its host and fewer than
+ * [maxPerAccount] run for its account; queues of a priority or an account can be paused.
+ *
+ * Cancelling a queued transfer removes it from its queue; cancelling a running one interrupts its thread, which
+ * operations blocked in network I/O may not notice, so cancel those operations as well.
+ */
+@Suppress("TooManyFunctions")
+class TransferScheduler
+    @JvmOverloads
+    constructor(
+        private val maxConcurrent: Int = DEFAULT_MAX_CONCURRENT,
+        private val maxPerHost: Int = DEFAULT_MAX_PER_HOST,
+        private val maxPerAccount: Int = DEFAULT_MAX_PER_ACCOUNT,
+        private val nanoTime: () -> Long = System::nanoTime
+    ) {
+        /**
+         * Priority classes; the weight is the share of transfers started compared to the other classes.
+         */
+        enum class Priority(
+            val weight: Int
+        ) {
+            /** Transfers a user waits for, e.g. opening a file */
+            INTERACTIVE(weight = 16),
+
+            /** Transfers started by the app on its own, e.g. synchronizing a folder */
+            BACKGROUND(weight = 4),
+
+            /** Large batches, e.g. uploading the photo backup */
+            BULK(weight = 1)
+        }
+
+        /**
+         * @param accountName account the transfer is run for; accounts share [maxPerAccount] and are queued apart
+         * @param host server the transfer connects to, limited by [maxPerHost]
+         * @param cost amount of work of the transfer, e.g. bytes to transfer; weighted fair queuing shares the sum
+         * of costs, so use the same unit for all transfers of a scheduler or keep the default to share the number
+         * of transfers
+         */
+        data class TransferRequest
+            @JvmOverloads
+            constructor(
+                val accountName: String,
+                val host: String,
+                val priority: Priority,
+                val cost: Long = DEFAULT_COST
+            ) {
+                init {
+                    require(cost > 0) { "Cost must be greater than zero" }
+                }
+            }
+
+        /**
+         * Counters of one priority class; times are in nanoseconds.
+         *
+         * @param queued transfers waiting, including those of paused queues
+         * @param active transfers currently running
+         * @param waitTimeTotal time transfers spent queued, summed over all [started] transfers
+         */
+        data class QueueMetrics(
+            val queued: Int,
+            val active: Int,
+            val submitted: Long,
+            val started: Long,
+            val completed: Long,
+            val cancelled: Long,
+            val waitTimeTotal: Long,
+            val waitTimeMax: Long
+        ) {
+            val waitTimeAverage: Long
+                get() = if (started == 0L) 0 else waitTimeTotal / started
+        }
+
+        /**
+         * Snapshot of the scheduler's queues.
+         */
+        data class Metrics(
+            val queues: Map<Priority, QueueMetrics>,
+            val activeByHost: Map<String, Int>,
+            val activeByAccount: Map<String, Int>,
+            val pausedPriorities: Set<Priority>,
+            val pausedAccounts: Set<String>
+        ) {
+            val queued: Int
+                get() = queues.values.sumOf { it.queued }
+
+            val active: Int
+                get() = queues.values.sumOf { it.active }
+        }
+
+        private data class FlowKey(
+            val priority: Priority,
+            val accountName: String
+        )
+
+        private class Flow {
+            val queue = ArrayDeque<ScheduledTransfer<*>>()
+            var lastFinishTag = 0.0
+        }
+
+        private class Counters {
+            var active = 0
+            var submitted = 0L
+            var started = 0L
+            var completed = 0L
+            var cancelled = 0L
+            var waitTimeTotal = 0L
+            var waitTimeMax = 0L
+        }
+
+        private val lock = Any()
+
+        // guarded by lock
+        private val flows = HashMap<FlowKey, Flow>()
+        private val accountWeights = HashMap<String, Int>()
+        private val activeByHost = HashMap<String, Int>()
+        private val activeByAccount = HashMap<String, Int>()
+        private val pausedPriorities = EnumSet.noneOf(Priority::class.java)
+        private val pausedAccounts = HashSet<String>()
+        private val counters = EnumMap<Priority, Counters>(Priority::class.java)
+        private var virtualTime = 0.0
+        private var sequence = 0L
+        private var shutdown = false
+
+        init {
+            require(maxConcurrent > 0) { "Concurrency must be greater than zero" }
+            require(maxPerHost > 0) { "Concurrency per host must be greater than zero" }
+            require(maxPerAccount > 0) { "Concurrency per account must be greater than zero" }
+            Priority.values().forEach { counters[it] = Counters() }
+        }
+
+        private val pool =
+            ThreadPoolExecutor(
+                maxConcurrent,
+                maxConcurrent,
+                KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS,
+                LinkedBlockingQueue(),
+                WorkerFactory()
+            ).apply { allowCoreThreadTimeOut(true) }
+
+        /**
+         * Queues [task] and starts it as soon as its turn comes.
+         *
+         * @return future to wait for or cancel the transfer with
+         * @throws RejectedExecutionException if the scheduler was shut down
+         */
+        fun <T> submit(
+            request: TransferRequest,
+            task: Callable<T>
+        ): Future<T> {
+            val transfer = ScheduledTransfer(request, task)
+            synchronized(lock) {
+                if (shutdown) {
+                    throw RejectedExecutionException("Transfer scheduler was shut down")
+                }
+                val flow = flows.getOrPut(FlowKey(request.priority, request.accountName)) { Flow() }
+                val weight = request.priority.weight * (accountWeights[request.accountName] ?: 1)
+                val startTag = maxOf(virtualTime, flow.lastFinishTag)
+                transfer.finishTag = startTag + request.cost.toDouble() / weight
+                transfer.sequence = sequence++
+                transfer.enqueuedAt = nanoTime()
+                flow.lastFinishTag = transfer.finishTag
+                flow.queue.addLast(transfer)
+                countersOf(request.priority).submitted++
+                dispatch()
+            }
+            return transfer
+        }
+
+        /**
+         * Queues [operation], executed with [client] as soon as its turn comes.
+         */
+        fun <T> submit(
+            request: TransferRequest,
+            operation: RemoteOperation<T>,
+            client: OwnCloudClient
+        ): Future<RemoteOperationResult<T>> = submit(request, Callable { operation.execute(client) })
+
+        /**
+         * Sets the weight of the account's queues compared to those of other accounts, 1 by default.
+         */
+        fun setAccountWeight(
+            accountName: String,
+            weight: Int
+        ) {
+            require(weight > 0) { "Weight must be greater than zero" }
+            synchronized(lock) {
+                accountWeights[accountName] = weight
+            }
+        }
+
+        /**
+         * Stops starting transfers of the priority class; running transfers continue.
+         */
+        fun pause(priority: Priority) {
+            synchronized(lock) {
+                pausedPriorities.add(priority)
+            }
+        }
+
+        fun resume(priority: Priority) {
+            synchronized(lock) {
+                pausedPriorities.remove(priority)
+                dispatch()
+            }
+        }
+
+        /**
+         * Stops starting transfers of the account; running transfers continue.
+         */
+        fun pauseAccount(accountName: String) {
+            synchronized(lock) {
+                pausedAccounts.add(accountName)
+            }
+        }
+
+        fun resumeAccount(accountName: String) {
+            synchronized(lock) {
+                pausedAccounts.remove(accountName)
+                dispatch()
+            }
+        }
+
+        fun getMetrics(): Metrics =
+            synchronized(lock) {
+                val queued = EnumMap<Priority, Int>(Priority::class.java)
+                flows.forEach { (key, flow) -> queued[key.priority] = (queued[key.priority] ?: 0) + flow.queue.size }
+                Metrics(
+                    queues =
+                        Priority.values().associateWith {
+                            val counters = countersOf(it)
+                            QueueMetrics(
+                                queued = queued[it] ?: 0,
+                                active = counters.active,
+                                submitted = counters.submitted,
+                                started = counters.started,
+                                completed = counters.completed,
+                                cancelled = counters.cancelled,
+                                waitTimeTotal = counters.waitTimeTotal,
+                                waitTimeMax = counters.waitTimeMax
+                            )
+                        },
+                    activeByHost = HashMap(activeByHost),
+                    activeByAccount = HashMap(activeByAccount),
+                    pausedPriorities = EnumSet.copyOf(pausedPriorities),
+                    pausedAccounts = HashSet(pausedAccounts)
+                )
+            }
+
+        /**
+         * Stops accepting transfers and cancels queued ones; running transfers complete.
+         */
+        fun shutdown() {
+            val queued =
+                synchronized(lock) {
+                    shutdown = true
+                    flows.values.flatMap { it.queue }
+                }
+            queued.forEach { it.cancel(false) }
+            pool.shutdown()
+        }
+
+        fun awaitTermination(
+            timeout: Long,
+            unit: TimeUnit
+        ): Boolean = pool.awaitTermination(timeout, unit)
+
+        /**
+         * Starts queued transfers, lowest finish tag first, while their limits allow.
+         */
+        private fun dispatch() {
+            while (activeTotal() < maxConcurrent) {
+                val next = nextEligible() ?: return
+                dequeue(next)
+                virtualTime = maxOf(virtualTime, next.finishTag)
+                increment(activeByHost, next.request.host)
+                increment(activeByAccount, next.request.accountName)
+                val counters = countersOf(next.request.priority)
+                val waitTime = nanoTime() - next.enqueuedAt
+                counters.active++
+                counters.started++
+                counters.waitTimeTotal += waitTime
+                counters.waitTimeMax = maxOf(counters.waitTimeMax, waitTime)
+                pool.execute(next)
+            }
+        }
+
+        private fun nextEligible(): ScheduledTransfer<*>? {
+            var next: ScheduledTransfer<*>? = null
+            for (flow in flows.values) {
+                val head = flow.queue.firstOrNull()
+                if (head != null && isEligible(head) && (next == null || head.isBefore(next))) {
+                    next = head
+                }
+            }
+            return next
+        }
+
+        private fun isEligible(transfer: ScheduledTransfer<*>): Boolean {
+            val request = transfer.request
+            val paused = request.priority in pausedPriorities || request.accountName in pausedAccounts
+            return !paused &&
+                (activeByHost[request.host] ?: 0) < maxPerHost &&
+                (activeByAccount[request.accountName] ?: 0) < maxPerAccount
+        }
+
+        private fun activeTotal(): Int = counters.values.sumOf { it.active }
+
+        private fun countersOf(priority: Priority): Counters = counters.getValue(priority)
+
+        private fun onFinished(transfer: ScheduledTransfer<*>) {
+            synchronized(lock) {
+                decrement(activeByHost, transfer.request.host)
+                decrement(activeByAccount, transfer.request.accountName)
+                val counters = countersOf(transfer.request.priority)
+                counters.active--
+                counters.completed++
+                if (!shutdown) {
+                    dispatch()
+                }
+            }
+        }
+
+        private fun onCancelled(transfer: ScheduledTransfer<*>) {
+            synchronized(lock) {
+                if (dequeue(transfer)) {
+                    countersOf(transfer.request.priority).cancelled++
+                }
+            }
+        }
+
+        /**
+         * Removes the transfer from its queue, and the queue once empty; its finish tags are behind the virtual time
+         * by then, so a new queue of the same key starts off the same.
+         */
+        private fun dequeue(transfer: ScheduledTransfer<*>): Boolean {
+            val key = FlowKey(transfer.request.priority, transfer.request.accountName)
+            val flow = flows[key] ?: return false
+            val removed = flow.queue.remove(transfer)
+            if (flow.queue.isEmpty()) {
+                flows.remove(key)
+            }
+            return removed
+        }
+
+        private fun increment(
+            map: HashMap<String, Int>,
+            key: String
+        ) {
+            map[key] = (map[key] ?: 0) + 1
+        }
+
+        private fun decrement(
+            map: HashMap<String, Int>,
+            key: String
+        ) {
+            val count = (map[key] ?: 0) - 1
+            if (count > 0) {
+                map[key] = count
+            } else {
+                map.remove(key)
+            }
+        }
+
+        private inner class ScheduledTransfer<T>(
+            val request: TransferRequest,
+            task: Callable<T>
+        ) : FutureTask<T>(task) {
+            // set once when queued, guarded by lock
+            var finishTag = 0.0
+            var sequence = 0L
+            var enqueuedAt = 0L
+
+            fun isBefore(other: ScheduledTransfer<*>): Boolean =
+                if (finishTag != other.finishTag) finishTag < other.finishTag else sequence < other.sequence
+
+            override fun run() {
+                try {
+                    super.run()
+                } finally {
+                    onFinished(this)
+                }
+            }
+
+            override fun cancel(mayInterruptIfRunning: Boolean): Boolean {
+                val cancelled = super.cancel(mayInterruptIfRunning)
+                if (cancelled) {
+                    onCancelled(this)
+                }
+                return cancelled
+            }
+        }
+
+        private class WorkerFactory : ThreadFactory {
+            private val count = AtomicInteger()
+
+            override fun newThread(runnable: Runnable): Thread =
+                Thread(runnable, THREAD_NAME_PREFIX + count.incrementAndGet()).apply { isDaemon = true }
+        }
+
+        companion object {
+            const val DEFAULT_MAX_CONCURRENT = 8
+            const val DEFAULT_MAX_PER_HOST = 6
+            const val DEFAULT_MAX_PER_ACCOUNT = 4
+            const val DEFAULT_COST = 1L
+            private const val KEEP_ALIVE_SECONDS = 30L
+            private const val THREAD_NAME_PREFIX = "Transfer-"
+        }
+    }
@@ -0,0 +1,96 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.resources.files
+
+import kotlin.math.max
+
+/**
+ * Sizes chunks after the throughput measured while uploading.
+ *
+ * Small chunks waste a round trip per chunk on fast links, large chunks lose a lot of work when a slow link breaks.
+ * The throughput of every chunk is folded into a moving average, and the next chunk is sized to take
+ * [targetChunkMillis] at that throughput, or at least [LATENCY_FACTOR] times the measured latency, so that waiting
+ * for responses stays a small part of the upload. Sizes change by at most a factor of [MAX_STEP] per chunk and stay
+ * within [minChunkSize] and [maxChunkSize]; a failed chunk halves the size.
+ */
+class AdaptiveChunkSizePolicy
+    @JvmOverloads
+    constructor(
+        initialChunkSize: Long = ChunkedFileUploadRemoteOperation.CHUNK_SIZE_MOBILE,
+        private val minChunkSize: Long = MIN_CHUNK_SIZE,
+        private val maxChunkSize: Long = MAX_CHUNK_SIZE,
+        private val targetChunkMillis: Long = TARGET_CHUNK_MILLIS
+    ) : ChunkSizePolicy {
+        private var chunkSize: Long
+        private var throughput = 0.0 // bytes per millisecond
+        private var latency = 0.0 // milliseconds
+
+        init {
+            require(minChunkSize in 1..maxChunkSize) { "Invalid chunk size limits: $minChunkSize - $maxChunkSize" }
+            require(targetChunkMillis > 0) { "Target duration must be greater than zero" }
+            chunkSize = initialChunkSize.coerceIn(minChunkSize, maxChunkSize)
+        }
+
+        /**
+         * Moving average of the measured throughput, 0 before the first chunk was uploaded.
+         */
+        val throughputBytesPerSecond: Long
+            @Synchronized get() = (throughput * MILLIS_PER_SECOND).toLong()
+
+        @Synchronized
+        override fun nextChunkSize(): Long = chunkSize
+
+        @Synchronized
+        override fun onChunkUploaded(
+            length: Long,
+            durationMillis: Long,
+            latencyMillis: Long
+        ) {
+            if (length * MAX_STEP < chunkSize) {
+                // e.g. the last chunk of a file, dominated by the round trip
+                return
+            }
+
+            val sample = length.toDouble() / durationMillis.coerceAtLeast(1)
+            if (throughput == 0.0) {
+                throughput = sample
+                latency = latencyMillis.toDouble()
+            } else {
+                throughput += SMOOTHING * (sample - throughput)
+                latency += SMOOTHING * (latencyMillis - latency)
+            }
+
+            val targetMillis = max(targetChunkMillis.toDouble(), latency * LATENCY_FACTOR)
+            chunkSize =
+                (throughput * targetMillis).toLong()
+                    .coerceIn(chunkSize / MAX_STEP, chunkSize * MAX_STEP)
+                    .coerceIn(minChunkSize, maxChunkSize)
+        }
+
+        @Synchronized
+        override fun onChunkFailed(length: Long) {
+            chunkSize = (minOf(chunkSize, length) / MAX_STEP).coerceIn(minChunkSize, maxChunkSize)
+            throughput /= MAX_STEP
+        }
+
+        companion object {
+            /**
+             * S3 primary storage rejects smaller chunks, except for the last one.
+             */
+            const val MIN_CHUNK_SIZE = 5L * 1024 * 1024
+            const val MAX_CHUNK_SIZE = 200L * 1024 * 1024
+            const val TARGET_CHUNK_MILLIS = 30_000L
+
+            /**
+             * Chunks take at least this many times the latency, i.e. waiting makes up at most ~10% of an upload.
+             */
+            const val LATENCY_FACTOR = 9
+            const val MAX_STEP = 2
+            private const val SMOOTHING = 0.5
+            private const val MILLIS_PER_SECOND = 1000
+        }
+    }
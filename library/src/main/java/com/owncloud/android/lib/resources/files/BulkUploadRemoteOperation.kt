@@ -0,0 +1,313 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.resources.files
+
+import com.google.gson.JsonObject
+import com.google.gson.JsonParseException
+import com.google.gson.JsonParser
+import com.owncloud.android.lib.common.OwnCloudClient
+import com.owncloud.android.lib.common.network.BandwidthLimiter
+import com.owncloud.android.lib.common.network.BandwidthLimits
+import com.owncloud.android.lib.common.network.ChecksumType
+import com.owncloud.android.lib.common.network.ContentChecksum
+import com.owncloud.android.lib.common.network.MultipartRelatedRequestEntity
+import com.owncloud.android.lib.common.network.OnDatatransferProgressListener
+import com.owncloud.android.lib.common.operations.OperationCancelledException
+import com.owncloud.android.lib.common.operations.RemoteOperation
+import com.owncloud.android.lib.common.operations.RemoteOperationResult
+import com.owncloud.android.lib.common.operations.RemoteOperationResult.ResultCode
+import com.owncloud.android.lib.common.utils.Log_OC
+import com.owncloud.android.lib.resources.files.model.BulkUploadFile
+import com.owncloud.android.lib.resources.files.model.BulkUploadResult
+import com.owncloud.android.lib.resources.status.OCCapability
+import org.apache.commons.httpclient.HttpStatus
+import org.apache.commons.httpclient.methods.PostMethod
+import java.io.File
+import java.io.IOException
+import java.util.concurrent.CopyOnWriteArraySet
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Uploads many small files with few requests to the bulk upload endpoint of Nextcloud 25 and newer.
+ *
+ * Files are packed into multipart/related requests of at most [maxFilesPerRequest] files and [maxBytesPerRequest]
+ * bytes, every part carrying the path, modification time and MD5 of its file, and streamed from disk. Files larger
+ * than [maxBytesPerRequest], and all files if the server lacks the endpoint, are uploaded with a single PUT each.
+ *
+ * The result data lists the outcome of every file; the result is successful only if all files were uploaded.
+ */
+class BulkUploadRemoteOperation(
+    private val files: List<BulkUploadFile>,
+    private val bulkUploadAvailable: Boolean
+) : RemoteOperation<List<BulkUploadResult>>() {
+    /**
+     * Uses the bulk upload endpoint if the server announces it in its capabilities.
+     */
+    constructor(
+        files: List<BulkUploadFile>,
+        capability: OCCapability
+    ) : this(files, capability.bulkUploadVersion != null)
+
+    var maxFilesPerRequest = DEFAULT_MAX_FILES_PER_REQUEST
+    var maxBytesPerRequest = DEFAULT_MAX_BYTES_PER_REQUEST
+
+    /**
+     * Limiter all uploads have to pass, null uploads unthrottled.
+     */
+    var bandwidthLimiter: BandwidthLimiter? = BandwidthLimits.globalUpload
+
+    private val dataTransferListeners = CopyOnWriteArraySet<OnDatatransferProgressListener>()
+    private val cancellationRequested = AtomicBoolean(false)
+
+    @Volatile
+    private var postMethod: PostMethod? = null
+
+    @Volatile
+    private var singleUpload: UploadFileRemoteOperation? = null
+
+    // first failed request or upload, decides the code of the whole result
+    private var failure: ResultCode? = null
+
+    @Deprecated("Deprecated in Java")
+    override fun run(client: OwnCloudClient): RemoteOperationResult<List<BulkUploadResult>> {
+        val results = ArrayList<BulkUploadResult>(files.size)
+        var useBulk = bulkUploadAvailable
+        failure = null
+
+        for (batch in batches(results)) {
+            if (cancellationRequested.get()) {
+                break
+            }
+            var batchResults: List<BulkUploadResult>? = null
+            if (useBulk && batch.size > 1) {
+                batchResults = uploadBatch(client, batch)
+                // null if the server lacks the endpoint, so the remaining batches are not even tried
+                useBulk = batchResults != null
+            }
+            results.addAll(batchResults ?: batch.map { uploadSingle(client, it) })
+        }
+
+        val result =
+            if (cancellationRequested.get()) {
+                RemoteOperationResult<List<BulkUploadResult>>(OperationCancelledException())
+            } else {
+                RemoteOperationResult<List<BulkUploadResult>>(failure ?: ResultCode.OK)
+            }
+        result.resultData = results
+        return result
+    }
+
+    fun addDataTransferProgressListener(listener: OnDatatransferProgressListener) {
+        dataTransferListeners.add(listener)
+    }
+
+    fun removeDataTransferProgressListener(listener: OnDatatransferProgressListener) {
+        dataTransferListeners.remove(listener)
+    }
+
+    /**
+     * Stops after the current request; files not uploaded by then are missing from the results.
+     */
+    fun cancel() {
+        cancellationRequested.set(true)
+        postMethod?.abort()
+        singleUpload?.cancel(null)
+    }
+
+    /**
+     * Packs files into batches within the budgets; missing local files are failed right away.
+     */
+    private fun batches(results: MutableList<BulkUploadResult>): List<List<BulkUploadFile>> {
+        val batches = ArrayList<List<BulkUploadFile>>()
+        var batch = ArrayList<BulkUploadFile>()
+        var batchBytes = 0L
+        for (file in files) {
+            val length = File(file.localPath).takeIf { it.isFile }?.length()
+            when {
+                length == null -> {
+                    results.add(BulkUploadResult(file, false, message = "Local file not found"))
+                    fail(ResultCode.LOCAL_FILE_NOT_FOUND)
+                }
+                length > maxBytesPerRequest -> batches.add(listOf(file))
+                else -> {
+                    if (batch.size >= maxFilesPerRequest || batchBytes + length > maxBytesPerRequest) {
+                        batches.add(batch)
+                        batch = ArrayList()
+                        batchBytes = 0
+                    }
+                    batch.add(file)
+                    batchBytes += length
+                }
+            }
+        }
+        if (batch.isNotEmpty()) {
+            batches.add(batch)
+        }
+        return batches
+    }
+
+    /**
+     * @return results of all files of the batch, null if the server lacks the bulk upload endpoint
+     */
+    private fun uploadBatch(
+        client: OwnCloudClient,
+        batch: List<BulkUploadFile>
+    ): List<BulkUploadResult>? {
+        val method = PostMethod(client.davUri.toString() + BULK_PATH)
+        postMethod = method
+        return try {
+            val entity = MultipartRelatedRequestEntity(batch.map { part(it) })
+            entity.bandwidthLimiter = bandwidthLimiter
+            entity.addDataTransferProgressListeners(dataTransferListeners)
+            method.requestEntity = entity
+
+            val status = client.executeMethod(method)
+            when {
+                status == HttpStatus.SC_OK -> parseResults(batch, method.responseBodyAsString)
+                status in UNSUPPORTED_STATUS_CODES -> {
+                    Log_OC.d(TAG, "Bulk upload not available, status $status; uploading files one by one")
+                    client.exhaustResponse(method.responseBodyAsStream)
+                    null
+                }
+                else -> {
+                    client.exhaustResponse(method.responseBodyAsStream)
+                    val result = RemoteOperationResult<Void>(false, method)
+                    failAll(batch, result.code, "Bulk upload failed with status $status")
+                }
+            }
+        } catch (e: IOException) {
+            val result = RemoteOperationResult<Void>(e)
+            Log_OC.e(TAG, "Bulk upload failed: " + result.logMessage, e)
+            failAll(batch, result.code, result.logMessage)
+        } finally {
+            method.releaseConnection()
+            postMethod = null
+        }
+    }
+
+    @Throws(IOException::class)
+    private fun part(file: BulkUploadFile): MultipartRelatedRequestEntity.Part {
+        val local = File(file.localPath)
+        val md5 = ContentChecksum.fromFile(ChecksumType.MD5, local, 0, local.length()).getValue()
+        return MultipartRelatedRequestEntity.Part(
+            local,
+            mapOf(
+                HEADER_FILE_PATH to file.remotePath,
+                HEADER_FILE_MTIME to file.lastModificationTimestamp.toString(),
+                HEADER_FILE_MD5 to md5
+            )
+        )
+    }
+
+    /**
+     * Parses the per file results, e.g. `{"/photo.jpg": {"error": false, "etag": "...", "fileid": "..."}}`.
+     */
+    private fun parseResults(
+        batch: List<BulkUploadFile>,
+        body: String
+    ): List<BulkUploadResult> {
+        val json = parseObject(body) ?: return failAll(batch, ResultCode.WRONG_SERVER_RESPONSE, "Unreadable response")
+
+        return batch.map { file ->
+            val entry = json.get(file.remotePath)?.takeIf { it.isJsonObject }?.asJsonObject
+            when {
+                entry == null -> {
+                    fail(ResultCode.WRONG_SERVER_RESPONSE)
+                    BulkUploadResult(file, false, message = "Missing in response")
+                }
+                entry.isError() -> {
+                    fail(ResultCode.UNKNOWN_ERROR)
+                    BulkUploadResult(file, false, message = entry.getString(KEY_MESSAGE))
+                }
+                else ->
+                    BulkUploadResult(
+                        file,
+                        true,
+                        etag = entry.getString(KEY_ETAG)?.replace("\"", ""),
+                        fileId = entry.getString(KEY_FILE_ID)
+                    )
+            }
+        }
+    }
+
+    private fun parseObject(body: String): JsonObject? =
+        try {
+            JsonParser.parseString(body).asJsonObject
+        } catch (e: JsonParseException) {
+            Log_OC.e(TAG, "Unreadable bulk upload response", e)
+            null
+        } catch (e: IllegalStateException) {
+            Log_OC.e(TAG, "Unexpected bulk upload response", e)
+            null
+        }
+
+    private fun uploadSingle(
+        client: OwnCloudClient,
+        file: BulkUploadFile
+    ): BulkUploadResult {
+        val operation =
+            UploadFileRemoteOperation(
+                file.localPath,
+                file.remotePath,
+                file.mimeType,
+                file.lastModificationTimestamp
+            )
+        operation.setBandwidthLimiter(bandwidthLimiter)
+        dataTransferListeners.forEach { operation.addDataTransferProgressListener(it) }
+        singleUpload = operation
+        if (cancellationRequested.get()) {
+            operation.cancel(null)
+        }
+        val result = operation.execute(client)
+        singleUpload = null
+        return if (result.isSuccess) {
+            BulkUploadResult(file, true, etag = result.resultData)
+        } else {
+            fail(result.code)
+            BulkUploadResult(file, false, message = result.logMessage)
+        }
+    }
+
+    private fun failAll(
+        batch: List<BulkUploadFile>,
+        code: ResultCode,
+        message: String?
+    ): List<BulkUploadResult> {
+        fail(code)
+        return batch.map { BulkUploadResult(it, false, message = message) }
+    }
+
+    private fun fail(code: ResultCode) {
+        if (failure == null) {
+            failure = code
+        }
+    }
+
+    private fun JsonObject.isError(): Boolean = get(KEY_ERROR)?.takeIf { it.isJsonPrimitive }?.asBoolean != false
+
+    private fun JsonObject.getString(key: String): String? =
+        get(key)?.takeIf { it.isJsonPrimitive }?.asString
+
+    companion object {
+        private val TAG = BulkUploadRemoteOperation::class.java.simpleName
+
+        const val DEFAULT_MAX_FILES_PER_REQUEST = 100
+        const val DEFAULT_MAX_BYTES_PER_REQUEST = 100L * 1024 * 1024
+
+        private const val BULK_PATH = "/bulk"
+        private const val HEADER_FILE_PATH = "X-File-Path"
+        private const val HEADER_FILE_MTIME = "X-File-Mtime"
+        private const val HEADER_FILE_MD5 = "X-File-MD5"
+        private const val KEY_ERROR = "error"
+        private const val KEY_MESSAGE = "message"
+        private const val KEY_ETAG = "etag"
+        private const val KEY_FILE_ID = "fileid"
+
+        private val UNSUPPORTED_STATUS_CODES =
+            setOf(HttpStatus.SC_NOT_FOUND, HttpStatus.SC_METHOD_NOT_ALLOWED, HttpStatus.SC_NOT_IMPLEMENTED)
+    }
+}
@@ -7,7 +7,12 @@
  */
 package com.owncloud.android.lib.resources.files;
 
+import androidx.annotation.NonNull;
+
+import com.nextcloud.common.NextcloudClient;
+import com.nextcloud.common.SuspendingRemoteOperation;
 import com.owncloud.android.lib.common.OwnCloudClient;
+import com.owncloud.android.lib.common.network.PropertyProfile;
 import com.owncloud.android.lib.common.network.WebdavUtils;
 import com.owncloud.android.lib.common.operations.RemoteOperation;
 import com.owncloud.android.lib.common.operations.RemoteOperationResult;
@@ -19,15 +24,16 @@ import org.apache.jackrabbit.webdav.DavException;
 import org.apache.jackrabbit.webdav.MultiStatusResponse;
 import org.apache.jackrabbit.webdav.client.methods.PropFindMethod;
 import org.apache.jackrabbit.webdav.property.DavPropertyName;
-import org.apache.jackrabbit.webdav.property.DavPropertyNameSet;
 
 import java.io.IOException;
 import java.util.ArrayList;
 
+import kotlin.coroutines.Continuation;
+
 /**
  * Check if file is up to date, by checking only eTag
  */
-public class CheckEtagRemoteOperation extends RemoteOperation {
+public class CheckEtagRemoteOperation extends RemoteOperation implements SuspendingRemoteOperation {
 
     private static final int SYNC_READ_TIMEOUT = 40000;
     private static final int SYNC_CONNECTION_TIMEOUT = 5000;
@@ -47,31 +53,15 @@ public class CheckEtagRemoteOperation extends RemoteOperation {
         PropFindMethod propfind = null;
         
         try {
-            DavPropertyNameSet propSet = new DavPropertyNameSet();
-            propSet.add(DavPropertyName.GETETAG);
-
             propfind = new PropFindMethod(client.getFilesDavUri(path),
-                    propSet,
+                    PropertyProfile.ETAG_ONLY.newPropertySet(),
                     0);
             int status = client.executeMethod(propfind, SYNC_READ_TIMEOUT, SYNC_CONNECTION_TIMEOUT);
 
             if (status == HttpStatus.SC_MULTI_STATUS || status == HttpStatus.SC_OK) {
                 MultiStatusResponse resp = propfind.getResponseBodyAsMultiStatus().getResponses()[0];
 
-                String etag = WebdavUtils.parseEtag((String) resp.getProperties(HttpStatus.SC_OK)
-                        .get(DavPropertyName.GETETAG).getValue());
-
-                if (etag.equals(expectedEtag)) {
-                    return new RemoteOperationResult(ResultCode.ETAG_UNCHANGED);
-                } else {
-                    RemoteOperationResult result = new RemoteOperationResult(ResultCode.ETAG_CHANGED);
-
-                    ArrayList<Object> list = new ArrayList<>();
-                    list.add(etag);
-                    result.setData(list);
-
-                    return result;
-                }
+                return checkEtag(resp);
             }
 
             if (status == HttpStatus.SC_NOT_FOUND) {
@@ -87,4 +77,67 @@ public class CheckEtagRemoteOperation extends RemoteOperation {
 
         return new RemoteOperationResult(ResultCode.ETAG_CHANGED);
     }
+
+    @Override
+    public RemoteOperationResult run(NextcloudClient client) {
+        com.nextcloud.operations.PropFindMethod propFind = null;
+
+        try {
+            propFind = newPropFind(client);
+            return onResponse(propFind, client.execute(propFind));
+        } finally {
+            if (propFind != null) {
+                propFind.releaseConnection();
+            }
+        }
+    }
+
+    @Override
+    public Object runSuspending(@NonNull NextcloudClient client, @NonNull Continuation continuation) {
+        return SuspendingFileOperations.checkEtag(this, client, continuation);
+    }
+
+    com.nextcloud.operations.PropFindMethod newPropFind(NextcloudClient client) {
+        com.nextcloud.operations.PropFindMethod propFind =
+            new com.nextcloud.operations.PropFindMethod(client.getFilesDavUri(path),
+                                                        PropertyProfile.ETAG_ONLY,
+                                                        0);
+        propFind.setTimeouts(SYNC_READ_TIMEOUT, SYNC_CONNECTION_TIMEOUT);
+        return propFind;
+    }
+
+    RemoteOperationResult onResponse(com.nextcloud.operations.PropFindMethod propFind, int status) {
+        try {
+            if (status == HttpStatus.SC_MULTI_STATUS || status == HttpStatus.SC_OK) {
+                MultiStatusResponse resp = propFind.getResponseBodyAsMultiStatus().getResponses()[0];
+
+                return checkEtag(resp);
+            }
+
+            if (status == HttpStatus.SC_NOT_FOUND) {
+                return new RemoteOperationResult(ResultCode.FILE_NOT_FOUND);
+            }
+        } catch (DavException | IOException e) {
+            Log_OC.e(TAG, "Error while retrieving eTag");
+        }
+
+        return new RemoteOperationResult(ResultCode.ETAG_CHANGED);
+    }
+
+    private RemoteOperationResult checkEtag(MultiStatusResponse resp) {
+        String etag = WebdavUtils.parseEtag((String) resp.getProperties(HttpStatus.SC_OK)
+                .get(DavPropertyName.GETETAG).getValue());
+
+        if (etag.equals(expectedEtag)) {
+            return new RemoteOperationResult(ResultCode.ETAG_UNCHANGED);
+        } else {
+            RemoteOperationResult result = new RemoteOperationResult(ResultCode.ETAG_CHANGED);
+
+            ArrayList<Object> list = new ArrayList<>();
+            list.add(etag);
+            result.setData(list);
+
+            return result;
+        }
+    }
 }
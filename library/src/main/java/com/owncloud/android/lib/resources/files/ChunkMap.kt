@@ -0,0 +1,125 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.resources.files
+
+/**
+ * Layout of the chunks of a chunked upload, as found on the server.
+ *
+ * Chunks are named after their position in the file: chunk `n` starts at byte `(n - 1) * unit`, and all chunks but
+ * the last one are a multiple of [unit] long. The server assembles chunks in the order of their names, so the
+ * offset and length of every chunk listed can be verified, whatever the order and size they were uploaded with.
+ * Chunks that do not fit, e.g. truncated or overlapping ones, are reported in [invalidChunkIds]; the ranges not
+ * covered by valid chunks are reported in [gaps].
+ */
+class ChunkMap private constructor(val fileLength: Long) {
+    /**
+     * Granularity of chunk offsets; chosen so that no chunk id exceeds [MAX_CHUNK_ID].
+     */
+    val unit: Long = maxOf(MIN_UNIT, roundUp((fileLength + MAX_CHUNK_ID - 1) / MAX_CHUNK_ID, MIN_UNIT))
+
+    private val validChunks = ArrayList<Chunk>()
+    private val invalidIds = ArrayList<Int>()
+    private val missingRanges = ArrayList<Chunk>()
+
+    /**
+     * Chunks on the server that are part of the file, in order.
+     */
+    val chunks: List<Chunk>
+        get() = validChunks
+
+    /**
+     * Chunks on the server that have to be removed before assembling the file.
+     */
+    val invalidChunkIds: List<Int>
+        get() = invalidIds
+
+    /**
+     * Ranges still to upload, in order. Every gap starts at a chunk boundary, its id is the one of its first chunk.
+     */
+    val gaps: List<Chunk>
+        get() = missingRanges
+
+    val uploadedBytes: Long
+        get() = validChunks.sumOf { it.length }
+
+    fun chunkId(start: Long): Int = (start / unit + 1).toInt()
+
+    fun chunkStart(chunkId: Int): Long = (chunkId - 1) * unit
+
+    /**
+     * @return [chunkSize] rounded up to a multiple of [unit]
+     */
+    fun alignChunkSize(chunkSize: Long): Long = maxOf(unit, roundUp(chunkSize, unit))
+
+    private fun addChunks(listedChunks: Map<Int, Long>) {
+        var coveredEnd = 0L
+        for ((chunkId, length) in listedChunks.toSortedMap()) {
+            val start = chunkStart(chunkId)
+            val end = start + length
+            val valid =
+                chunkId >= 1 &&
+                    length > 0 &&
+                    start >= coveredEnd &&
+                    end <= fileLength &&
+                    (length % unit == 0L || end == fileLength)
+
+            if (valid) {
+                addGap(coveredEnd, start)
+                validChunks.add(Chunk(chunkId, start, length))
+                coveredEnd = end
+            } else {
+                invalidIds.add(chunkId)
+            }
+        }
+        addGap(coveredEnd, fileLength)
+    }
+
+    private fun addGap(
+        start: Long,
+        end: Long
+    ) {
+        if (start < end) {
+            missingRanges.add(Chunk(chunkId(start), start, end - start))
+        }
+    }
+
+    companion object {
+        /**
+         * S3 primary storage accepts part numbers up to 10000 only.
+         */
+        const val MAX_CHUNK_ID = 10000
+        const val MIN_UNIT = 64L * 1024
+
+        /**
+         * @param listedChunks length of every chunk on the server, by chunk id
+         */
+        @JvmStatic
+        fun fromListing(
+            fileLength: Long,
+            listedChunks: Map<Int, Long>
+        ): ChunkMap = ChunkMap(fileLength).apply { addChunks(listedChunks) }
+
+        /**
+         * @return id of the chunk with the given file name, or -1 if the name is no chunk name
+         */
+        @JvmStatic
+        fun parseChunkId(name: String?): Int =
+            if (name.isNullOrEmpty() ||
+                name.length > ChunkedFileUploadRemoteOperation.CHUNK_NAME_LENGTH ||
+                !name.all { it in '0'..'9' }
+            ) {
+                -1
+            } else {
+                name.toInt()
+            }
+
+        private fun roundUp(
+            value: Long,
+            multiple: Long
+        ): Long = (value + multiple - 1) / multiple * multiple
+    }
+}
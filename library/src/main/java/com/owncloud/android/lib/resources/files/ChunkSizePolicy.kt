@@ -0,0 +1,40 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.resources.files
+
+/**
+ * Decides on the size of the chunks uploaded by [ChunkedFileUploadRemoteOperation].
+ *
+ * Implementations must be thread safe, as chunks may be uploaded in parallel. An instance may be shared by several
+ * uploads, e.g. all uploads over the same network, so that measurements carry over from one upload to the next.
+ */
+interface ChunkSizePolicy {
+    /**
+     * @return size in bytes of the next chunk to upload; the last chunk of a file may be smaller
+     */
+    fun nextChunkSize(): Long
+
+    /**
+     * Reports a chunk that was uploaded successfully.
+     *
+     * @param length size of the chunk in bytes
+     * @param durationMillis time from sending the request until the response arrived
+     * @param latencyMillis part of [durationMillis] spent waiting for the response after the body was sent
+     */
+    fun onChunkUploaded(
+        length: Long,
+        durationMillis: Long,
+        latencyMillis: Long
+    )
+
+    /**
+     * Reports a chunk that could not be uploaded, e.g. due to a timeout or a broken connection.
+     *
+     * @param length size of the chunk in bytes
+     */
+    fun onChunkFailed(length: Long)
+}
@@ -6,23 +6,30 @@
  */
 package com.owncloud.android.lib.resources.files;
 
-import android.text.TextUtils;
-
+import com.nextcloud.common.FileRequestBody;
+import com.nextcloud.common.NextcloudClient;
+import com.nextcloud.common.OkHttpMethodBase;
 import com.owncloud.android.lib.common.OwnCloudClient;
+import com.owncloud.android.lib.common.network.ChecksumType;
 import com.owncloud.android.lib.common.network.ChunkFromFileChannelRequestEntity;
-import com.owncloud.android.lib.common.network.ProgressiveDataTransfer;
+import com.owncloud.android.lib.common.network.ContentChecksum;
+import com.owncloud.android.lib.common.network.OnDatatransferProgressListener;
+import com.owncloud.android.lib.common.network.ProgressDispatcher;
+import com.owncloud.android.lib.common.network.RetryBudget;
+import com.owncloud.android.lib.common.network.RetryPolicy;
 import com.owncloud.android.lib.common.network.WebdavEntry;
 import com.owncloud.android.lib.common.network.WebdavUtils;
 import com.owncloud.android.lib.common.operations.OperationCancelledException;
 import com.owncloud.android.lib.common.operations.RemoteOperationResult;
 import com.owncloud.android.lib.common.utils.Log_OC;
 
-import org.apache.commons.httpclient.DefaultHttpMethodRetryHandler;
+import org.apache.commons.httpclient.HttpStatus;
 import org.apache.commons.httpclient.methods.PutMethod;
-import org.apache.commons.httpclient.params.HttpMethodParams;
+import org.apache.commons.httpclient.methods.RequestEntity;
 import org.apache.jackrabbit.webdav.DavConstants;
 import org.apache.jackrabbit.webdav.MultiStatus;
 import org.apache.jackrabbit.webdav.MultiStatusResponse;
+import org.apache.jackrabbit.webdav.client.methods.DeleteMethod;
 import org.apache.jackrabbit.webdav.client.methods.MkColMethod;
 import org.apache.jackrabbit.webdav.client.methods.MoveMethod;
 import org.apache.jackrabbit.webdav.client.methods.PropFindMethod;
@@ -31,18 +38,38 @@ import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import androidx.annotation.VisibleForTesting;
+import okhttp3.MediaType;
 
 
 public class ChunkedFileUploadRemoteOperation extends UploadFileRemoteOperation {
 
+    /**
+     * Initial chunk sizes of the default {@link AdaptiveChunkSizePolicy}, depending on the connection type.
+     */
     public static final long CHUNK_SIZE_MOBILE = 10240000;
     public static final long CHUNK_SIZE_WIFI = 40960000;
     public static final String DESTINATION_HEADER = "Destination";
     public static final int CHUNK_NAME_LENGTH = 6;
+    public static final int DEFAULT_PARALLELISM = 1;
+    public static final int MAX_PARALLELISM = 8;
     private static final String TAG = ChunkedFileUploadRemoteOperation.class.getSimpleName();
     public final int ASSEMBLE_TIME_MIN = 30 * 1000; // 30s
     public final int ASSEMBLE_TIME_MAX = 30 * 60 * 1000; // 30min
@@ -50,6 +77,13 @@ public class ChunkedFileUploadRemoteOperation extends UploadFileRemoteOperation
     private final boolean onWifiConnection;
     private String uploadFolderUri;
     private String destinationUri;
+    private ChunkSizePolicy chunkSizePolicy;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private final Set<PutMethod> activePutMethods = new HashSet<>();
+    private final Set<OkHttpMethodBase> activeNextcloudPutMethods = new HashSet<>(); // guarded by activePutMethods
+    private long transferredBytes; // guarded by dataTransferListeners
+    private volatile ProgressDispatcher progress; // of the current upload
+    private final Map<Long, ContentChecksum> chunkChecksums = new TreeMap<>(); // by chunk start
 
     public ChunkedFileUploadRemoteOperation(String storagePath,
                                             String remotePath,
@@ -117,6 +151,48 @@ public class ChunkedFileUploadRemoteOperation extends UploadFileRemoteOperation
         this.onWifiConnection = onWifiConnection;
     }
 
+    /**
+     * Number of chunks uploaded at the same time, capped at {@link #MAX_PARALLELISM}.
+     * <p>
+     * Parallel uploads help on connections with a high latency or a per connection throughput limit. Progress is
+     * coalesced by a {@link ProgressDispatcher}, with the total transferred so far across all chunks.
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, Math.min(parallelism, MAX_PARALLELISM));
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the policy deciding on the size of every chunk; null restores the default, an
+     * {@link AdaptiveChunkSizePolicy} starting at {@link #CHUNK_SIZE_WIFI} or {@link #CHUNK_SIZE_MOBILE}.
+     */
+    public void setChunkSizePolicy(ChunkSizePolicy chunkSizePolicy) {
+        this.chunkSizePolicy = chunkSizePolicy;
+    }
+
+    /**
+     * Uploads all chunks with the given size, rounded up to the chunk layout of the file, see {@link ChunkMap}; values
+     * <= 0 restore the default policy.
+     */
+    public void setChunkSize(long chunkSize) {
+        setChunkSizePolicy(chunkSize > 0 ? new FixedChunkSizePolicy(chunkSize) : null);
+    }
+
+    /**
+     * Chunks are hashed independently while they are uploaded, possibly in parallel; their checksums are combined
+     * into the one of the file, which is sent with the final MOVE. Only combinable types are supported therefore.
+     */
+    @Override
+    public void setChecksumType(ChecksumType checksumType) {
+        if (checksumType != null && !checksumType.isCombinable()) {
+            throw new IllegalArgumentException("Checksum type cannot be combined from chunks: " + checksumType);
+        }
+        super.setChecksumType(checksumType);
+    }
+
     protected static Chunk calcNextChunk(long fileSize, int chunkId, long startByte, long chunkSize) {
         if (chunkId < 0 || String.valueOf(chunkId).length() > CHUNK_NAME_LENGTH) {
             throw new IllegalArgumentException(
@@ -130,24 +206,10 @@ public class ChunkedFileUploadRemoteOperation extends UploadFileRemoteOperation
     @Override
     protected RemoteOperationResult run(OwnCloudClient client) {
         RemoteOperationResult result;
-        DefaultHttpMethodRetryHandler oldRetryHandler = (DefaultHttpMethodRetryHandler) client.getParams()
-                .getParameter(HttpMethodParams.RETRY_HANDLER);
         File file = new File(localPath);
         MoveMethod moveMethod = null;
         try {
-            if (disableRetries) {
-                // prevent that uploads are retried automatically by network library
-                client.getParams()
-                        .setParameter(HttpMethodParams.RETRY_HANDLER, new DefaultHttpMethodRetryHandler(0, false));
-            }
-
-            // chunk length
-            long chunkSize;
-            if (onWifiConnection) {
-                chunkSize = CHUNK_SIZE_WIFI;
-            } else {
-                chunkSize = CHUNK_SIZE_MOBILE;
-            }
+            initChunkSizePolicy();
 
             uploadFolderUri = client.getUploadUri() + "/" + client.getUserId() + "/" + FileUtils.md5Sum(file);
 
@@ -171,43 +233,26 @@ public class ChunkedFileUploadRemoteOperation extends UploadFileRemoteOperation
                 return new RemoteOperationResult(listChunks.succeeded(), listChunks);
             }
 
-            MultiStatus dataInServer = listChunks.getResponseBodyAsMultiStatus();
-
-            // determine chunks already on server
-            // chunks are assumed to be uploaded linearly, starting at 0B
-            long nextByte = 0;
-            int lastId = 0;
-            for (MultiStatusResponse response : dataInServer.getResponses()) {
-                WebdavEntry we = new WebdavEntry(response, Objects.requireNonNull(client.getUploadUri().getPath()));
-                String name = we.getName();
-
-                // filter out any objects not matching expected chunk name
-                if (!we.isDirectory() && name != null && (name.length() <= CHUNK_NAME_LENGTH) &&
-                        TextUtils.isDigitsOnly(name)) {
-                    // is part of upload
-                    int id = Integer.parseInt(name);
-                    if (id > lastId) {
-                        lastId = id;
-                    }
-                    nextByte += we.getContentLength();
-                }
-            }
-
-            // iteratively upload remaining chunks
-            while (nextByte + 1 < file.length()) {
-                // determine size of next chunk
-                Chunk chunk = calcNextChunk(file.length(), ++lastId, nextByte, chunkSize);
+            Map<Integer, Long> chunksInServer = getChunksInServer(listChunks.getResponseBodyAsMultiStatus(),
+                                                                  client.getUploadUri().getPath());
 
-                RemoteOperationResult chunkResult = uploadChunk(client, chunk);
-                if (!chunkResult.isSuccess()) {
-                    return chunkResult;
-                }
+            // verify offset and length of every chunk; truncated or misplaced chunks are removed and uploaded again,
+            // as are the chunks missing in between
+            ChunkMap chunkMap = ChunkMap.fromListing(file.length(), chunksInServer);
 
-                if (cancellationRequested.get()) {
-                    return new RemoteOperationResult(new OperationCancelledException());
-                }
+            RemoteOperationResult removeResult = removeChunks(client, chunkMap.getInvalidChunkIds());
+            if (removeResult != null) {
+                return removeResult;
+            }
 
-                nextByte += chunk.getLength();
+            // upload missing chunks
+            synchronized (chunkChecksums) {
+                chunkChecksums.clear();
+            }
+            RemoteOperationResult chunksResult = uploadChunks(chunk -> uploadChunk(client, chunk),
+                                                              new ChunkQueue(chunkMap, chunkSizePolicy));
+            if (chunksResult != null) {
+                return chunksResult;
             }
 
             // assemble
@@ -215,6 +260,9 @@ public class ChunkedFileUploadRemoteOperation extends UploadFileRemoteOperation
 
             moveMethod = new MoveMethod(originUri, destinationUri, true);
             moveMethod.addRequestHeader(OC_X_OC_MTIME_HEADER, String.valueOf(lastModificationTimestamp));
+            if (disableRetries) {
+                OwnCloudClient.setRetryPolicy(moveMethod, RetryPolicy.NONE);
+            }
 
             if (creationTimestamp != null && creationTimestamp > 0) {
                 moveMethod.addRequestHeader(OC_X_OC_CTIME_HEADER, String.valueOf(creationTimestamp));
@@ -224,78 +272,271 @@ public class ChunkedFileUploadRemoteOperation extends UploadFileRemoteOperation
                 moveMethod.addRequestHeader(E2E_TOKEN, token);
             }
 
+            String checksum = checksumType != null ? combineChecksums(file, chunkMap) : null;
+            if (checksum != null) {
+                moveMethod.addRequestHeader(OC_CHECKSUM_HEADER, checksum);
+            }
+
             final int DO_NOT_CHANGE_DEFAULT = -1;
             int moveResult = client.executeMethod(moveMethod, calculateAssembleTimeout(file), DO_NOT_CHANGE_DEFAULT);
 
             result = new RemoteOperationResult(isSuccess(moveResult), moveMethod);
+            if (result.isSuccess()) {
+                result.setChecksum(checksum);
+            }
         } catch (Exception e) {
-            if (putMethod != null && putMethod.isAborted()) {
-                if (cancellationRequested.get() && cancellationReason != null) {
-                    result = new RemoteOperationResult(cancellationReason);
-                } else {
-                    result = new RemoteOperationResult(new OperationCancelledException());
-                }
-            } else if (moveMethod != null && moveMethod.isAborted()) {
-                if (cancellationRequested.get() && cancellationReason != null) {
-                    result = new RemoteOperationResult(cancellationReason);
-                } else {
-                    result = new RemoteOperationResult(new OperationCancelledException());
-                }
+            if (moveMethod != null && moveMethod.isAborted()) {
+                result = getCancellationResult();
             } else {
                 result = new RemoteOperationResult(e);
             }
-        } finally {
+        }
+        return result;
+    }
+
+    @Override
+    public RemoteOperationResult run(NextcloudClient client) {
+        RemoteOperationResult result;
+        File file = new File(localPath);
+        com.nextcloud.operations.MoveMethod moveMethod = null;
+        try {
+            initChunkSizePolicy();
+
+            uploadFolderUri = client.getUploadUri() + "/" + client.getUserId() + "/" + FileUtils.md5Sum(file);
+
+            destinationUri = client.getDavUri() + "/files/" + client.getUserId() + WebdavUtils.encodePath(remotePath);
+
+            // create folder
+            com.nextcloud.operations.MkColMethod createFolder =
+                new com.nextcloud.operations.MkColMethod(uploadFolderUri, false);
+            createFolder.addRequestHeader(DESTINATION_HEADER, destinationUri);
+            createFolder.setTimeouts(30000, 5000);
+            try {
+                client.execute(createFolder);
+            } finally {
+                createFolder.releaseConnection();
+            }
+
+            // list chunks
+            com.nextcloud.operations.PropFindMethod listChunks =
+                new com.nextcloud.operations.PropFindMethod(uploadFolderUri,
+                                                            WebdavUtils.getChunksPropSet(),
+                                                            DavConstants.DEPTH_1);
+            Map<Integer, Long> chunksInServer;
+            try {
+                if (client.execute(listChunks) != HttpStatus.SC_MULTI_STATUS) {
+                    return new RemoteOperationResult(false, listChunks);
+                }
+                chunksInServer = getChunksInServer(listChunks.getResponseBodyAsMultiStatus(),
+                                                   client.getUploadUri().getPath());
+            } finally {
+                listChunks.releaseConnection();
+            }
+
+            // verify offset and length of every chunk, see run(OwnCloudClient)
+            ChunkMap chunkMap = ChunkMap.fromListing(file.length(), chunksInServer);
+
+            RemoteOperationResult removeResult = removeChunks(client, chunkMap.getInvalidChunkIds());
+            if (removeResult != null) {
+                return removeResult;
+            }
+
+            // upload missing chunks
+            synchronized (chunkChecksums) {
+                chunkChecksums.clear();
+            }
+            RemoteOperationResult chunksResult = uploadChunks(chunk -> uploadChunk(client, chunk),
+                                                              new ChunkQueue(chunkMap, chunkSizePolicy));
+            if (chunksResult != null) {
+                return chunksResult;
+            }
+
+            // assemble
+            moveMethod = new com.nextcloud.operations.MoveMethod(uploadFolderUri + "/.file", destinationUri, true);
+            moveMethod.addRequestHeader(OC_X_OC_MTIME_HEADER, String.valueOf(lastModificationTimestamp));
             if (disableRetries) {
-                // reset previous retry handler
-                client.getParams().setParameter(HttpMethodParams.RETRY_HANDLER, oldRetryHandler);
+                moveMethod.setRetryPolicy(RetryPolicy.NONE);
+            }
+
+            if (creationTimestamp != null && creationTimestamp > 0) {
+                moveMethod.addRequestHeader(OC_X_OC_CTIME_HEADER, String.valueOf(creationTimestamp));
+            }
+
+            if (token != null) {
+                moveMethod.addRequestHeader(E2E_TOKEN, token);
+            }
+
+            String checksum = checksumType != null ? combineChecksums(file, chunkMap) : null;
+            if (checksum != null) {
+                moveMethod.addRequestHeader(OC_CHECKSUM_HEADER, checksum);
+            }
+
+            moveMethod.setTimeouts(calculateAssembleTimeout(file), 0);
+            int moveResult = client.execute(moveMethod);
+
+            result = new RemoteOperationResult(isSuccess(moveResult), moveMethod);
+            if (result.isSuccess()) {
+                result.setChecksum(checksum);
+            }
+        } catch (Exception e) {
+            result = new RemoteOperationResult(e);
+        } finally {
+            if (moveMethod != null) {
+                moveMethod.releaseConnection();
             }
         }
         return result;
     }
 
+    private void initChunkSizePolicy() {
+        if (chunkSizePolicy == null) {
+            chunkSizePolicy = new AdaptiveChunkSizePolicy(onWifiConnection ? CHUNK_SIZE_WIFI : CHUNK_SIZE_MOBILE);
+        }
+    }
+
+    /**
+     * @return lengths of the chunks already on the server, by chunk id
+     */
+    private Map<Integer, Long> getChunksInServer(MultiStatus dataInServer, String uploadPath) {
+        Map<Integer, Long> chunksInServer = new HashMap<>();
+        for (MultiStatusResponse response : dataInServer.getResponses()) {
+            WebdavEntry we = new WebdavEntry(response, Objects.requireNonNull(uploadPath));
+
+            // filter out any objects not matching expected chunk name
+            int chunkId = ChunkMap.parseChunkId(we.getName());
+            if (!we.isDirectory() && chunkId >= 0) {
+                // is part of upload
+                chunksInServer.put(chunkId, we.getContentLength());
+            }
+        }
+        return chunksInServer;
+    }
+
+    /**
+     * Uploads all chunks handed out by the queue, using up to {@link #parallelism} connections.
+     *
+     * @return null if all chunks were uploaded, otherwise the result of the first failure or the cancellation
+     */
+    private RemoteOperationResult uploadChunks(final ChunkUploader uploader, final ChunkQueue queue) {
+        synchronized (dataTransferListeners) {
+            transferredBytes = queue.chunkMap.getUploadedBytes();
+        }
+        // totals of a new upload may start below those of a former one
+        ProgressDispatcher dispatcher = new ProgressDispatcher();
+        dispatcher.addDataTransferProgressListener(this::notifyListeners);
+        progress = dispatcher;
+
+        int workers = (int) Math.min(parallelism, queue.countRemainingChunks());
+        if (workers > 1) {
+            ExecutorService executor = Executors.newFixedThreadPool(workers - 1);
+            List<Future<?>> futures = new ArrayList<>();
+            try {
+                for (int i = 1; i < workers; i++) {
+                    futures.add(executor.submit(RetryBudget.wrap(() -> uploadQueuedChunks(uploader, queue))));
+                }
+                // the calling thread works on the queue as well
+                uploadQueuedChunks(uploader, queue);
+
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                queue.fail(new RemoteOperationResult(new OperationCancelledException()));
+                abortActivePutMethods();
+            } catch (ExecutionException e) {
+                queue.fail(new RemoteOperationResult(e));
+            } finally {
+                executor.shutdown();
+            }
+        } else {
+            uploadQueuedChunks(uploader, queue);
+        }
+        progress.flush();
+
+        if (cancellationRequested.get()) {
+            return getCancellationResult();
+        }
+        return queue.failure;
+    }
+
+    /**
+     * Hands the coalesced progress on to the listeners registered on the operation at that time.
+     */
+    private void notifyListeners(long progressRate, long transferred, long totalToTransfer, String fileName) {
+        List<OnDatatransferProgressListener> listeners;
+        synchronized (dataTransferListeners) {
+            listeners = new ArrayList<>(dataTransferListeners);
+        }
+        for (OnDatatransferProgressListener listener : listeners) {
+            listener.onTransferProgress(progressRate, transferred, totalToTransfer, fileName);
+        }
+    }
+
+    private void uploadQueuedChunks(ChunkUploader uploader, ChunkQueue queue) {
+        try {
+            Chunk chunk;
+            while ((chunk = queue.next()) != null) {
+                RemoteOperationResult chunkResult = uploader.upload(chunk);
+                if (!chunkResult.isSuccess()) {
+                    queue.fail(chunkResult);
+                }
+            }
+        } catch (Exception e) {
+            queue.fail(cancellationRequested.get() ? getCancellationResult() : new RemoteOperationResult(e));
+        }
+    }
+
     private RemoteOperationResult uploadChunk(OwnCloudClient client, Chunk chunk) throws IOException {
         int status;
         RemoteOperationResult result;
 
         FileChannel channel = null;
         RandomAccessFile raf = null;
+        PutMethod chunkPutMethod = null;
 
         File file = new File(localPath);
 
         try {
             raf = new RandomAccessFile(file, "r");
             channel = raf.getChannel();
-            entity = new ChunkFromFileChannelRequestEntity(channel,
-                                                           mimeType,
-                                                           chunk.getStart(),
-                                                           chunk.getLength(),
-                                                           file);
-
-            synchronized (dataTransferListeners) {
-                ((ProgressiveDataTransfer) entity).addDataTransferProgressListeners(dataTransferListeners);
-            }
+            ChunkFromFileChannelRequestEntity chunkEntity = new ChunkFromFileChannelRequestEntity(channel,
+                                                                                                  mimeType,
+                                                                                                  chunk.getStart(),
+                                                                                                  chunk.getLength(),
+                                                                                                  file);
+            ContentChecksum chunkChecksum = checksumType != null ? new ContentChecksum(checksumType) : null;
+            chunkEntity.setChecksum(chunkChecksum);
+            chunkEntity.setBandwidthLimiter(bandwidthLimiter);
+            ChunkProgressListener progressListener = new ChunkProgressListener(chunk.getLength());
+            chunkEntity.addDataTransferProgressListener(progressListener);
 
             // pad chunk name to 6 digits
-            String chunkUri =
-                    uploadFolderUri + "/" + String.format(Locale.ROOT, "%0" + CHUNK_NAME_LENGTH + "d", chunk.getId());
+            String chunkUri = getChunkUri(chunk.getId());
 
-            if (putMethod != null) {
-                putMethod.releaseConnection(); // let the connection available for other methods
-            }
-
-            putMethod = createPutMethod(chunkUri);
+            chunkPutMethod = createPutMethod(chunkUri, chunkEntity);
 
-            putMethod.addRequestHeader(DESTINATION_HEADER, destinationUri);
+            chunkPutMethod.addRequestHeader(DESTINATION_HEADER, destinationUri);
 
             if (token != null) {
-                putMethod.addRequestHeader(E2E_TOKEN, token);
+                chunkPutMethod.addRequestHeader(E2E_TOKEN, token);
             }
 
-            status = client.executeMethod(putMethod);
+            long startNanos = System.nanoTime();
+            try {
+                status = client.executeMethod(chunkPutMethod);
+            } catch (IOException e) {
+                chunkSizePolicy.onChunkFailed(chunk.getLength());
+                throw e;
+            }
+            long endNanos = System.nanoTime();
 
-            result = new RemoteOperationResult(isSuccess(status), putMethod);
+            result = new RemoteOperationResult(isSuccess(status), chunkPutMethod);
+            if (result.isSuccess()) {
+                onChunkUploaded(chunk, chunkChecksum, progressListener, startNanos, endNanos);
+            }
 
-            client.exhaustResponse(putMethod.getResponseBodyAsStream());
+            client.exhaustResponse(chunkPutMethod.getResponseBodyAsStream());
             Log_OC.d(TAG,
                      "Upload of " + localPath + " to " + remotePath + ", chunk id: " + chunk.getId() + " from " +
                              chunk.getStart() + " size: " + chunk.getLength() + ", HTTP result status " + status);
@@ -314,21 +555,198 @@ public class ChunkedFileUploadRemoteOperation extends UploadFileRemoteOperation
                     Log_OC.e(TAG, "Error closing file access!", e);
                 }
             }
-            if (putMethod != null) {
-                putMethod.releaseConnection(); // let the connection available for other methods
+            if (chunkPutMethod != null) {
+                synchronized (activePutMethods) {
+                    activePutMethods.remove(chunkPutMethod);
+                }
+                chunkPutMethod.releaseConnection(); // let the connection available for other methods
             }
         }
         return result;
     }
 
-    private PutMethod createPutMethod(String uriPrefix) {
-        putMethod = new PutMethod(uriPrefix);
-        putMethod.setRequestEntity(entity);
+    private RemoteOperationResult uploadChunk(NextcloudClient client, Chunk chunk) {
+        File file = new File(localPath);
+        FileRequestBody chunkBody = new FileRequestBody(file,
+                                                        mimeType != null ? MediaType.parse(mimeType) : null,
+                                                        chunk.getStart(),
+                                                        chunk.getLength());
+        ContentChecksum chunkChecksum = checksumType != null ? new ContentChecksum(checksumType) : null;
+        chunkBody.setChecksum(chunkChecksum);
+        chunkBody.setBandwidthLimiter(bandwidthLimiter);
+        ChunkProgressListener progressListener = new ChunkProgressListener(chunk.getLength());
+        chunkBody.addDataTransferProgressListener(progressListener);
+
+        com.nextcloud.operations.PutMethod chunkPutMethod = createPutMethod(getChunkUri(chunk.getId()), chunkBody);
+        chunkPutMethod.addRequestHeader(DESTINATION_HEADER, destinationUri);
+
+        if (token != null) {
+            chunkPutMethod.addRequestHeader(E2E_TOKEN, token);
+        }
+
+        try {
+            long startNanos = System.nanoTime();
+            int status = client.execute(chunkPutMethod);
+            long endNanos = System.nanoTime();
+            if (status == OkHttpMethodBase.UNKNOWN_STATUS_CODE) {
+                // network error
+                chunkSizePolicy.onChunkFailed(chunk.getLength());
+            }
+
+            RemoteOperationResult result = new RemoteOperationResult(isSuccess(status), chunkPutMethod);
+            if (result.isSuccess()) {
+                onChunkUploaded(chunk, chunkChecksum, progressListener, startNanos, endNanos);
+            }
+            Log_OC.d(TAG,
+                     "Upload of " + localPath + " to " + remotePath + ", chunk id: " + chunk.getId() + " from " +
+                             chunk.getStart() + " size: " + chunk.getLength() + ", HTTP result status " + status);
+            return result;
+        } finally {
+            synchronized (activePutMethods) {
+                activeNextcloudPutMethods.remove(chunkPutMethod);
+            }
+            chunkPutMethod.releaseConnection(); // let the connection available for other methods
+        }
+    }
+
+    private void onChunkUploaded(Chunk chunk,
+                                 ContentChecksum chunkChecksum,
+                                 ChunkProgressListener progressListener,
+                                 long startNanos,
+                                 long endNanos) {
+        if (chunkChecksum != null) {
+            synchronized (chunkChecksums) {
+                chunkChecksums.put(chunk.getStart(), chunkChecksum);
+            }
+        }
+        long sentNanos = progressListener.completedNanos > 0 ? progressListener.completedNanos : endNanos;
+        chunkSizePolicy.onChunkUploaded(chunk.getLength(),
+                                        TimeUnit.NANOSECONDS.toMillis(endNanos - startNanos),
+                                        TimeUnit.NANOSECONDS.toMillis(endNanos - sentNanos));
+    }
+
+    /**
+     * Combines the checksums of the chunks uploaded by this run with the ones of chunks uploaded by earlier attempts;
+     * only the latter are read from the file once more.
+     *
+     * @return checksum of the whole file, formatted as in the OC-Checksum header
+     */
+    private String combineChecksums(File file, ChunkMap chunkMap) throws IOException {
+        List<ContentChecksum> parts;
+        synchronized (chunkChecksums) {
+            for (Chunk chunk : chunkMap.getChunks()) {
+                chunkChecksums.put(chunk.getStart(),
+                                   ContentChecksum.fromFile(checksumType, file, chunk.getStart(), chunk.getLength()));
+            }
+            parts = new ArrayList<>(chunkChecksums.values());
+        }
+        if (parts.isEmpty()) {
+            // empty file, nothing was uploaded
+            ContentChecksum empty = new ContentChecksum(checksumType);
+            return empty.getHeaderValue();
+        }
+        return ContentChecksum.combine(parts);
+    }
+
+    /**
+     * Removes chunks that cannot be used for resuming the upload.
+     *
+     * @return null on success, otherwise the result of the failed removal
+     */
+    private RemoteOperationResult removeChunks(OwnCloudClient client, List<Integer> chunkIds) throws IOException {
+        for (int chunkId : chunkIds) {
+            DeleteMethod deleteMethod = new DeleteMethod(getChunkUri(chunkId));
+            try {
+                int status = client.executeMethod(deleteMethod);
+                client.exhaustResponse(deleteMethod.getResponseBodyAsStream());
+
+                if (!deleteMethod.succeeded() && status != HttpStatus.SC_NOT_FOUND) {
+                    return new RemoteOperationResult(false, deleteMethod);
+                }
+                Log_OC.d(TAG, "Removed invalid chunk " + chunkId + " of " + localPath);
+            } finally {
+                deleteMethod.releaseConnection();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes chunks that cannot be used for resuming the upload.
+     *
+     * @return null on success, otherwise the result of the failed removal
+     */
+    private RemoteOperationResult removeChunks(NextcloudClient client, List<Integer> chunkIds) {
+        for (int chunkId : chunkIds) {
+            com.nextcloud.operations.DeleteMethod deleteMethod =
+                new com.nextcloud.operations.DeleteMethod(getChunkUri(chunkId), false);
+            try {
+                int status = client.execute(deleteMethod);
+
+                if (status != HttpStatus.SC_OK && status != HttpStatus.SC_NO_CONTENT &&
+                        status != HttpStatus.SC_NOT_FOUND) {
+                    return new RemoteOperationResult(false, deleteMethod);
+                }
+                Log_OC.d(TAG, "Removed invalid chunk " + chunkId + " of " + localPath);
+            } finally {
+                deleteMethod.releaseConnection();
+            }
+        }
+        return null;
+    }
+
+    private String getChunkUri(int chunkId) {
+        return uploadFolderUri + "/" + String.format(Locale.ROOT, "%0" + CHUNK_NAME_LENGTH + "d", chunkId);
+    }
+
+    private PutMethod createPutMethod(String uri, RequestEntity requestEntity) {
+        PutMethod method = new PutMethod(uri);
+        method.setRequestEntity(requestEntity);
+        if (disableRetries) {
+            // prevent that uploads are retried automatically by network library
+            OwnCloudClient.setRetryPolicy(method, RetryPolicy.NONE);
+        }
+        synchronized (activePutMethods) {
+            activePutMethods.add(method);
+        }
+        if (cancellationRequested.get()) {
+            method.abort(); // next method will throw an exception
+        }
+
+        return method;
+    }
+
+    private com.nextcloud.operations.PutMethod createPutMethod(String uri, FileRequestBody body) {
+        com.nextcloud.operations.PutMethod method = new com.nextcloud.operations.PutMethod(uri, false, body);
+        if (disableRetries) {
+            // prevent that uploads are retried automatically by network library
+            method.setRetryPolicy(RetryPolicy.NONE);
+        }
+        synchronized (activePutMethods) {
+            activeNextcloudPutMethods.add(method);
+        }
         if (cancellationRequested.get()) {
-            putMethod.abort(); // next method will throw an exception
+            method.abort(); // the call is canceled as soon as it is created
         }
 
-        return putMethod;
+        return method;
+    }
+
+    private void abortActivePutMethods() {
+        synchronized (activePutMethods) {
+            for (PutMethod method : activePutMethods) {
+                method.abort();
+            }
+            for (OkHttpMethodBase method : activeNextcloudPutMethods) {
+                method.abort();
+            }
+        }
+    }
+
+    @Override
+    public void cancel(RemoteOperationResult.ResultCode cancellationReason) {
+        super.cancel(cancellationReason);
+        abortActivePutMethods();
     }
 
     @VisibleForTesting
@@ -337,4 +755,106 @@ public class ChunkedFileUploadRemoteOperation extends UploadFileRemoteOperation
 
         return Math.max(ASSEMBLE_TIME_MIN, Math.min((int) (ASSEMBLE_TIME_PER_GB * fileSizeInGb), ASSEMBLE_TIME_MAX));
     }
+
+    /**
+     * Uploads a single chunk over one of the clients.
+     */
+    private interface ChunkUploader {
+        RemoteOperationResult upload(Chunk chunk) throws IOException;
+    }
+
+    /**
+     * Hands out the chunks still to upload, one at a time, to any number of threads.
+     */
+    private final class ChunkQueue {
+        private final ChunkMap chunkMap;
+        private final ChunkSizePolicy policy;
+        private final Deque<Chunk> gaps;
+        private volatile RemoteOperationResult failure;
+
+        ChunkQueue(ChunkMap chunkMap, ChunkSizePolicy policy) {
+            this.chunkMap = chunkMap;
+            this.policy = policy;
+            this.gaps = new ArrayDeque<>(chunkMap.getGaps());
+        }
+
+        /**
+         * @return the next chunk, or null if all chunks were handed out or the upload failed or was cancelled
+         */
+        synchronized Chunk next() {
+            Chunk gap = gaps.peekFirst();
+            if (failure != null || cancellationRequested.get() || gap == null) {
+                return null;
+            }
+
+            long chunkSize = chunkMap.alignChunkSize(policy.nextChunkSize());
+            if (gap.getLength() < 2 * chunkSize) {
+                // rather one larger chunk than a tiny one at the end of the gap
+                chunkSize = gap.getLength();
+            }
+            long gapEnd = gap.getStart() + gap.getLength();
+            Chunk chunk = calcNextChunk(gapEnd, gap.getId(), gap.getStart(), chunkSize);
+
+            gaps.removeFirst();
+            long nextStart = chunk.getStart() + chunk.getLength();
+            if (nextStart < gapEnd) {
+                gaps.addFirst(new Chunk(chunkMap.chunkId(nextStart), nextStart, gapEnd - nextStart));
+            }
+            return chunk;
+        }
+
+        synchronized long countRemainingChunks() {
+            long chunkSize = chunkMap.alignChunkSize(policy.nextChunkSize());
+            long count = 0;
+            for (Chunk gap : gaps) {
+                count += (gap.getLength() + chunkSize - 1) / chunkSize;
+            }
+            return count;
+        }
+
+        /**
+         * Stops handing out chunks; chunks already in progress are completed, so that they can be resumed.
+         */
+        synchronized void fail(RemoteOperationResult result) {
+            if (failure == null) {
+                failure = result;
+            }
+        }
+    }
+
+    /**
+     * Translates the progress of a single chunk into the progress of the whole file.
+     */
+    private final class ChunkProgressListener implements OnDatatransferProgressListener {
+        private final long chunkLength;
+        private long chunkTransferred;
+        private volatile long completedNanos;
+
+        ChunkProgressListener(long chunkLength) {
+            this.chunkLength = chunkLength;
+        }
+
+        @Override
+        public void onTransferProgress(long progressRate,
+                                       long totalTransferredSoFar,
+                                       long totalToTransfer,
+                                       String fileAbsoluteName) {
+            // bytes of a chunk written again after a retry are not counted twice
+            long count = Math.min(progressRate, chunkLength - chunkTransferred);
+            if (count <= 0) {
+                return;
+            }
+            chunkTransferred += count;
+            if (chunkTransferred == chunkLength) {
+                completedNanos = System.nanoTime();
+            }
+
+            long transferred;
+            synchronized (dataTransferListeners) {
+                transferredBytes += count;
+                transferred = transferredBytes;
+            }
+            progress.onTransferProgress(count, transferred, totalToTransfer, fileAbsoluteName);
+        }
+    }
 }
@@ -8,6 +8,10 @@ package com.owncloud.android.lib.resources.files;
 
 import android.util.Log;
 
+import androidx.annotation.NonNull;
+
+import com.nextcloud.common.NextcloudClient;
+import com.nextcloud.common.SuspendingRemoteOperation;
 import com.owncloud.android.lib.common.OwnCloudClient;
 import com.owncloud.android.lib.common.operations.RemoteOperation;
 import com.owncloud.android.lib.common.operations.RemoteOperationResult;
@@ -21,6 +25,8 @@ import org.apache.jackrabbit.webdav.client.methods.CopyMethod;
 
 import java.io.IOException;
 
+import kotlin.coroutines.Continuation;
+
 
 /**
  * Remote operation moving a remote file or folder in the ownCloud server to a different folder
@@ -30,7 +36,7 @@ import java.io.IOException;
  *
  * @author David A. Velasco
  */
-public class CopyFileRemoteOperation extends RemoteOperation {
+public class CopyFileRemoteOperation extends RemoteOperation implements SuspendingRemoteOperation {
 
     private static final String TAG = CopyFileRemoteOperation.class.getSimpleName();
 
@@ -144,17 +150,7 @@ public class CopyFileRemoteOperation extends RemoteOperation {
         // For the moment, let's take the easy way.
 
         /// check that some error really occurred
-        MultiStatusResponse[] responses = copyMethod.getResponseBodyAsMultiStatus().getResponses();
-        Status[] status;
-        boolean failFound = false;
-        for (int i = 0; i < responses.length && !failFound; i++) {
-            status = responses[i].getStatus();
-            failFound = (
-                    status != null &&
-                            status.length > 0 &&
-                            status[0].getStatusCode() > 299
-            );
-        }
+        boolean failFound = hasFailure(copyMethod.getResponseBodyAsMultiStatus().getResponses());
 
         RemoteOperationResult result;
         if (failFound) {
@@ -166,6 +162,104 @@ public class CopyFileRemoteOperation extends RemoteOperation {
         return result;
     }
 
+    /**
+     * Performs the copy operation.
+     *
+     * @param client Client object to communicate with the remote Nextcloud server.
+     */
+    @Override
+    public RemoteOperationResult run(NextcloudClient client) {
+        RemoteOperationResult result = checkPaths();
+        if (result != null) {
+            return result;
+        }
+
+        com.nextcloud.operations.CopyMethod copyMethod = null;
+        try {
+            copyMethod = newCopyMethod(client);
+            result = onResponse(copyMethod, client.execute(copyMethod));
+
+        } catch (Exception e) {
+            result = new RemoteOperationResult(e);
+            Log.e(TAG, "Copy " + mSrcRemotePath + " to " + mTargetRemotePath + ": " + result.getLogMessage(), e);
+
+        } finally {
+            if (copyMethod != null) {
+                copyMethod.releaseConnection();
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public Object runSuspending(@NonNull NextcloudClient client, @NonNull Continuation continuation) {
+        return SuspendingFileOperations.copy(this, client, continuation);
+    }
+
+    /**
+     * @return result of the operation if it is known without asking the server, null otherwise
+     */
+    RemoteOperationResult checkPaths() {
+        if (mTargetRemotePath.equals(mSrcRemotePath)) {
+            // nothing to do!
+            return new RemoteOperationResult(ResultCode.OK);
+        }
+
+        if (mTargetRemotePath.startsWith(mSrcRemotePath)) {
+            return new RemoteOperationResult(ResultCode.INVALID_COPY_INTO_DESCENDANT);
+        }
+
+        return null;
+    }
+
+    com.nextcloud.operations.CopyMethod newCopyMethod(NextcloudClient client) {
+        com.nextcloud.operations.CopyMethod copyMethod = new com.nextcloud.operations.CopyMethod(
+                client.getFilesDavUri(mSrcRemotePath),
+                client.getFilesDavUri(mTargetRemotePath),
+                mOverwrite
+        );
+        copyMethod.setTimeouts(COPY_READ_TIMEOUT, COPY_CONNECTION_TIMEOUT);
+        return copyMethod;
+    }
+
+    RemoteOperationResult onResponse(com.nextcloud.operations.CopyMethod copyMethod, int status)
+            throws IOException, DavException {
+        RemoteOperationResult result;
+        if (status == HttpStatus.SC_MULTI_STATUS) {
+            if (hasFailure(copyMethod.getResponseBodyAsMultiStatus().getResponses())) {
+                result = new RemoteOperationResult(ResultCode.PARTIAL_COPY_DONE);
+            } else {
+                result = new RemoteOperationResult(true, copyMethod);
+            }
+        } else if (status == HttpStatus.SC_PRECONDITION_FAILED && !mOverwrite) {
+            result = new RemoteOperationResult(ResultCode.INVALID_OVERWRITE);
+        } else {
+            result = new RemoteOperationResult(isSuccess(status), copyMethod);
+        }
+
+        Log.i(TAG, "Copy " + mSrcRemotePath + " to " + mTargetRemotePath + ": " + result.getLogMessage());
+        return result;
+    }
+
+    /**
+     * @param responses Responses of a multistatus answer to a COPY request
+     * @return 'True' if any of the responses reports an error
+     */
+    private boolean hasFailure(MultiStatusResponse[] responses) {
+        Status[] status;
+        boolean failFound = false;
+        for (int i = 0; i < responses.length && !failFound; i++) {
+            status = responses[i].getStatus();
+            failFound = (
+                status != null &&
+                    status.length > 0 &&
+                    status[0].getStatusCode() > 299
+            );
+        }
+        return failFound;
+    }
+
     protected boolean isSuccess(int status) {
         return status == HttpStatus.SC_CREATED || status == HttpStatus.SC_NO_CONTENT;
     }
@@ -8,6 +8,10 @@ package com.owncloud.android.lib.resources.files;
 
 import android.text.TextUtils;
 
+import androidx.annotation.NonNull;
+
+import com.nextcloud.common.NextcloudClient;
+import com.nextcloud.common.SuspendingRemoteOperation;
 import com.owncloud.android.lib.common.OwnCloudClient;
 import com.owncloud.android.lib.common.operations.RemoteOperation;
 import com.owncloud.android.lib.common.operations.RemoteOperationResult;
@@ -17,6 +21,8 @@ import org.apache.commons.httpclient.Header;
 import org.apache.commons.httpclient.HttpStatus;
 import org.apache.jackrabbit.webdav.client.methods.MkColMethod;
 
+import kotlin.coroutines.Continuation;
+
 
 /**
  * Remote operation performing the creation of a new folder in the ownCloud server.
@@ -24,7 +30,8 @@ import org.apache.jackrabbit.webdav.client.methods.MkColMethod;
  * @author David A. Velasco
  * @author masensio
  */
-public class CreateFolderRemoteOperation extends RemoteOperation<String> {
+public class CreateFolderRemoteOperation extends RemoteOperation<String>
+    implements SuspendingRemoteOperation<String> {
 
     private static final String TAG = CreateFolderRemoteOperation.class.getSimpleName();
 
@@ -121,5 +128,85 @@ public class CreateFolderRemoteOperation extends RemoteOperation<String> {
         return operation.execute(client);
     }
 
+    /**
+     * Performs the operation
+     *
+     * @param client Client object to communicate with the remote Nextcloud server.
+     */
+    @Override
+    public RemoteOperationResult<String> run(NextcloudClient client) {
+        RemoteOperationResult<String> result = createFolder(client);
+
+        if (isParentMissing(result)) {
+            result = newParentOperation().execute(client);
+            if (result.isSuccess()) {
+                result = createFolder(client);    // second (and last) try
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public Object runSuspending(@NonNull NextcloudClient client,
+                                @NonNull Continuation<? super RemoteOperationResult<String>> continuation) {
+        return SuspendingFileOperations.createFolder(this, client, continuation);
+    }
+
+    private RemoteOperationResult<String> createFolder(NextcloudClient client) {
+        RemoteOperationResult<String> result;
+        com.nextcloud.operations.MkColMethod mkCol = null;
+        try {
+            mkCol = newMkCol(client);
+            result = onResponse(mkCol, client.execute(mkCol));
+        } catch (Exception e) {
+            result = new RemoteOperationResult<>(e);
+            Log_OC.e(TAG, "Create directory " + remotePath + ": " + result.getLogMessage(), e);
+
+        } finally {
+            if (mkCol != null) {
+                mkCol.releaseConnection();
+            }
+        }
+        return result;
+    }
+
+    com.nextcloud.operations.MkColMethod newMkCol(NextcloudClient client) {
+        com.nextcloud.operations.MkColMethod mkCol =
+            new com.nextcloud.operations.MkColMethod(client.getFilesDavUri(remotePath), false);
+        mkCol.setTimeouts(READ_TIMEOUT, CONNECTION_TIMEOUT);
+
+        if (!TextUtils.isEmpty(token)) {
+            mkCol.addRequestHeader(E2E_TOKEN, token);
+        }
+        return mkCol;
+    }
+
+    RemoteOperationResult<String> onResponse(com.nextcloud.operations.MkColMethod mkCol, int status) {
+        RemoteOperationResult<String> result;
+        if (HttpStatus.SC_METHOD_NOT_ALLOWED == status) {
+            result = new RemoteOperationResult<>(RemoteOperationResult.ResultCode.FOLDER_ALREADY_EXISTS);
+        } else {
+            result = new RemoteOperationResult<>(status == HttpStatus.SC_CREATED, mkCol);
+            result.setResultData(mkCol.getResponseHeader("OC-FileId"));
+        }
+
+        Log_OC.d(TAG, "Create directory " + remotePath + ": " + result.getLogMessage());
+        return result;
+    }
+
+    /**
+     * @return 'True' if the folder could not be created for a missing parent, which is to be created first.
+     */
+    boolean isParentMissing(RemoteOperationResult<String> result) {
+        return !result.isSuccess() && createFullPath &&
+                RemoteOperationResult.ResultCode.CONFLICT == result.getCode() &&
+                !"/".equals(remotePath); // this must already exists
+    }
+
+    CreateFolderRemoteOperation newParentOperation() {
+        return new CreateFolderRemoteOperation(FileUtils.getParentPath(remotePath), createFullPath);
+    }
+
 
 }
@@ -7,7 +7,11 @@
 package com.owncloud.android.lib.resources.files;
 
 import com.owncloud.android.lib.common.OwnCloudClient;
+import com.owncloud.android.lib.common.network.BandwidthLimiter;
+import com.owncloud.android.lib.common.network.BandwidthLimits;
 import com.owncloud.android.lib.common.network.OnDatatransferProgressListener;
+import com.owncloud.android.lib.common.network.ProgressDispatcher;
+import com.owncloud.android.lib.common.network.RetryBudget;
 import com.owncloud.android.lib.common.network.WebdavUtils;
 import com.owncloud.android.lib.common.operations.OperationCancelledException;
 import com.owncloud.android.lib.common.operations.RemoteOperation;
@@ -15,18 +19,35 @@ import com.owncloud.android.lib.common.operations.RemoteOperationResult;
 import com.owncloud.android.lib.common.utils.Log_OC;
 
 import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HttpMethodBase;
 import org.apache.commons.httpclient.HttpStatus;
 import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.methods.HeadMethod;
 
 import java.io.BufferedInputStream;
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Remote operation performing the download of a remote file in the ownCloud server.
@@ -37,13 +58,28 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
 public class DownloadFileRemoteOperation extends RemoteOperation {
 
+    public static final int DEFAULT_SEGMENTS = 1;
+    public static final int MAX_SEGMENTS = 8;
+
+    /**
+     * Smallest range downloaded by a segment; smaller files are downloaded in fewer segments, or with a single GET.
+     */
+    public static final long MIN_SEGMENT_SIZE = 4 * 1024 * 1024;
+
     private static final String TAG = DownloadFileRemoteOperation.class.getSimpleName();
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String PARTIAL_ETAG_SUFFIX = ".etag";
 
-    private Set<OnDatatransferProgressListener> mDataTransferListeners = new HashSet<>();
+    private final Set<OnDatatransferProgressListener> mDataTransferListeners = new CopyOnWriteArraySet<>();
     private final AtomicBoolean mCancellationRequested = new AtomicBoolean(false);
     private long modificationTimestamp = 0;
     private String eTag = "";
     private GetMethod getMethod;
+    private HttpMethodBase resultMethod;
+    private int segments = DEFAULT_SEGMENTS;
+    private final Set<HttpMethodBase> activeMethods = new HashSet<>();
+    private long resumedBytes;
+    private BandwidthLimiter bandwidthLimiter = BandwidthLimits.globalDownload;
 
     private String remotePath;
     private String temporalFolderPath;
@@ -57,6 +93,35 @@ public class DownloadFileRemoteOperation extends RemoteOperation {
         this.temporalFolderPath = temporalFolderPath;
     }
 
+    /**
+     * Number of ranges downloaded at the same time, capped at {@link #MAX_SEGMENTS}; 1, the default, downloads with
+     * a single GET.
+     * <p>
+     * Segmented downloads help on connections with a high latency or a per connection throughput limit. They need
+     * a server accepting byte ranges and a strong ETag, and fall back to a single GET otherwise. Progress is
+     * coalesced by a {@link ProgressDispatcher} either way, with the total transferred so far across all ranges.
+     */
+    public void setSegments(int segments) {
+        this.segments = Math.max(1, Math.min(segments, MAX_SEGMENTS));
+    }
+
+    public int getSegments() {
+        return segments;
+    }
+
+    /**
+     * Sets the limiter the download has to pass, e.g. {@link BandwidthLimits#download(String)} of the account;
+     * defaults to {@link BandwidthLimits#globalDownload}, null downloads unthrottled.
+     */
+    public void setBandwidthLimiter(BandwidthLimiter bandwidthLimiter) {
+        this.bandwidthLimiter = bandwidthLimiter;
+    }
+
+    @Override
+    protected boolean isTransfer() {
+        return true;
+    }
+
 	@Override
 	protected RemoteOperationResult run(OwnCloudClient client) {
         RemoteOperationResult result;
@@ -67,8 +132,10 @@ public class DownloadFileRemoteOperation extends RemoteOperation {
         /// perform the download
         try {
             tmpFile.getParentFile().mkdirs();
-            int status = downloadFile(client, tmpFile);
-            result = new RemoteOperationResult(isSuccess(status), getMethod);
+            // a partial file left by an earlier attempt is resumed rather than downloaded again in segments
+            boolean resume = readPartialEtag(tmpFile, getPartialEtagFile(tmpFile)) != null;
+            int status = segments > 1 && !resume ? downloadSegmented(client, tmpFile) : downloadFile(client, tmpFile);
+            result = new RemoteOperationResult(isSuccess(status), resultMethod);
             Log_OC.i(TAG, "Download of " + remotePath + " to " + getTmpPath() + ": " +
                 result.getLogMessage());
 
@@ -85,13 +152,33 @@ public class DownloadFileRemoteOperation extends RemoteOperation {
     private int downloadFile(OwnCloudClient client, File targetFile) throws IOException, OperationCancelledException, CreateLocalFileException {
         int status;
         boolean savedFile = false;
+        boolean resumable = false;
+        boolean restart = false;
+        File etagFile = getPartialEtagFile(targetFile);
+        String partialEtag = readPartialEtag(targetFile, etagFile);
+        long resumeFrom = partialEtag != null ? targetFile.length() : 0;
+        resumedBytes = 0;
         getMethod = new GetMethod(client.getFilesDavUri(remotePath));
-        Iterator<OnDatatransferProgressListener> it;
+        resultMethod = getMethod;
+        ProgressDispatcher progress = newProgressDispatcher();
+        if (partialEtag != null) {
+            // the server sends the whole file instead if it changed since the partial download
+            getMethod.addRequestHeader("Range", "bytes=" + resumeFrom + "-");
+            getMethod.addRequestHeader("If-Range", partialEtag);
+        }
 
         FileOutputStream fos = null;
         try {
             status = client.executeMethod(getMethod);
-            if (isSuccess(status)) {
+            boolean resumed = status == HttpStatus.SC_PARTIAL_CONTENT && partialEtag != null;
+            if (resumed && !isContentRangeFrom(getMethod, resumeFrom) ||
+                status == HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE && partialEtag != null) {
+                // the partial file does not fit the remote file anymore
+                Log_OC.d(TAG, "Cannot resume download of " + remotePath + ", downloading it again");
+                getMethod.abort();
+                restart = true;
+
+            } else if (isSuccess(status) || resumed) {
                 try {
                     targetFile.createNewFile();
                 } catch (IOException | SecurityException ex) {
@@ -99,15 +186,26 @@ public class DownloadFileRemoteOperation extends RemoteOperation {
                     throw new CreateLocalFileException(targetFile.getPath(), ex);
                 }
                 BufferedInputStream bis = new BufferedInputStream(getMethod.getResponseBodyAsStream());
-                fos = new FileOutputStream(targetFile);
-                long transferred = 0;
+                fos = new FileOutputStream(targetFile, resumed);
+                long transferred = resumed ? resumeFrom : 0;
+                resumedBytes = transferred;
 
                 Header contentLength = getMethod.getResponseHeader("Content-Length");
                 long totalToTransfer = (contentLength != null &&
                         contentLength.getValue().length() > 0) ?
-                        Long.parseLong(contentLength.getValue()) : 0;
+                        transferred + Long.parseLong(contentLength.getValue()) : 0;
+
+                // remember the version of the file, so that the download can be resumed if it breaks
+                Header etagHeader = getMethod.getResponseHeader("ETag");
+                String etag = etagHeader != null ? etagHeader.getValue() : (resumed ? partialEtag : null);
+                resumable = totalToTransfer > 0 && isStrongEtag(etag) && writePartialEtag(etagFile, etag);
+
+                if (resumed) {
+                    // bytes downloaded by an earlier attempt are reported on their own, before any new bytes
+                    progress.onTransferProgress(0, transferred, totalToTransfer, targetFile.getName());
+                }
 
-                byte[] bytes = new byte[4096];
+                byte[] bytes = new byte[BUFFER_SIZE];
                 int readResult;
                 while ((readResult = bis.read(bytes)) != -1) {
                     synchronized (mCancellationRequested) {
@@ -116,15 +214,12 @@ public class DownloadFileRemoteOperation extends RemoteOperation {
                             throw new OperationCancelledException();
                         }
                     }
+                    if (bandwidthLimiter != null) {
+                        bandwidthLimiter.acquire(readResult);
+                    }
                     fos.write(bytes, 0, readResult);
                     transferred += readResult;
-                    synchronized (mDataTransferListeners) {
-                        it = mDataTransferListeners.iterator();
-                        while (it.hasNext()) {
-                            it.next().onTransferProgress(readResult, transferred, totalToTransfer,
-                                targetFile.getName());
-                        }
-                    }
+                    progress.onTransferProgress(readResult, transferred, totalToTransfer, targetFile.getName());
                 }
                 // Check if the file is completed
                 // if transfer-encoding: chunked we cannot check if the file is complete
@@ -137,6 +232,7 @@ public class DownloadFileRemoteOperation extends RemoteOperation {
                 
                 if (transferred == totalToTransfer || transferEncoding) {  
                     savedFile = true;
+                    status = HttpStatus.SC_OK;
                     Header modificationTime = getMethod.getResponseHeader("Last-Modified");
                     if (modificationTime == null) {
                         modificationTime = getMethod.getResponseHeader("last-modified");
@@ -155,23 +251,188 @@ public class DownloadFileRemoteOperation extends RemoteOperation {
 
                 } else {
                     client.exhaustResponse(getMethod.getResponseBodyAsStream());
-                    // TODO some kind of error control!
+                    throw new IOException("Incomplete download of " + remotePath + ": " + transferred + " of " +
+                                              totalToTransfer + " bytes");
                 }
 
             } else {
                 client.exhaustResponse(getMethod.getResponseBodyAsStream());
+                // a partial file stays resumable while the server fails temporarily
+                resumable = partialEtag != null && status >= HttpStatus.SC_INTERNAL_SERVER_ERROR;
             }
 
         } finally {
+            progress.flush();
             if (fos != null) fos.close();
-            if (!savedFile && targetFile.exists()) {
+            // partial files are kept for resuming, unless the download was cancelled
+            boolean keepPartialFile = resumable && !mCancellationRequested.get();
+            if (!savedFile && !keepPartialFile && targetFile.exists()) {
                 targetFile.delete();
             }
+            if (savedFile || !keepPartialFile) {
+                etagFile.delete();
+            }
             getMethod.releaseConnection();    // let the connection available for other methods
         }
+
+        if (restart) {
+            return downloadFile(client, targetFile);
+        }
+        return status;
+    }
+
+    /**
+     * @return dispatcher coalescing the progress of one transfer, handing it on to the listeners registered on the
+     * operation at that time
+     */
+    private ProgressDispatcher newProgressDispatcher() {
+        ProgressDispatcher progress = new ProgressDispatcher();
+        progress.addDataTransferProgressListener(this::notifyListeners);
+        return progress;
+    }
+
+    private void notifyListeners(long progressRate, long transferred, long totalToTransfer, String fileName) {
+        for (OnDatatransferProgressListener listener : mDataTransferListeners) {
+            listener.onTransferProgress(progressRate, transferred, totalToTransfer, fileName);
+        }
+    }
+
+    /**
+     * @return ETag of the partial download in the target file, or null if there is none to resume
+     */
+    private static String readPartialEtag(File targetFile, File etagFile) {
+        if (!targetFile.isFile() || targetFile.length() == 0 || !etagFile.isFile()) {
+            return null;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(etagFile),
+                                                                               "UTF-8"))) {
+            String etag = reader.readLine();
+            return isStrongEtag(etag) ? etag : null;
+        } catch (IOException e) {
+            Log_OC.w(TAG, "Cannot read ETag of partial download " + etagFile.getAbsolutePath());
+            return null;
+        }
+    }
+
+    private static boolean writePartialEtag(File etagFile, String etag) {
+        try (FileOutputStream out = new FileOutputStream(etagFile)) {
+            out.write(etag.getBytes("UTF-8"));
+            return true;
+        } catch (IOException e) {
+            Log_OC.w(TAG, "Cannot write ETag of partial download " + etagFile.getAbsolutePath());
+            return false;
+        }
+    }
+
+    private static File getPartialEtagFile(File targetFile) {
+        return new File(targetFile.getPath() + PARTIAL_ETAG_SUFFIX);
+    }
+
+    private static boolean isContentRangeFrom(HttpMethodBase method, long start) {
+        Header contentRange = method.getResponseHeader("Content-Range");
+        return contentRange != null && contentRange.getValue().startsWith("bytes " + start + "-");
+    }
+
+    /**
+     * If-Range requires a strong validator.
+     */
+    private static boolean isStrongEtag(String etag) {
+        return etag != null && etag.startsWith("\"");
+    }
+
+    /**
+     * Downloads the file in ranges, written in parallel to a file preallocated to the full length. Ranges are
+     * requested with If-Range, so a file changed since the HEAD request is downloaded again with a single GET.
+     */
+    private int downloadSegmented(OwnCloudClient client, File targetFile)
+        throws IOException, OperationCancelledException, CreateLocalFileException {
+        String uri = client.getFilesDavUri(remotePath);
+        HeadMethod headMethod = new HeadMethod(uri);
+        int status;
+        try {
+            status = client.executeMethod(headMethod);
+        } finally {
+            headMethod.releaseConnection();
+        }
+        resultMethod = headMethod;
+        if (!isSuccess(status)) {
+            return status;
+        }
+
+        Header contentLength = headMethod.getResponseHeader("Content-Length");
+        Header acceptRanges = headMethod.getResponseHeader("Accept-Ranges");
+        Header etagHeader = headMethod.getResponseHeader("ETag");
+        long length = contentLength != null ? parseLength(contentLength.getValue()) : -1;
+        int count = (int) Math.min(segments, length / MIN_SEGMENT_SIZE);
+        boolean rangesAccepted = acceptRanges != null &&
+            acceptRanges.getValue().toLowerCase(Locale.ROOT).contains("bytes");
+        if (count < 2 || !rangesAccepted || etagHeader == null || !isStrongEtag(etagHeader.getValue())) {
+            return downloadFile(client, targetFile);
+        }
+
+        try {
+            targetFile.createNewFile();
+        } catch (IOException | SecurityException ex) {
+            Log_OC.e(TAG, "Error creating file " + targetFile.getAbsolutePath(), ex);
+            throw new CreateLocalFileException(targetFile.getPath(), ex);
+        }
+
+        boolean savedFile = false;
+        boolean changed = false;
+        RandomAccessFile raf = new RandomAccessFile(targetFile, "rw");
+        try {
+            raf.setLength(length);
+            SegmentedDownload download = new SegmentedDownload(client,
+                                                               uri,
+                                                               etagHeader.getValue(),
+                                                               raf.getChannel(),
+                                                               length,
+                                                               targetFile.getName());
+            status = download.run(count);
+
+            if (status == HttpStatus.SC_OK) {
+                // the server sent the whole file instead of a range
+                changed = true;
+            } else if (status == HttpStatus.SC_PARTIAL_CONTENT) {
+                savedFile = true;
+                status = HttpStatus.SC_OK;
+                Header modificationTime = headMethod.getResponseHeader("Last-Modified");
+                if (modificationTime != null) {
+                    Date d = WebdavUtils.parseResponseDate(modificationTime.getValue());
+                    modificationTimestamp = (d != null) ? d.getTime() : 0;
+                }
+                eTag = WebdavUtils.getEtagFromResponse(headMethod);
+            }
+        } finally {
+            raf.close();
+            if (!savedFile && targetFile.exists()) {
+                targetFile.delete();
+            }
+        }
+
+        if (changed) {
+            Log_OC.d(TAG, remotePath + " changed while downloading, downloading it again");
+            return downloadFile(client, targetFile);
+        }
         return status;
     }
 
+    private static long parseLength(String value) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void abortActiveMethods() {
+        synchronized (activeMethods) {
+            for (HttpMethodBase method : activeMethods) {
+                method.abort();
+            }
+        }
+    }
+
     private boolean isSuccess(int status) {
         return (status == HttpStatus.SC_OK);
     }
@@ -181,19 +442,16 @@ public class DownloadFileRemoteOperation extends RemoteOperation {
     }
 
     public void addDatatransferProgressListener(OnDatatransferProgressListener listener) {
-        synchronized (mDataTransferListeners) {
-            mDataTransferListeners.add(listener);
-        }
+        mDataTransferListeners.add(listener);
     }
 
     public void removeDatatransferProgressListener(OnDatatransferProgressListener listener) {
-        synchronized (mDataTransferListeners) {
-            mDataTransferListeners.remove(listener);
-        }
+        mDataTransferListeners.remove(listener);
     }
 
     public void cancel() {
         mCancellationRequested.set(true);   // atomic set; there is no need of synchronizing it
+        abortActiveMethods();
     }
 
     public long getModificationTimestamp() {
@@ -203,4 +461,166 @@ public class DownloadFileRemoteOperation extends RemoteOperation {
     public String getEtag() {
         return eTag;
     }
+
+    /**
+     * @return bytes of the file downloaded by an earlier attempt and not transferred again, 0 if the download was not
+     * resumed
+     */
+    public long getResumedBytes() {
+        return resumedBytes;
+    }
+
+    /**
+     * Downloads the ranges of one file in parallel; the first failing range stops all others.
+     */
+    private final class SegmentedDownload {
+        private final OwnCloudClient client;
+        private final String uri;
+        private final String etag;
+        private final FileChannel channel;
+        private final long length;
+        private final String name;
+        private final ProgressDispatcher progress = newProgressDispatcher();
+        private final AtomicLong transferredBytes = new AtomicLong();
+        private HttpMethodBase failedMethod; // guarded by this
+        private int failedStatus; // guarded by this
+        private Exception failure; // guarded by this
+
+        SegmentedDownload(OwnCloudClient client,
+                          String uri,
+                          String etag,
+                          FileChannel channel,
+                          long length,
+                          String name) {
+            this.client = client;
+            this.uri = uri;
+            this.etag = etag;
+            this.channel = channel;
+            this.length = length;
+            this.name = name;
+        }
+
+        /**
+         * @return 206 if all ranges were downloaded, otherwise the status of the first failed range
+         */
+        int run(int count) throws IOException, OperationCancelledException {
+            long segmentLength = length / count;
+            ExecutorService executor = Executors.newFixedThreadPool(count - 1);
+            List<Future<?>> futures = new ArrayList<>();
+            try {
+                for (int i = 1; i < count; i++) {
+                    final long start = i * segmentLength;
+                    final long end = i == count - 1 ? length : start + segmentLength;
+                    futures.add(executor.submit(RetryBudget.wrap(() -> downloadRange(start, end))));
+                }
+                // the calling thread downloads the first range
+                downloadRange(0, segmentLength);
+
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(null, 0, new OperationCancelledException());
+            } catch (ExecutionException e) {
+                fail(null, 0, new IOException(e.getCause()));
+            } finally {
+                executor.shutdown();
+                progress.flush();
+            }
+
+            synchronized (this) {
+                if (mCancellationRequested.get()) {
+                    throw new OperationCancelledException();
+                } else if (failure instanceof IOException) {
+                    throw (IOException) failure;
+                } else if (failure instanceof OperationCancelledException) {
+                    throw (OperationCancelledException) failure;
+                } else if (failure != null) {
+                    throw new IOException(failure);
+                } else if (failedMethod != null) {
+                    resultMethod = failedMethod;
+                    return failedStatus;
+                }
+            }
+            return HttpStatus.SC_PARTIAL_CONTENT;
+        }
+
+        /**
+         * @param end end of the range, exclusive
+         */
+        private void downloadRange(long start, long end) {
+            GetMethod method = new GetMethod(uri);
+            method.addRequestHeader("Range", "bytes=" + start + "-" + (end - 1));
+            method.addRequestHeader("If-Range", etag);
+            synchronized (activeMethods) {
+                activeMethods.add(method);
+            }
+            try {
+                if (mCancellationRequested.get() || hasFailed()) {
+                    return;
+                }
+                int status = client.executeMethod(method);
+                if (status != HttpStatus.SC_PARTIAL_CONTENT) {
+                    fail(method, status, null);
+                    return;
+                }
+                if (!isContentRangeFrom(method, start)) {
+                    throw new IOException("Unexpected range " + method.getResponseHeader("Content-Range") +
+                                              " downloading " + remotePath);
+                }
+                writeRange(method.getResponseBodyAsStream(), start, end);
+            } catch (Exception e) {
+                fail(null, 0, e);
+            } finally {
+                synchronized (activeMethods) {
+                    activeMethods.remove(method);
+                }
+                method.releaseConnection();
+            }
+        }
+
+        private void writeRange(InputStream input, long start, long end)
+            throws IOException, OperationCancelledException {
+            byte[] bytes = new byte[BUFFER_SIZE];
+            long position = start;
+            int readResult;
+            while (position < end &&
+                (readResult = input.read(bytes, 0, (int) Math.min(bytes.length, end - position))) != -1) {
+                if (mCancellationRequested.get()) {
+                    throw new OperationCancelledException();
+                }
+                if (bandwidthLimiter != null) {
+                    bandwidthLimiter.acquire(readResult);
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, readResult);
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+                progress.onTransferProgress(readResult, transferredBytes.addAndGet(readResult), length, name);
+            }
+            if (position < end) {
+                throw new IOException("Incomplete range " + start + "-" + (end - 1) + " downloading " + remotePath);
+            }
+        }
+
+        private synchronized boolean hasFailed() {
+            return failedMethod != null || failure != null;
+        }
+
+        /**
+         * Keeps the first failure and aborts all other ranges; failures of the aborted ranges are ignored.
+         */
+        private void fail(HttpMethodBase method, int status, Exception exception) {
+            synchronized (this) {
+                if (hasFailed()) {
+                    return;
+                }
+                failedMethod = method;
+                failedStatus = status;
+                failure = exception;
+            }
+            abortActiveMethods();
+        }
+    }
 }
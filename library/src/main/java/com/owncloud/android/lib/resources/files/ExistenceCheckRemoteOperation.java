@@ -8,6 +8,10 @@ package com.owncloud.android.lib.resources.files;
 
 import android.content.Context;
 
+import androidx.annotation.NonNull;
+
+import com.nextcloud.common.NextcloudClient;
+import com.nextcloud.common.SuspendingRemoteOperation;
 import com.owncloud.android.lib.common.OwnCloudAnonymousCredentials;
 import com.owncloud.android.lib.common.OwnCloudClient;
 import com.owncloud.android.lib.common.network.RedirectionPath;
@@ -18,12 +22,14 @@ import com.owncloud.android.lib.common.utils.Log_OC;
 import org.apache.commons.httpclient.HttpStatus;
 import org.apache.commons.httpclient.methods.HeadMethod;
 
+import kotlin.coroutines.Continuation;
+
 /**
  * Operation to check the existence or absence of a path in a remote server.
  * 
  * @author David A. Velasco
  */
-public class ExistenceCheckRemoteOperation extends RemoteOperation {
+public class ExistenceCheckRemoteOperation extends RemoteOperation implements SuspendingRemoteOperation {
     
     /** Maximum time to wait for a response from the server in MILLISECONDs.  */
     public static final int TIMEOUT = 50000;
@@ -106,6 +112,60 @@ public class ExistenceCheckRemoteOperation extends RemoteOperation {
         return result;
 	}
 
+    @Override
+    public RemoteOperationResult run(NextcloudClient client) {
+        RemoteOperationResult result;
+        com.nextcloud.operations.HeadMethod head = null;
+        try {
+            head = newHead(client);
+            int status = client.execute(head);
+            RedirectionPath redirectionPath = client.getFollowRedirects() ? client.followRedirection(head) : null;
+            result = onResponse(client, head, status, redirectionPath);
+
+        } catch (Exception e) {
+            result = new RemoteOperationResult(e);
+            Log_OC.e(TAG, "Existence check for " + client.getFilesDavUri(mPath) + " targeting for " +
+                    (mSuccessIfAbsent ? " absence " : " existence ") + ": " +
+                    result.getLogMessage(), result.getException());
+
+        } finally {
+            if (head != null) {
+                head.releaseConnection();
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Object runSuspending(@NonNull NextcloudClient client, @NonNull Continuation continuation) {
+        return SuspendingFileOperations.checkExistence(this, client, continuation);
+    }
+
+    com.nextcloud.operations.HeadMethod newHead(NextcloudClient client) {
+        com.nextcloud.operations.HeadMethod head =
+            new com.nextcloud.operations.HeadMethod(client.getFilesDavUri(mPath), false);
+        head.setTimeouts(TIMEOUT, TIMEOUT);
+        // follow redirects here to keep their path, without changing the client other operations share
+        head.setFollowRedirects(false);
+        return head;
+    }
+
+    RemoteOperationResult onResponse(NextcloudClient client,
+                                     com.nextcloud.operations.HeadMethod head,
+                                     int status,
+                                     RedirectionPath redirectionPath) {
+        mRedirectionPath = redirectionPath;
+        if (redirectionPath != null) {
+            status = redirectionPath.getLastStatus();
+        }
+        boolean success = (status == HttpStatus.SC_OK && !mSuccessIfAbsent) ||
+                (status == HttpStatus.SC_NOT_FOUND && mSuccessIfAbsent);
+        RemoteOperationResult result = new RemoteOperationResult(success, head);
+        Log_OC.d(TAG, "Existence check for " + client.getFilesDavUri(mPath) + " targeting for " +
+                (mSuccessIfAbsent ? " absence " : " existence ") +
+                "finished with HTTP status " + status + (!success ? "(FAIL)" : ""));
+        return result;
+    }
 
     /**
      * Gets the sequence of redirections followed during the execution of the operation.
@@ -0,0 +1,30 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.resources.files
+
+/**
+ * Uploads all chunks with the same size, regardless of the measured throughput.
+ */
+class FixedChunkSizePolicy(private val chunkSize: Long) : ChunkSizePolicy {
+    init {
+        require(chunkSize > 0) { "Chunk size must be greater than zero" }
+    }
+
+    override fun nextChunkSize(): Long = chunkSize
+
+    override fun onChunkUploaded(
+        length: Long,
+        durationMillis: Long,
+        latencyMillis: Long
+    ) {
+        // nothing to adapt
+    }
+
+    override fun onChunkFailed(length: Long) {
+        // nothing to adapt
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.resources.files
+
+import com.nextcloud.common.NextcloudClient
+import com.nextcloud.common.await
+import com.owncloud.android.lib.common.network.PropertyProfile
+import com.owncloud.android.lib.common.operations.BoundedOperationExecutor
+import com.owncloud.android.lib.common.operations.OperationExecutor
+import com.owncloud.android.lib.common.operations.RemoteOperationResult
+import com.owncloud.android.lib.resources.files.model.FolderPage
+import com.owncloud.android.lib.resources.files.model.RemoteFile
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.buffer
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.transform
+import java.io.Closeable
+import java.io.IOException
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.FutureTask
+
+/**
+ * Iterates over the entries of a folder page by page, see [ReadFolderPageRemoteOperation].
+ *
+ * As soon as a page arrived, the next one is requested in the background, so that the network round trip overlaps
+ * with processing the current page. The first entry is the folder itself.
+ *
+ * Pages are prefetched on [executor], by default one of its own, so that prefetching never waits for workers busy
+ * with other operations. A page the iterator waits for but no worker started yet is read on the calling thread, so
+ * iterating does not deadlock even on a worker of [executor].
+ *
+ * Iteration ends early if a page cannot be read; [failure] holds the failed result then. [close] stops
+ * prefetching when the caller is not interested in the remaining entries.
+ */
+class FolderPageIterator
+    @JvmOverloads
+    constructor(
+        private val client: NextcloudClient,
+        private val remotePath: String,
+        private val pageSize: Int = ReadFolderPageRemoteOperation.DEFAULT_PAGE_SIZE,
+        private val profile: PropertyProfile = PropertyProfile.FULL,
+        private val executor: OperationExecutor = prefetchExecutor
+    ) : Iterator<RemoteFile>, Closeable {
+        private var current: Iterator<RemoteFile> = emptyList<RemoteFile>().iterator()
+        private var pending: FutureTask<RemoteOperationResult<FolderPage>>? = fetch(null)
+
+        @Volatile
+        private var closed = false
+
+        /**
+         * Failed result of the last page request, null as long as all pages could be read.
+         */
+        var failure: RemoteOperationResult<FolderPage>? = null
+            private set
+
+        override fun hasNext(): Boolean {
+            while (!current.hasNext() && !closed) {
+                val next = pending ?: return false
+                pending = null
+                val result = get(next)
+                if (!result.isSuccess) {
+                    failure = result
+                    return false
+                }
+                val page = result.resultData
+                if (page.hasMore) {
+                    pending = fetch(page)
+                }
+                current = page.files.iterator()
+            }
+            return current.hasNext() && !closed
+        }
+
+        override fun next(): RemoteFile {
+            if (!hasNext()) {
+                throw NoSuchElementException()
+            }
+            return current.next()
+        }
+
+        override fun close() {
+            closed = true
+            pending?.cancel(true)
+            pending = null
+        }
+
+        private fun fetch(previous: FolderPage?): FutureTask<RemoteOperationResult<FolderPage>> {
+            val operation = ReadFolderPageRemoteOperation(remotePath, pageSize, previous, profile)
+            val task = FutureTask { operation.execute(client) }
+            // the caller is waiting for this page, so it goes ahead of other queued operations
+            executor.submit(task, OperationExecutor.PRIORITY_HIGH)
+            return task
+        }
+
+        private fun get(future: FutureTask<RemoteOperationResult<FolderPage>>): RemoteOperationResult<FolderPage> =
+            try {
+                // no-op if a worker started the task already
+                future.run()
+                future.get()
+            } catch (e: ExecutionException) {
+                RemoteOperationResult(e.cause as? Exception ?: e)
+            } catch (e: InterruptedException) {
+                Thread.currentThread().interrupt()
+                RemoteOperationResult(e)
+            }
+
+        companion object {
+            private const val PREFETCH_THREADS = 2
+
+            private val prefetchExecutor: OperationExecutor by lazy { BoundedOperationExecutor(PREFETCH_THREADS) }
+
+            /**
+             * Emits the entries of a folder page by page; the next page is requested while the collector processes
+             * the current one.
+             *
+             * @throws IOException to the collector if a page cannot be read
+             */
+            @JvmStatic
+            @JvmOverloads
+            fun flow(
+                client: NextcloudClient,
+                remotePath: String,
+                pageSize: Int = ReadFolderPageRemoteOperation.DEFAULT_PAGE_SIZE,
+                profile: PropertyProfile = PropertyProfile.FULL
+            ): Flow<RemoteFile> =
+                flow {
+                    var page: FolderPage? = null
+                    do {
+                        val result = ReadFolderPageRemoteOperation(remotePath, pageSize, page, profile).await(client)
+                        if (!result.isSuccess) {
+                            throw IOException("Reading $remotePath failed: ${result.code}", result.exception)
+                        }
+                        page = result.resultData
+                        emit(page)
+                    } while (page!!.hasMore)
+                }.buffer(1).transform { page -> page.files.forEach { emit(it) } }
+        }
+    }
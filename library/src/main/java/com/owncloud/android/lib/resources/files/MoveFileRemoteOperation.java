@@ -8,6 +8,10 @@ package com.owncloud.android.lib.resources.files;
 
 import android.util.Log;
 
+import androidx.annotation.NonNull;
+
+import com.nextcloud.common.NextcloudClient;
+import com.nextcloud.common.SuspendingRemoteOperation;
 import com.owncloud.android.lib.common.OwnCloudClient;
 import com.owncloud.android.lib.common.operations.RemoteOperation;
 import com.owncloud.android.lib.common.operations.RemoteOperationResult;
@@ -21,6 +25,8 @@ import org.apache.jackrabbit.webdav.client.methods.MoveMethod;
 
 import java.io.IOException;
 
+import kotlin.coroutines.Continuation;
+
 /**
  * Remote operation moving a remote file or folder in the ownCloud server to a different folder
  * in the same account.
@@ -29,7 +35,7 @@ import java.io.IOException;
  *
  * @author David A. Velasco
  */
-public class MoveFileRemoteOperation extends RemoteOperation {
+public class MoveFileRemoteOperation extends RemoteOperation implements SuspendingRemoteOperation {
 
     private static final String TAG = MoveFileRemoteOperation.class.getSimpleName();
 
@@ -146,17 +152,7 @@ public class MoveFileRemoteOperation extends RemoteOperation {
         // For the moment, let's take the easy way.
 
         /// check that some error really occurred
-        MultiStatusResponse[] responses = move.getResponseBodyAsMultiStatus().getResponses();
-        Status[] status = null;
-        boolean failFound = false;
-        for (int i = 0; i < responses.length && !failFound; i++) {
-            status = responses[i].getStatus();
-            failFound = (
-                status != null &&
-                    status.length > 0 &&
-                    status[0].getStatusCode() > 299
-            );
-        }
+        boolean failFound = hasFailure(move.getResponseBodyAsMultiStatus().getResponses());
 
         RemoteOperationResult result;
         if (failFound) {
@@ -170,6 +166,104 @@ public class MoveFileRemoteOperation extends RemoteOperation {
     }
 
 
+    /**
+     * Performs the move operation.
+     *
+     * @param client Client object to communicate with the remote Nextcloud server.
+     */
+    @Override
+    public RemoteOperationResult run(NextcloudClient client) {
+        RemoteOperationResult result = checkPaths();
+        if (result != null) {
+            return result;
+        }
+
+        com.nextcloud.operations.MoveMethod move = null;
+        try {
+            move = newMoveMethod(client);
+            result = onResponse(move, client.execute(move));
+
+        } catch (Exception e) {
+            result = new RemoteOperationResult(e);
+            Log.e(TAG, "Move " + mSrcRemotePath + " to " + mTargetRemotePath + ": " + result.getLogMessage(), e);
+
+        } finally {
+            if (move != null) {
+                move.releaseConnection();
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public Object runSuspending(@NonNull NextcloudClient client, @NonNull Continuation continuation) {
+        return SuspendingFileOperations.move(this, client, continuation);
+    }
+
+    /**
+     * @return result of the operation if it is known without asking the server, null otherwise
+     */
+    RemoteOperationResult checkPaths() {
+        if (mTargetRemotePath.equals(mSrcRemotePath)) {
+            // nothing to do!
+            return new RemoteOperationResult(ResultCode.OK);
+        }
+
+        if (mTargetRemotePath.startsWith(mSrcRemotePath)) {
+            return new RemoteOperationResult(ResultCode.INVALID_MOVE_INTO_DESCENDANT);
+        }
+
+        return null;
+    }
+
+    com.nextcloud.operations.MoveMethod newMoveMethod(NextcloudClient client) {
+        com.nextcloud.operations.MoveMethod move = new com.nextcloud.operations.MoveMethod(
+                client.getFilesDavUri(mSrcRemotePath),
+                client.getFilesDavUri(mTargetRemotePath),
+                mOverwrite
+        );
+        move.setTimeouts(MOVE_READ_TIMEOUT, MOVE_CONNECTION_TIMEOUT);
+        return move;
+    }
+
+    RemoteOperationResult onResponse(com.nextcloud.operations.MoveMethod move, int status)
+            throws IOException, DavException {
+        RemoteOperationResult result;
+        if (status == HttpStatus.SC_MULTI_STATUS) {
+            if (hasFailure(move.getResponseBodyAsMultiStatus().getResponses())) {
+                result = new RemoteOperationResult(ResultCode.PARTIAL_MOVE_DONE);
+            } else {
+                result = new RemoteOperationResult(true, move);
+            }
+        } else if (status == HttpStatus.SC_PRECONDITION_FAILED && !mOverwrite) {
+            result = new RemoteOperationResult(ResultCode.INVALID_OVERWRITE);
+        } else {
+            result = new RemoteOperationResult(isSuccess(status), move);
+        }
+
+        Log.i(TAG, "Move " + mSrcRemotePath + " to " + mTargetRemotePath + ": " + result.getLogMessage());
+        return result;
+    }
+
+    /**
+     * @param responses Responses of a multistatus answer to a MOVE request
+     * @return 'True' if any of the responses reports an error
+     */
+    private boolean hasFailure(MultiStatusResponse[] responses) {
+        Status[] status;
+        boolean failFound = false;
+        for (int i = 0; i < responses.length && !failFound; i++) {
+            status = responses[i].getStatus();
+            failFound = (
+                status != null &&
+                    status.length > 0 &&
+                    status[0].getStatusCode() > 299
+            );
+        }
+        return failFound;
+    }
+
     protected boolean isSuccess(int status) {
         return status == HttpStatus.SC_CREATED || status == HttpStatus.SC_NO_CONTENT;
     }
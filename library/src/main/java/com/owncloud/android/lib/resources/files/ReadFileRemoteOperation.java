@@ -6,7 +6,12 @@
  */
 package com.owncloud.android.lib.resources.files;
 
+import androidx.annotation.NonNull;
+
+import com.nextcloud.common.NextcloudClient;
+import com.nextcloud.common.SuspendingRemoteOperation;
 import com.owncloud.android.lib.common.OwnCloudClient;
+import com.owncloud.android.lib.common.network.PropertyProfile;
 import com.owncloud.android.lib.common.network.WebdavEntry;
 import com.owncloud.android.lib.common.network.WebdavUtils;
 import com.owncloud.android.lib.common.operations.RemoteOperation;
@@ -16,11 +21,15 @@ import com.owncloud.android.lib.resources.files.model.RemoteFile;
 
 import org.apache.commons.httpclient.HttpStatus;
 import org.apache.jackrabbit.webdav.DavConstants;
+import org.apache.jackrabbit.webdav.DavException;
 import org.apache.jackrabbit.webdav.MultiStatus;
 import org.apache.jackrabbit.webdav.client.methods.PropFindMethod;
 
+import java.io.IOException;
 import java.util.ArrayList;
 
+import kotlin.coroutines.Continuation;
+
 
 /**
  * Remote operation performing the read a file from the ownCloud server.
@@ -29,7 +38,7 @@ import java.util.ArrayList;
  * @author masensio
  */
 
-public class ReadFileRemoteOperation extends RemoteOperation {
+public class ReadFileRemoteOperation extends RemoteOperation implements SuspendingRemoteOperation {
 
     private static final String TAG = ReadFileRemoteOperation.class.getSimpleName();
     private static final int SYNC_READ_TIMEOUT = 40000;
@@ -99,4 +108,61 @@ public class ReadFileRemoteOperation extends RemoteOperation {
         return result;
     }
 
+    /**
+     * Performs the read operation.
+     *
+     * @param client Client object to communicate with the remote Nextcloud server.
+     */
+    @Override
+    public RemoteOperationResult run(NextcloudClient client) {
+        com.nextcloud.operations.PropFindMethod propFind = null;
+        RemoteOperationResult result;
+
+        try {
+            propFind = newPropFind(client);
+            result = onResponse(client, propFind, client.execute(propFind));
+        } catch (Exception e) {
+            result = new RemoteOperationResult(e);
+            Log_OC.e(TAG, "Read file " + mRemotePath + " failed: " + result.getLogMessage(),
+                     result.getException());
+        } finally {
+            if (propFind != null) {
+                propFind.releaseConnection();
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Object runSuspending(@NonNull NextcloudClient client, @NonNull Continuation continuation) {
+        return SuspendingFileOperations.readFile(this, client, continuation);
+    }
+
+    com.nextcloud.operations.PropFindMethod newPropFind(NextcloudClient client) {
+        com.nextcloud.operations.PropFindMethod propFind =
+            new com.nextcloud.operations.PropFindMethod(client.getFilesDavUri(mRemotePath),
+                                                        PropertyProfile.FILE,
+                                                        DavConstants.DEPTH_0);
+        propFind.setTimeouts(SYNC_READ_TIMEOUT, SYNC_CONNECTION_TIMEOUT);
+        return propFind;
+    }
+
+    RemoteOperationResult onResponse(NextcloudClient client,
+                                     com.nextcloud.operations.PropFindMethod propFind,
+                                     int status) throws IOException, DavException {
+        RemoteOperationResult result;
+        if (status == HttpStatus.SC_MULTI_STATUS || status == HttpStatus.SC_OK) {
+            MultiStatus resp = propFind.getResponseBodyAsMultiStatus();
+            WebdavEntry we = new WebdavEntry(resp.getResponses()[0],
+                                             client.getFilesDavUri().getEncodedPath());
+            ArrayList<Object> files = new ArrayList<>();
+            files.add(new RemoteFile(we));
+
+            result = new RemoteOperationResult(true, propFind);
+            result.setData(files);
+        } else {
+            result = new RemoteOperationResult(false, propFind);
+        }
+        return result;
+    }
 }
@@ -0,0 +1,167 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.resources.files
+
+import com.nextcloud.common.NextcloudClient
+import com.nextcloud.operations.PropFindMethod
+import com.owncloud.android.lib.common.network.MultiStatusReader
+import com.owncloud.android.lib.common.network.PropertyProfile
+import com.owncloud.android.lib.common.network.WebdavEntry
+import com.owncloud.android.lib.common.operations.RemoteOperation
+import com.owncloud.android.lib.common.operations.RemoteOperationResult
+import com.owncloud.android.lib.common.utils.Log_OC
+import com.owncloud.android.lib.resources.files.model.FolderPage
+import com.owncloud.android.lib.resources.files.model.RemoteFile
+import org.apache.commons.httpclient.HttpStatus
+import org.apache.jackrabbit.webdav.DavConstants
+
+/**
+ * Reads one page of a folder listing, using the pagination of the Nextcloud WebDAV server.
+ *
+ * The first request asks the server to paginate; the server then keeps the listing for a while and hands out a
+ * token, which later requests use to fetch further pages by offset. Servers without pagination support return the
+ * whole listing as one single page. If the token expired, the server answers with the whole listing as well, which
+ * is told apart from a page by its content; the entries before the requested offset are skipped then and the page
+ * is the last one.
+ *
+ * @param remotePath path of the folder
+ * @param pageSize maximum number of entries per page
+ * @param previous previously read page, null to read the first page
+ * @param profile properties to read
+ */
+class ReadFolderPageRemoteOperation
+    @JvmOverloads
+    constructor(
+        private val remotePath: String,
+        private val pageSize: Int,
+        private val previous: FolderPage? = null,
+        private val profile: PropertyProfile = PropertyProfile.FULL
+    ) : RemoteOperation<FolderPage>() {
+        @Suppress("TooGenericExceptionCaught")
+        override fun run(client: NextcloudClient): RemoteOperationResult<FolderPage> {
+            var propFind: PropFindMethod? = null
+            var result: RemoteOperationResult<FolderPage>
+
+            try {
+                propFind = PropFindMethod(client.getFilesDavUri(remotePath), profile, DEPTH)
+                addPaginationHeaders(propFind)
+
+                val status = client.execute(propFind)
+                if (status == HttpStatus.SC_MULTI_STATUS || status == HttpStatus.SC_OK) {
+                    result = RemoteOperationResult(true, propFind)
+                    result.resultData = readPage(propFind, client.filesDavUri.encodedPath ?: "")
+                } else {
+                    result = RemoteOperationResult(false, propFind)
+                    Log_OC.e(TAG, "Read page of $remotePath: ${result.logMessage}")
+                }
+            } catch (e: Exception) {
+                result = RemoteOperationResult(e)
+                Log_OC.e(TAG, "Read page of $remotePath: ${result.logMessage}", e)
+            } finally {
+                propFind?.releaseConnection()
+            }
+
+            return result
+        }
+
+        private fun addPaginationHeaders(propFind: PropFindMethod) {
+            propFind.addRequestHeader(HEADER_PAGINATE_COUNT, pageSize.toString())
+            if (previous?.token == null) {
+                propFind.addRequestHeader(HEADER_PAGINATE, "true")
+            } else {
+                // no pagination header: an expired token must not start a new paginated listing
+                propFind.addRequestHeader(HEADER_PAGINATE_TOKEN, previous.token)
+                propFind.addRequestHeader(HEADER_PAGINATE_OFFSET, previous.nextOffset.toString())
+            }
+        }
+
+        private fun readPage(
+            propFind: PropFindMethod,
+            davFilesPath: String
+        ): FolderPage {
+            return if (previous?.token == null) {
+                val files = readFiles(propFind, davFilesPath)
+                if ("true".equals(propFind.getResponseHeader(HEADER_PAGINATE), ignoreCase = true)) {
+                    FolderPage(files, propFind.getResponseHeader(HEADER_PAGINATE_TOKEN), 0, readTotal(propFind, 0))
+                } else {
+                    FolderPage(files, null, 0, files.size)
+                }
+            } else {
+                readNextPage(propFind, davFilesPath, previous.token, previous.nextOffset, previous.total)
+            }
+        }
+
+        /**
+         * Reads a page requested by token. Servers do not necessarily flag such pages as paginated, so a fallback
+         * to the whole listing is told by its content instead: unlike any page after the first one, it starts with
+         * the folder itself and may hold more than [pageSize] entries.
+         */
+        private fun readNextPage(
+            propFind: PropFindMethod,
+            davFilesPath: String,
+            token: String,
+            offset: Int,
+            total: Int
+        ): FolderPage {
+            var wholeListing = false
+            val files = ArrayList<RemoteFile>()
+
+            MultiStatusReader(propFind.getResponseBodyAsStream()!!).use { reader ->
+                generateSequence { reader.nextResponse() }.forEachIndexed { index, response ->
+                    if (index == 0) {
+                        val first = RemoteFile(WebdavEntry(response, davFilesPath))
+                        wholeListing = isFolder(first)
+                        if (!wholeListing || offset == 0) {
+                            files.add(first)
+                        }
+                    } else if (!wholeListing || index >= offset) {
+                        files.add(RemoteFile(WebdavEntry(response, davFilesPath)))
+                    }
+                }
+            }
+
+            if (!wholeListing && files.size > pageSize) {
+                wholeListing = true
+                files.subList(0, minOf(offset, files.size)).clear()
+            }
+
+            return if (wholeListing) {
+                // expired token: the entries before the offset were skipped, the rest completes the listing
+                FolderPage(files, null, offset, offset + files.size)
+            } else {
+                val nextToken = propFind.getResponseHeader(HEADER_PAGINATE_TOKEN) ?: token
+                FolderPage(files, nextToken, offset, readTotal(propFind, total))
+            }
+        }
+
+        private fun readFiles(
+            propFind: PropFindMethod,
+            davFilesPath: String
+        ): List<RemoteFile> =
+            MultiStatusReader(propFind.getResponseBodyAsStream()!!).use { reader ->
+                generateSequence { reader.nextResponse() }.map { RemoteFile(WebdavEntry(it, davFilesPath)) }.toList()
+            }
+
+        private fun readTotal(
+            propFind: PropFindMethod,
+            default: Int
+        ): Int = propFind.getResponseHeader(HEADER_PAGINATE_TOTAL)?.toIntOrNull() ?: default
+
+        private fun isFolder(file: RemoteFile): Boolean = file.remotePath.trimEnd('/') == remotePath.trimEnd('/')
+
+        companion object {
+            private val TAG = ReadFolderPageRemoteOperation::class.java.simpleName
+            private const val DEPTH = DavConstants.DEPTH_1
+
+            const val DEFAULT_PAGE_SIZE = 500
+            const val HEADER_PAGINATE = "X-NC-Paginate"
+            const val HEADER_PAGINATE_COUNT = "X-NC-Paginate-Count"
+            const val HEADER_PAGINATE_OFFSET = "X-NC-Paginate-Offset"
+            const val HEADER_PAGINATE_TOKEN = "X-NC-Paginate-Token"
+            const val HEADER_PAGINATE_TOTAL = "X-NC-Paginate-Total"
+        }
+    }
@@ -6,9 +6,14 @@
  */
 package com.owncloud.android.lib.resources.files;
 
+import androidx.annotation.NonNull;
+
+import com.nextcloud.common.NextcloudClient;
+import com.nextcloud.common.SuspendingRemoteOperation;
 import com.owncloud.android.lib.common.OwnCloudClient;
+import com.owncloud.android.lib.common.network.MultiStatusReader;
 import com.owncloud.android.lib.common.network.WebdavEntry;
-import com.owncloud.android.lib.common.network.WebdavUtils;
+import com.owncloud.android.lib.common.network.PropertyProfile;
 import com.owncloud.android.lib.common.operations.RemoteOperation;
 import com.owncloud.android.lib.common.operations.RemoteOperationResult;
 import com.owncloud.android.lib.common.utils.Log_OC;
@@ -16,11 +21,16 @@ import com.owncloud.android.lib.resources.files.model.RemoteFile;
 
 import org.apache.commons.httpclient.HttpStatus;
 import org.apache.jackrabbit.webdav.DavConstants;
-import org.apache.jackrabbit.webdav.MultiStatus;
+import org.apache.jackrabbit.webdav.MultiStatusResponse;
 import org.apache.jackrabbit.webdav.client.methods.PropFindMethod;
+import org.xmlpull.v1.XmlPullParserException;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 
+import kotlin.coroutines.Continuation;
+
 /**
  * Remote operation performing the read of remote file or folder in the ownCloud server.
  *
@@ -28,11 +38,12 @@ import java.util.ArrayList;
  * @author masensio
  */
 
-public class ReadFolderRemoteOperation extends RemoteOperation {
+public class ReadFolderRemoteOperation extends RemoteOperation implements SuspendingRemoteOperation {
 
     private static final String TAG = ReadFolderRemoteOperation.class.getSimpleName();
 
     private String mRemotePath;
+    private PropertyProfile mProfile;
     private ArrayList<Object> mFolderAndFiles;
 
     /**
@@ -41,7 +52,18 @@ public class ReadFolderRemoteOperation extends RemoteOperation {
      * @param remotePath Remote path of the file.
      */
     public ReadFolderRemoteOperation(String remotePath) {
+        this(remotePath, PropertyProfile.FULL);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param remotePath Remote path of the file.
+     * @param profile    Properties to read; properties not requested are left unset in the returned files.
+     */
+    public ReadFolderRemoteOperation(String remotePath, PropertyProfile profile) {
         mRemotePath = remotePath;
+        mProfile = profile;
     }
 
     /**
@@ -57,7 +79,7 @@ public class ReadFolderRemoteOperation extends RemoteOperation {
         try {
             // remote request
             query = new PropFindMethod(client.getFilesDavUri(mRemotePath),
-                    WebdavUtils.getAllPropSet(),    // PropFind Properties
+                    mProfile.newPropertySet(),    // PropFind Properties
                     DavConstants.DEPTH_1);
             int status = client.executeMethod(query);
 
@@ -66,8 +88,7 @@ public class ReadFolderRemoteOperation extends RemoteOperation {
             
             if (isSuccess) {
                 // get data from remote folder
-                MultiStatus dataInServer = query.getResponseBodyAsMultiStatus();
-                readData(dataInServer, client);
+                readData(query.getResponseBodyAsStream(), client.getFilesDavUri().getEncodedPath());
 
                 // Result of the operation
                 result = new RemoteOperationResult(true, query);
@@ -106,34 +127,84 @@ public class ReadFolderRemoteOperation extends RemoteOperation {
         return result;
     }
 
+    /**
+     * Performs the read operation.
+     *
+     * @param client Client object to communicate with the remote Nextcloud server.
+     */
+    @Override
+    public RemoteOperationResult run(NextcloudClient client) {
+        RemoteOperationResult result;
+        com.nextcloud.operations.PropFindMethod propFind = null;
+
+        try {
+            propFind = newPropFind(client);
+            result = onResponse(client, propFind, client.execute(propFind));
+        } catch (Exception e) {
+            result = new RemoteOperationResult(e);
+            Log_OC.e(TAG, "Synchronized " + mRemotePath + ": " + result.getLogMessage(), e);
+        } finally {
+            if (propFind != null) {
+                propFind.releaseConnection();
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public Object runSuspending(@NonNull NextcloudClient client, @NonNull Continuation continuation) {
+        return SuspendingFileOperations.readFolder(this, client, continuation);
+    }
+
+    com.nextcloud.operations.PropFindMethod newPropFind(NextcloudClient client) {
+        return new com.nextcloud.operations.PropFindMethod(client.getFilesDavUri(mRemotePath),
+                                                           mProfile,
+                                                           DavConstants.DEPTH_1);
+    }
+
+    RemoteOperationResult onResponse(NextcloudClient client,
+                                     com.nextcloud.operations.PropFindMethod propFind,
+                                     int status) throws IOException, XmlPullParserException {
+        RemoteOperationResult result;
+        if (status == HttpStatus.SC_MULTI_STATUS || status == HttpStatus.SC_OK) {
+            readData(propFind.getResponseBodyAsStream(), client.getFilesDavUri().getEncodedPath());
+
+            result = new RemoteOperationResult(true, propFind);
+            result.setData(mFolderAndFiles);
+            Log_OC.i(TAG, "Synchronized " + mRemotePath + ": " + result.getLogMessage());
+        } else {
+            result = new RemoteOperationResult(false, propFind);
+            Log_OC.e(TAG, "Synchronized " + mRemotePath + ": " + result.getLogMessage());
+        }
+        return result;
+    }
+
     public boolean isMultiStatus(int status) {
         return (status == HttpStatus.SC_MULTI_STATUS);
     }
 
     /**
      * Read the data retrieved from the server about the contents of the target folder
+     * <p>
+     * The response is parsed while streaming, entry by entry, see {@link MultiStatusReader}.
      *
-     * @param remoteData Full response got from the server with the data of the target
-     *                   folder and its direct children.
-     * @param client     Client instance to the remote server where the data were
-     *                   retrieved.
-     * @return
+     * @param remoteData   Response body got from the server with the data of the target
+     *                     folder and its direct children.
+     * @param davFilesPath Encoded path of the WebDAV files endpoint the data were retrieved from.
      */
-    private void readData(MultiStatus remoteData, OwnCloudClient client) {
+    private void readData(InputStream remoteData, String davFilesPath) throws IOException, XmlPullParserException {
         mFolderAndFiles = new ArrayList<>();
 
-        // parse data from remote folder 
-        WebdavEntry we = new WebdavEntry(remoteData.getResponses()[0], client.getFilesDavUri().getEncodedPath());
-        mFolderAndFiles.add(new RemoteFile(we));
-
-        // loop to update every child
-        RemoteFile remoteFile;
-        for (int i = 1; i < remoteData.getResponses().length; ++i) {
-            /// new OCFile instance with the data from the server
-            we = new WebdavEntry(remoteData.getResponses()[i], client.getFilesDavUri().getEncodedPath());
-            remoteFile = new RemoteFile(we);
-            mFolderAndFiles.add(remoteFile);
+        MultiStatusReader reader = new MultiStatusReader(remoteData);
+        try {
+            // first entry is the folder itself, followed by its children
+            MultiStatusResponse response;
+            while ((response = reader.nextResponse()) != null) {
+                mFolderAndFiles.add(new RemoteFile(new WebdavEntry(response, davFilesPath)));
+            }
+        } finally {
+            reader.close();
         }
-
     }
 }
@@ -0,0 +1,173 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.resources.files
+
+import com.nextcloud.common.NextcloudClient
+import com.nextcloud.operations.SearchMethod
+import com.owncloud.android.lib.common.network.DavNamespaces
+import com.owncloud.android.lib.common.network.MultiStatusReader
+import com.owncloud.android.lib.common.network.PropertyProfile
+import com.owncloud.android.lib.common.network.WebdavEntry
+import com.owncloud.android.lib.common.network.WebdavUtils
+import com.owncloud.android.lib.common.operations.RemoteOperation
+import com.owncloud.android.lib.common.operations.RemoteOperationResult
+import com.owncloud.android.lib.common.utils.Log_OC
+import com.owncloud.android.lib.resources.files.model.DeltaCursor
+import com.owncloud.android.lib.resources.files.model.DeltaPage
+import com.owncloud.android.lib.resources.files.model.RemoteFile
+import org.apache.commons.httpclient.HttpStatus
+import org.apache.jackrabbit.webdav.property.DavPropertyName
+import org.apache.jackrabbit.webdav.property.DavPropertyNameSet
+import org.apache.jackrabbit.webdav.xml.Namespace
+
+/**
+ * Reads files and folders below a path that were modified after a given point, for incremental sync.
+ *
+ * Uses WebDAV SEARCH, ordered by modification time and file id. Pages are addressed by the last entry read
+ * rather than by offset, so files modified while paging are neither skipped nor repeated; a file modified again
+ * shows up again at its new position. The cost of a sync thus depends on the number of changes, not on the
+ * number of files.
+ *
+ * Deleted files are not reported, since the server does not list them; see [TreeCrawler] for a full comparison.
+ *
+ * @param remotePath folder to search in, including all subfolders
+ * @param cursor position to continue from, e.g. [DeltaCursor] of the last sync's final page
+ * @param limit maximum number of entries per page
+ * @param profile properties to read; modification time and file id are always read
+ */
+class ReadModifiedFilesRemoteOperation
+    @JvmOverloads
+    constructor(
+        private val remotePath: String,
+        private val cursor: DeltaCursor,
+        private val limit: Int = DEFAULT_LIMIT,
+        private val profile: PropertyProfile = PropertyProfile.SYNC_MINIMAL
+    ) : RemoteOperation<DeltaPage>() {
+        @Suppress("TooGenericExceptionCaught")
+        override fun run(client: NextcloudClient): RemoteOperationResult<DeltaPage> {
+            var searchMethod: SearchMethod? = null
+            var result: RemoteOperationResult<DeltaPage>
+
+            try {
+                val scope = "/files/" + client.getUserIdEncoded() + WebdavUtils.encodePath(remotePath)
+                val propertySet =
+                    profile.newPropertySet().apply {
+                        add(DavPropertyName.GETLASTMODIFIED)
+                        add(FILE_ID)
+                    }
+                searchMethod = SearchMethod(client.davUri.toString(), buildBody(scope, cursor, limit, propertySet))
+
+                val status = client.execute(searchMethod)
+                if (status == HttpStatus.SC_MULTI_STATUS || status == HttpStatus.SC_OK) {
+                    result = RemoteOperationResult(true, searchMethod)
+                    result.resultData = readPage(searchMethod, client.filesDavUri.encodedPath ?: "")
+                } else {
+                    result = RemoteOperationResult(false, searchMethod)
+                    Log_OC.e(TAG, "Search modified files in $remotePath: ${result.logMessage}")
+                }
+            } catch (e: Exception) {
+                result = RemoteOperationResult(e)
+                Log_OC.e(TAG, "Search modified files in $remotePath: ${result.logMessage}", e)
+            } finally {
+                searchMethod?.releaseConnection()
+            }
+
+            return result
+        }
+
+        private fun readPage(
+            searchMethod: SearchMethod,
+            davFilesPath: String
+        ): DeltaPage {
+            val files = ArrayList<RemoteFile>()
+            var responses = 0
+
+            MultiStatusReader(searchMethod.getResponseBodyAsStream()!!).use { reader ->
+                generateSequence { reader.nextResponse() }.forEach {
+                    responses++
+                    files.add(RemoteFile(WebdavEntry(it, davFilesPath)))
+                }
+            }
+
+            return DeltaPage(files, nextCursor(files, cursor), responses >= limit)
+        }
+
+        companion object {
+            private val TAG = ReadModifiedFilesRemoteOperation::class.java.simpleName
+            private const val MILLIS_PER_SECOND = 1000
+            private val FILE_ID =
+                DavPropertyName.create(
+                    WebdavEntry.EXTENDED_PROPERTY_NAME_LOCAL_ID,
+                    Namespace.getNamespace(WebdavEntry.NAMESPACE_OC)
+                )
+
+            const val DEFAULT_LIMIT = 500
+
+            /**
+             * @return cursor pointing after the last of [files], [cursor] if there are none
+             */
+            @JvmStatic
+            fun nextCursor(
+                files: List<RemoteFile>,
+                cursor: DeltaCursor
+            ): DeltaCursor {
+                val last = files.lastOrNull() ?: return cursor
+                return DeltaCursor(last.modifiedTimestamp / MILLIS_PER_SECOND, last.localId)
+            }
+
+            /**
+             * Serializes the search request: entries of [scope] after [cursor], ordered by modification time and
+             * file id.
+             *
+             * @param scope path of the searched folder relative to the WebDAV root, e.g. `/files/user/Photos`
+             */
+            @JvmStatic
+            fun buildBody(
+                scope: String,
+                cursor: DeltaCursor,
+                limit: Int,
+                propertySet: DavPropertyNameSet
+            ): String {
+                val namespaces = DavNamespaces()
+                val select = StringBuilder()
+                propertySet.content.forEach { select.append(namespaces.emptyElement(it)) }
+                val lastModified = namespaces.emptyElement(DavPropertyName.GETLASTMODIFIED)
+                val fileId = namespaces.emptyElement(FILE_ID)
+
+                val newer = compare("gt", lastModified, cursor.lastModified)
+                val where =
+                    if (cursor.fileId == null) {
+                        newer
+                    } else {
+                        "<d:or>$newer<d:and>" + compare("eq", lastModified, cursor.lastModified) +
+                            compare("gt", fileId, cursor.fileId) + "</d:and></d:or>"
+                    }
+
+                val body = StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><d:searchrequest")
+                return namespaces.appendDeclarations(body)
+                    .append("><d:basicsearch>")
+                    .append("<d:select><d:prop>").append(select).append("</d:prop></d:select>")
+                    .append("<d:from><d:scope><d:href>").append(scope).append("</d:href>")
+                    .append("<d:depth>infinity</d:depth></d:scope></d:from>")
+                    .append("<d:where>").append(where).append("</d:where>")
+                    .append("<d:orderby>").append(ascending(lastModified)).append(ascending(fileId))
+                    .append("</d:orderby>")
+                    .append("<d:limit><d:nresults>").append(limit).append("</d:nresults></d:limit>")
+                    .append("</d:basicsearch></d:searchrequest>")
+                    .toString()
+            }
+
+            private fun compare(
+                operator: String,
+                property: String,
+                value: Long
+            ): String = "<d:$operator><d:prop>$property</d:prop><d:literal>$value</d:literal></d:$operator>"
+
+            private fun ascending(property: String): String =
+                "<d:order><d:prop>$property</d:prop><d:ascending/></d:order>"
+        }
+    }
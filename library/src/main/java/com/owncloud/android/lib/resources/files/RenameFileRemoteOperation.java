@@ -6,16 +6,23 @@
  */
 package com.owncloud.android.lib.resources.files;
 
+import androidx.annotation.NonNull;
+
+import com.nextcloud.common.NextcloudClient;
+import com.nextcloud.common.SuspendingRemoteOperation;
 import com.owncloud.android.lib.common.OwnCloudClient;
 import com.owncloud.android.lib.common.operations.RemoteOperation;
 import com.owncloud.android.lib.common.operations.RemoteOperationResult;
 import com.owncloud.android.lib.common.operations.RemoteOperationResult.ResultCode;
 import com.owncloud.android.lib.common.utils.Log_OC;
 
+import org.apache.commons.httpclient.HttpStatus;
 import org.apache.jackrabbit.webdav.client.methods.MoveMethod;
 
 import java.io.File;
 
+import kotlin.coroutines.Continuation;
+
 
 /**
  * Remote operation performing the rename of a remote file or folder in the ownCloud server.
@@ -23,7 +30,7 @@ import java.io.File;
  * @author David A. Velasco
  * @author masensio
  */
-public class RenameFileRemoteOperation extends RemoteOperation {
+public class RenameFileRemoteOperation extends RemoteOperation implements SuspendingRemoteOperation {
 
     private static final String TAG = RenameFileRemoteOperation.class.getSimpleName();
 
@@ -103,4 +110,72 @@ public class RenameFileRemoteOperation extends RemoteOperation {
 
         return result;
     }
+
+    /**
+     * Performs the rename operation.
+     *
+     * @param client Client object to communicate with the remote Nextcloud server.
+     */
+    @Override
+    public RemoteOperationResult run(NextcloudClient client) {
+        RemoteOperationResult result;
+
+        com.nextcloud.operations.MoveMethod move = null;
+        try {
+            if (isNameUnchanged()) {
+                return new RemoteOperationResult(ResultCode.OK);
+            }
+
+            // check if a file with the new name already exists
+            RemoteOperationResult existenceResult = newTargetExistenceCheck().execute(client);
+            if (existenceResult.isSuccess()) {
+                return new RemoteOperationResult(ResultCode.INVALID_OVERWRITE);
+            }
+
+            move = newMove(client);
+            result = onResponse(move, client.execute(move));
+
+        } catch (Exception e) {
+            result = new RemoteOperationResult(e);
+            Log_OC.e(TAG, "Rename " + mOldRemotePath + " to " + mNewRemotePath + ": " +
+                    result.getLogMessage(), e);
+
+        } finally {
+            if (move != null) {
+                move.releaseConnection();
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public Object runSuspending(@NonNull NextcloudClient client, @NonNull Continuation continuation) {
+        return SuspendingFileOperations.rename(this, client, continuation);
+    }
+
+    boolean isNameUnchanged() {
+        return mNewName.equals(mOldName);
+    }
+
+    ExistenceCheckRemoteOperation newTargetExistenceCheck() {
+        return new ExistenceCheckRemoteOperation(mNewRemotePath, false);
+    }
+
+    com.nextcloud.operations.MoveMethod newMove(NextcloudClient client) {
+        com.nextcloud.operations.MoveMethod move =
+            new com.nextcloud.operations.MoveMethod(client.getFilesDavUri(mOldRemotePath),
+                                                    client.getFilesDavUri(mNewRemotePath), true);
+        move.setTimeouts(RENAME_READ_TIMEOUT, RENAME_CONNECTION_TIMEOUT);
+        return move;
+    }
+
+    RemoteOperationResult onResponse(com.nextcloud.operations.MoveMethod move, int status) {
+        RemoteOperationResult result =
+            new RemoteOperationResult(status == HttpStatus.SC_CREATED || status == HttpStatus.SC_NO_CONTENT, move);
+        Log_OC.i(TAG, "Rename " + mOldRemotePath + " to " + mNewRemotePath + ": " +
+                result.getLogMessage()
+        );
+        return result;
+    }
 }
@@ -0,0 +1,140 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+@file:JvmName("SuspendingFileOperations")
+
+package com.owncloud.android.lib.resources.files
+
+import com.nextcloud.common.NextcloudClient
+import com.nextcloud.common.OkHttpMethodBase
+import com.nextcloud.common.await
+import com.owncloud.android.lib.common.operations.RemoteOperationResult
+import com.owncloud.android.lib.common.operations.RemoteOperationResult.ResultCode
+import kotlinx.coroutines.CancellationException
+
+/*
+ * Non-blocking variants of the Nextcloud paths of the WebDAV file operations, see SuspendingRemoteOperation.
+ *
+ * Suspending functions cannot be written in Java, so the operations delegate their runSuspending here. The methods
+ * are created and the responses processed by the operations themselves, exactly as in their run(NextcloudClient);
+ * only sending differs, the calls are enqueued with NextcloudClient.await instead of executed on the calling thread.
+ */
+
+internal suspend fun readFolder(
+    operation: ReadFolderRemoteOperation,
+    client: NextcloudClient
+): RemoteOperationResult<*> {
+    val propFind = operation.newPropFind(client)
+    return send(propFind, client) { operation.onResponse(client, propFind, it) }
+}
+
+internal suspend fun readFile(
+    operation: ReadFileRemoteOperation,
+    client: NextcloudClient
+): RemoteOperationResult<*> {
+    val propFind = operation.newPropFind(client)
+    return send(propFind, client) { operation.onResponse(client, propFind, it) }
+}
+
+internal suspend fun checkEtag(
+    operation: CheckEtagRemoteOperation,
+    client: NextcloudClient
+): RemoteOperationResult<*> {
+    val propFind = operation.newPropFind(client)
+    return send(propFind, client) { operation.onResponse(propFind, it) }
+}
+
+internal suspend fun checkExistence(
+    operation: ExistenceCheckRemoteOperation,
+    client: NextcloudClient
+): RemoteOperationResult<*> {
+    val head = operation.newHead(client)
+    return send(head, client) { status ->
+        val redirectionPath = if (client.followRedirects) client.awaitRedirection(head) else null
+        operation.onResponse(client, head, status, redirectionPath)
+    }
+}
+
+internal suspend fun createFolder(
+    operation: CreateFolderRemoteOperation,
+    client: NextcloudClient
+): RemoteOperationResult<String> {
+    var result = createFolderOnce(operation, client)
+
+    if (operation.isParentMissing(result)) {
+        result = operation.newParentOperation().await(client)
+        if (result.isSuccess) {
+            result = createFolderOnce(operation, client) // second (and last) try
+        }
+    }
+
+    return result
+}
+
+@Suppress("TooGenericExceptionCaught")
+private suspend fun createFolderOnce(
+    operation: CreateFolderRemoteOperation,
+    client: NextcloudClient
+): RemoteOperationResult<String> =
+    try {
+        val mkCol = operation.newMkCol(client)
+        send(mkCol, client) { operation.onResponse(mkCol, it) }
+    } catch (e: CancellationException) {
+        throw e
+    } catch (e: Exception) {
+        RemoteOperationResult(e)
+    }
+
+internal suspend fun move(
+    operation: MoveFileRemoteOperation,
+    client: NextcloudClient
+): RemoteOperationResult<*> {
+    operation.checkPaths()?.let { return it }
+
+    val move = operation.newMoveMethod(client)
+    return send(move, client) { operation.onResponse(move, it) }
+}
+
+internal suspend fun copy(
+    operation: CopyFileRemoteOperation,
+    client: NextcloudClient
+): RemoteOperationResult<*> {
+    operation.checkPaths()?.let { return it }
+
+    val copy = operation.newCopyMethod(client)
+    return send(copy, client) { operation.onResponse(copy, it) }
+}
+
+internal suspend fun rename(
+    operation: RenameFileRemoteOperation,
+    client: NextcloudClient
+): RemoteOperationResult<*> {
+    if (operation.isNameUnchanged) {
+        return RemoteOperationResult<Any>(ResultCode.OK)
+    }
+
+    // check if a file with the new name already exists
+    if (operation.newTargetExistenceCheck().await(client).isSuccess) {
+        return RemoteOperationResult<Any>(ResultCode.INVALID_OVERWRITE)
+    }
+
+    val move = operation.newMove(client)
+    return send(move, client) { operation.onResponse(move, it) }
+}
+
+/**
+ * Sends [method] without blocking and hands its status to [process]; the connection is released afterwards.
+ */
+private suspend inline fun <T> send(
+    method: OkHttpMethodBase,
+    client: NextcloudClient,
+    process: (Int) -> T
+): T =
+    try {
+        process(client.await(method))
+    } finally {
+        method.releaseConnection()
+    }
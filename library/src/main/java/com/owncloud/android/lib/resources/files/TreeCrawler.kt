@@ -0,0 +1,187 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.resources.files
+
+import com.nextcloud.common.NextcloudClient
+import com.owncloud.android.lib.common.network.PropertyProfile
+import com.owncloud.android.lib.common.operations.RemoteOperationResult
+import com.owncloud.android.lib.common.operations.RemoteOperationResult.ResultCode
+import com.owncloud.android.lib.resources.files.model.FolderChangeSet
+import com.owncloud.android.lib.resources.files.model.RemoteFile
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.channels.ProducerScope
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.channelFlow
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runInterruptible
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
+
+/**
+ * Walks a remote folder tree with a bounded number of concurrent requests and reports what changed.
+ *
+ * The caller passes the ETags it knows, by remote path. Folders whose ETag did not change are not descended into,
+ * since the server changes the ETag of a folder whenever anything below it changes. The root folder is checked
+ * with [CheckEtagRemoteOperation] semantics first, so that an unchanged tree costs a single request.
+ *
+ * Every folder that is read results in one [FolderChangeSet]; folders are emitted as soon as they are read, in no
+ * particular order.
+ *
+ * @param lister reads folders, see [RemoteFolderLister]
+ * @param parallelism maximum number of folders read at the same time
+ * @param dispatcher runs the blocking calls of [lister]
+ */
+class TreeCrawler
+    @JvmOverloads
+    constructor(
+        private val lister: FolderLister,
+        private val parallelism: Int = DEFAULT_PARALLELISM,
+        private val dispatcher: CoroutineDispatcher = Dispatchers.IO
+    ) {
+        init {
+            require(parallelism > 0) { "parallelism must be positive: $parallelism" }
+        }
+
+        /**
+         * Source of folder listings; implementations must be thread safe.
+         */
+        interface FolderLister {
+            /**
+             * @return on success, data holds the folder itself followed by its direct children as [RemoteFile]s,
+             * as [ReadFolderRemoteOperation] does
+             */
+            fun list(remotePath: String): RemoteOperationResult<*>
+
+            /**
+             * @return [ResultCode.ETAG_UNCHANGED] if the ETag of [remotePath] is still [etag], as
+             * [CheckEtagRemoteOperation] does
+             */
+            fun checkEtag(
+                remotePath: String,
+                etag: String
+            ): RemoteOperationResult<*>
+        }
+
+        /**
+         * Lists folders with [ReadFolderRemoteOperation] on the given client.
+         */
+        class RemoteFolderLister
+            @JvmOverloads
+            constructor(
+                private val client: NextcloudClient,
+                private val profile: PropertyProfile = PropertyProfile.FULL
+            ) : FolderLister {
+                override fun list(remotePath: String): RemoteOperationResult<*> =
+                    ReadFolderRemoteOperation(remotePath, profile).execute(client)
+
+                override fun checkEtag(
+                    remotePath: String,
+                    etag: String
+                ): RemoteOperationResult<*> = CheckEtagRemoteOperation(remotePath, etag).execute(client)
+            }
+
+        /**
+         * @param remotePath root of the tree, ending with a slash
+         * @param knownEtags known ETags of files and folders by remote path; folders end with a slash
+         */
+        @JvmOverloads
+        fun crawl(
+            remotePath: String,
+            knownEtags: Map<String, String> = emptyMap()
+        ): Flow<FolderChangeSet> =
+            channelFlow {
+                val known = KnownTree(knownEtags)
+                val semaphore = Semaphore(parallelism)
+                val rootEtag = knownEtags[remotePath]
+
+                val unchanged =
+                    rootEtag != null &&
+                        semaphore.withPermit {
+                            runInterruptible(dispatcher) { lister.checkEtag(remotePath, rootEtag) }
+                        }.code == ResultCode.ETAG_UNCHANGED
+
+                if (!unchanged) {
+                    visit(remotePath, known, semaphore)
+                }
+            }
+
+        private fun ProducerScope<FolderChangeSet>.visit(
+            remotePath: String,
+            known: KnownTree,
+            semaphore: Semaphore
+        ) {
+            launch {
+                val result = semaphore.withPermit { runInterruptible(dispatcher) { lister.list(remotePath) } }
+                if (!result.isSuccess) {
+                    send(FolderChangeSet(remotePath, null, emptyList(), emptyList(), emptyList(), result))
+                    return@launch
+                }
+
+                val files = result.data.map { it as RemoteFile }
+                val folder = files.firstOrNull()
+                if (folder == null) {
+                    // a listing always starts with the folder itself
+                    val failure = RemoteOperationResult<Any>(ResultCode.FILE_NOT_FOUND)
+                    send(FolderChangeSet(remotePath, null, emptyList(), emptyList(), emptyList(), failure))
+                    return@launch
+                }
+
+                val changeSet = known.diff(remotePath, folder, files.drop(1))
+                changeSet.added.plus(changeSet.changed)
+                    .filter { it.isFolder() }
+                    .forEach { visit(it.remotePath!!, known, semaphore) }
+                send(changeSet)
+            }
+        }
+
+        /**
+         * Known ETags, indexed by parent folder to find removed children quickly.
+         */
+        private class KnownTree(private val etags: Map<String, String>) {
+            private val childrenByParent: Map<String, List<String>> =
+                etags.keys.filter { it != ROOT }.groupBy { parentOf(it) }
+
+            fun diff(
+                remotePath: String,
+                folder: RemoteFile,
+                children: List<RemoteFile>
+            ): FolderChangeSet {
+                val added = ArrayList<RemoteFile>()
+                val changed = ArrayList<RemoteFile>()
+                children.forEach {
+                    when (etags[it.remotePath]) {
+                        null -> added.add(it)
+                        it.etag -> Unit
+                        else -> changed.add(it)
+                    }
+                }
+
+                val existing = children.mapTo(HashSet()) { it.remotePath }
+                val removed = childrenByParent[remotePath].orEmpty().filter { it !in existing }
+
+                return FolderChangeSet(remotePath, folder, added, changed, removed)
+            }
+        }
+
+        companion object {
+            const val DEFAULT_PARALLELISM = 4
+            private const val ROOT = "/"
+
+            /**
+             * Content type [com.owncloud.android.lib.common.network.WebdavEntry] gives collections.
+             */
+            private const val DIRECTORY = "DIR"
+
+            private fun RemoteFile.isFolder(): Boolean = mimeType == DIRECTORY
+
+            /**
+             * @return parent folder of a file or folder, ending with a slash
+             */
+            private fun parentOf(remotePath: String): String = remotePath.trimEnd('/').substringBeforeLast('/') + ROOT
+        }
+    }
@@ -11,20 +11,25 @@ package com.owncloud.android.lib.resources.files;
 
 import androidx.annotation.VisibleForTesting;
 
+import com.nextcloud.common.FileRequestBody;
+import com.nextcloud.common.NextcloudClient;
 import com.owncloud.android.lib.common.OwnCloudClient;
+import com.owncloud.android.lib.common.network.BandwidthLimiter;
+import com.owncloud.android.lib.common.network.BandwidthLimits;
+import com.owncloud.android.lib.common.network.ChecksumType;
+import com.owncloud.android.lib.common.network.ContentChecksum;
 import com.owncloud.android.lib.common.network.FileRequestEntity;
 import com.owncloud.android.lib.common.network.OnDatatransferProgressListener;
 import com.owncloud.android.lib.common.network.ProgressiveDataTransfer;
+import com.owncloud.android.lib.common.network.RetryPolicy;
 import com.owncloud.android.lib.common.operations.OperationCancelledException;
 import com.owncloud.android.lib.common.operations.RemoteOperation;
 import com.owncloud.android.lib.common.operations.RemoteOperationResult;
 
-import org.apache.commons.httpclient.DefaultHttpMethodRetryHandler;
 import org.apache.commons.httpclient.Header;
 import org.apache.commons.httpclient.HttpStatus;
 import org.apache.commons.httpclient.methods.PutMethod;
 import org.apache.commons.httpclient.methods.RequestEntity;
-import org.apache.commons.httpclient.params.HttpMethodParams;
 
 import java.io.File;
 import java.io.IOException;
@@ -32,6 +37,8 @@ import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import okhttp3.MediaType;
+
 /**
  * Remote operation performing the upload of a remote file to the ownCloud server.
  *
@@ -45,6 +52,7 @@ public class UploadFileRemoteOperation extends RemoteOperation<String> {
     protected static final String RESULT_ETAG_HEADER = "etag";
     protected static final String OC_X_OC_MTIME_HEADER = "X-OC-Mtime";
     protected static final String OC_X_OC_CTIME_HEADER = "X-OC-Ctime";
+    protected static final String OC_CHECKSUM_HEADER = "OC-Checksum";
 
     protected String localPath;
     protected String remotePath;
@@ -52,7 +60,10 @@ public class UploadFileRemoteOperation extends RemoteOperation<String> {
     protected long lastModificationTimestamp; // must be in seconds, according to UNIX time
     protected Long creationTimestamp = null;
     protected boolean disableRetries = false;
+    protected ChecksumType checksumType = null;
+    protected BandwidthLimiter bandwidthLimiter = BandwidthLimits.globalUpload;
     PutMethod putMethod = null;
+    com.nextcloud.operations.PutMethod nextcloudPutMethod = null;
     private String requiredEtag = null;
     String token = null;
 
@@ -61,6 +72,7 @@ public class UploadFileRemoteOperation extends RemoteOperation<String> {
     final Set<OnDatatransferProgressListener> dataTransferListeners = new HashSet<>();
 
     protected RequestEntity entity = null;
+    protected FileRequestBody requestBody = null;
 
     @VisibleForTesting
     public UploadFileRemoteOperation() {
@@ -134,21 +146,42 @@ public class UploadFileRemoteOperation extends RemoteOperation<String> {
         this.creationTimestamp = creationTimestamp;
     }
 
+    /**
+     * Computes a checksum of the given type while uploading, see {@link RemoteOperationResult#getChecksum()}; null,
+     * the default, computes none.
+     * <p>
+     * The checksum of a single upload is known only once the body is sent, so it is returned in the result but not
+     * sent to the server.
+     */
+    public void setChecksumType(ChecksumType checksumType) {
+        this.checksumType = checksumType;
+    }
+
+    /**
+     * Sets the limiter the upload has to pass, e.g. {@link BandwidthLimits#upload(String)} of the account; defaults
+     * to {@link BandwidthLimits#globalUpload}, null uploads unthrottled.
+     */
+    public void setBandwidthLimiter(BandwidthLimiter bandwidthLimiter) {
+        this.bandwidthLimiter = bandwidthLimiter;
+    }
+
+    @Override
+    protected boolean isTransfer() {
+        return true;
+    }
+
     @Override
     protected RemoteOperationResult<String> run(OwnCloudClient client) {
         RemoteOperationResult<String> result;
-        DefaultHttpMethodRetryHandler oldRetryHandler =
-                (DefaultHttpMethodRetryHandler) client.getParams().getParameter(HttpMethodParams.RETRY_HANDLER);
 
         try {
+            putMethod = new PutMethod(client.getFilesDavUri(remotePath));
+
             if (disableRetries) {
                 // prevent that uploads are retried automatically by network library
-                DefaultHttpMethodRetryHandler noRetryHandler = new DefaultHttpMethodRetryHandler(0, false);
-                client.getParams().setParameter(HttpMethodParams.RETRY_HANDLER, noRetryHandler);
+                OwnCloudClient.setRetryPolicy(putMethod, RetryPolicy.NONE);
             }
 
-            putMethod = new PutMethod(client.getFilesDavUri(remotePath));
-
             if (token != null) {
                 putMethod.addRequestHeader(E2E_TOKEN, token);
             }
@@ -172,11 +205,23 @@ public class UploadFileRemoteOperation extends RemoteOperation<String> {
             } else {
                 result = new RemoteOperationResult<>(e);
             }
-        } finally {
-            if (disableRetries) {
-                // reset previous retry handler
-                client.getParams().setParameter(HttpMethodParams.RETRY_HANDLER, oldRetryHandler);
+        }
+        return result;
+    }
+
+    @Override
+    public RemoteOperationResult<String> run(NextcloudClient client) {
+        RemoteOperationResult<String> result;
+
+        try {
+            if (cancellationRequested.get()) {
+                // the operation was cancelled before getting it's turn to be executed in the queue of uploads
+                result = new RemoteOperationResult<>(new OperationCancelledException());
+            } else {
+                result = uploadFile(client);
             }
+        } catch (Exception e) {
+            result = new RemoteOperationResult<>(e);
         }
         return result;
     }
@@ -193,6 +238,9 @@ public class UploadFileRemoteOperation extends RemoteOperation<String> {
         try {
             File f = new File(localPath);
             entity = new FileRequestEntity(f, mimeType);
+            ContentChecksum checksum = checksumType != null ? new ContentChecksum(checksumType) : null;
+            ((FileRequestEntity) entity).setChecksum(checksum);
+            ((FileRequestEntity) entity).setBandwidthLimiter(bandwidthLimiter);
             synchronized (dataTransferListeners) {
                 ((ProgressiveDataTransfer) entity)
                         .addDataTransferProgressListeners(dataTransferListeners);
@@ -214,6 +262,9 @@ public class UploadFileRemoteOperation extends RemoteOperation<String> {
             status = client.executeMethod(putMethod);
 
             result = new RemoteOperationResult<>(isSuccess(status), putMethod);
+            if (result.isSuccess() && checksum != null) {
+                result.setChecksum(checksum.getHeaderValue());
+            }
 
             final Header resultEtagHeader = putMethod.getResponseHeader(RESULT_ETAG_HEADER);
             if (resultEtagHeader != null) {
@@ -228,6 +279,72 @@ public class UploadFileRemoteOperation extends RemoteOperation<String> {
         return result;
     }
 
+    protected RemoteOperationResult<String> uploadFile(NextcloudClient client) {
+        RemoteOperationResult<String> result;
+
+        File f = new File(localPath);
+        requestBody = new FileRequestBody(f, mimeType != null ? MediaType.parse(mimeType) : null);
+        ContentChecksum checksum = checksumType != null ? new ContentChecksum(checksumType) : null;
+        requestBody.setChecksum(checksum);
+        requestBody.setBandwidthLimiter(bandwidthLimiter);
+        synchronized (dataTransferListeners) {
+            requestBody.addDataTransferProgressListeners(dataTransferListeners);
+        }
+
+        com.nextcloud.operations.PutMethod method =
+            new com.nextcloud.operations.PutMethod(client.getFilesDavUri(remotePath), false, requestBody);
+        if (disableRetries) {
+            // prevent that uploads are retried automatically by network library
+            method.setRetryPolicy(RetryPolicy.NONE);
+        }
+        if (token != null) {
+            method.addRequestHeader(E2E_TOKEN, token);
+        }
+        if (requiredEtag != null && requiredEtag.length() > 0) {
+            method.addRequestHeader(IF_MATCH_HEADER, "\"" + requiredEtag + "\"");
+        }
+        method.addRequestHeader(OC_TOTAL_LENGTH_HEADER, String.valueOf(f.length()));
+        method.addRequestHeader(OC_X_OC_MTIME_HEADER, String.valueOf(lastModificationTimestamp));
+        if (creationTimestamp != null && creationTimestamp > 0) {
+            method.addRequestHeader(OC_X_OC_CTIME_HEADER, String.valueOf(creationTimestamp));
+        }
+
+        synchronized (cancellationRequested) {
+            nextcloudPutMethod = method;
+            if (cancellationRequested.get()) {
+                method.abort();
+            }
+        }
+
+        try {
+            int status = client.execute(method);
+
+            if (method.isAborted()) {
+                return getCancellationResult();
+            }
+            result = new RemoteOperationResult<>(isSuccess(status), method);
+            if (result.isSuccess() && checksum != null) {
+                result.setChecksum(checksum.getHeaderValue());
+            }
+
+            String resultEtag = method.getResponseHeader(RESULT_ETAG_HEADER);
+            if (resultEtag != null) {
+                result.setResultData(resultEtag.replace("\"", ""));
+            }
+        } finally {
+            method.releaseConnection(); // let the connection available for other methods
+        }
+        return result;
+    }
+
+    RemoteOperationResult<String> getCancellationResult() {
+        if (cancellationRequested.get() && cancellationReason != null) {
+            return new RemoteOperationResult<>(cancellationReason);
+        } else {
+            return new RemoteOperationResult<>(new OperationCancelledException());
+        }
+    }
+
     public Set<OnDatatransferProgressListener> getDataTransferListeners() {
         return dataTransferListeners;
     }
@@ -239,6 +356,9 @@ public class UploadFileRemoteOperation extends RemoteOperation<String> {
         if (entity != null) {
             ((ProgressiveDataTransfer) entity).addDataTransferProgressListener(listener);
         }
+        if (requestBody != null) {
+            requestBody.addDataTransferProgressListener(listener);
+        }
     }
 
     public void removeDataTransferProgressListener(OnDatatransferProgressListener listener) {
@@ -248,6 +368,9 @@ public class UploadFileRemoteOperation extends RemoteOperation<String> {
         if (entity != null) {
             ((ProgressiveDataTransfer) entity).removeDataTransferProgressListener(listener);
         }
+        if (requestBody != null) {
+            requestBody.removeDataTransferProgressListener(listener);
+        }
     }
 
     public void cancel(RemoteOperationResult.ResultCode cancellationReason) {
@@ -261,6 +384,9 @@ public class UploadFileRemoteOperation extends RemoteOperation<String> {
             if (putMethod != null) {
                 putMethod.abort();
             }
+            if (nextcloudPutMethod != null) {
+                nextcloudPutMethod.abort();
+            }
         }
     }
 }
@@ -0,0 +1,21 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.resources.files.model
+
+/**
+ * A file to upload with [com.owncloud.android.lib.resources.files.BulkUploadRemoteOperation].
+ *
+ * @param remotePath path within the user's files, starting with a slash
+ * @param mimeType sent only if the file is uploaded with a single PUT
+ * @param lastModificationTimestamp in seconds, according to UNIX time
+ */
+data class BulkUploadFile(
+    val localPath: String,
+    val remotePath: String,
+    val mimeType: String,
+    val lastModificationTimestamp: Long
+)
@@ -0,0 +1,22 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.resources.files.model
+
+/**
+ * Outcome of a single file of a [com.owncloud.android.lib.resources.files.BulkUploadRemoteOperation].
+ *
+ * @param etag of the uploaded file, without quotes; null if the upload failed
+ * @param fileId of the uploaded file, if the server returned it
+ * @param message reason of a failed upload
+ */
+data class BulkUploadResult(
+    val file: BulkUploadFile,
+    val isSuccess: Boolean,
+    val etag: String? = null,
+    val fileId: String? = null,
+    val message: String? = null
+)
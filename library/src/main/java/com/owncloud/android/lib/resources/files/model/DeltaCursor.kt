@@ -0,0 +1,30 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.resources.files.model
+
+import java.io.Serializable
+
+/**
+ * Position in the list of modified files, ordered by modification time and file id; see
+ * [com.owncloud.android.lib.resources.files.ReadModifiedFilesRemoteOperation].
+ *
+ * Store the cursor of the last page after a sync and pass it to the next sync to receive only later changes.
+ *
+ * @param lastModified modification time in seconds since epoch
+ * @param fileId file id of the last entry with [lastModified]; null to include all entries modified after
+ * [lastModified]
+ */
+data class DeltaCursor
+    @JvmOverloads
+    constructor(
+        val lastModified: Long,
+        val fileId: Long? = null
+    ) : Serializable {
+        companion object {
+            private const val serialVersionUID = 1L
+        }
+    }
@@ -0,0 +1,20 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.resources.files.model
+
+/**
+ * One page of modified files, see [com.owncloud.android.lib.resources.files.ReadModifiedFilesRemoteOperation].
+ *
+ * @param files modified files and folders, oldest change first
+ * @param next cursor to read the following page with, or to start the next sync from
+ * @param hasMore false if this is the last page
+ */
+data class DeltaPage(
+    val files: List<RemoteFile>,
+    val next: DeltaCursor,
+    val hasMore: Boolean
+)
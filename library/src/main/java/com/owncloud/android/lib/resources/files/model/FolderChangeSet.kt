@@ -0,0 +1,35 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.resources.files.model
+
+import com.owncloud.android.lib.common.operations.RemoteOperationResult
+
+/**
+ * Differences between the known state and the server state of the direct children of one folder, as emitted by
+ * [com.owncloud.android.lib.resources.files.TreeCrawler].
+ *
+ * @param remotePath path of the folder
+ * @param folder folder as read from the server, null if reading failed
+ * @param added children without a known ETag
+ * @param changed children whose ETag differs from the known one
+ * @param removed paths of known children that do not exist anymore
+ * @param failure failed result if the folder could not be read; all lists are empty then
+ */
+data class FolderChangeSet(
+    val remotePath: String,
+    val folder: RemoteFile?,
+    val added: List<RemoteFile>,
+    val changed: List<RemoteFile>,
+    val removed: List<String>,
+    val failure: RemoteOperationResult<*>? = null
+) {
+    val isSuccess: Boolean
+        get() = failure == null
+
+    val isEmpty: Boolean
+        get() = added.isEmpty() && changed.isEmpty() && removed.isEmpty()
+}
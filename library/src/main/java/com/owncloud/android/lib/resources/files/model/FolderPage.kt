@@ -0,0 +1,29 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.resources.files.model
+
+/**
+ * One page of a paginated folder listing, see
+ * [com.owncloud.android.lib.resources.files.ReadFolderPageRemoteOperation].
+ *
+ * @param files entries of this page; the first page starts with the folder itself
+ * @param token server side token of the listing, null if the server does not paginate
+ * @param offset position of the first entry of this page within the whole listing
+ * @param total number of entries of the whole listing, including the folder itself
+ */
+data class FolderPage(
+    val files: List<RemoteFile>,
+    val token: String?,
+    val offset: Int,
+    val total: Int
+) {
+    val nextOffset: Int
+        get() = offset + files.size
+
+    val hasMore: Boolean
+        get() = token != null && files.isNotEmpty() && nextOffset < total
+}
@@ -67,6 +67,7 @@ public class GetCapabilitiesRemoteOperation extends RemoteOperation {
     private static final String NODE_FEDERATION = "federation";
     private static final String NODE_FILES = "files";
     private static final String NODE_THEMING = "theming";
+    private static final String NODE_DAV = "dav";
 
     private static final String PROPERTY_STATUS = "status";
     private static final String PROPERTY_STATUSCODE = "statuscode";
@@ -98,6 +99,8 @@ public class GetCapabilitiesRemoteOperation extends RemoteOperation {
 
     private static final String PROPERTY_LOCKING = "locking";
 
+    private static final String PROPERTY_BULKUPLOAD = "bulkupload";
+
     private static final String PROPERTY_SERVERNAME = "name";
     private static final String PROPERTY_SERVERSLOGAN = "slogan";
     private static final String PROPERTY_SERVERCOLOR = "color";
@@ -441,6 +444,14 @@ public class GetCapabilitiesRemoteOperation extends RemoteOperation {
                     Log_OC.d(TAG, "*** Added " + NODE_FILES);
                 }
 
+                if (respCapabilities.has(NODE_DAV)) {
+                    JSONObject respDav = respCapabilities.getJSONObject(NODE_DAV);
+                    if (respDav.has(PROPERTY_BULKUPLOAD)) {
+                        capability.setBulkUploadVersion(respDav.getString(PROPERTY_BULKUPLOAD));
+                    }
+                    Log_OC.d(TAG, "*** Added " + NODE_DAV);
+                }
+
                 if (respCapabilities.has(NODE_THEMING)) {
                     JSONObject respTheming = respCapabilities.getJSONObject(NODE_THEMING);
                     // Add theming
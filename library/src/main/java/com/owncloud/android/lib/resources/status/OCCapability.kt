@@ -61,6 +61,9 @@ class OCCapability {
 
     var filesLockingVersion: String? = null
 
+    // DAV
+    var bulkUploadVersion: String? = null
+
     var supportsNotificationsV1 = CapabilityBooleanType.UNKNOWN
     var supportsNotificationsV2 = CapabilityBooleanType.UNKNOWN
 
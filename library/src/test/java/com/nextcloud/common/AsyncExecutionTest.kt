@@ -0,0 +1,78 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.nextcloud.common
+
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import java.util.concurrent.TimeUnit
+
+class AsyncExecutionTest {
+    private lateinit var server: MockWebServer
+    private val client = OkHttpClient()
+
+    @Before
+    fun setUp() {
+        server = MockWebServer()
+        server.start()
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+    }
+
+    @Test
+    fun `await delivers response`() {
+        server.enqueue(MockResponse().setResponseCode(207).setBody("ok"))
+
+        val code = runBlocking { newCall().await().use { it.code } }
+
+        assertEquals(207, code)
+    }
+
+    @Test
+    fun `cancelling coroutine cancels call`() {
+        server.enqueue(MockResponse().setHeadersDelay(SERVER_DELAY_SECONDS, TimeUnit.SECONDS))
+        val call = newCall()
+
+        runBlocking {
+            val job = launch(start = CoroutineStart.UNDISPATCHED) { call.await() }
+            job.cancel()
+            job.join()
+        }
+
+        assertTrue(call.isCanceled())
+    }
+
+    @Test
+    fun `cancelling future cancels call`() {
+        server.enqueue(MockResponse().setHeadersDelay(SERVER_DELAY_SECONDS, TimeUnit.SECONDS))
+        val call = newCall()
+
+        val future = AsyncExecution.launchFuture { call.await() }
+        future.cancel(true)
+
+        assertTrue(future.isCancelled)
+        assertTrue(call.isCanceled())
+    }
+
+    private fun newCall() = client.newCall(Request.Builder().url(server.url("/")).build())
+
+    companion object {
+        private const val SERVER_DELAY_SECONDS = 10L
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.nextcloud.common
+
+import com.owncloud.android.lib.common.network.CircuitBreaker
+import com.owncloud.android.lib.common.network.CircuitBreakerOpenException
+import com.owncloud.android.lib.common.network.CircuitBreakers
+import com.owncloud.android.lib.common.network.RetryPolicy
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.RequestBody.Companion.toRequestBody
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.fail
+import org.junit.Before
+import org.junit.Test
+import java.util.concurrent.TimeUnit
+
+class CircuitBreakerInterceptorTest {
+    private val client = OkHttpClient.Builder().addInterceptor(CircuitBreakerInterceptor()).build()
+    private lateinit var server: MockWebServer
+
+    @Before
+    fun setUp() {
+        CircuitBreakers.reset()
+        server = MockWebServer()
+        server.start()
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+        CircuitBreakers.reset()
+        CircuitBreakers.slowCallMillis = CircuitBreaker.DEFAULT_SLOW_CALL_MILLIS
+    }
+
+    @Test
+    fun `failing server is not called once the circuit is open`() {
+        repeat(CircuitBreaker.DEFAULT_FAILURE_THRESHOLD) {
+            server.enqueue(MockResponse().setResponseCode(HTTP_UNAVAILABLE))
+            assertEquals(HTTP_UNAVAILABLE, execute())
+        }
+
+        try {
+            execute()
+            fail("request was sent to a failing server")
+        } catch (e: CircuitBreakerOpenException) {
+            assertEquals(CircuitBreaker.DEFAULT_FAILURE_THRESHOLD, server.requestCount)
+            assertEquals(CircuitBreaker.State.OPEN, CircuitBreakers.getState("http", server.hostName, server.port))
+        }
+    }
+
+    @Test
+    fun `successful responses keep the circuit closed`() {
+        repeat(CircuitBreaker.DEFAULT_FAILURE_THRESHOLD * 2) {
+            server.enqueue(MockResponse().setResponseCode(if (it % 2 == 0) HTTP_UNAVAILABLE else HTTP_OK))
+            execute()
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, CircuitBreakers.getState("http", server.hostName, server.port))
+    }
+
+    @Test
+    fun `slow requests open the circuit`() {
+        CircuitBreakers.slowCallMillis = SLOW_CALL_MILLIS
+        repeat(CircuitBreaker.DEFAULT_FAILURE_THRESHOLD) {
+            server.enqueue(MockResponse().setHeadersDelay(SLOW_CALL_MILLIS * 2, TimeUnit.MILLISECONDS))
+            execute()
+        }
+
+        assertEquals(CircuitBreaker.State.OPEN, CircuitBreakers.getState("http", server.hostName, server.port))
+    }
+
+    @Test
+    fun `long uploads do not open the circuit`() {
+        CircuitBreakers.slowCallMillis = SLOW_CALL_MILLIS
+        repeat(CircuitBreaker.DEFAULT_FAILURE_THRESHOLD) {
+            server.enqueue(MockResponse().setHeadersDelay(SLOW_CALL_MILLIS * 2, TimeUnit.MILLISECONDS))
+            execute(Request.Builder().url(server.url("/")).put("chunk".toRequestBody()).build())
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, CircuitBreakers.getState("http", server.hostName, server.port))
+    }
+
+    @Test
+    fun `throttled request is retried after the requested time`() {
+        // in the order of the transport clients
+        val retrying =
+            OkHttpClient
+                .Builder()
+                .addInterceptor(RetryInterceptor(RetryPolicy.DEFAULT))
+                .addInterceptor(CircuitBreakerInterceptor())
+                .build()
+        server.enqueue(MockResponse().setResponseCode(HTTP_TOO_MANY_REQUESTS).setHeader("Retry-After", "1"))
+        // probe of the server, then the retried request
+        server.enqueue(MockResponse().setResponseCode(HTTP_OK))
+        server.enqueue(MockResponse().setResponseCode(HTTP_OK).setBody("ok"))
+
+        val code = retrying.newCall(Request.Builder().url(server.url("/")).build()).execute().use { it.code }
+
+        assertEquals(HTTP_OK, code)
+        server.takeRequest()
+        assertEquals("/status.php", server.takeRequest().path)
+        assertEquals(CircuitBreaker.State.CLOSED, CircuitBreakers.getState("http", server.hostName, server.port))
+    }
+
+    private fun execute(request: Request = Request.Builder().url(server.url("/")).build()): Int =
+        client
+            .newCall(request)
+            .execute()
+            .use { it.code }
+
+    companion object {
+        private const val SLOW_CALL_MILLIS = 100L
+        private const val HTTP_OK = 200
+        private const val HTTP_TOO_MANY_REQUESTS = 429
+        private const val HTTP_UNAVAILABLE = 503
+    }
+}
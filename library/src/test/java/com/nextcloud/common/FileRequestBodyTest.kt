@@ -0,0 +1,78 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.nextcloud.common
+
+import com.owncloud.android.lib.common.network.OnDatatransferProgressListener
+import okhttp3.MediaType.Companion.toMediaType
+import okio.Buffer
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.EOFException
+import java.io.File
+import kotlin.random.Random
+
+class FileRequestBodyTest {
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    @Test
+    fun `whole file is written`() {
+        val content = Random(SEED).nextBytes(FILE_SIZE)
+        val sut = FileRequestBody(newFile(content), MEDIA_TYPE)
+
+        val buffer = Buffer()
+        sut.writeTo(buffer)
+
+        assertEquals(FILE_SIZE.toLong(), sut.contentLength())
+        assertEquals(MEDIA_TYPE, sut.contentType())
+        assertArrayEquals(content, buffer.readByteArray())
+    }
+
+    @Test
+    fun `range is written with progress from start of file`() {
+        val content = Random(SEED).nextBytes(FILE_SIZE)
+        val offset = 12_345L
+        val length = 200_001L
+        val sut = FileRequestBody(newFile(content), MEDIA_TYPE, offset, length)
+        val totals = ArrayList<Long>()
+        var rates = 0L
+        sut.addDataTransferProgressListener(
+            OnDatatransferProgressListener { progressRate, totalTransferredSoFar, totalToTransfer, _ ->
+                rates += progressRate
+                totals.add(totalTransferredSoFar)
+                assertEquals(FILE_SIZE.toLong(), totalToTransfer)
+            }
+        )
+
+        val buffer = Buffer()
+        sut.writeTo(buffer)
+
+        assertArrayEquals(content.copyOfRange(offset.toInt(), (offset + length).toInt()), buffer.readByteArray())
+        assertEquals(length, rates)
+        assertEquals(offset + length, totals.last())
+        // notified per buffer, not per segment
+        assertEquals(4, totals.size)
+    }
+
+    @Test(expected = EOFException::class)
+    fun `file shorter than range fails`() {
+        val sut = FileRequestBody(newFile(ByteArray(10)), MEDIA_TYPE, 0, 20)
+
+        sut.writeTo(Buffer())
+    }
+
+    private fun newFile(content: ByteArray): File = temporaryFolder.newFile().apply { writeBytes(content) }
+
+    companion object {
+        private const val SEED = 7
+        private const val FILE_SIZE = 512 * 1024
+        private val MEDIA_TYPE = "application/octet-stream".toMediaType()
+    }
+}
@@ -13,11 +13,15 @@ import com.nhaarman.mockitokotlin2.any
 import com.nhaarman.mockitokotlin2.mock
 import com.nhaarman.mockitokotlin2.verify
 import com.nhaarman.mockitokotlin2.whenever
+import kotlinx.coroutines.runBlocking
 import okhttp3.Call
 import okhttp3.Credentials
 import okhttp3.OkHttpClient
 import okhttp3.Request
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
 import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
 import org.junit.Before
 import org.junit.Test
 import org.mockito.Mock
@@ -69,4 +73,69 @@ class OkHttpMethodBaseTest {
         verify(call).execute()
         assertEquals(OkHttpMethodBase.UNKNOWN_STATUS_CODE, code)
     }
+
+    @Test
+    fun `await follows redirects like execute`() {
+        val server = MockWebServer()
+        server.enqueue(MockResponse().setResponseCode(HTTP_FOUND).setHeader("Location", server.url("/target")))
+        server.enqueue(MockResponse().setBody("ok"))
+        server.start()
+        // redirects are left to the library, as the shared transport does
+        val client = OkHttpClient.Builder().followRedirects(false).build()
+        val sut = NextcloudClient(uri, "test", Credentials.basic("username", "password"), client, context)
+        val method =
+            object : OkHttpMethodBase(server.url("/source").toString(), true) {
+                override fun applyType(temp: Request.Builder) {
+                    temp.get()
+                }
+            }
+
+        try {
+            val code = runBlocking { method.await(sut) }
+
+            assertEquals(HTTP_OK, code)
+            assertEquals("ok", method.getResponseBodyAsString())
+            assertEquals("/source", server.takeRequest().path)
+            assertEquals("/target", server.takeRequest().path)
+        } finally {
+            method.releaseConnection()
+            server.shutdown()
+        }
+    }
+
+    @Test
+    fun `method can disable redirects without changing the client`() {
+        val server = MockWebServer()
+        server.enqueue(MockResponse().setResponseCode(HTTP_FOUND).setHeader("Location", server.url("/target")))
+        server.enqueue(MockResponse().setBody("ok"))
+        server.start()
+        val client = OkHttpClient.Builder().followRedirects(false).build()
+        val sut = NextcloudClient(uri, "test", Credentials.basic("username", "password"), client, context)
+        val method =
+            object : OkHttpMethodBase(server.url("/source").toString(), true) {
+                override fun applyType(temp: Request.Builder) {
+                    temp.get()
+                }
+            }
+        method.followRedirects = false
+
+        try {
+            assertEquals(HTTP_FOUND, method.execute(sut))
+            assertTrue(sut.followRedirects)
+
+            val path = sut.followRedirection(method)
+
+            assertEquals(HTTP_OK, path.lastStatus)
+            assertEquals(1, path.redirectionsCount)
+            assertEquals(2, server.requestCount)
+        } finally {
+            method.releaseConnection()
+            server.shutdown()
+        }
+    }
+
+    companion object {
+        private const val HTTP_OK = 200
+        private const val HTTP_FOUND = 302
+    }
 }
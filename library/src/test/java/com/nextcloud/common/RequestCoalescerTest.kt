@@ -0,0 +1,144 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.nextcloud.common
+
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import okhttp3.mockwebserver.SocketPolicy
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import java.io.IOException
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+
+class RequestCoalescerTest {
+    private lateinit var server: MockWebServer
+
+    @Before
+    fun setUp() {
+        server = MockWebServer()
+        server.dispatcher =
+            object : Dispatcher() {
+                override fun dispatch(request: RecordedRequest): MockResponse =
+                    MockResponse()
+                        .setBody(request.getHeader(AUTHORIZATION) + request.path)
+                        .setHeadersDelay(RESPONSE_DELAY_MILLIS, TimeUnit.MILLISECONDS)
+            }
+        server.start()
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+    }
+
+    @Test
+    fun `identical requests share one call`() {
+        val sut = RequestCoalescer()
+
+        val bodies = executeConcurrently(sut) { get("/avatar", "user1") }
+
+        assertEquals(List(REQUESTS) { "user1/avatar" }, bodies)
+        assertEquals(1, server.requestCount)
+        assertEquals(RequestCoalescer.Stats(1, REQUESTS - 1L), sut.stats)
+    }
+
+    @Test
+    fun `requests of other users or for other urls are not shared`() {
+        val sut = RequestCoalescer()
+
+        val bodies = executeConcurrently(sut) { get("/avatar/${it % 2}", "user${it / 2 % 2}") }
+
+        assertEquals(List(REQUESTS) { "user${it / 2 % 2}/avatar/${it % 2}" }, bodies)
+        assertEquals(DISTINCT_REQUESTS, server.requestCount)
+        assertEquals(DISTINCT_REQUESTS.toLong(), sut.stats.networkCalls)
+    }
+
+    @Test
+    fun `large responses are not shared`() {
+        val sut = RequestCoalescer(1)
+
+        val bodies = executeConcurrently(sut) { get("/avatar", "user1") }
+
+        assertEquals(List(REQUESTS) { "user1/avatar" }, bodies)
+        assertEquals(REQUESTS, server.requestCount)
+        assertEquals(RequestCoalescer.Stats(REQUESTS.toLong(), 0), sut.stats)
+    }
+
+    @Test
+    fun `unreadable responses are not shared`() {
+        val sut = RequestCoalescer()
+        val failing = AtomicBoolean(true)
+        val dispatcher = server.dispatcher
+        server.dispatcher =
+            object : Dispatcher() {
+                override fun dispatch(request: RecordedRequest): MockResponse =
+                    dispatcher.dispatch(request).apply {
+                        if (failing.getAndSet(false)) {
+                            socketPolicy = SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY
+                        }
+                    }
+            }
+
+        val bodies = executeConcurrently(sut) { get("/avatar", "user1") }
+
+        // the first request fails reading its body, the others are sent on their own
+        assertEquals(listOf(null) + List(REQUESTS - 1) { "user1/avatar" }, bodies.sortedBy { it != null })
+        assertEquals(REQUESTS, server.requestCount)
+        assertEquals(RequestCoalescer.Stats(REQUESTS.toLong(), 0), sut.stats)
+    }
+
+    private fun get(
+        path: String,
+        user: String
+    ): Request = Request.Builder().url(server.url(path)).header(AUTHORIZATION, user).build()
+
+    private fun executeConcurrently(
+        sut: RequestCoalescer,
+        request: (Int) -> Request
+    ): List<String?> {
+        val client = OkHttpClient.Builder().addInterceptor(sut).build()
+        val executor = Executors.newFixedThreadPool(REQUESTS)
+        val start = CountDownLatch(1)
+        try {
+            val futures =
+                (0 until REQUESTS).map {
+                    executor.submit(
+                        Callable {
+                            start.await()
+                            try {
+                                client.newCall(request(it)).execute().use { response -> response.body.string() }
+                            } catch (e: IOException) {
+                                null
+                            }
+                        }
+                    )
+                }
+            start.countDown()
+            return futures.map { it.get(TEST_TIMEOUT_SECONDS, TimeUnit.SECONDS) }
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    companion object {
+        private const val AUTHORIZATION = "Authorization"
+        private const val REQUESTS = 8
+        private const val DISTINCT_REQUESTS = 4
+        private const val RESPONSE_DELAY_MILLIS = 500L
+        private const val TEST_TIMEOUT_SECONDS = 10L
+    }
+}
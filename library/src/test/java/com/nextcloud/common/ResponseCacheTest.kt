@@ -0,0 +1,214 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.nextcloud.common
+
+import com.nextcloud.android.lib.core.Clock
+import okhttp3.Headers
+import okhttp3.Interceptor
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+
+class ResponseCacheTest {
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private var now = 0L
+    private val clock =
+        object : Clock {
+            override val currentTimeMillis: Long
+                get() = now
+        }
+    private lateinit var server: MockWebServer
+    private lateinit var directory: File
+    private lateinit var store: DiskResponseCacheStore
+    private lateinit var sut: ResponseCache
+
+    @Before
+    fun setUp() {
+        server = MockWebServer()
+        server.start()
+        directory = folder.newFolder()
+        store = DiskResponseCacheStore(directory, MAX_SIZE)
+        val policies = listOf(ResponseCachePolicy(CAPABILITIES, MAX_AGE), ResponseCachePolicy(DAV, 0))
+        sut = ResponseCache(store, policies, MAX_SIZE, clock)
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+    }
+
+    @Test
+    fun `fresh responses are served from the cache`() {
+        server.enqueue(MockResponse().setBody("capabilities"))
+
+        assertEquals("capabilities", get(CAPABILITIES))
+        now += MAX_AGE - 1
+        assertEquals("capabilities", get(CAPABILITIES))
+
+        assertEquals(1, server.requestCount)
+        assertEquals(ResponseCache.Stats(1, 0, 1), sut.stats)
+    }
+
+    @Test
+    fun `outdated responses are revalidated`() {
+        server.enqueue(MockResponse().setBody("capabilities").setHeader("ETag", ETAG))
+        server.enqueue(MockResponse().setResponseCode(HTTP_NOT_MODIFIED).setHeader("ETag", ETAG))
+        server.enqueue(MockResponse().setBody("changed").setHeader("ETag", "\"other\""))
+
+        get(CAPABILITIES)
+        now += MAX_AGE
+        assertEquals("capabilities", get(CAPABILITIES))
+        now += MAX_AGE
+        assertEquals("changed", get(CAPABILITIES))
+
+        server.takeRequest()
+        assertEquals(ETAG, server.takeRequest().getHeader("If-None-Match"))
+        assertEquals(ETAG, server.takeRequest().getHeader("If-None-Match"))
+        assertEquals(ResponseCache.Stats(0, 1, 2), sut.stats)
+    }
+
+    @Test
+    fun `responses are not shared across accounts or credentials`() {
+        repeat(3) { server.enqueue(MockResponse().setBody("user$it")) }
+
+        assertEquals("user0", get(CAPABILITIES, "user1@server", "credentials1"))
+        assertEquals("user1", get(CAPABILITIES, "user2@server", "credentials1"))
+        assertEquals("user2", get(CAPABILITIES, "user1@server", "credentials2"))
+        assertEquals("user0", get(CAPABILITIES, "user1@server", "credentials1"))
+
+        server.enqueue(MockResponse().setBody("again"))
+        sut.evictAccount("user1@server")
+
+        assertEquals("again", get(CAPABILITIES, "user1@server", "credentials1"))
+        assertEquals("user1", get(CAPABILITIES, "user2@server", "credentials1"))
+        assertEquals(4, server.requestCount)
+    }
+
+    @Test
+    fun `responses without validators are only stored with a max age`() {
+        server.enqueue(MockResponse().setBody("file"))
+        server.enqueue(MockResponse().setBody("file"))
+
+        get(DAV)
+        get(DAV)
+
+        assertEquals(2, server.requestCount)
+        assertEquals(0L, store.getSize())
+    }
+
+    @Test
+    fun `requests with own validators bypass the cache`() {
+        server.enqueue(MockResponse().setBody("capabilities").setHeader("ETag", ETAG))
+        server.enqueue(MockResponse().setResponseCode(HTTP_NOT_MODIFIED))
+
+        get(CAPABILITIES)
+        val code = execute(request(CAPABILITIES).newBuilder().header("If-None-Match", ETAG).build(), ACCOUNT)
+
+        assertEquals(HTTP_NOT_MODIFIED, code)
+        assertEquals(ResponseCache.Stats(0, 0, 1), sut.stats)
+    }
+
+    @Test
+    fun `least recently used responses are evicted`() {
+        val body = ByteArray((MAX_SIZE / 4).toInt())
+        listOf("a", "b", "c").forEach { store.put(it, CachedResponse(HTTP_OK, "OK", Headers.headersOf(), body, 0)) }
+
+        store.get("a")
+        store.put("d", CachedResponse(HTTP_OK, "OK", Headers.headersOf(), body, 0))
+
+        assertNull(store.get("b"))
+        assertEquals(HTTP_OK, store.get("a")?.code)
+        assertTrue(store.getSize() <= MAX_SIZE)
+    }
+
+    @Test
+    fun `stored responses survive a restart`() {
+        val headers = Headers.headersOf("ETag", ETAG)
+        store.put("key", CachedResponse(HTTP_OK, "OK", headers, "body".toByteArray(), now))
+
+        val restarted = DiskResponseCacheStore(directory, MAX_SIZE)
+        val cached = restarted.get("key")
+
+        assertEquals("body", cached?.body?.let { String(it) })
+        assertEquals(ETAG, cached?.headers?.get("ETag"))
+    }
+
+    @Test
+    fun `cookies and hop-by-hop headers are not stored`() {
+        server.enqueue(
+            MockResponse()
+                .setBody("capabilities")
+                .setHeader("ETag", ETAG)
+                .setHeader("Set-Cookie", COOKIE)
+                .setHeader("Keep-Alive", "timeout=5")
+        )
+        server.enqueue(
+            MockResponse().setResponseCode(HTTP_NOT_MODIFIED).setHeader("ETag", ETAG).setHeader("Set-Cookie", COOKIE)
+        )
+
+        val fetched = getHeaders(CAPABILITIES)
+        val cached = getHeaders(CAPABILITIES)
+        now += MAX_AGE
+        val revalidated = getHeaders(CAPABILITIES)
+
+        assertEquals(COOKIE, fetched["Set-Cookie"])
+        assertEquals(ETAG, cached["ETag"])
+        assertNull(cached["Set-Cookie"])
+        assertNull(cached["Keep-Alive"])
+        assertEquals(ETAG, revalidated["ETag"])
+        assertNull(revalidated["Set-Cookie"])
+        assertEquals(ResponseCache.Stats(1, 1, 1), sut.stats)
+    }
+
+    private fun request(path: String): Request = Request.Builder().url(server.url(path)).build()
+
+    private fun get(
+        path: String,
+        accountKey: String = ACCOUNT,
+        credentials: String = "credentials"
+    ): String {
+        val request = request(path).newBuilder().header(OkHttpMethodBase.AUTHORIZATION, credentials).build()
+        return client(accountKey).newCall(request).execute().use { it.body.string() }
+    }
+
+    private fun getHeaders(path: String): Headers {
+        val request = request(path).newBuilder().header(OkHttpMethodBase.AUTHORIZATION, "credentials").build()
+        return client(ACCOUNT).newCall(request).execute().use { it.headers }
+    }
+
+    private fun execute(
+        request: Request,
+        accountKey: String
+    ): Int = client(accountKey).newCall(request).execute().use { it.code }
+
+    private fun client(accountKey: String): OkHttpClient =
+        OkHttpClient.Builder().addInterceptor(Interceptor { sut.intercept(it, accountKey) }).build()
+
+    companion object {
+        private const val ACCOUNT = "user@server"
+        private const val CAPABILITIES = "/ocs/v2.php/cloud/capabilities"
+        private const val DAV = "/remote.php/dav/files/user/file.txt"
+        private const val ETAG = "\"etag\""
+        private const val COOKIE = "oc_sessionPassphrase=secret"
+        private const val MAX_AGE = 60_000L
+        private const val MAX_SIZE = 4096L
+        private const val HTTP_OK = 200
+        private const val HTTP_NOT_MODIFIED = 304
+    }
+}
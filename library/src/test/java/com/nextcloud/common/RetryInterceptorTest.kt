@@ -0,0 +1,131 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.nextcloud.common
+
+import com.owncloud.android.lib.common.network.RetryBudget
+import com.owncloud.android.lib.common.network.RetryPolicy
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.RequestBody.Companion.toRequestBody
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.SocketPolicy
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import java.io.IOException
+import java.net.ServerSocket
+
+class RetryInterceptorTest {
+    private val policy = RetryPolicy(MAX_ATTEMPTS, BASE_DELAY, BASE_DELAY)
+    private val client = OkHttpClient.Builder().addInterceptor(RetryInterceptor(policy)).build()
+    private lateinit var server: MockWebServer
+
+    @Before
+    fun setUp() {
+        server = MockWebServer()
+        server.start()
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+    }
+
+    @Test
+    fun `unavailable server is retried after the requested time`() {
+        server.enqueue(MockResponse().setResponseCode(HTTP_UNAVAILABLE).setHeader("Retry-After", "1"))
+        server.enqueue(MockResponse().setBody("ok"))
+
+        val start = System.nanoTime()
+        val code = execute(get())
+
+        assertEquals(HTTP_OK, code)
+        assertEquals(2, server.requestCount)
+        assertTrue(System.nanoTime() - start >= RETRY_AFTER_NANOS)
+    }
+
+    @Test
+    fun `non idempotent requests are not retried after server errors`() {
+        server.enqueue(MockResponse().setResponseCode(HTTP_BAD_GATEWAY))
+
+        val request = Request.Builder().url(server.url("/")).post("body".toRequestBody()).build()
+
+        assertEquals(HTTP_BAD_GATEWAY, execute(request))
+        assertEquals(1, server.requestCount)
+    }
+
+    @Test
+    fun `throttled requests are retried for every method`() {
+        server.enqueue(MockResponse().setResponseCode(HTTP_TOO_MANY_REQUESTS).setHeader("Retry-After", "0"))
+        server.enqueue(MockResponse().setResponseCode(HTTP_CREATED))
+
+        val request = Request.Builder().url(server.url("/")).post("body".toRequestBody()).build()
+
+        assertEquals(HTTP_CREATED, execute(request))
+        assertEquals(2, server.requestCount)
+    }
+
+    @Test
+    fun `attempts are limited`() {
+        repeat(MAX_ATTEMPTS + 1) { server.enqueue(MockResponse().setResponseCode(HTTP_BAD_GATEWAY)) }
+
+        assertEquals(HTTP_BAD_GATEWAY, execute(get()))
+        assertEquals(MAX_ATTEMPTS, server.requestCount)
+    }
+
+    @Test
+    fun `dropped connections of idempotent requests are retried`() {
+        server.enqueue(MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START))
+        server.enqueue(MockResponse().setBody("ok"))
+        val noOkHttpRetries = client.newBuilder().retryOnConnectionFailure(false).build()
+
+        val code = noOkHttpRetries.newCall(get()).execute().use { it.code }
+
+        assertEquals(HTTP_OK, code)
+        assertEquals(2, server.requestCount)
+    }
+
+    @Test
+    fun `budget and policy are taken from the request`() {
+        repeat(MAX_ATTEMPTS) { server.enqueue(MockResponse().setResponseCode(HTTP_UNAVAILABLE)) }
+        val budget = RetryBudget(1)
+
+        val budgeted = get().newBuilder().tag(RetryBudget::class.java, budget).build()
+        assertEquals(HTTP_UNAVAILABLE, execute(budgeted))
+        assertEquals(2, server.requestCount)
+        assertEquals(0, budget.remainingRetries)
+
+        val disabled = get().newBuilder().tag(RetryPolicy::class.java, RetryPolicy.NONE).build()
+        assertEquals(HTTP_UNAVAILABLE, execute(disabled))
+        assertEquals(3, server.requestCount)
+    }
+
+    @Test(expected = IOException::class)
+    fun `unreachable server fails after retries`() {
+        val port = ServerSocket(0).use { it.localPort }
+
+        execute(Request.Builder().url("http://127.0.0.1:$port/").build())
+    }
+
+    private fun get(): Request = Request.Builder().url(server.url("/")).build()
+
+    private fun execute(request: Request): Int = client.newCall(request).execute().use { it.code }
+
+    companion object {
+        private const val MAX_ATTEMPTS = 3
+        private const val BASE_DELAY = 10L
+        private const val RETRY_AFTER_NANOS = 1_000_000_000L
+        private const val HTTP_OK = 200
+        private const val HTTP_CREATED = 201
+        private const val HTTP_TOO_MANY_REQUESTS = 429
+        private const val HTTP_BAD_GATEWAY = 502
+        private const val HTTP_UNAVAILABLE = 503
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.nextcloud.common
+
+import android.content.Context
+import com.nhaarman.mockitokotlin2.mock
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotSame
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertSame
+import org.junit.Before
+import org.junit.Test
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class TransportRegistryTest {
+    private lateinit var server: MockWebServer
+    private val context: Context = mock()
+
+    @Before
+    fun setUp() {
+        // plain HTTP base client, so that no SSL context needs to be created from an Android context
+        TransportRegistry.baseClient = OkHttpClient()
+        TransportRegistry.evictAll()
+        server = MockWebServer()
+        server.start()
+    }
+
+    @After
+    fun tearDown() {
+        // the limit is process wide
+        TransportRegistry.setHostLimit(server.hostName, 0)
+        server.shutdown()
+        TransportRegistry.evictAll()
+        TransportRegistry.baseClient = null
+    }
+
+    @Test
+    fun `derived clients share pool and dispatcher`() {
+        val first = TransportRegistry.newNextcloudClient(context, "user1@server")
+        val second = TransportRegistry.newNextcloudClient(context, "user2@server")
+        val plain = TransportRegistry.newPlainClient(context)
+
+        assertNotSame(first, second)
+        assertSame(first.connectionPool, second.connectionPool)
+        assertSame(first.connectionPool, plain.connectionPool)
+        assertSame(first.dispatcher, second.dispatcher)
+        assertSame(first.dispatcher, plain.dispatcher)
+    }
+
+    @Test
+    fun `sockets are reused across clients`() {
+        repeat(REQUEST_COUNT) { server.enqueue(MockResponse().setBody("ok")) }
+
+        repeat(REQUEST_COUNT) { i ->
+            // a new client for every request, as done by short-lived NextcloudClient instances
+            val client = TransportRegistry.newNextcloudClient(context, "user$i@server")
+            client.newCall(Request.Builder().url(server.url("/status.php")).build()).execute().use {
+                assertEquals("ok", it.body.string())
+            }
+        }
+
+        repeat(REQUEST_COUNT) { i ->
+            // sequence number is the index of the request on its connection; 0 means a new socket
+            assertEquals(i, server.takeRequest().sequenceNumber)
+        }
+        assertEquals(1, TransportRegistry.connectionPool.connectionCount())
+    }
+
+    @Test
+    fun `host limit is shared across clients`() {
+        val release = CountDownLatch(1)
+        server.dispatcher =
+            object : Dispatcher() {
+                override fun dispatch(request: RecordedRequest): MockResponse {
+                    if (request.path == FIRST_PATH) {
+                        release.await(TEST_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                    }
+                    return MockResponse().setBody("ok")
+                }
+            }
+        TransportRegistry.setHostLimit(server.hostName, 1)
+        val first = TransportRegistry.newNextcloudClient(context, "user1@server")
+        val second = TransportRegistry.newPlainClient(context)
+        val executor = Executors.newFixedThreadPool(2)
+
+        try {
+            val firstCall = executor.submit(Callable { execute(first, FIRST_PATH) })
+            server.takeRequest(TEST_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+            val secondCall = executor.submit(Callable { execute(second, SECOND_PATH) })
+
+            // the second call waits for the permit held by the first one, on another client
+            assertNull(server.takeRequest(WAIT_MILLIS, TimeUnit.MILLISECONDS))
+            assertFalse(secondCall.isDone)
+            assertEquals(1, TransportRegistry.getHostCallsInFlight(server.hostName))
+
+            release.countDown()
+            assertEquals("ok", firstCall.get(TEST_TIMEOUT_SECONDS, TimeUnit.SECONDS))
+            assertEquals("ok", secondCall.get(TEST_TIMEOUT_SECONDS, TimeUnit.SECONDS))
+        } finally {
+            release.countDown()
+            executor.shutdownNow()
+        }
+
+        assertEquals(2, server.requestCount)
+        assertEquals(0, TransportRegistry.getHostCallsInFlight(server.hostName))
+    }
+
+    private fun execute(
+        client: OkHttpClient,
+        path: String
+    ): String = client.newCall(Request.Builder().url(server.url(path)).build()).execute().use { it.body.string() }
+
+    companion object {
+        private const val REQUEST_COUNT = 5
+        private const val FIRST_PATH = "/first"
+        private const val SECOND_PATH = "/second"
+        private const val WAIT_MILLIS = 300L
+        private const val TEST_TIMEOUT_SECONDS = 10L
+    }
+}
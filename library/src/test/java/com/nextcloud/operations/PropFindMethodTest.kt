@@ -0,0 +1,123 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.nextcloud.operations
+
+import android.content.Context
+import android.net.Uri
+import com.nextcloud.common.NextcloudClient
+import com.nhaarman.mockitokotlin2.mock
+import com.owncloud.android.lib.common.network.PropFindBody
+import com.owncloud.android.lib.common.network.WebdavEntry
+import com.owncloud.android.lib.common.network.WebdavUtils
+import okhttp3.Credentials
+import okhttp3.OkHttpClient
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.apache.jackrabbit.webdav.DavConstants
+import org.apache.jackrabbit.webdav.property.DavPropertyName
+import org.apache.jackrabbit.webdav.property.DavPropertyNameSet
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+
+class PropFindMethodTest {
+    private lateinit var server: MockWebServer
+    private lateinit var client: NextcloudClient
+
+    @Before
+    fun setUp() {
+        server = MockWebServer()
+        server.start()
+        val uri: Uri = mock()
+        val context: Context = mock()
+        client = NextcloudClient(uri, "test", Credentials.basic("test", "test"), OkHttpClient(), context)
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+    }
+
+    @Test
+    fun `request carries depth and requested properties`() {
+        server.enqueue(MockResponse().setResponseCode(MULTI_STATUS).setBody(MULTI_STATUS_BODY))
+
+        val sut = PropFindMethod(server.url(PATH).toString(), WebdavUtils.getFilePropSet(), DavConstants.DEPTH_1)
+        client.execute(sut)
+        sut.releaseConnection()
+
+        val request = server.takeRequest()
+        assertEquals("PROPFIND", request.method)
+        assertEquals("1", request.getHeader("Depth"))
+        val body = request.body.readUtf8()
+        assertTrue(body.contains("xmlns:d=\"DAV:\""))
+        assertTrue(body.contains("<d:getetag/>"))
+        assertTrue(body.contains("=\"" + WebdavEntry.NAMESPACE_OC + "\""))
+        assertTrue(body.contains(":" + WebdavEntry.EXTENDED_PROPERTY_NAME_PERMISSIONS + "/>"))
+    }
+
+    @Test
+    fun `empty property set requests all properties`() {
+        val body = PropFindBody.build(DavPropertyNameSet())
+
+        assertTrue(body.contains("<d:allprop/>"))
+    }
+
+    @Test
+    fun `multi status response is parsed`() {
+        server.enqueue(MockResponse().setResponseCode(MULTI_STATUS).setBody(MULTI_STATUS_BODY))
+        val propSet = DavPropertyNameSet().apply { add(DavPropertyName.GETETAG) }
+
+        val sut = PropFindMethod(server.url(PATH).toString(), propSet, DavConstants.DEPTH_1)
+        val status = client.execute(sut)
+        val responses = sut.getResponseBodyAsMultiStatus().responses
+        sut.releaseConnection()
+
+        assertEquals(MULTI_STATUS, status)
+        assertEquals(2, responses.size)
+        val folder = WebdavEntry(responses[0], DAV_FILES_PATH)
+        val file = WebdavEntry(responses[1], DAV_FILES_PATH)
+        assertEquals("/folder/", folder.path)
+        assertEquals("DIR", folder.contentType)
+        assertEquals("/folder/a.txt", file.path)
+        assertEquals("6262bbe303188", file.eTag)
+        assertEquals(7L, file.contentLength)
+    }
+
+    companion object {
+        private const val MULTI_STATUS = 207
+        private const val DAV_FILES_PATH = "/remote.php/dav/files/test"
+        private const val PATH = "$DAV_FILES_PATH/folder/"
+        private const val MULTI_STATUS_BODY = """<?xml version="1.0"?>
+        <d:multistatus xmlns:d="DAV:" xmlns:oc="http://owncloud.org/ns">
+            <d:response>
+                <d:href>/remote.php/dav/files/test/folder/</d:href>
+                <d:propstat>
+                    <d:prop>
+                        <d:getetag>&quot;5f4e2a1b&quot;</d:getetag>
+                        <d:resourcetype><d:collection/></d:resourcetype>
+                    </d:prop>
+                    <d:status>HTTP/1.1 200 OK</d:status>
+                </d:propstat>
+            </d:response>
+            <d:response>
+                <d:href>/remote.php/dav/files/test/folder/a.txt</d:href>
+                <d:propstat>
+                    <d:prop>
+                        <d:getetag>&quot;6262bbe303188&quot;</d:getetag>
+                        <d:getcontentlength>7</d:getcontentlength>
+                        <d:resourcetype />
+                    </d:prop>
+                    <d:status>HTTP/1.1 200 OK</d:status>
+                </d:propstat>
+            </d:response>
+        </d:multistatus>
+        """
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.common
+
+import android.content.Context
+import android.content.SharedPreferences
+import android.net.Uri
+import com.nhaarman.mockitokotlin2.any
+import com.nhaarman.mockitokotlin2.doReturn
+import com.nhaarman.mockitokotlin2.mock
+import com.nhaarman.mockitokotlin2.whenever
+import com.owncloud.android.lib.common.network.CircuitBreakers
+import com.owncloud.android.lib.common.network.RetryPolicy
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager
+import org.apache.commons.httpclient.methods.GetMethod
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import java.net.SocketTimeoutException
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class OwnCloudClientTimeoutTest {
+    private val server = MockWebServer()
+    private val connectionManager =
+        MultiThreadedHttpConnectionManager().apply {
+            params.defaultMaxConnectionsPerHost = THREADS
+            params.maxTotalConnections = THREADS
+        }
+    private lateinit var sut: OwnCloudClient
+
+    @Before
+    fun setUp() {
+        server.dispatcher =
+            object : Dispatcher() {
+                override fun dispatch(request: RecordedRequest): MockResponse {
+                    val path = request.path.orEmpty()
+                    val hop = path.substringAfter(REDIRECT_PATH, "").toIntOrNull()
+                    val response =
+                        if (hop != null && hop < OwnCloudClient.MAX_REDIRECTIONS_COUNT) {
+                            MockResponse()
+                                .setResponseCode(HTTP_MOVED_TEMPORARILY)
+                                .setHeader("Location", server.url(REDIRECT_PATH + (hop + 1)).toString())
+                        } else {
+                            MockResponse().setResponseCode(HTTP_OK).setBody("ok")
+                        }
+                    val delay = if (hop != null) HOP_DELAY_MILLIS else SLOW_DELAY_MILLIS
+                    return response.setHeadersDelay(delay, TimeUnit.MILLISECONDS)
+                }
+            }
+        server.start()
+
+        val baseUri = mock<Uri> { on { toString() } doReturn server.url("/").toString() }
+        val preferences = mock<SharedPreferences> { on { getStringSet(any(), any()) } doReturn emptySet() }
+        val context = mock<Context>()
+        whenever(context.applicationContext).thenReturn(context)
+        whenever(context.getSharedPreferences(any(), any())).thenReturn(preferences)
+
+        sut = OwnCloudClient(baseUri, connectionManager, context)
+        sut.setDefaultTimeouts(DEFAULT_DATA_TIMEOUT, DEFAULT_CONNECTION_TIMEOUT)
+        // every timeout is observed by the caller
+        sut.retryPolicy = RetryPolicy.NONE
+        // timeouts are provoked on purpose
+        CircuitBreakers.enabled = false
+    }
+
+    @After
+    fun tearDown() {
+        CircuitBreakers.enabled = true
+        CircuitBreakers.reset()
+        connectionManager.shutdown()
+        server.shutdown()
+    }
+
+    @Test
+    fun `concurrent requests keep their own timeouts`() {
+        val executor = Executors.newFixedThreadPool(THREADS)
+        val outcomes =
+            try {
+                (0 until REQUESTS)
+                    .map {
+                        val readTimeout = if (it % 2 == 0) SHORT_TIMEOUT else LONG_TIMEOUT
+                        executor.submit(Callable { readTimeout to request(SLOW_PATH, readTimeout) })
+                    }.map { it.get(TEST_TIMEOUT_SECONDS, TimeUnit.SECONDS) }
+            } finally {
+                executor.shutdownNow()
+            }
+
+        outcomes.forEach { (readTimeout, outcome) ->
+            if (readTimeout == SHORT_TIMEOUT) {
+                assertTrue("short timeout was not applied: $outcome", outcome is SocketTimeoutException)
+            } else {
+                assertEquals("long timeout was shortened", HTTP_OK, outcome)
+            }
+        }
+        assertEquals(DEFAULT_DATA_TIMEOUT, sut.dataTimeout)
+        assertEquals(DEFAULT_CONNECTION_TIMEOUT, sut.connectionTimeout)
+        assertEquals(0, connectionManager.params.connectionTimeout)
+        assertEquals(0, connectionManager.params.soTimeout)
+    }
+
+    @Test
+    fun `redirections are followed within the timeouts`() {
+        assertEquals(HTTP_OK, request(REDIRECT_PATH + 0, LONG_TIMEOUT))
+        assertEquals(OwnCloudClient.MAX_REDIRECTIONS_COUNT + 1, server.requestCount)
+    }
+
+    @Test
+    fun `deadline covers redirections`() {
+        val method = GetMethod(server.url(REDIRECT_PATH + 0).toString())
+        OwnCloudClient.setDeadline(method, DEADLINE_MILLIS)
+
+        val outcome = execute(method, LONG_TIMEOUT)
+
+        assertTrue("deadline was not applied: $outcome", outcome is SocketTimeoutException)
+        assertTrue(server.requestCount <= OwnCloudClient.MAX_REDIRECTIONS_COUNT)
+    }
+
+    @Test
+    fun `expired deadline is not started`() {
+        val method = GetMethod(server.url(SLOW_PATH).toString())
+        OwnCloudClient.setDeadline(method, 0)
+
+        assertTrue(execute(method, LONG_TIMEOUT) is SocketTimeoutException)
+        assertEquals(0, server.requestCount)
+    }
+
+    /**
+     * @return the status, or the exception the request failed with
+     */
+    private fun request(
+        path: String,
+        readTimeout: Int
+    ): Any = execute(GetMethod(server.url(path).toString()), readTimeout)
+
+    private fun execute(
+        method: GetMethod,
+        readTimeout: Int
+    ): Any =
+        try {
+            val status = sut.executeMethod(method, readTimeout, LONG_TIMEOUT)
+            sut.exhaustResponse(method.responseBodyAsStream)
+            status
+        } catch (e: SocketTimeoutException) {
+            e
+        } finally {
+            method.releaseConnection()
+        }
+
+    companion object {
+        private const val SLOW_PATH = "/slow"
+        private const val REDIRECT_PATH = "/redirect/"
+        private const val THREADS = 16
+        private const val REQUESTS = 64
+        private const val SLOW_DELAY_MILLIS = 400L
+        private const val HOP_DELAY_MILLIS = 200L
+        private const val DEADLINE_MILLIS = 500L
+        private const val SHORT_TIMEOUT = 100
+        private const val LONG_TIMEOUT = 5000
+        private const val DEFAULT_DATA_TIMEOUT = 60000
+        private const val DEFAULT_CONNECTION_TIMEOUT = 30000
+        private const val TEST_TIMEOUT_SECONDS = 30L
+        private const val HTTP_OK = 200
+        private const val HTTP_MOVED_TEMPORARILY = 302
+    }
+}
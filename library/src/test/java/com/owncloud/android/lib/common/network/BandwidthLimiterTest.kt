@@ -0,0 +1,173 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.common.network
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.ByteArrayOutputStream
+import java.io.InterruptedIOException
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicReference
+
+class BandwidthLimiterTest {
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    /**
+     * Time that only passes by sleeping, so that waits are exact and independent of the machine.
+     */
+    private class FakeTime {
+        var nanos = 0L
+        val sleeps = ArrayList<Long>()
+
+        val millis: Long
+            get() = TimeUnit.NANOSECONDS.toMillis(nanos)
+
+        fun sleep(nanos: Long) {
+            sleeps.add(nanos)
+            this.nanos += nanos
+        }
+    }
+
+    private val time = FakeTime()
+
+    @Test
+    fun `unlimited limiter does not wait`() {
+        val sut = newLimiter(BandwidthLimiter.UNLIMITED)
+
+        repeat(CHUNKS) { sut.acquire(CHUNK) }
+
+        assertTrue(time.sleeps.isEmpty())
+    }
+
+    @Test
+    fun `transfers are limited to the rate`() {
+        val sut = newLimiter(RATE)
+
+        transfer(sut, RATE)
+
+        // the first burst is free, the rest of one second worth of bytes has to wait
+        assertMillis(SECOND_MILLIS - BandwidthLimiter.BURST_MILLIS, time.millis)
+    }
+
+    @Test
+    fun `transfers wait for the debt of former ones`() {
+        val sut = BandwidthLimiter(RATE, null, { time.nanos }, { time.sleeps.add(it) })
+        val burst = (RATE * BandwidthLimiter.BURST_MILLIS / SECOND_MILLIS).toInt()
+
+        sut.acquire(burst + CHUNK)
+        sut.acquire(CHUNK)
+        sut.acquire(CHUNK)
+
+        // no time passed in between, so every transfer waits for all bytes requested before it
+        val chunkNanos = CHUNK * TimeUnit.SECONDS.toNanos(1) / RATE
+        assertEquals(listOf(chunkNanos, 2 * chunkNanos, 3 * chunkNanos), time.sleeps)
+    }
+
+    @Test
+    fun `rate can be changed while transferring`() {
+        val sut = newLimiter(RATE)
+        transfer(sut, RATE / 2)
+
+        sut.bytesPerSecond = RATE * 2
+        val start = time.millis
+        transfer(sut, RATE)
+        val fasterMillis = time.millis - start
+        sut.bytesPerSecond = BandwidthLimiter.UNLIMITED
+        val sleeps = time.sleeps.size
+        transfer(sut, RATE)
+
+        assertMillis(SECOND_MILLIS / 2, fasterMillis)
+        assertEquals(sleeps, time.sleeps.size)
+    }
+
+    @Test
+    fun `account limiter is limited by the global one`() {
+        val global = newLimiter(RATE)
+        val account = BandwidthLimiter(RATE * 4, global, { time.nanos }, time::sleep)
+
+        transfer(account, RATE)
+
+        assertMillis(SECOND_MILLIS - BandwidthLimiter.BURST_MILLIS, time.millis)
+    }
+
+    @Test
+    fun `accounts share the global limiter`() {
+        val upload = BandwidthLimits.upload("user@cloud.example.com")
+
+        assertTrue(upload === BandwidthLimits.upload("user@cloud.example.com"))
+        assertTrue(upload !== BandwidthLimits.upload("other@cloud.example.com"))
+        assertTrue(upload !== BandwidthLimits.download("user@cloud.example.com"))
+    }
+
+    @Test
+    fun `interrupted transfer fails`() {
+        val sut = BandwidthLimiter(CHUNK.toLong())
+        val failure = AtomicReference<Throwable>()
+        val thread =
+            Thread {
+                try {
+                    repeat(CHUNKS) { sut.acquire(CHUNK) }
+                } catch (e: InterruptedIOException) {
+                    failure.set(e)
+                }
+            }
+
+        thread.start()
+        thread.interrupt()
+        thread.join()
+
+        assertTrue(failure.get() is InterruptedIOException)
+    }
+
+    @Test
+    fun `limited request entity writes at the rate`() {
+        val file = temporaryFolder.newFile()
+        file.writeBytes(ByteArray(RATE.toInt()))
+        val sut = FileRequestEntity(file, "application/octet-stream")
+        sut.setBandwidthLimiter(newLimiter(RATE))
+        val out = ByteArrayOutputStream()
+
+        sut.writeRequest(out)
+
+        assertEquals(RATE, out.size().toLong())
+        assertMillis(SECOND_MILLIS - BandwidthLimiter.BURST_MILLIS, time.millis)
+    }
+
+    private fun newLimiter(rate: Long): BandwidthLimiter = BandwidthLimiter(rate, null, { time.nanos }, time::sleep)
+
+    private fun transfer(
+        limiter: BandwidthLimiter,
+        bytes: Long
+    ) {
+        repeat((bytes / CHUNK).toInt()) { limiter.acquire(CHUNK) }
+    }
+
+    /**
+     * Waits are rounded down to whole nanoseconds, and refills while waiting may save up to one chunk.
+     */
+    private fun assertMillis(
+        expectedMillis: Long,
+        millis: Long
+    ) {
+        val chunkMillis = CHUNK * SECOND_MILLIS / RATE + 1
+        assertTrue(
+            "took $millis ms, expected $expectedMillis ms",
+            millis in expectedMillis - 1..expectedMillis + chunkMillis
+        )
+    }
+
+    companion object {
+        private const val RATE = 256L * 1024
+        private const val CHUNK = 4096
+        private const val CHUNKS = 1000
+        private const val SECOND_MILLIS = 1000L
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.common.network
+
+import com.nextcloud.android.lib.core.Clock
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import java.io.InterruptedIOException
+import java.net.ConnectException
+import java.net.SocketTimeoutException
+import java.net.UnknownHostException
+
+class CircuitBreakerTest {
+    private var now = 0L
+    private val clock =
+        object : Clock {
+            override val currentTimeMillis: Long
+                get() = now
+        }
+    private val sut = CircuitBreaker(HOST, THRESHOLD, SLOW_CALL, OPEN_TIME, MAX_OPEN_TIME, clock)
+
+    @Before
+    @After
+    fun resetCircuitBreakers() {
+        CircuitBreakers.reset()
+    }
+
+    @Test
+    fun `consecutive failures open the circuit`() {
+        repeat(THRESHOLD - 1) { sut.onResponse(HTTP_UNAVAILABLE, FAST_CALL, null) }
+        sut.onResponse(HTTP_OK, FAST_CALL, null)
+        repeat(THRESHOLD - 1) { sut.onError(ConnectException()) }
+        assertEquals(CircuitBreaker.Permission.ALLOWED, sut.tryAcquire())
+
+        sut.onResponse(HTTP_OK, SLOW_CALL, null)
+
+        assertEquals(CircuitBreaker.State.OPEN, sut.getState())
+        assertEquals(CircuitBreaker.Permission.REJECTED, sut.tryAcquire())
+        assertEquals(OPEN_TIME, sut.getRemainingOpenMillis())
+    }
+
+    @Test
+    fun `errors not caused by the server are ignored`() {
+        repeat(THRESHOLD) {
+            sut.onError(UnknownHostException())
+            sut.onError(InterruptedIOException())
+            sut.onError(CircuitBreakerOpenException(HOST, 0))
+            sut.onResponse(HTTP_INTERNAL_SERVER_ERROR, FAST_CALL, null)
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, sut.getState())
+    }
+
+    @Test
+    fun `throttling opens the circuit for the requested time`() {
+        sut.onResponse(HTTP_TOO_MANY_REQUESTS, FAST_CALL, "120")
+
+        assertEquals(CircuitBreaker.State.OPEN, sut.getState())
+        assertEquals(THROTTLE_TIME, sut.getRemainingOpenMillis())
+    }
+
+    @Test
+    fun `throttling for less than the open time opens the circuit for the requested time`() {
+        sut.onResponse(HTTP_TOO_MANY_REQUESTS, FAST_CALL, "1")
+
+        assertEquals(SECOND_MILLIS, sut.getRemainingOpenMillis())
+        now += SECOND_MILLIS
+        assertEquals(CircuitBreaker.Permission.PROBE, sut.tryAcquire())
+    }
+
+    @Test
+    fun `throttling without retry after opens the circuit for the open time`() {
+        sut.onResponse(HTTP_TOO_MANY_REQUESTS, FAST_CALL, null)
+
+        assertEquals(OPEN_TIME, sut.getRemainingOpenMillis())
+    }
+
+    @Test
+    fun `single probe closes the circuit`() {
+        open()
+        now += OPEN_TIME
+
+        assertEquals(CircuitBreaker.Permission.PROBE, sut.tryAcquire())
+        assertEquals(CircuitBreaker.State.HALF_OPEN, sut.getState())
+        assertEquals(CircuitBreaker.Permission.REJECTED, sut.tryAcquire())
+
+        sut.onProbeResult(true)
+
+        assertEquals(CircuitBreaker.State.CLOSED, sut.getState())
+        assertEquals(CircuitBreaker.Permission.ALLOWED, sut.tryAcquire())
+    }
+
+    @Test
+    fun `failed probes back off up to the maximum`() {
+        open()
+        var expected = OPEN_TIME
+        repeat(BACKOFF_STEPS) {
+            now += sut.getRemainingOpenMillis()
+            assertEquals(CircuitBreaker.Permission.PROBE, sut.tryAcquire())
+            sut.onProbeError(SocketTimeoutException())
+
+            expected = minOf(expected * 2, MAX_OPEN_TIME)
+            assertEquals(expected, sut.getRemainingOpenMillis())
+        }
+        assertEquals(MAX_OPEN_TIME, expected)
+    }
+
+    @Test
+    fun `canceled probe is taken over by the next request`() {
+        open()
+        now += OPEN_TIME
+        assertEquals(CircuitBreaker.Permission.PROBE, sut.tryAcquire())
+
+        sut.onProbeError(UnknownHostException())
+
+        assertEquals(CircuitBreaker.State.OPEN, sut.getState())
+        assertEquals(CircuitBreaker.Permission.PROBE, sut.tryAcquire())
+    }
+
+    @Test
+    fun `listeners are notified of state changes`() {
+        val states = mutableListOf<CircuitBreaker.State>()
+        sut.addStateListener { _, state -> states.add(state) }
+
+        open()
+        now += OPEN_TIME
+        sut.tryAcquire()
+        sut.onProbeResult(true)
+
+        assertEquals(
+            listOf(CircuitBreaker.State.OPEN, CircuitBreaker.State.HALF_OPEN, CircuitBreaker.State.CLOSED),
+            states
+        )
+    }
+
+    @Test
+    fun `servers are identified by host and port`() {
+        CircuitBreakers.registerServer("https://cloud.example.com/nextcloud/")
+
+        val breaker = CircuitBreakers.get("https", "Cloud.Example.com", HTTPS_PORT)
+
+        assertEquals("cloud.example.com", breaker.host)
+        assertEquals("https://cloud.example.com/nextcloud/status.php", breaker.probeUrl)
+        assertEquals("cloud.example.com:$HTTP_ALT_PORT", CircuitBreakers.get("https", HOST, HTTP_ALT_PORT).host)
+        assertEquals(2, CircuitBreakers.getAll().size)
+    }
+
+    private fun open() {
+        repeat(THRESHOLD) { sut.onError(ConnectException()) }
+        assertEquals(CircuitBreaker.State.OPEN, sut.getState())
+    }
+
+    companion object {
+        private const val HOST = "cloud.example.com"
+        private const val THRESHOLD = 3
+        private const val FAST_CALL = 10L
+        private const val SLOW_CALL = 1000L
+        private const val OPEN_TIME = 10_000L
+        private const val MAX_OPEN_TIME = 60_000L
+        private const val THROTTLE_TIME = 60_000L
+        private const val BACKOFF_STEPS = 4
+        private const val HTTPS_PORT = 443
+        private const val HTTP_ALT_PORT = 8080
+        private const val HTTP_OK = 200
+        private const val HTTP_TOO_MANY_REQUESTS = 429
+        private const val SECOND_MILLIS = 1000L
+        private const val HTTP_INTERNAL_SERVER_ERROR = 500
+        private const val HTTP_UNAVAILABLE = 503
+    }
+}
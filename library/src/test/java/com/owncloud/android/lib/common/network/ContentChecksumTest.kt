@@ -0,0 +1,135 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.common.network
+
+import com.nextcloud.common.FileRequestBody
+import okio.blackholeSink
+import okio.buffer
+import org.junit.Assert.assertEquals
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.io.RandomAccessFile
+import java.security.MessageDigest
+import java.util.zip.Adler32
+import kotlin.random.Random
+
+class ContentChecksumTest {
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    @Test
+    fun `known values`() {
+        assertEquals("ADLER32:11e60398", hash(ChecksumType.ADLER32, "Wikipedia"))
+        assertEquals("MD5:900150983cd24fb0d6963f7d28e17f72", hash(ChecksumType.MD5, "abc"))
+        assertEquals("SHA1:a9993e364706816aba3e25717850c26c9cd0d89d", hash(ChecksumType.SHA1, "abc"))
+        assertEquals(
+            "SHA256:ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+            hash(ChecksumType.SHA256, "abc")
+        )
+    }
+
+    @Test
+    fun `entities hash the bytes they write`() {
+        val content = Random(SEED).nextBytes(FILE_SIZE)
+        val file = newFile(content)
+
+        ChecksumType.values().forEach { type ->
+            val expected = checksumOf(type, content)
+
+            val entityChecksum = ContentChecksum(type)
+            FileRequestEntity(file, CONTENT_TYPE).apply { setChecksum(entityChecksum) }
+                .writeRequest(ByteArrayOutputStream())
+            assertEquals(expected, entityChecksum.getHeaderValue())
+
+            val bodyChecksum = ContentChecksum(type)
+            FileRequestBody(file, null).apply { checksum = bodyChecksum }
+                .writeTo(blackholeSink().buffer())
+            assertEquals(expected, bodyChecksum.getHeaderValue())
+        }
+    }
+
+    @Test
+    fun `rewritten chunk is hashed once`() {
+        val content = Random(SEED).nextBytes(FILE_SIZE)
+        val file = newFile(content)
+        val offset = 1000L
+        val length = 300_007L
+        val checksum = ContentChecksum(ChecksumType.SHA1)
+
+        RandomAccessFile(file, "r").use { raf ->
+            val sut = ChunkFromFileChannelRequestEntity(raf.channel, CONTENT_TYPE, offset, length, file)
+            sut.setChecksum(checksum)
+            // e.g. retried by the network library
+            sut.writeRequest(ByteArrayOutputStream())
+            sut.writeRequest(ByteArrayOutputStream())
+        }
+
+        assertEquals(length, checksum.length)
+        assertEquals(
+            checksumOf(ChecksumType.SHA1, content.copyOfRange(offset.toInt(), (offset + length).toInt())),
+            checksum.getHeaderValue()
+        )
+    }
+
+    @Test
+    fun `checksums of chunks combine to the checksum of the file`() {
+        val random = Random(SEED)
+
+        repeat(ROUNDS) {
+            val content = random.nextBytes(random.nextInt(1, FILE_SIZE))
+            val file = newFile(content)
+            val bounds = (List(random.nextInt(0, MAX_SPLITS)) { random.nextInt(0, content.size + 1).toLong() } +
+                listOf(0L, content.size.toLong())).distinct().sorted()
+
+            val parts =
+                bounds.zipWithNext { start, end ->
+                    ContentChecksum.fromFile(ChecksumType.ADLER32, file, start, end - start)
+                }
+
+            assertEquals(checksumOf(ChecksumType.ADLER32, content), ContentChecksum.combine(parts))
+        }
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun `digests cannot be combined`() {
+        ContentChecksum.combine(listOf(ContentChecksum(ChecksumType.SHA1), ContentChecksum(ChecksumType.SHA1)))
+    }
+
+    private fun hash(
+        type: ChecksumType,
+        text: String
+    ): String {
+        val bytes = text.toByteArray()
+        return ContentChecksum(type).apply { update(bytes, 0, bytes.size) }.getHeaderValue()
+    }
+
+    private fun newFile(content: ByteArray): File = temporaryFolder.newFile().apply { writeBytes(content) }
+
+    private fun checksumOf(
+        type: ChecksumType,
+        content: ByteArray
+    ): String {
+        val value =
+            if (type == ChecksumType.ADLER32) {
+                java.lang.Long.toHexString(Adler32().apply { update(content) }.value)
+            } else {
+                MessageDigest.getInstance(type.algorithm!!).digest(content).joinToString("") { "%02x".format(it) }
+            }
+        return type.headerName + ":" + value
+    }
+
+    companion object {
+        private const val SEED = 7
+        private const val FILE_SIZE = 1024 * 1024
+        private const val ROUNDS = 20
+        private const val MAX_SPLITS = 8
+        private const val CONTENT_TYPE = "application/octet-stream"
+    }
+}
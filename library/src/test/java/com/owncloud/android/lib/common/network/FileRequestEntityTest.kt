@@ -0,0 +1,88 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.common.network
+
+import com.nextcloud.common.FileRequestBody
+import okhttp3.MediaType.Companion.toMediaType
+import okio.Buffer
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.io.RandomAccessFile
+import kotlin.random.Random
+
+class FileRequestEntityTest {
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    @Test
+    fun `file is written completely`() {
+        val content = Random(SEED).nextBytes(FILE_SIZE)
+        val file = newFile(content)
+
+        listOf(LEGACY_BUFFER_SIZE, FileRequestEntity.DEFAULT_BUFFER_SIZE, ODD_BUFFER_SIZE).forEach { bufferSize ->
+            val output = ByteArrayOutputStream()
+            FileRequestEntity(file, CONTENT_TYPE, bufferSize).writeRequest(output)
+
+            assertArrayEquals(content, output.toByteArray())
+        }
+    }
+
+    @Test
+    fun `chunk is written completely`() {
+        val content = Random(SEED).nextBytes(FILE_SIZE)
+        val file = newFile(content)
+        val offset = 1000L
+        val length = 300_007L
+
+        listOf(LEGACY_BUFFER_SIZE, FileRequestEntity.DEFAULT_BUFFER_SIZE, ODD_BUFFER_SIZE).forEach { bufferSize ->
+            RandomAccessFile(file, "r").use { raf ->
+                val output = ByteArrayOutputStream()
+                val sut = ChunkFromFileChannelRequestEntity(raf.channel, CONTENT_TYPE, offset, length, file, bufferSize)
+                var transferred = 0L
+                sut.addDataTransferProgressListener { _, totalTransferredSoFar, _, _ ->
+                    transferred = totalTransferredSoFar
+                }
+
+                sut.writeRequest(output)
+
+                assertArrayEquals(content.copyOfRange(offset.toInt(), (offset + length).toInt()), output.toByteArray())
+                assertEquals(offset + length, transferred)
+            }
+        }
+    }
+
+    @Test
+    fun `request body writes the file completely`() {
+        val content = Random(SEED).nextBytes(FILE_SIZE)
+        val sut = FileRequestBody(newFile(content), CONTENT_TYPE.toMediaType())
+        var transferred = 0L
+        sut.addDataTransferProgressListener { _, totalTransferredSoFar, _, _ ->
+            transferred = totalTransferredSoFar
+        }
+
+        val output = Buffer()
+        sut.writeTo(output)
+
+        assertArrayEquals(content, output.readByteArray())
+        assertEquals(FILE_SIZE.toLong(), transferred)
+    }
+
+    private fun newFile(content: ByteArray): File = temporaryFolder.newFile().apply { writeBytes(content) }
+
+    companion object {
+        private const val SEED = 3
+        private const val FILE_SIZE = 1024 * 1024 + 17
+        private const val LEGACY_BUFFER_SIZE = 4096
+        private const val ODD_BUFFER_SIZE = 1000
+        private const val CONTENT_TYPE = "application/octet-stream"
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.common.network
+
+import org.apache.jackrabbit.webdav.MultiStatus
+import org.apache.jackrabbit.webdav.xml.DomUtil
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.IOException
+import java.io.InputStream
+import java.util.concurrent.TimeUnit
+
+class MultiStatusReaderTest {
+    @Test
+    fun `streamed entries match DOM parsed entries`() {
+        val expected = parseWithDom(EXAMPLE_MULTI_STATUS.byteInputStream())
+        val actual = parseStreaming(EXAMPLE_MULTI_STATUS.byteInputStream())
+
+        assertEquals(2, actual.size)
+        assertEquals(expected.size, actual.size)
+        expected.zip(actual).forEach { (dom, streamed) -> assertSameEntry(dom, streamed) }
+
+        val folder = actual[0]
+        assertTrue(folder.isDirectory)
+        assertEquals("5f4e2a1b", folder.eTag)
+
+        val file = actual[1]
+        assertEquals("/folder/test.md", file.path)
+        assertEquals("6262bbe303188", file.eTag)
+        assertEquals("text/markdown", file.contentType)
+        assertEquals(7L, file.contentLength)
+        assertEquals(171L, file.localId)
+        assertTrue(file.isLocked)
+        assertEquals(2, file.sharees.size)
+        assertEquals("alice", file.sharees[0]?.userId)
+        assertArrayEquals(arrayOf("important"), file.tags)
+        assertEquals(null, file.lockOwnerEditor)
+    }
+
+    @Test
+    fun `responses are read one by one`() {
+        val reader = MultiStatusReader(EXAMPLE_MULTI_STATUS.byteInputStream())
+
+        assertTrue(reader.hasNext())
+        assertEquals("/remote.php/dav/files/test/folder/", reader.next().href)
+        assertTrue(reader.hasNext())
+        assertEquals("/remote.php/dav/files/test/folder/test.md", reader.next().href)
+        assertFalse(reader.hasNext())
+        reader.close()
+    }
+
+    /**
+     * Compares the streaming reader with the DOM based parser on a large folder listing: time to map all entries, and
+     * heap retained while doing so. The DOM based model holds the whole listing, the streaming reader only the entry
+     * at hand; times are reported in the message only, as they depend on the machine.
+     */
+    @Test
+    fun `benchmark large folder`() {
+        val body = buildLargeMultiStatus(LARGE_FOLDER_ENTRIES).toByteArray()
+
+        val dom =
+            measure(body) { input, retained ->
+                val responses = MultiStatus.createFromXml(DomUtil.parseDocument(input).documentElement).responses
+                retained()
+                responses.forEach { WebdavEntry(it, DAV_FILES_PATH) }
+                responses.size
+            }
+        val streaming =
+            measure(body) { input, retained ->
+                var count = 0
+                MultiStatusReader(input).use { reader ->
+                    reader.forEach {
+                        // map and drop every entry, as a consumer without an in-memory listing would do
+                        WebdavEntry(it, DAV_FILES_PATH)
+                        if (++count == LARGE_FOLDER_ENTRIES / 2) {
+                            retained()
+                        }
+                    }
+                }
+                count
+            }
+
+        val message =
+            "DOM ${dom.millis} ms, ${dom.retainedBytes / KIB} KiB retained; " +
+                "streaming ${streaming.millis} ms, ${streaming.retainedBytes / KIB} KiB retained"
+        assertEquals(message, LARGE_FOLDER_ENTRIES + 1, dom.count)
+        assertEquals(message, dom.count, streaming.count)
+        assertTrue(message, streaming.retainedBytes < dom.retainedBytes / RETAINED_RATIO)
+    }
+
+    @Test
+    fun `responses without successful propstat are kept without properties`() {
+        val body =
+            """<?xml version="1.0"?><d:multistatus xmlns:d="DAV:">
+            <d:response><d:href>$DAV_FILES_PATH/vanished.txt</d:href><d:propstat>
+                <d:prop><d:getetag/></d:prop><d:status>HTTP/1.1 404 Not Found</d:status>
+            </d:propstat></d:response>
+            <d:response><d:href>$DAV_FILES_PATH/kept.txt</d:href><d:propstat>
+                <d:prop><d:getetag>&quot;etag&quot;</d:getetag></d:prop><d:status>HTTP/1.1 200 OK</d:status>
+            </d:propstat></d:response>
+            </d:multistatus>"""
+
+        val entries = parseStreaming(body.byteInputStream())
+
+        // positions hold, e.g. a vanished folder is still the first entry of its listing
+        assertEquals(listOf("/vanished.txt", "/kept.txt"), entries.map { it.path })
+        assertEquals(null, entries[0].eTag)
+        assertEquals("etag", entries[1].eTag)
+    }
+
+    @Test(expected = IOException::class)
+    fun `read errors are thrown as IOException by nextResponse`() {
+        val reader = MultiStatusReader(TRUNCATED_MULTI_STATUS.byteInputStream())
+
+        while (reader.nextResponse() != null) {
+            // read until the error
+        }
+    }
+
+    @Test(expected = MultiStatusReader.ReadException::class)
+    fun `read errors are wrapped while iterating`() {
+        val reader = MultiStatusReader(TRUNCATED_MULTI_STATUS.byteInputStream())
+
+        reader.forEach { it.href }
+    }
+
+    private class Measurement(val count: Int, val millis: Long, val retainedBytes: Long)
+
+    /**
+     * Runs [parse] once to warm up and once measured; [parse] calls its second argument while holding what it
+     * retains at most.
+     */
+    private fun measure(
+        body: ByteArray,
+        parse: (InputStream, () -> Unit) -> Int
+    ): Measurement {
+        parse(ByteArrayInputStream(body)) {}
+
+        val baseline = usedHeap()
+        var retainedBytes = 0L
+        val start = System.nanoTime()
+        val count = parse(ByteArrayInputStream(body)) { retainedBytes = usedHeap() - baseline }
+        val millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+        return Measurement(count, millis, retainedBytes)
+    }
+
+    private fun usedHeap(): Long {
+        repeat(GC_ROUNDS) { System.gc() }
+        return Runtime.getRuntime().let { it.totalMemory() - it.freeMemory() }
+    }
+
+    private fun parseWithDom(input: InputStream): List<WebdavEntry> =
+        MultiStatus.createFromXml(DomUtil.parseDocument(input).documentElement)
+            .responses
+            .map { WebdavEntry(it, DAV_FILES_PATH) }
+
+    private fun parseStreaming(input: InputStream): List<WebdavEntry> {
+        val entries = ArrayList<WebdavEntry>()
+        MultiStatusReader(input).use { reader ->
+            reader.forEach { entries.add(WebdavEntry(it, DAV_FILES_PATH)) }
+        }
+        return entries
+    }
+
+    private fun assertSameEntry(
+        expected: WebdavEntry,
+        actual: WebdavEntry
+    ) {
+        assertEquals(expected.path, actual.path)
+        assertEquals(expected.name, actual.name)
+        assertEquals(expected.contentType, actual.contentType)
+        assertEquals(expected.contentLength, actual.contentLength)
+        assertEquals(expected.modifiedTimestamp, actual.modifiedTimestamp)
+        assertEquals(expected.eTag, actual.eTag)
+        assertEquals(expected.permissions, actual.permissions)
+        assertEquals(expected.remoteId, actual.remoteId)
+        assertEquals(expected.localId, actual.localId)
+        assertEquals(expected.size, actual.size)
+        assertEquals(expected.isFavorite, actual.isFavorite)
+        assertEquals(expected.isEncrypted, actual.isEncrypted)
+        assertEquals(expected.mountType, actual.mountType)
+        assertEquals(expected.ownerId, actual.ownerId)
+        assertEquals(expected.isHasPreview, actual.isHasPreview)
+        assertEquals(expected.richWorkspace, actual.richWorkspace)
+        assertEquals(expected.isLocked, actual.isLocked)
+        assertEquals(expected.lockOwnerType, actual.lockOwnerType)
+        assertEquals(expected.lockTimestamp, actual.lockTimestamp)
+        assertEquals(expected.sharees.map { it?.userId }, actual.sharees.map { it?.userId })
+        assertArrayEquals(expected.tags, actual.tags)
+    }
+
+    companion object {
+        private const val DAV_FILES_PATH = "/remote.php/dav/files/test"
+        private const val LARGE_FOLDER_ENTRIES = 20000
+        private const val RETAINED_RATIO = 4
+        private const val GC_ROUNDS = 3
+        private const val KIB = 1024
+        private const val TRUNCATED_MULTI_STATUS =
+            "<?xml version=\"1.0\"?><d:multistatus xmlns:d=\"DAV:\"><d:response><d:href>/file</d:href><d:propstat>"
+
+        private const val EXAMPLE_MULTI_STATUS = """<?xml version="1.0"?>
+        <d:multistatus xmlns:d="DAV:" xmlns:nc="http://nextcloud.org/ns" xmlns:oc="http://owncloud.org/ns">
+            <d:response>
+                <d:href>/remote.php/dav/files/test/folder/</d:href>
+                <d:propstat>
+                    <d:prop>
+                        <d:getlastmodified>Fri, 07 Jan 2022 14:42:34 GMT</d:getlastmodified>
+                        <d:getetag>&quot;5f4e2a1b&quot;</d:getetag>
+                        <d:resourcetype><d:collection/></d:resourcetype>
+                        <oc:fileid>170</oc:fileid>
+                        <oc:permissions>RGDNVCK</oc:permissions>
+                        <oc:size>7</oc:size>
+                    </d:prop>
+                    <d:status>HTTP/1.1 200 OK</d:status>
+                </d:propstat>
+                <d:propstat>
+                    <d:prop>
+                        <d:getcontentlength />
+                    </d:prop>
+                    <d:status>HTTP/1.1 404 Not Found</d:status>
+                </d:propstat>
+            </d:response>
+            <d:response>
+                <d:href>/remote.php/dav/files/test/folder/test.md</d:href>
+                <d:propstat>
+                    <d:prop>
+                        <d:getlastmodified>Fri, 07 Jan 2022 14:42:34 GMT</d:getlastmodified>
+                        <d:getetag>&quot;6262bbe303188&quot;</d:getetag>
+                        <d:getcontenttype>text/markdown</d:getcontenttype>
+                        <d:resourcetype />
+                        <oc:fileid>171</oc:fileid>
+                        <oc:id>00000171ocabcdef</oc:id>
+                        <oc:permissions>RGDNVW</oc:permissions>
+                        <oc:size>7</oc:size>
+                        <d:getcontentlength>7</d:getcontentlength>
+                        <nc:has-preview>true</nc:has-preview>
+                        <nc:mount-type>group</nc:mount-type>
+                        <oc:favorite>1</oc:favorite>
+                        <oc:owner-id>test</oc:owner-id>
+                        <oc:owner-display-name>test</oc:owner-display-name>
+                        <oc:comments-unread>0</oc:comments-unread>
+                        <nc:sharees><nc:sharee>
+                            <nc:id>alice</nc:id>
+                            <nc:display-name>Alice</nc:display-name>
+                            <nc:type>0</nc:type>
+                        </nc:sharee><nc:sharee>
+                            <nc:id>devs</nc:id>
+                            <nc:display-name>Developers</nc:display-name>
+                            <nc:type>1</nc:type>
+                        </nc:sharee></nc:sharees>
+                        <nc:system-tags><nc:system-tag>important</nc:system-tag></nc:system-tags>
+                        <nc:rich-workspace></nc:rich-workspace>
+                        <nc:lock>1</nc:lock>
+                        <nc:lock-owner>test</nc:lock-owner>
+                        <nc:lock-owner-displayname>test</nc:lock-owner-displayname>
+                        <nc:lock-time>1650637795</nc:lock-time>
+                        <nc:lock-timeout>1800</nc:lock-timeout>
+                        <nc:lock-owner-type>0</nc:lock-owner-type>
+                    </d:prop>
+                    <d:status>HTTP/1.1 200 OK</d:status>
+                </d:propstat>
+                <d:propstat>
+                    <d:prop>
+                        <d:quota-available-bytes />
+                        <nc:is-encrypted />
+                        <nc:lock-owner-editor />
+                    </d:prop>
+                    <d:status>HTTP/1.1 404 Not Found</d:status>
+                </d:propstat>
+            </d:response>
+        </d:multistatus>
+        """
+
+        private fun buildLargeMultiStatus(entries: Int): String {
+            val builder = StringBuilder()
+            builder.append(
+                "<?xml version=\"1.0\"?><d:multistatus xmlns:d=\"DAV:\" xmlns:nc=\"http://nextcloud.org/ns\" " +
+                    "xmlns:oc=\"http://owncloud.org/ns\">"
+            )
+            builder.append(
+                "<d:response><d:href>$DAV_FILES_PATH/large/</d:href><d:propstat><d:prop>" +
+                    "<d:getetag>&quot;root&quot;</d:getetag><d:resourcetype><d:collection/></d:resourcetype>" +
+                    "</d:prop><d:status>HTTP/1.1 200 OK</d:status></d:propstat></d:response>"
+            )
+            for (i in 0 until entries) {
+                builder.append("<d:response><d:href>$DAV_FILES_PATH/large/file$i.jpg</d:href><d:propstat><d:prop>")
+                    .append("<d:getlastmodified>Fri, 07 Jan 2022 14:42:34 GMT</d:getlastmodified>")
+                    .append("<d:getetag>&quot;etag$i&quot;</d:getetag>")
+                    .append("<d:getcontenttype>image/jpeg</d:getcontenttype><d:resourcetype/>")
+                    .append("<d:getcontentlength>$i</d:getcontentlength>")
+                    .append("<oc:fileid>$i</oc:fileid><oc:id>0000${i}oc</oc:id>")
+                    .append("<oc:permissions>RGDNVW</oc:permissions><oc:size>$i</oc:size>")
+                    .append("<oc:favorite>0</oc:favorite><oc:owner-id>test</oc:owner-id>")
+                    .append("<oc:owner-display-name>test</oc:owner-display-name>")
+                    .append("<nc:has-preview>true</nc:has-preview><nc:mount-type></nc:mount-type>")
+                    .append("</d:prop><d:status>HTTP/1.1 200 OK</d:status></d:propstat>")
+                    .append("<d:propstat><d:prop><nc:lock/><nc:is-encrypted/></d:prop>")
+                    .append("<d:status>HTTP/1.1 404 Not Found</d:status></d:propstat></d:response>")
+            }
+            return builder.append("</d:multistatus>").toString()
+        }
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.common.network
+
+import com.nextcloud.android.lib.core.Clock
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.concurrent.atomic.AtomicLong
+
+class ProgressDispatcherTest {
+    private class TestClock : Clock {
+        override var currentTimeMillis = 0L
+    }
+
+    private class RecordingListener : OnDatatransferProgressListener {
+        val rates = ArrayList<Long>()
+        val totals = ArrayList<Long>()
+
+        override fun onTransferProgress(
+            progressRate: Long,
+            totalTransferredSoFar: Long,
+            totalToTransfer: Long,
+            fileAbsoluteName: String?
+        ) {
+            rates.add(progressRate)
+            totals.add(totalTransferredSoFar)
+        }
+    }
+
+    private val clock = TestClock()
+    private val listener = RecordingListener()
+
+    @Test
+    fun `progress within the interval is coalesced`() {
+        val sut = newDispatcher()
+
+        report(sut, count = 100, totalToTransfer = TOTAL)
+        clock.currentTimeMillis = INTERVAL_MILLIS
+        report(sut, count = 1, totalToTransfer = TOTAL, alreadyTransferred = 100 * BUFFER)
+
+        // first report right away, the following ones once the interval passed
+        assertEquals(listOf(BUFFER, 100 * BUFFER), listener.rates)
+        assertEquals(listOf(BUFFER, 101 * BUFFER), listener.totals)
+    }
+
+    @Test
+    fun `pending bytes over the threshold are dispatched`() {
+        val sut = newDispatcher(byteThreshold = 10 * BUFFER)
+
+        report(sut, count = 31, totalToTransfer = TOTAL)
+
+        assertEquals(listOf(BUFFER, 10 * BUFFER, 10 * BUFFER, 10 * BUFFER), listener.rates)
+    }
+
+    @Test
+    fun `completion is dispatched right away`() {
+        val sut = newDispatcher()
+
+        report(sut, count = 10, totalToTransfer = 10 * BUFFER)
+
+        assertEquals(listOf(BUFFER, 9 * BUFFER), listener.rates)
+        assertEquals(10 * BUFFER, listener.totals.last())
+    }
+
+    @Test
+    fun `flush dispatches pending bytes`() {
+        val sut = newDispatcher()
+        report(sut, count = 5, totalToTransfer = TOTAL)
+
+        sut.flush()
+        sut.flush()
+
+        assertEquals(listOf(BUFFER, 4 * BUFFER), listener.rates)
+    }
+
+    @Test
+    fun `listeners can be removed while progress is dispatched`() {
+        val sut = newDispatcher(intervalMillis = 0)
+        val selfRemoving =
+            object : OnDatatransferProgressListener {
+                override fun onTransferProgress(
+                    progressRate: Long,
+                    totalTransferredSoFar: Long,
+                    totalToTransfer: Long,
+                    fileAbsoluteName: String?
+                ) {
+                    sut.removeDataTransferProgressListener(this)
+                }
+            }
+        sut.addDataTransferProgressListener(selfRemoving)
+
+        report(sut, count = 3, totalToTransfer = TOTAL)
+
+        assertEquals(3, listener.rates.size)
+    }
+
+    @Test
+    fun `concurrent progress is dispatched completely`() {
+        val sut = ProgressDispatcher(INTERVAL_MILLIS)
+        val received = AtomicLong()
+        sut.addDataTransferProgressListener { progressRate, _, _, _ -> received.addAndGet(progressRate) }
+
+        val threads =
+            List(THREADS) {
+                Thread { repeat(CALLS_PER_THREAD) { sut.onTransferProgress(BUFFER, 0, TOTAL, FILE_NAME) } }
+            }
+        threads.forEach { it.start() }
+        threads.forEach { it.join() }
+        sut.flush()
+
+        assertEquals(THREADS * CALLS_PER_THREAD * BUFFER, received.get())
+    }
+
+    @Test
+    fun `listeners are notified outside of the lock`() {
+        val sut = newDispatcher(intervalMillis = 0)
+        var other: Thread? = null
+        sut.addDataTransferProgressListener { _, _, _, _ ->
+            if (other == null) {
+                // another thread reporting while a slow listener runs must not wait for it
+                other = Thread { sut.onTransferProgress(BUFFER, 2 * BUFFER, TOTAL, FILE_NAME) }
+                other!!.start()
+                other!!.join(TIMEOUT_MILLIS)
+            }
+        }
+
+        sut.onTransferProgress(BUFFER, BUFFER, TOTAL, FILE_NAME)
+
+        assertFalse(other!!.isAlive)
+        assertEquals(listOf(BUFFER, BUFFER), listener.rates)
+    }
+
+    @Test
+    fun `totals reported out of order are handed on in order`() {
+        val sut = newDispatcher(intervalMillis = 0)
+
+        sut.onTransferProgress(BUFFER, 2 * BUFFER, 3 * BUFFER, FILE_NAME)
+        // counted before the former report, but reported after it
+        sut.onTransferProgress(BUFFER, BUFFER, 3 * BUFFER, FILE_NAME)
+        sut.onTransferProgress(BUFFER, 3 * BUFFER, 3 * BUFFER, FILE_NAME)
+
+        assertEquals(listOf(2 * BUFFER, 2 * BUFFER, 3 * BUFFER), listener.totals)
+        assertEquals(3 * BUFFER, listener.rates.sum())
+    }
+
+    @Test
+    fun `concurrent totals are handed on in order`() {
+        val sut = ProgressDispatcher(0, Long.MAX_VALUE, clock)
+        val totals = ArrayList<Long>()
+        sut.addDataTransferProgressListener { _, totalTransferredSoFar, _, _ ->
+            synchronized(totals) { totals.add(totalTransferredSoFar) }
+        }
+        val transferred = AtomicLong()
+        val totalToTransfer = THREADS * CALLS_PER_THREAD * BUFFER
+
+        val threads =
+            List(THREADS) {
+                Thread {
+                    repeat(CALLS_PER_THREAD) {
+                        sut.onTransferProgress(BUFFER, transferred.addAndGet(BUFFER), totalToTransfer, FILE_NAME)
+                    }
+                }
+            }
+        threads.forEach { it.start() }
+        threads.forEach { it.join() }
+        sut.flush()
+
+        assertEquals(totals.sorted(), totals)
+        assertEquals(totalToTransfer, totals.last())
+    }
+
+    @Test
+    fun `progress per buffer is coalesced by the byte threshold`() {
+        val sut = ProgressDispatcher(Long.MAX_VALUE, ProgressDispatcher.DEFAULT_BYTE_THRESHOLD, clock)
+        sut.addDataTransferProgressListener(listener)
+        val totalToTransfer = COALESCED_CALLS * BUFFER
+
+        report(sut, count = COALESCED_CALLS, totalToTransfer = totalToTransfer)
+
+        // the first report, one per threshold and the completion
+        assertTrue(listener.rates.size <= 2 + totalToTransfer / ProgressDispatcher.DEFAULT_BYTE_THRESHOLD)
+        assertEquals(totalToTransfer, listener.rates.sum())
+        assertEquals(totalToTransfer, listener.totals.last())
+    }
+
+    /**
+     * Reports progress for every 4 KB buffer, as entities did, once straight to a listener doing some work on every
+     * call and once through a dispatcher. Only the number of calls is asserted, times per byte depend on the machine
+     * and are part of the message.
+     */
+    @Test
+    fun `benchmark per byte overhead`() {
+        var calls = 0L
+        val renderingListener =
+            OnDatatransferProgressListener { _, totalTransferredSoFar, totalToTransfer, _ ->
+                calls++
+                (totalTransferredSoFar * PERCENT / totalToTransfer).toString()
+            }
+        val totalBytes = BENCHMARK_CALLS * BUFFER
+
+        val directNanos = measure { renderingListener }
+        val directCalls = calls
+        calls = 0
+        // one dispatcher per transfer, as entities and operations use them
+        val coalescedNanos =
+            measure { ProgressDispatcher().apply { addDataTransferProgressListener(renderingListener) } }
+
+        val message =
+            "direct ${directNanos * PICOS_PER_NANO / totalBytes} ps/byte, " +
+                "dispatcher ${coalescedNanos * PICOS_PER_NANO / totalBytes} ps/byte"
+        assertEquals(message, BENCHMARK_CALLS * (WARM_UP_ROUNDS + 1), directCalls)
+        assertTrue(message, calls < directCalls / PERCENT)
+    }
+
+    private fun measure(newListener: () -> OnDatatransferProgressListener): Long {
+        repeat(WARM_UP_ROUNDS) { reportBuffers(newListener()) }
+        val listener = newListener()
+        val start = System.nanoTime()
+        reportBuffers(listener)
+        return System.nanoTime() - start
+    }
+
+    private fun reportBuffers(listener: OnDatatransferProgressListener) {
+        val totalToTransfer = BENCHMARK_CALLS * BUFFER
+        var transferred = 0L
+        while (transferred < totalToTransfer) {
+            transferred += BUFFER
+            listener.onTransferProgress(BUFFER, transferred, totalToTransfer, FILE_NAME)
+        }
+    }
+
+    private fun newDispatcher(
+        intervalMillis: Long = INTERVAL_MILLIS,
+        byteThreshold: Long = Long.MAX_VALUE
+    ): ProgressDispatcher =
+        ProgressDispatcher(intervalMillis, byteThreshold, clock).apply { addDataTransferProgressListener(listener) }
+
+    private fun report(
+        sut: ProgressDispatcher,
+        count: Int,
+        totalToTransfer: Long,
+        alreadyTransferred: Long = 0
+    ) {
+        var transferred = alreadyTransferred
+        repeat(count) {
+            transferred += BUFFER
+            sut.onTransferProgress(BUFFER, transferred, totalToTransfer, FILE_NAME)
+        }
+    }
+
+    companion object {
+        private const val BUFFER = 4096L
+        private const val TOTAL = 1024 * 1024 * BUFFER
+        private const val INTERVAL_MILLIS = 100L
+        private const val FILE_NAME = "/sdcard/file.bin"
+        private const val THREADS = 4
+        private const val CALLS_PER_THREAD = 100_000
+        private const val COALESCED_CALLS = 10_000
+        private const val TIMEOUT_MILLIS = 10_000L
+        private const val BENCHMARK_CALLS = 2_000_000L
+        private const val WARM_UP_ROUNDS = 2
+        private const val PERCENT = 100
+        private const val PICOS_PER_NANO = 1000
+    }
+}
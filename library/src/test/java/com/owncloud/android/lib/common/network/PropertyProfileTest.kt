@@ -0,0 +1,188 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.common.network
+
+import org.apache.jackrabbit.webdav.DavConstants
+import org.apache.jackrabbit.webdav.property.DavPropertyName
+import org.apache.jackrabbit.webdav.xml.Namespace
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotSame
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.util.concurrent.TimeUnit
+
+class PropertyProfileTest {
+    @Test
+    fun `profiles extend each other`() {
+        val profiles = PropertyProfile.values()
+
+        for (i in 1 until profiles.size) {
+            val smaller = properties(profiles[i - 1])
+            val larger = properties(profiles[i])
+            assertTrue("${profiles[i]} must contain ${profiles[i - 1]}", larger.containsAll(smaller))
+            assertTrue(larger.size > smaller.size)
+        }
+    }
+
+    @Test
+    fun `legacy property sets are copies of the profiles`() {
+        assertEquals(properties(PropertyProfile.FULL), WebdavUtils.getAllPropSet().content.toSet())
+        assertEquals(properties(PropertyProfile.FILE), WebdavUtils.getFilePropSet().content.toSet())
+        assertNotSame(WebdavUtils.getAllPropSet(), WebdavUtils.getAllPropSet())
+        assertFalse(properties(PropertyProfile.FILE).contains(DavPropertyName.create(WebdavEntry.EXTENDED_PROPERTY_NOTE, NC)))
+    }
+
+    @Test
+    fun `body is serialized once`() {
+        val profile = PropertyProfile.SYNC_MINIMAL
+
+        assertSame(profile.body, profile.body)
+        assertNotSame(profile.newPropertySet(), profile.newPropertySet())
+        assertTrue(profile.body.contains("<d:getetag/>"))
+        assertTrue(profile.body.contains(":" + WebdavEntry.EXTENDED_PROPERTY_NAME_LOCAL_ID + "/>"))
+        assertFalse(profile.body.contains(WebdavEntry.EXTENDED_PROPERTY_SHAREES))
+    }
+
+    /**
+     * Measures request size, response size and parse time of a large folder listing per profile. The responses are
+     * modelled after a server answer, with values for typical properties and a 404 propstat for all others.
+     */
+    @Test
+    fun `benchmark listing per profile`() {
+        val measurements =
+            PropertyProfile.values().associateWith { profile ->
+                val body = buildMultiStatus(profile, FOLDER_ENTRIES).toByteArray()
+                assertEquals(FOLDER_ENTRIES, parse(body)) // warm up
+
+                val nanos =
+                    (1..PARSE_RUNS).minOf {
+                        val start = System.nanoTime()
+                        parse(body)
+                        System.nanoTime() - start
+                    }
+                Measurement(profile.bodyBytes.size, body.size, TimeUnit.NANOSECONDS.toMicros(nanos))
+            }
+
+        val message =
+            measurements.entries.joinToString("; ") { (profile, measurement) ->
+                "$profile: request ${measurement.requestBytes} B, response ${measurement.responseBytes / KIB} KiB, " +
+                    "parsed in ${measurement.parseMicros} us"
+            }
+        val sync = measurements.getValue(PropertyProfile.SYNC_MINIMAL)
+        val etag = measurements.getValue(PropertyProfile.ETAG_ONLY)
+        val full = measurements.getValue(PropertyProfile.FULL)
+        assertTrue(message, sync.requestBytes < full.requestBytes)
+        assertTrue(message, sync.responseBytes < full.responseBytes / SAVING_RATIO)
+        assertTrue(message, etag.parseMicros < full.parseMicros)
+    }
+
+    private class Measurement(val requestBytes: Int, val responseBytes: Int, val parseMicros: Long)
+
+    private fun parse(body: ByteArray): Int {
+        var count = 0
+        MultiStatusReader(ByteArrayInputStream(body)).use { reader ->
+            reader.forEach {
+                WebdavEntry(it, DAV_FILES_PATH)
+                count++
+            }
+        }
+        return count
+    }
+
+    private fun properties(profile: PropertyProfile): Set<DavPropertyName> = profile.newPropertySet().content.toSet()
+
+    companion object {
+        private const val DAV_FILES_PATH = "/remote.php/dav/files/test"
+        private const val FOLDER_ENTRIES = 500
+        private const val PARSE_RUNS = 5
+        private const val SAVING_RATIO = 2
+        private const val KIB = 1024
+        private val NC = Namespace.getNamespace(WebdavEntry.NAMESPACE_NC)
+
+        /**
+         * Sample values by property name, `$i` is replaced by the index of the entry.
+         */
+        private val SAMPLE_VALUES =
+            mapOf(
+                "displayname" to "IMG_\$i.jpg",
+                "getcontenttype" to "image/jpeg",
+                "resourcetype" to "",
+                "getcontentlength" to "2481734",
+                "getlastmodified" to "Fri, 07 Jan 2022 14:42:34 GMT",
+                "creationdate" to "2022-01-07T14:42:34Z",
+                "getetag" to "&quot;61d8514a5e\$i&quot;",
+                "permissions" to "RGDNVW",
+                "fileid" to "\$i",
+                "id" to "0000\$iocabcdef1234",
+                "size" to "2481734",
+                "favorite" to "0",
+                "owner-id" to "test",
+                "owner-display-name" to "Test User",
+                "comments-unread" to "0",
+                "has-preview" to "true",
+                "mount-type" to "",
+                "sharees" to
+                    "<nc:sharee><nc:id>alice</nc:id><nc:display-name>Alice</nc:display-name>" +
+                    "<nc:type>0</nc:type></nc:sharee>",
+                "rich-workspace" to "",
+                "creation_time" to "1641566554",
+                "upload_time" to "1641566554",
+                "lock" to "0",
+                "system-tags" to "<nc:system-tag>holiday</nc:system-tag>",
+                "file-metadata-size" to "{&quot;width&quot;:4000,&quot;height&quot;:3000}",
+                "file-metadata-gps" to "{&quot;latitude&quot;:52.52,&quot;longitude&quot;:13.40}",
+                "metadata-photos-size" to "<width>4000</width><height>3000</height>",
+                "metadata-photos-gps" to "<latitude>52.52</latitude><longitude>13.40</longitude>",
+                "hidden" to "false"
+            )
+
+        private fun buildMultiStatus(
+            profile: PropertyProfile,
+            entries: Int
+        ): String {
+            val builder = StringBuilder()
+            builder.append(
+                "<?xml version=\"1.0\"?><d:multistatus xmlns:d=\"DAV:\" xmlns:nc=\"${WebdavEntry.NAMESPACE_NC}\" " +
+                    "xmlns:oc=\"${WebdavEntry.NAMESPACE_OC}\">"
+            )
+            val properties = profile.newPropertySet().content
+            for (i in 0 until entries) {
+                val found = StringBuilder()
+                val missing = StringBuilder()
+                properties.forEach { name ->
+                    val tag = prefix(name) + ":" + name.name
+                    val value = SAMPLE_VALUES[name.name]
+                    if (value == null) {
+                        missing.append('<').append(tag).append("/>")
+                    } else {
+                        found.append('<').append(tag).append('>').append(value.replace("\$i", i.toString()))
+                            .append("</").append(tag).append('>')
+                    }
+                }
+                builder.append("<d:response><d:href>$DAV_FILES_PATH/photos/IMG_$i.jpg</d:href>")
+                    .append("<d:propstat><d:prop>").append(found).append("</d:prop>")
+                    .append("<d:status>HTTP/1.1 200 OK</d:status></d:propstat>")
+                if (missing.isNotEmpty()) {
+                    builder.append("<d:propstat><d:prop>").append(missing).append("</d:prop>")
+                        .append("<d:status>HTTP/1.1 404 Not Found</d:status></d:propstat>")
+                }
+                builder.append("</d:response>")
+            }
+            return builder.append("</d:multistatus>").toString()
+        }
+
+        private fun prefix(name: DavPropertyName): String =
+            when (name.namespace.uri) {
+                DavConstants.NAMESPACE.uri -> "d"
+                WebdavEntry.NAMESPACE_OC -> "oc"
+                else -> "nc"
+            }
+    }
+}
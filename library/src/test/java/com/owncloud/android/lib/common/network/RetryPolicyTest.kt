@@ -0,0 +1,176 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.common.network
+
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withContext
+import org.apache.commons.httpclient.NoHttpResponseException
+import org.apache.commons.httpclient.util.DateUtil
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.InterruptedIOException
+import java.net.ConnectException
+import java.net.SocketTimeoutException
+import java.net.UnknownHostException
+import java.util.Date
+import java.util.Random
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicReference
+import javax.net.ssl.SSLHandshakeException
+
+class RetryPolicyTest {
+    private val sut = RetryPolicy(MAX_ATTEMPTS, BASE_DELAY, MAX_DELAY, MAX_RETRY_AFTER, Random(SEED))
+
+    @Test
+    fun `only idempotent methods are retried after server errors`() {
+        listOf("GET", "propfind", "PUT", "DELETE").forEach {
+            assertTrue(it, sut.getRetryDelay(it, 1, HTTP_BAD_GATEWAY, null) >= 0)
+        }
+        listOf("POST", "MKCOL", "MOVE", "COPY", "LOCK").forEach {
+            assertEquals(it, RetryPolicy.NO_RETRY, sut.getRetryDelay(it, 1, HTTP_BAD_GATEWAY, null))
+        }
+        assertEquals(RetryPolicy.NO_RETRY, sut.getRetryDelay("GET", 1, HTTP_INTERNAL_SERVER_ERROR, null))
+        assertEquals(RetryPolicy.NO_RETRY, sut.getRetryDelay("GET", 1, HTTP_OK, null))
+    }
+
+    @Test
+    fun `throttled requests are retried for every method`() {
+        assertEquals(SECONDS_DELAY, sut.getRetryDelay("POST", 1, HTTP_TOO_MANY_REQUESTS, "2"))
+    }
+
+    @Test
+    fun `retry after is honoured within limits`() {
+        assertEquals(SECONDS_DELAY, sut.getRetryDelay("GET", 1, HTTP_UNAVAILABLE, "2"))
+        assertEquals(RetryPolicy.NO_RETRY, sut.getRetryDelay("GET", 1, HTTP_UNAVAILABLE, "3600"))
+        // invalid values fall back to the backoff
+        assertTrue(sut.getRetryDelay("GET", 1, HTTP_UNAVAILABLE, "soon") in BASE_DELAY / 2..BASE_DELAY)
+    }
+
+    @Test
+    fun `retry after is parsed as seconds or date`() {
+        val now = System.currentTimeMillis() / MILLIS * MILLIS
+        val date = DateUtil.formatDate(Date(now + SECONDS_DELAY))
+
+        assertEquals(SECONDS_DELAY, RetryPolicy.parseRetryAfter(" 2 ", now))
+        assertEquals(SECONDS_DELAY, RetryPolicy.parseRetryAfter(date, now))
+        assertEquals(0L, RetryPolicy.parseRetryAfter(date, now + 2 * SECONDS_DELAY))
+        assertEquals(0L, RetryPolicy.parseRetryAfter("-1", now))
+        assertNull(RetryPolicy.parseRetryAfter("", now))
+        assertNull(RetryPolicy.parseRetryAfter("tomorrow", now))
+    }
+
+    @Test
+    fun `backoff grows exponentially with jitter up to the maximum`() {
+        repeat(REPETITIONS) {
+            (1 until MAX_ATTEMPTS).forEach { attempt ->
+                val ceiling = minOf(MAX_DELAY, BASE_DELAY shl (attempt - 1))
+                val delay = sut.getRetryDelay("GET", attempt, SocketTimeoutException())
+                assertTrue("$delay for attempt $attempt", delay in ceiling / 2..ceiling)
+            }
+        }
+        val delays = List(REPETITIONS) { sut.getRetryDelay("GET", 1, SocketTimeoutException()) }
+        assertTrue(delays.distinct().size > 1)
+    }
+
+    @Test
+    fun `attempts are limited`() {
+        assertEquals(RetryPolicy.NO_RETRY, sut.getRetryDelay("GET", MAX_ATTEMPTS, HTTP_UNAVAILABLE, null))
+        assertEquals(RetryPolicy.NO_RETRY, sut.getRetryDelay("GET", MAX_ATTEMPTS, ConnectException()))
+        assertEquals(RetryPolicy.NO_RETRY, RetryPolicy.NONE.getRetryDelay("GET", 1, ConnectException()))
+    }
+
+    @Test
+    fun `errors are classified`() {
+        assertTrue(sut.getRetryDelay("POST", 1, ConnectException()) >= 0)
+        assertEquals(RetryPolicy.NO_RETRY, sut.getRetryDelay("POST", 1, NoHttpResponseException()))
+        assertTrue(sut.getRetryDelay("GET", 1, NoHttpResponseException()) >= 0)
+        assertEquals(RetryPolicy.NO_RETRY, sut.getRetryDelay("POST", 1, SocketTimeoutException()))
+        assertEquals(RetryPolicy.NO_RETRY, sut.getRetryDelay("GET", 1, UnknownHostException()))
+        assertEquals(RetryPolicy.NO_RETRY, sut.getRetryDelay("GET", 1, SSLHandshakeException("untrusted")))
+        assertEquals(RetryPolicy.NO_RETRY, sut.getRetryDelay("GET", 1, InterruptedIOException()))
+    }
+
+    @Test
+    fun `budget is shared by nested operations`() {
+        val outer = RetryBudget(2)
+
+        RetryBudget.runWith(outer) {
+            RetryBudget.runWith(RetryBudget(BUDGET)) {
+                assertTrue(RetryBudget.current() === outer)
+                assertTrue(outer.tryAcquire())
+            }
+            assertTrue(outer.tryAcquire())
+            assertFalse(outer.tryAcquire())
+        }
+
+        assertNull(RetryBudget.current())
+        assertEquals(0, outer.remainingRetries)
+    }
+
+    @Test
+    fun `budget is bound to its thread`() {
+        RetryBudget.runWith(RetryBudget(BUDGET)) {
+            val other = Executors.newSingleThreadExecutor()
+            try {
+                assertNull(other.submit(Callable { RetryBudget.current() }).get())
+            } finally {
+                other.shutdown()
+            }
+        }
+    }
+
+    @Test
+    fun `wrapped tasks take the budget to other threads`() {
+        val budget = RetryBudget(BUDGET)
+        val seen = AtomicReference<RetryBudget>()
+        val other = Executors.newSingleThreadExecutor()
+        try {
+            val task = RetryBudget.runWith(budget) { RetryBudget.wrap { seen.set(RetryBudget.current()) } }
+            other.submit(task).get()
+
+            assertTrue(seen.get() === budget)
+            assertNull(other.submit(Callable { RetryBudget.current() }).get())
+        } finally {
+            other.shutdown()
+        }
+    }
+
+    @Test
+    fun `coroutines take the budget to other threads`() {
+        val budget = RetryBudget(BUDGET)
+
+        val seen =
+            runBlocking(RetryBudget.asContextElement(budget)) {
+                withContext(Dispatchers.IO) { RetryBudget.current() }
+            }
+
+        assertTrue(seen === budget)
+        assertNull(RetryBudget.current())
+    }
+
+    companion object {
+        private const val SEED = 7L
+        private const val MAX_ATTEMPTS = 6
+        private const val BASE_DELAY = 100L
+        private const val MAX_DELAY = 1000L
+        private const val MAX_RETRY_AFTER = 10_000L
+        private const val SECONDS_DELAY = 2000L
+        private const val MILLIS = 1000L
+        private const val REPETITIONS = 50
+        private const val BUDGET = 10
+        private const val HTTP_OK = 200
+        private const val HTTP_TOO_MANY_REQUESTS = 429
+        private const val HTTP_INTERNAL_SERVER_ERROR = 500
+        private const val HTTP_BAD_GATEWAY = 502
+        private const val HTTP_UNAVAILABLE = 503
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.common.operations
+
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.Collections
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class BoundedOperationExecutorTest {
+    private val sut = BoundedOperationExecutor(THREADS)
+
+    @After
+    fun tearDown() {
+        sut.shutdown()
+        sut.awaitTermination(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+    }
+
+    @Test
+    fun `burst is run on bounded number of threads`() {
+        val running = AtomicInteger()
+        val maxRunning = AtomicInteger()
+        val threads = Collections.synchronizedSet(HashSet<Thread>())
+
+        val futures =
+            (1..BURST).map {
+                sut.submit({
+                    val now = running.incrementAndGet()
+                    maxRunning.accumulateAndGet(now) { a, b -> maxOf(a, b) }
+                    threads.add(Thread.currentThread())
+                    Thread.sleep(1)
+                    running.decrementAndGet()
+                }, OperationExecutor.PRIORITY_NORMAL)
+            }
+        futures.forEach { it.get(TIMEOUT_SECONDS, TimeUnit.SECONDS) }
+
+        assertTrue(maxRunning.get() <= THREADS)
+        assertTrue(threads.size <= THREADS)
+
+        val metrics = sut.getMetrics()
+        assertEquals(BURST.toLong(), metrics.submitted)
+        assertEquals(BURST.toLong(), metrics.completed)
+        assertEquals(0, metrics.queueDepth)
+        assertTrue(metrics.maxQueueDepth > 0)
+        assertTrue(metrics.waitTimeMax > 0)
+        assertTrue(metrics.runTimeTotal >= metrics.runTimeMax)
+    }
+
+    @Test
+    fun `higher priority runs first`() {
+        // single worker, so that queued tasks are started strictly one after the other
+        val single = BoundedOperationExecutor(1)
+        val blocker = CountDownLatch(1)
+        val order = Collections.synchronizedList(ArrayList<String>())
+
+        // occupy the worker so that the following tasks are queued
+        single.submit({ blocker.await() }, OperationExecutor.PRIORITY_NORMAL)
+
+        single.submit({ order.add("low") }, OperationExecutor.PRIORITY_LOW)
+        single.submit({ order.add("normal1") }, OperationExecutor.PRIORITY_NORMAL)
+        single.submit({ order.add("high") }, OperationExecutor.PRIORITY_HIGH)
+        val last = single.submit({ order.add("normal2") }, OperationExecutor.PRIORITY_NORMAL)
+        assertEquals(4, single.getMetrics().queueDepth)
+
+        blocker.countDown()
+        last.get(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+        single.shutdown()
+        single.awaitTermination(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+
+        assertEquals(listOf("high", "normal1", "normal2", "low"), order)
+    }
+
+    @Test
+    fun `cancelled task is not run`() {
+        val blocker = CountDownLatch(1)
+        val ran = AtomicInteger()
+        repeat(THREADS) { sut.submit({ blocker.await() }, OperationExecutor.PRIORITY_NORMAL) }
+
+        val future = sut.submit({ ran.incrementAndGet() }, OperationExecutor.PRIORITY_NORMAL)
+        future.cancel(false)
+        blocker.countDown()
+        sut.shutdown()
+        sut.awaitTermination(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+
+        assertEquals(0, ran.get())
+    }
+
+    companion object {
+        private const val THREADS = 2
+        private const val BURST = 100
+        private const val TIMEOUT_SECONDS = 10L
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.common.operations
+
+import android.os.Handler
+import com.nhaarman.mockitokotlin2.mock
+import com.owncloud.android.lib.common.OwnCloudClient
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import java.util.concurrent.Future
+import java.util.concurrent.FutureTask
+
+class RemoteOperationExecutionTest {
+    private class RecordingExecutor : OperationExecutor {
+        val tasks = mutableListOf<Runnable>()
+
+        override fun submit(
+            task: Runnable,
+            priority: Int
+        ): Future<*> {
+            tasks.add(task)
+            return FutureTask(task, null)
+        }
+
+        override fun getMetrics(): OperationExecutor.Metrics = OperationExecutor.Metrics(0, 0, 0, 0, 0, 0, 0, 0, 0, 0)
+    }
+
+    private open class TestOperation : RemoteOperation<Void>()
+
+    private class TestTransfer : TestOperation() {
+        override fun isTransfer(): Boolean = true
+    }
+
+    private val defaultExecutor = RecordingExecutor()
+    private val transferExecutor = RecordingExecutor()
+    private val client = mock<OwnCloudClient>()
+    private val listener = mock<OnRemoteOperationListener>()
+    private val handler = mock<Handler>()
+
+    @Before
+    fun setUp() {
+        RemoteOperation.setDefaultExecutor(defaultExecutor)
+        RemoteOperation.setTransferExecutor(transferExecutor)
+    }
+
+    @After
+    fun tearDown() {
+        RemoteOperation.setDefaultExecutor(null)
+        RemoteOperation.setTransferExecutor(null)
+    }
+
+    @Test
+    fun `transfers do not share the executor of other operations`() {
+        val operation = TestOperation()
+        val transfer = TestTransfer()
+
+        operation.submit(client, listener, handler)
+        transfer.submit(client, listener, handler)
+
+        assertEquals(listOf(operation), defaultExecutor.tasks)
+        assertEquals(listOf(transfer), transferExecutor.tasks)
+    }
+}
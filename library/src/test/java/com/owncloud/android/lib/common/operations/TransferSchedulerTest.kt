@@ -0,0 +1,220 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.common.operations
+
+import com.owncloud.android.lib.common.operations.TransferScheduler.Priority
+import com.owncloud.android.lib.common.operations.TransferScheduler.TransferRequest
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.Collections
+import java.util.concurrent.Callable
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Future
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class TransferSchedulerTest {
+    // single slot, so that queued transfers are started strictly one after the other
+    private val sut = TransferScheduler(1)
+    private val blocker = CountDownLatch(1)
+    private val order = Collections.synchronizedList(ArrayList<String>())
+
+    @After
+    fun tearDown() {
+        blocker.countDown()
+        sut.shutdown()
+        sut.awaitTermination(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+    }
+
+    @Test
+    fun `accounts take turns`() {
+        block()
+        val transfers =
+            List(4) { record(ACCOUNT_A, Priority.BULK, "a$it") } +
+                record(ACCOUNT_B, Priority.BULK, "b0") +
+                record(ACCOUNT_B, Priority.BULK, "b1")
+
+        release(transfers)
+
+        assertEquals(listOf("a0", "b0", "a1", "b1", "a2", "a3"), order)
+    }
+
+    @Test
+    fun `interactive transfers overtake bulk transfers`() {
+        block()
+        val transfers =
+            List(BULK_TRANSFERS) { record(ACCOUNT_A, Priority.BULK, "bulk") } +
+                record(ACCOUNT_B, Priority.BACKGROUND, "background") +
+                record(ACCOUNT_B, Priority.INTERACTIVE, "interactive")
+
+        release(transfers)
+
+        assertEquals(listOf("interactive", "background"), order.take(2))
+    }
+
+    @Test
+    fun `account weight increases the share`() {
+        block()
+        sut.setAccountWeight(ACCOUNT_A, 2)
+        val transfers = List(4) { record(ACCOUNT_A, Priority.BULK, "a") } + record(ACCOUNT_B, Priority.BULK, "b")
+
+        release(transfers)
+
+        assertEquals(listOf("a", "a", "b"), order.take(3))
+    }
+
+    @Test
+    fun `paused queues are held until resumed`() {
+        block()
+        sut.pause(Priority.BULK)
+        sut.pauseAccount(ACCOUNT_B)
+        val bulk = record(ACCOUNT_A, Priority.BULK, "bulk")
+        val account = record(ACCOUNT_B, Priority.INTERACTIVE, "account")
+        val other = record(ACCOUNT_A, Priority.BACKGROUND, "other")
+
+        release(listOf(other))
+        assertEquals(listOf("other"), order)
+        val metrics = sut.getMetrics()
+        assertEquals(2, metrics.queued)
+        assertEquals(setOf(Priority.BULK), metrics.pausedPriorities)
+        assertEquals(setOf(ACCOUNT_B), metrics.pausedAccounts)
+
+        sut.resumeAccount(ACCOUNT_B)
+        account.get(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+        sut.resume(Priority.BULK)
+        bulk.get(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+
+        assertEquals(listOf("other", "account", "bulk"), order)
+    }
+
+    @Test
+    fun `cancelled transfers are never started`() {
+        block()
+        val cancelled = record(ACCOUNT_A, Priority.BULK, "cancelled")
+        val run = record(ACCOUNT_A, Priority.BULK, "run")
+
+        assertTrue(cancelled.cancel(false))
+        release(listOf(run))
+
+        assertEquals(listOf("run"), order)
+        val metrics = sut.getMetrics().queues.getValue(Priority.BULK)
+        assertEquals(1L, metrics.cancelled)
+        assertEquals(0, metrics.queued)
+    }
+
+    @Test
+    fun `concurrency is limited per host and account`() {
+        val scheduler = TransferScheduler(TOTAL_LIMIT, HOST_LIMIT, ACCOUNT_LIMIT)
+        val running = ConcurrentHashMap<String, AtomicInteger>()
+        val maxRunning = ConcurrentHashMap<String, AtomicInteger>()
+        val maxTotal = AtomicInteger()
+        val total = AtomicInteger()
+
+        val futures =
+            (0 until TRANSFERS).map {
+                val request = TransferRequest("user${it % ACCOUNTS}", "host${it % HOSTS}", Priority.BULK)
+                scheduler.submit(
+                    request,
+                    Callable {
+                        val keys = listOf(request.host, request.accountName)
+                        keys.forEach { key ->
+                            val now = running.getOrPut(key) { AtomicInteger() }.incrementAndGet()
+                            maxRunning.getOrPut(key) { AtomicInteger() }.accumulateAndGet(now) { a, b -> maxOf(a, b) }
+                        }
+                        maxTotal.accumulateAndGet(total.incrementAndGet()) { a, b -> maxOf(a, b) }
+                        Thread.sleep(1)
+                        total.decrementAndGet()
+                        keys.forEach { key -> running.getValue(key).decrementAndGet() }
+                    }
+                )
+            }
+        futures.forEach { it.get(TIMEOUT_SECONDS, TimeUnit.SECONDS) }
+        scheduler.shutdown()
+        assertTrue(scheduler.awaitTermination(TIMEOUT_SECONDS, TimeUnit.SECONDS))
+
+        assertTrue(maxTotal.get() <= TOTAL_LIMIT)
+        maxRunning.filterKeys { it.startsWith("host") }.values.forEach { assertTrue(it.get() <= HOST_LIMIT) }
+        maxRunning.filterKeys { it.startsWith("user") }.values.forEach { assertTrue(it.get() <= ACCOUNT_LIMIT) }
+        val metrics = scheduler.getMetrics()
+        assertEquals(TRANSFERS.toLong(), metrics.queues.getValue(Priority.BULK).completed)
+        assertEquals(0, metrics.active)
+        assertTrue(metrics.activeByHost.isEmpty())
+    }
+
+    @Test
+    fun `metrics count waiting transfers`() {
+        block()
+        val waiting = record(ACCOUNT_A, Priority.BACKGROUND, "waiting")
+
+        var metrics = sut.getMetrics()
+        assertEquals(1, metrics.queues.getValue(Priority.BACKGROUND).queued)
+        assertEquals(1, metrics.active)
+        assertEquals(mapOf(HOST to 1), metrics.activeByHost)
+
+        release(listOf(waiting))
+        metrics = sut.getMetrics()
+        val background = metrics.queues.getValue(Priority.BACKGROUND)
+        assertEquals(1L, background.started)
+        assertTrue(background.waitTimeMax > 0)
+        assertEquals(background.waitTimeTotal, background.waitTimeAverage)
+    }
+
+    @Test(expected = RejectedExecutionException::class)
+    fun `shut down scheduler rejects transfers`() {
+        sut.shutdown()
+
+        record(ACCOUNT_A, Priority.BULK, "rejected")
+    }
+
+    @Test
+    fun `shutdown cancels queued transfers`() {
+        block()
+        val queued = record(ACCOUNT_A, Priority.BULK, "queued")
+
+        sut.shutdown()
+
+        assertTrue(queued.isCancelled)
+        assertFalse(order.contains("queued"))
+    }
+
+    /**
+     * Occupies the only slot, so that the following transfers are queued.
+     */
+    private fun block() {
+        sut.submit(TransferRequest("blocker", HOST, Priority.INTERACTIVE), Callable { blocker.await() })
+    }
+
+    private fun release(transfers: List<Future<*>>) {
+        blocker.countDown()
+        transfers.forEach { it.get(TIMEOUT_SECONDS, TimeUnit.SECONDS) }
+    }
+
+    private fun record(
+        accountName: String,
+        priority: Priority,
+        name: String
+    ): Future<Boolean> = sut.submit(TransferRequest(accountName, HOST, priority), Callable { order.add(name) })
+
+    companion object {
+        private const val ACCOUNT_A = "a@cloud.example.com"
+        private const val ACCOUNT_B = "b@cloud.example.com"
+        private const val HOST = "cloud.example.com"
+        private const val BULK_TRANSFERS = 10
+        private const val TRANSFERS = 200
+        private const val HOSTS = 3
+        private const val ACCOUNTS = 5
+        private const val TOTAL_LIMIT = 8
+        private const val HOST_LIMIT = 3
+        private const val ACCOUNT_LIMIT = 2
+        private const val TIMEOUT_SECONDS = 10L
+    }
+}
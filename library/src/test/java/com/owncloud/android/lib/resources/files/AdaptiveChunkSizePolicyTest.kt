@@ -0,0 +1,184 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.resources.files
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import kotlin.math.abs
+import kotlin.random.Random
+
+class AdaptiveChunkSizePolicyTest {
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    @Test
+    fun `chunks grow on fast links`() {
+        val sut = newPolicy(initialChunkSize = MB)
+
+        // 10 MB/s, 50 ms round trip: chunks converge to bandwidth * (target - round trip)
+        simulate(sut, bytesPerMilli = 10_000, latencyMillis = 50)
+
+        assertAbout(10_000L * (TARGET_MILLIS - 50), sut.nextChunkSize())
+        // measured throughput includes the round trip of every chunk
+        assertAbout(9_500_000L, sut.throughputBytesPerSecond)
+    }
+
+    @Test
+    fun `chunks shrink on slow links`() {
+        val sut = newPolicy(initialChunkSize = 10 * MB)
+
+        // 100 KB/s: chunks of 10 MB would take almost two minutes
+        simulate(sut, bytesPerMilli = 100, latencyMillis = 100)
+
+        assertAbout(100L * (TARGET_MILLIS - 100), sut.nextChunkSize())
+    }
+
+    @Test
+    fun `high latency stretches chunks`() {
+        val sut = newPolicy(initialChunkSize = MB)
+
+        // target duration grows to LATENCY_FACTOR * 500 ms
+        simulate(sut, bytesPerMilli = 10_000, latencyMillis = 500)
+
+        val targetMillis = AdaptiveChunkSizePolicy.LATENCY_FACTOR * 500L
+        assertAbout(10_000L * (targetMillis - 500), sut.nextChunkSize())
+    }
+
+    @Test
+    fun `sizes stay within limits`() {
+        val fast = newPolicy(initialChunkSize = MB)
+        simulate(fast, bytesPerMilli = 1_000_000, latencyMillis = 1)
+        assertEquals(MAX_CHUNK_SIZE, fast.nextChunkSize())
+
+        val slow = newPolicy(initialChunkSize = MB)
+        simulate(slow, bytesPerMilli = 1, latencyMillis = 1)
+        assertEquals(MIN_CHUNK_SIZE, slow.nextChunkSize())
+    }
+
+    @Test
+    fun `sizes change by at most a factor of two per chunk`() {
+        val sut = newPolicy(initialChunkSize = MB)
+
+        sut.onChunkUploaded(MB, 1, 0)
+
+        assertEquals(2 * MB, sut.nextChunkSize())
+    }
+
+    @Test
+    fun `failed chunk halves size`() {
+        val sut = newPolicy(initialChunkSize = 8 * MB)
+
+        sut.onChunkFailed(8 * MB)
+
+        assertEquals(4 * MB, sut.nextChunkSize())
+    }
+
+    @Test
+    fun `short last chunk is not measured`() {
+        val sut = newPolicy(initialChunkSize = 8 * MB)
+
+        sut.onChunkUploaded(KB, 1_000, 1_000)
+
+        assertEquals(8 * MB, sut.nextChunkSize())
+        assertEquals(0L, sut.throughputBytesPerSecond)
+    }
+
+    /**
+     * Uploads the same file over a slow and over a fast throttled connection; the fast one ends up with larger
+     * chunks; the exact sizes depend on the machine running the tests.
+     */
+    @Test
+    fun `chunk sizes follow throttled server`() {
+        val file = temporaryFolder.newFile("upload.bin")
+        file.writeBytes(Random(SEED).nextBytes(FILE_SIZE))
+
+        val slowSizes = uploadThrottled(file, SLOW_BYTES_PER_PERIOD)
+        val fastSizes = uploadThrottled(file, FAST_BYTES_PER_PERIOD)
+
+        assertTrue("fast $fastSizes, slow $slowSizes", fastSizes.max() > slowSizes.max())
+        assertTrue("fast $fastSizes, slow $slowSizes", fastSizes.size < slowSizes.size)
+    }
+
+    private fun uploadThrottled(
+        file: File,
+        bytesPerPeriod: Long
+    ): List<Int> {
+        ChunkingTestServer().use { server ->
+            server.throttleBytesPerPeriod = bytesPerPeriod
+            val sut =
+                ChunkedFileUploadRemoteOperation(
+                    file.absolutePath,
+                    "/upload.bin",
+                    "application/octet-stream",
+                    null,
+                    System.currentTimeMillis() / MILLIS_PER_SECOND,
+                    true
+                )
+            sut.setChunkSizePolicy(
+                AdaptiveChunkSizePolicy(
+                    SERVER_INITIAL_CHUNK_SIZE,
+                    SERVER_MIN_CHUNK_SIZE,
+                    MAX_CHUNK_SIZE,
+                    SERVER_TARGET_MILLIS
+                )
+            )
+
+            assertTrue(sut.execute(server.client).isSuccess)
+            assertArrayEquals(file.readBytes(), server.assemble())
+            return server.chunkSizes()
+        }
+    }
+
+    private fun newPolicy(initialChunkSize: Long) =
+        AdaptiveChunkSizePolicy(initialChunkSize, MIN_CHUNK_SIZE, MAX_CHUNK_SIZE, TARGET_MILLIS)
+
+    /**
+     * Feeds the policy with chunks uploaded over a link with the given bandwidth and round trip time.
+     */
+    private fun simulate(
+        policy: AdaptiveChunkSizePolicy,
+        bytesPerMilli: Long,
+        latencyMillis: Long
+    ) {
+        repeat(SIMULATED_CHUNKS) {
+            val length = policy.nextChunkSize()
+            val durationMillis = latencyMillis + length / bytesPerMilli
+            policy.onChunkUploaded(length, durationMillis, latencyMillis)
+        }
+    }
+
+    private fun assertAbout(
+        expected: Long,
+        actual: Long
+    ) {
+        assertTrue("expected about $expected, but was $actual", abs(expected - actual) <= expected * TOLERANCE)
+    }
+
+    companion object {
+        private const val KB = 1024L
+        private const val MB = 1024 * KB
+        private const val MIN_CHUNK_SIZE = 64 * KB
+        private const val MAX_CHUNK_SIZE = 64 * MB
+        private const val TARGET_MILLIS = 1000L
+        private const val SIMULATED_CHUNKS = 30
+        private const val TOLERANCE = 0.05
+
+        private const val SEED = 42
+        private const val FILE_SIZE = 2 * 1024 * 1024
+        private const val SERVER_INITIAL_CHUNK_SIZE = 128 * KB
+        private const val SERVER_MIN_CHUNK_SIZE = 32 * KB
+        private const val SERVER_TARGET_MILLIS = 200L
+        private const val SLOW_BYTES_PER_PERIOD = 16 * KB
+        private const val FAST_BYTES_PER_PERIOD = 256 * KB
+        private const val MILLIS_PER_SECOND = 1000
+    }
+}
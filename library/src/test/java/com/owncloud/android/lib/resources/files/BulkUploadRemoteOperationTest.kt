@@ -0,0 +1,142 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.resources.files
+
+import com.owncloud.android.lib.common.operations.RemoteOperationResult
+import com.owncloud.android.lib.resources.files.model.BulkUploadFile
+import com.owncloud.android.lib.resources.status.OCCapability
+import org.junit.After
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.random.Random
+
+class BulkUploadRemoteOperationTest {
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    private val server = BulkUploadTestServer()
+    private val random = Random(SEED)
+
+    @After
+    fun tearDown() {
+        server.close()
+    }
+
+    @Test
+    fun `small files are uploaded in few requests`() {
+        val files = createFiles(FILES, FILE_SIZE)
+        val sut = BulkUploadRemoteOperation(files, true)
+
+        val result = sut.execute(server.client)
+
+        assertTrue(result.isSuccess)
+        assertEquals(3, server.bulkRequests.get())
+        assertEquals(0, server.singleRequests.get())
+        assertStored(files)
+        assertEquals(MTIME.toString(), server.mtimes[files.first().remotePath])
+        assertEquals(files, result.resultData.map { it.file })
+        assertTrue(result.resultData.all { it.isSuccess && it.etag!!.startsWith("etag-") && it.fileId != null })
+    }
+
+    @Test
+    fun `byte budget splits requests and large files are put`() {
+        val files = createFiles(9, FILE_SIZE) + createFiles(1, 4 * FILE_SIZE)
+        val sut = BulkUploadRemoteOperation(files, true)
+        sut.maxBytesPerRequest = 3L * FILE_SIZE
+
+        assertTrue(sut.execute(server.client).isSuccess)
+
+        assertEquals(3, server.bulkRequests.get())
+        assertEquals(1, server.singleRequests.get())
+        assertStored(files)
+    }
+
+    @Test
+    fun `missing endpoint falls back to single uploads`() {
+        server.bulkStatus = HTTP_NOT_FOUND
+        val files = createFiles(FILES, FILE_SIZE)
+
+        val result = BulkUploadRemoteOperation(files, true).execute(server.client)
+
+        assertTrue(result.isSuccess)
+        assertEquals(1, server.bulkRequests.get())
+        assertEquals(FILES, server.singleRequests.get())
+        assertStored(files)
+    }
+
+    @Test
+    fun `capability decides about bulk uploads`() {
+        val files = createFiles(2, FILE_SIZE)
+
+        assertTrue(BulkUploadRemoteOperation(files, OCCapability()).execute(server.client).isSuccess)
+        assertEquals(0, server.bulkRequests.get())
+
+        val capability = OCCapability().apply { bulkUploadVersion = "1.0" }
+        assertTrue(BulkUploadRemoteOperation(files, capability).execute(server.client).isSuccess)
+        assertEquals(1, server.bulkRequests.get())
+    }
+
+    @Test
+    fun `rejected and missing files are reported per file`() {
+        val files = createFiles(3, FILE_SIZE)
+        val missing = BulkUploadFile(File(temporaryFolder.root, "missing").path, "/missing", MIME_TYPE, MTIME)
+        server.rejectedPaths.add(files[1].remotePath)
+
+        val result = BulkUploadRemoteOperation(files + missing, true).execute(server.client)
+
+        assertFalse(result.isSuccess)
+        assertEquals(RemoteOperationResult.ResultCode.LOCAL_FILE_NOT_FOUND, result.code)
+        val byPath = result.resultData.associateBy { it.file.remotePath }
+        assertTrue(byPath.getValue(files[0].remotePath).isSuccess)
+        assertFalse(byPath.getValue(files[1].remotePath).isSuccess)
+        assertEquals("Rejected ${files[1].remotePath}", byPath.getValue(files[1].remotePath).message)
+        assertFalse(byPath.getValue("/missing").isSuccess)
+        assertEquals(1, server.bulkRequests.get())
+    }
+
+    @Test
+    fun `progress counts file bytes`() {
+        val files = createFiles(FILES, FILE_SIZE)
+        val transferred = AtomicLong()
+        val sut = BulkUploadRemoteOperation(files, true)
+        sut.addDataTransferProgressListener { progressRate, _, _, _ -> transferred.addAndGet(progressRate) }
+
+        assertTrue(sut.execute(server.client).isSuccess)
+
+        assertEquals(FILES.toLong() * FILE_SIZE, transferred.get())
+    }
+
+    private fun createFiles(
+        count: Int,
+        size: Int
+    ): List<BulkUploadFile> =
+        List(count) {
+            val file = temporaryFolder.newFile()
+            file.writeBytes(random.nextBytes(size))
+            BulkUploadFile(file.path, "/${file.name}", MIME_TYPE, MTIME)
+        }
+
+    private fun assertStored(files: List<BulkUploadFile>) {
+        files.forEach { assertArrayEquals(File(it.localPath).readBytes(), server.files[it.remotePath]) }
+    }
+
+    companion object {
+        private const val SEED = 42
+        private const val FILES = 250
+        private const val FILE_SIZE = 1024
+        private const val MTIME = 1_700_000_000L
+        private const val MIME_TYPE = "image/jpeg"
+        private const val HTTP_NOT_FOUND = 404
+    }
+}
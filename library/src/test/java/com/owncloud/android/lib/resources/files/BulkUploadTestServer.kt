@@ -0,0 +1,191 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.resources.files
+
+import android.net.Uri
+import com.google.gson.JsonObject
+import com.nhaarman.mockitokotlin2.any
+import com.nhaarman.mockitokotlin2.doReturn
+import com.nhaarman.mockitokotlin2.mock
+import com.nhaarman.mockitokotlin2.whenever
+import com.owncloud.android.lib.common.OwnCloudClient
+import com.owncloud.android.lib.common.network.ChecksumType
+import com.owncloud.android.lib.common.network.ContentChecksum
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import org.apache.commons.httpclient.HttpClient
+import org.apache.commons.httpclient.HttpMethod
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager
+import java.io.Closeable
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Local stand-in for the bulk upload endpoint and single PUTs to the files endpoint. Parts of bulk requests are
+ * parsed like the server does, checking their Content-Length and MD5.
+ */
+internal class BulkUploadTestServer : Dispatcher(), Closeable {
+    private val server = MockWebServer()
+    private val httpClient = HttpClient(MultiThreadedHttpConnectionManager())
+
+    /**
+     * Stored content by remote path.
+     */
+    val files = ConcurrentHashMap<String, ByteArray>()
+
+    /**
+     * Modification times sent with bulk requests, by remote path.
+     */
+    val mtimes = ConcurrentHashMap<String, String>()
+    val bulkRequests = AtomicInteger()
+    val singleRequests = AtomicInteger()
+
+    /**
+     * Status of bulk requests, e.g. 404 for a server without the endpoint.
+     */
+    @Volatile
+    var bulkStatus = HTTP_OK
+
+    /**
+     * Remote paths the server refuses to store.
+     */
+    val rejectedPaths: MutableSet<String> = ConcurrentHashMap.newKeySet()
+
+    val client: OwnCloudClient by lazy { mockClient() }
+
+    init {
+        server.dispatcher = this
+        server.start()
+    }
+
+    override fun dispatch(request: RecordedRequest): MockResponse {
+        val path = request.path.orEmpty()
+        return when {
+            request.method == "POST" && path == BULK_PATH -> bulk(request)
+            request.method == "PUT" && path.startsWith(FILES_PATH) -> put(path.removePrefix(FILES_PATH), request)
+            else -> MockResponse().setResponseCode(HTTP_METHOD_NOT_ALLOWED)
+        }
+    }
+
+    private fun bulk(request: RecordedRequest): MockResponse {
+        bulkRequests.incrementAndGet()
+        if (bulkStatus != HTTP_OK) {
+            return MockResponse().setResponseCode(bulkStatus)
+        }
+        val boundary = request.getHeader("Content-Type")!!.substringAfter("boundary=")
+        val body = request.body.readByteArray()
+        check(request.getHeader("Content-Length")!!.toInt() == body.size)
+
+        val response = JsonObject()
+        parseParts(body, boundary).forEach { (headers, content) ->
+            val path = headers.getValue("x-file-path")
+            check(headers.getValue("x-file-md5") == md5(content)) { "MD5 mismatch of $path" }
+            response.add(path, store(path, content))
+            mtimes[path] = headers.getValue("x-file-mtime")
+        }
+        return MockResponse().setResponseCode(HTTP_OK).setBody(response.toString())
+    }
+
+    private fun put(
+        path: String,
+        request: RecordedRequest
+    ): MockResponse {
+        singleRequests.incrementAndGet()
+        val result = store(path, request.body.readByteArray())
+        return if (result.get("error").asBoolean) {
+            MockResponse().setResponseCode(HTTP_FORBIDDEN)
+        } else {
+            MockResponse().setResponseCode(HTTP_CREATED).setHeader("ETag", result.get("etag").asString)
+        }
+    }
+
+    private fun store(
+        path: String,
+        content: ByteArray
+    ): JsonObject =
+        JsonObject().apply {
+            if (path in rejectedPaths) {
+                addProperty("error", true)
+                addProperty("message", "Rejected $path")
+            } else {
+                files[path] = content
+                addProperty("error", false)
+                addProperty("etag", "\"etag-${md5(content)}\"")
+                addProperty("fileid", files.size.toString())
+            }
+        }
+
+    /**
+     * @return headers, with lower case names, and content of every part
+     */
+    private fun parseParts(
+        body: ByteArray,
+        boundary: String
+    ): List<Pair<Map<String, String>, ByteArray>> {
+        val parts = ArrayList<Pair<Map<String, String>, ByteArray>>()
+        val text = String(body, Charsets.ISO_8859_1)
+        var position = 0
+        while (true) {
+            val delimiter = "--$boundary"
+            check(text.startsWith(delimiter, position)) { "Missing boundary at $position" }
+            position += delimiter.length
+            if (text.startsWith("--\r\n", position)) {
+                check(position + "--\r\n".length == body.size) { "Data after closing boundary" }
+                return parts
+            }
+            position += CRLF.length
+            val headersEnd = text.indexOf(CRLF + CRLF, position)
+            val headers =
+                text.substring(position, headersEnd).split(CRLF).associate {
+                    it.substringBefore(':').trim().lowercase() to
+                        String(it.substringAfter(':').trim().toByteArray(Charsets.ISO_8859_1), Charsets.UTF_8)
+                }
+            position = headersEnd + 2 * CRLF.length
+            val length = headers.getValue("content-length").toInt()
+            parts.add(headers to body.copyOfRange(position, position + length))
+            position += length
+            check(text.startsWith(CRLF, position)) { "Missing line break after part" }
+            position += CRLF.length
+        }
+    }
+
+    private fun md5(content: ByteArray): String =
+        ContentChecksum(ChecksumType.MD5).apply { update(content, 0, content.size) }.getValue()
+
+    override fun close() {
+        server.shutdown()
+    }
+
+    private fun mockClient(): OwnCloudClient {
+        val davUrl = server.url("/remote.php/dav").toString()
+        val dav = mock<Uri> { on { toString() } doReturn davUrl }
+
+        return mock<OwnCloudClient> {
+            on { params } doReturn httpClient.params
+            on { davUri } doReturn dav
+        }.also {
+            whenever(it.getFilesDavUri(any<String>())).thenAnswer { invocation ->
+                server.url(FILES_PATH + invocation.getArgument<String>(0)).toString()
+            }
+            whenever(it.executeMethod(any<HttpMethod>())).thenAnswer { invocation ->
+                httpClient.executeMethod(invocation.getArgument<HttpMethod>(0))
+            }
+        }
+    }
+
+    companion object {
+        private const val BULK_PATH = "/remote.php/dav/bulk"
+        private const val FILES_PATH = "/remote.php/dav/files/test"
+        private const val CRLF = "\r\n"
+        private const val HTTP_OK = 200
+        private const val HTTP_CREATED = 201
+        private const val HTTP_FORBIDDEN = 403
+        private const val HTTP_METHOD_NOT_ALLOWED = 405
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.resources.files
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class ChunkMapTest {
+    @Test
+    fun `nothing uploaded yet`() {
+        val sut = ChunkMap.fromListing(FILE_LENGTH, emptyMap())
+
+        assertEquals(ChunkMap.MIN_UNIT, sut.unit)
+        assertEquals(listOf(Chunk(1, 0, FILE_LENGTH)), sut.gaps)
+        assertEquals(0L, sut.uploadedBytes)
+    }
+
+    @Test
+    fun `complete upload has no gaps`() {
+        val sut = ChunkMap.fromListing(FILE_LENGTH, mapOf(1 to 4 * UNIT, 5 to 4 * UNIT, 9 to FILE_LENGTH - 8 * UNIT))
+
+        assertEquals(3, sut.chunks.size)
+        assertTrue(sut.gaps.isEmpty())
+        assertTrue(sut.invalidChunkIds.isEmpty())
+        assertEquals(FILE_LENGTH, sut.uploadedBytes)
+    }
+
+    @Test
+    fun `missing chunks become gaps`() {
+        val sut = ChunkMap.fromListing(FILE_LENGTH, mapOf(1 to 2 * UNIT, 5 to 2 * UNIT))
+
+        assertEquals(listOf(Chunk(3, 2 * UNIT, 2 * UNIT), Chunk(7, 6 * UNIT, FILE_LENGTH - 6 * UNIT)), sut.gaps)
+        assertEquals(4 * UNIT, sut.uploadedBytes)
+    }
+
+    @Test
+    fun `truncated chunk is removed`() {
+        val sut = ChunkMap.fromListing(FILE_LENGTH, mapOf(1 to 2 * UNIT, 3 to UNIT + 1, 5 to 2 * UNIT))
+
+        assertEquals(listOf(3), sut.invalidChunkIds)
+        assertEquals(Chunk(3, 2 * UNIT, 2 * UNIT), sut.gaps.first())
+    }
+
+    @Test
+    fun `chunk truncated at a chunk boundary is kept`() {
+        val sut = ChunkMap.fromListing(FILE_LENGTH, mapOf(1 to UNIT))
+
+        assertEquals(listOf(Chunk(1, 0, UNIT)), sut.chunks)
+        assertEquals(listOf(Chunk(2, UNIT, FILE_LENGTH - UNIT)), sut.gaps)
+    }
+
+    @Test
+    fun `overlapping chunk is removed`() {
+        val sut = ChunkMap.fromListing(FILE_LENGTH, mapOf(1 to 4 * UNIT, 3 to 2 * UNIT))
+
+        assertEquals(listOf(3), sut.invalidChunkIds)
+        assertEquals(listOf(Chunk(5, 4 * UNIT, FILE_LENGTH - 4 * UNIT)), sut.gaps)
+    }
+
+    @Test
+    fun `chunk beyond end of file is removed`() {
+        val sut = ChunkMap.fromListing(FILE_LENGTH, mapOf(10 to 2 * UNIT, 0 to UNIT))
+
+        assertEquals(listOf(0, 10), sut.invalidChunkIds)
+        assertEquals(listOf(Chunk(1, 0, FILE_LENGTH)), sut.gaps)
+    }
+
+    @Test
+    fun `unit keeps chunk ids in range`() {
+        listOf(1L, UNIT, 10 * GB, 100 * GB, 1000 * GB + 1).forEach { length ->
+            val sut = ChunkMap.fromListing(length, emptyMap())
+
+            assertEquals(0L, sut.unit % ChunkMap.MIN_UNIT)
+            assertTrue(sut.chunkId(length - 1) <= ChunkMap.MAX_CHUNK_ID)
+            assertEquals(sut.unit, sut.alignChunkSize(1))
+            assertEquals(2 * sut.unit, sut.alignChunkSize(sut.unit + 1))
+        }
+    }
+
+    @Test
+    fun `chunk names`() {
+        assertEquals(1, ChunkMap.parseChunkId("000001"))
+        assertEquals(10000, ChunkMap.parseChunkId("010000"))
+        assertEquals(-1, ChunkMap.parseChunkId(".file"))
+        assertEquals(-1, ChunkMap.parseChunkId("0000001"))
+        assertEquals(-1, ChunkMap.parseChunkId(""))
+        assertEquals(-1, ChunkMap.parseChunkId(null))
+    }
+
+    companion object {
+        private const val UNIT = ChunkMap.MIN_UNIT
+        private const val GB = 1024L * 1024 * 1024
+        private const val FILE_LENGTH = 10 * UNIT + 123
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.resources.files
+
+import com.owncloud.android.lib.common.network.ChecksumType
+import com.owncloud.android.lib.common.operations.RemoteOperationResult
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.util.zip.Adler32
+import kotlin.random.Random
+
+/**
+ * Breaks chunk uploads at random points, keeping random parts of the broken chunks on the server, and resumes until
+ * the upload succeeds. The file must be assembled correctly, and no chunk acknowledged by the server is sent again.
+ */
+class ChunkedUploadResumeFuzzTest {
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    @Test
+    fun `interrupted uploads resume with missing chunks only`() {
+        val random = Random(SEED)
+
+        repeat(ROUNDS) { round ->
+            val fileSize = random.nextInt(MIN_FILE_SIZE, MAX_FILE_SIZE)
+            val chunkSize = random.nextLong(MIN_CHUNK_SIZE, MAX_CHUNK_SIZE)
+            val parallelism = random.nextInt(1, MAX_PARALLELISM + 1)
+            val file = temporaryFolder.newFile("upload$round.bin")
+            file.writeBytes(random.nextBytes(fileSize))
+
+            ChunkingTestServer(MAX_PARALLELISM).use { server ->
+                server.chunkLatencyMillis = 0
+                server.throttleBytesPerPeriod = Long.MAX_VALUE
+                server.interruption = { body ->
+                    synchronized(random) {
+                        if (random.nextDouble() < INTERRUPTION_PROBABILITY) random.nextInt(body.size + 1) else null
+                    }
+                }
+
+                lateinit var result: RemoteOperationResult<*>
+                var attempts = 0
+                do {
+                    val sut =
+                        ChunkedFileUploadRemoteOperation(
+                            file.absolutePath,
+                            "/upload$round.bin",
+                            "application/octet-stream",
+                            null,
+                            0,
+                            true
+                        )
+                    sut.setChunkSize(chunkSize)
+                    sut.setParallelism(parallelism)
+                    sut.setChecksumType(ChecksumType.ADLER32)
+                    result = sut.execute(server.client)
+                    attempts++
+                } while (!result.isSuccess && attempts < MAX_ATTEMPTS)
+
+                val description = "round $round: $fileSize bytes, chunks of $chunkSize, parallelism $parallelism"
+                assertTrue(description, attempts < MAX_ATTEMPTS)
+                assertArrayEquals(description, file.readBytes(), server.assemble())
+                assertEquals(description, 0, server.reuploads.get())
+                assertEquals(description, 1, server.moves.get())
+                assertEquals(description, adler32(file.readBytes()), server.moveChecksum)
+                assertEquals(description, server.moveChecksum, result.checksum)
+            }
+        }
+    }
+
+    private fun adler32(content: ByteArray): String =
+        "ADLER32:" + java.lang.Long.toHexString(Adler32().apply { update(content) }.value)
+
+    companion object {
+        private const val SEED = 4711
+        private const val ROUNDS = 30
+        private const val MIN_FILE_SIZE = 64 * 1024
+        private const val MAX_FILE_SIZE = 2 * 1024 * 1024
+        private const val MIN_CHUNK_SIZE = 1L
+        private const val MAX_CHUNK_SIZE = 512L * 1024
+        private const val MAX_PARALLELISM = 4
+        private const val INTERRUPTION_PROBABILITY = 0.2
+        private const val MAX_ATTEMPTS = 200
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.resources.files
+
+import android.content.Context
+import android.net.Uri
+import com.nextcloud.common.NextcloudClient
+import com.nhaarman.mockitokotlin2.any
+import com.nhaarman.mockitokotlin2.doAnswer
+import com.nhaarman.mockitokotlin2.doReturn
+import com.nhaarman.mockitokotlin2.mock
+import com.nhaarman.mockitokotlin2.spy
+import com.nhaarman.mockitokotlin2.whenever
+import com.owncloud.android.lib.common.OwnCloudClient
+import okhttp3.Credentials
+import okhttp3.OkHttpClient
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import org.apache.commons.httpclient.HttpClient
+import org.apache.commons.httpclient.HttpMethod
+import org.apache.commons.httpclient.HttpMethodBase
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager
+import java.io.ByteArrayOutputStream
+import java.io.Closeable
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Local stand-in for the chunked upload endpoint, with a fixed latency per chunk and a throttled upload bandwidth
+ * per connection. Chunks are stored, listed and removed like the chunking v2 endpoint does, without checking the
+ * Destination header.
+ */
+internal class ChunkingTestServer(
+    maxConnections: Int = DEFAULT_MAX_CONNECTIONS
+) : Dispatcher(), Closeable {
+    private val server = MockWebServer()
+    private val httpClient =
+        HttpClient(
+            MultiThreadedHttpConnectionManager().apply {
+                params.defaultMaxConnectionsPerHost = maxConnections
+            }
+        )
+
+    val chunks = ConcurrentHashMap<String, ByteArray>()
+    val moves = AtomicInteger()
+
+    /**
+     * OC-Checksum header of the last MOVE assembling the file.
+     */
+    @Volatile
+    var moveChecksum: String? = null
+
+    /**
+     * Number of chunks uploaded again although the server had acknowledged them before.
+     */
+    val reuploads = AtomicInteger()
+    private val acknowledgedChunks = ConcurrentHashMap.newKeySet<String>()
+
+    /**
+     * Decides whether the upload of a chunk breaks, given its body: returns the number of bytes the server keeps of
+     * the broken chunk, or null to accept the chunk.
+     */
+    @Volatile
+    var interruption: ((ByteArray) -> Int?)? = null
+
+    /**
+     * Counted down on every chunk received, see [stallChunks].
+     */
+    val chunksReceived = CountDownLatch(maxConnections)
+    private val stalledChunks = CountDownLatch(1)
+
+    /**
+     * Holds back the responses to all chunks until the server is closed.
+     */
+    @Volatile
+    var stallChunks = false
+
+    @Volatile
+    var chunkLatencyMillis = DEFAULT_CHUNK_LATENCY_MILLIS
+
+    /**
+     * Upload bandwidth of every single connection, in bytes per [THROTTLE_PERIOD_MILLIS].
+     */
+    @Volatile
+    var throttleBytesPerPeriod = DEFAULT_THROTTLE_BYTES_PER_PERIOD
+
+    val client: OwnCloudClient by lazy { mockClient() }
+
+    val nextcloudClient: NextcloudClient by lazy { mockNextcloudClient() }
+
+    init {
+        server.dispatcher = this
+        server.start()
+    }
+
+    override fun dispatch(request: RecordedRequest): MockResponse =
+        when (request.method) {
+            "MKCOL" -> MockResponse().setResponseCode(HTTP_CREATED)
+            "PROPFIND" ->
+                MockResponse()
+                    .setResponseCode(HTTP_MULTI_STATUS)
+                    .setHeader("Content-Type", "application/xml; charset=utf-8")
+                    .setBody(listChunks(request.requestUrl!!.encodedPath))
+            "PUT" -> receiveChunk(request)
+            "DELETE" -> {
+                val name = request.requestUrl!!.pathSegments.last()
+                acknowledgedChunks.remove(name)
+                MockResponse().setResponseCode(if (chunks.remove(name) != null) HTTP_NO_CONTENT else HTTP_NOT_FOUND)
+            }
+            "MOVE" -> {
+                moves.incrementAndGet()
+                moveChecksum = request.getHeader("OC-Checksum")
+                MockResponse().setResponseCode(HTTP_CREATED)
+            }
+            else -> MockResponse().setResponseCode(HTTP_METHOD_NOT_ALLOWED)
+        }
+
+    private fun receiveChunk(request: RecordedRequest): MockResponse {
+        val name = request.requestUrl!!.pathSegments.last()
+        val body = request.body.readByteArray()
+        if (acknowledgedChunks.contains(name)) {
+            reuploads.incrementAndGet()
+        }
+
+        val keptBytes = interruption?.invoke(body)
+        if (keptBytes != null) {
+            if (keptBytes > 0) {
+                chunks[name] = body.copyOf(keptBytes)
+            }
+            return MockResponse().setResponseCode(HTTP_INTERNAL_SERVER_ERROR)
+        }
+
+        chunks[name] = body
+        acknowledgedChunks.add(name)
+        chunksReceived.countDown()
+        if (stallChunks) {
+            stalledChunks.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+        }
+        return MockResponse()
+            .setResponseCode(HTTP_CREATED)
+            .setHeadersDelay(chunkLatencyMillis, TimeUnit.MILLISECONDS)
+    }
+
+    private fun listChunks(folderPath: String): String {
+        val folder = folderPath.trimEnd('/')
+        val body = StringBuilder("<?xml version=\"1.0\"?><d:multistatus xmlns:d=\"DAV:\">")
+        chunks.forEach { (name, content) ->
+            body.append("<d:response><d:href>$folder/$name</d:href><d:propstat><d:prop>")
+                .append("<d:getcontentlength>${content.size}</d:getcontentlength><d:resourcetype/>")
+                .append("</d:prop><d:status>HTTP/1.1 200 OK</d:status></d:propstat></d:response>")
+        }
+        return body.append("</d:multistatus>").toString()
+    }
+
+    /**
+     * Throttles reading request bodies, i.e. the upload bandwidth of every single connection.
+     */
+    override fun peek(): MockResponse =
+        MockResponse().throttleBody(throttleBytesPerPeriod, THROTTLE_PERIOD_MILLIS, TimeUnit.MILLISECONDS)
+
+    /**
+     * @return the uploaded file, as the server would assemble it from the chunks received
+     */
+    fun assemble(): ByteArray {
+        val output = ByteArrayOutputStream()
+        chunks.keys.sorted().forEach { output.write(chunks.getValue(it)) }
+        return output.toByteArray()
+    }
+
+    /**
+     * Forgets all chunks, as after a completed upload.
+     */
+    fun reset() {
+        chunks.clear()
+        acknowledgedChunks.clear()
+    }
+
+    /**
+     * @return sizes of the chunks received, in file order
+     */
+    fun chunkSizes(): List<Int> = chunks.entries.sortedBy { it.key }.map { it.value.size }
+
+    override fun close() {
+        stalledChunks.countDown()
+        server.shutdown()
+    }
+
+    private fun mockClient(): OwnCloudClient {
+        val baseUrl = server.url("/remote.php/dav").toString()
+        val uploads = mockUri("$baseUrl/uploads", "/remote.php/dav/uploads")
+        val dav = mockUri(baseUrl, "/remote.php/dav")
+
+        return mock<OwnCloudClient> {
+            on { params } doReturn httpClient.params
+            on { uploadUri } doReturn uploads
+            on { davUri } doReturn dav
+            on { userId } doReturn USER_ID
+        }.also {
+            whenever(it.executeMethod(any<HttpMethod>())).thenAnswer { invocation ->
+                httpClient.executeMethod(invocation.getArgument<HttpMethod>(0))
+            }
+            whenever(it.executeMethod(any<HttpMethodBase>(), any(), any())).thenAnswer { invocation ->
+                httpClient.executeMethod(invocation.getArgument<HttpMethodBase>(0))
+            }
+        }
+    }
+
+    private fun mockNextcloudClient(): NextcloudClient {
+        val baseUrl = server.url("/remote.php/dav").toString()
+        val uploads = mockUri("$baseUrl/uploads", "/remote.php/dav/uploads")
+        val dav = mockUri(baseUrl, "/remote.php/dav")
+        val client =
+            NextcloudClient(mock<Uri>(), USER_ID, Credentials.basic(USER_ID, USER_ID), OkHttpClient(), mock<Context>())
+
+        return spy(client).also {
+            doReturn(uploads).whenever(it).uploadUri
+            doReturn(dav).whenever(it).davUri
+            doAnswer { invocation -> "$baseUrl/files/$USER_ID" + invocation.getArgument<String>(0) }
+                .whenever(it)
+                .getFilesDavUri(any())
+        }
+    }
+
+    private fun mockUri(
+        value: String,
+        path: String
+    ): Uri =
+        mock {
+            on { toString() } doReturn value
+            on { this.path } doReturn path
+        }
+
+    companion object {
+        const val THROTTLE_PERIOD_MILLIS = 10L
+        private const val DEFAULT_MAX_CONNECTIONS = 4
+        private const val DEFAULT_CHUNK_LATENCY_MILLIS = 40L
+        private const val DEFAULT_THROTTLE_BYTES_PER_PERIOD = 64L * 1024
+        private const val USER_ID = "test"
+        private const val TIMEOUT_SECONDS = 10L
+        private const val HTTP_CREATED = 201
+        private const val HTTP_NO_CONTENT = 204
+        private const val HTTP_MULTI_STATUS = 207
+        private const val HTTP_NOT_FOUND = 404
+        private const val HTTP_INTERNAL_SERVER_ERROR = 500
+        private const val HTTP_METHOD_NOT_ALLOWED = 405
+    }
+}
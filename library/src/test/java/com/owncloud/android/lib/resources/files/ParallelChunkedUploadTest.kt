@@ -0,0 +1,209 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.resources.files
+
+import com.owncloud.android.lib.common.network.ChecksumType
+import com.owncloud.android.lib.common.network.OnDatatransferProgressListener
+import com.owncloud.android.lib.common.operations.RemoteOperationResult
+import org.junit.After
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.util.Collections
+import java.util.concurrent.TimeUnit
+import java.util.zip.Adler32
+import kotlin.random.Random
+
+/**
+ * Runs [ChunkedFileUploadRemoteOperation] with several connections against a [ChunkingTestServer].
+ */
+class ParallelChunkedUploadTest {
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    private lateinit var server: ChunkingTestServer
+    private lateinit var file: File
+
+    @Before
+    fun setUp() {
+        server = ChunkingTestServer(PARALLELISM)
+        file = temporaryFolder.newFile("upload.bin")
+        file.writeBytes(Random(SEED).nextBytes(FILE_SIZE))
+    }
+
+    @After
+    fun tearDown() {
+        server.close()
+    }
+
+    @Test
+    fun `parallel upload sends every chunk once`() {
+        val result = upload(PARALLELISM)
+
+        assertTrue(result.isSuccess)
+        assertEquals(expectedChunkCount(), server.chunks.size)
+        assertArrayEquals(file.readBytes(), server.assemble())
+        assertEquals(1, server.moves.get())
+    }
+
+    @Test
+    fun `checksums of parallel chunks are combined and sent on assembly`() {
+        val sut = newOperation(PARALLELISM)
+        sut.setChecksumType(ChecksumType.ADLER32)
+
+        val result = sut.execute(server.client)
+
+        val expected = "ADLER32:" + java.lang.Long.toHexString(Adler32().apply { update(file.readBytes()) }.value)
+        assertTrue(result.isSuccess)
+        assertEquals(expected, server.moveChecksum)
+        assertEquals(expected, result.checksum)
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun `checksums that cannot be combined are rejected`() {
+        newOperation(PARALLELISM).setChecksumType(ChecksumType.SHA256)
+    }
+
+    @Test
+    fun `progress is aggregated over all chunks`() {
+        val rates = Collections.synchronizedList(ArrayList<Long>())
+        val totals = Collections.synchronizedList(ArrayList<Long>())
+        val listener =
+            OnDatatransferProgressListener { progressRate, totalTransferredSoFar, _, _ ->
+                rates.add(progressRate)
+                totals.add(totalTransferredSoFar)
+            }
+
+        assertTrue(upload(PARALLELISM, listener).isSuccess)
+
+        assertEquals(FILE_SIZE.toLong(), rates.sum())
+        assertEquals(FILE_SIZE.toLong(), totals.last())
+        assertEquals(totals.sorted(), totals)
+    }
+
+    @Test
+    fun `cancel aborts all chunks in flight`() {
+        server.stallChunks = true
+        val sut = newOperation(PARALLELISM)
+        var result: RemoteOperationResult<*>? = null
+        val thread = Thread { result = sut.execute(server.client) }
+
+        val start = System.currentTimeMillis()
+        thread.start()
+        assertTrue(server.chunksReceived.await(TIMEOUT_SECONDS, TimeUnit.SECONDS))
+        sut.cancel(null)
+        thread.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS))
+
+        assertFalse(thread.isAlive)
+        assertTrue(System.currentTimeMillis() - start < TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS))
+        assertTrue(result!!.isCancelled)
+        assertEquals(0, server.moves.get())
+    }
+
+    @Test
+    fun `parallel upload over NextcloudClient sends every chunk once`() {
+        val sut = newOperation(PARALLELISM)
+        sut.setChecksumType(ChecksumType.ADLER32)
+
+        val result = sut.execute(server.nextcloudClient)
+
+        assertTrue(result.isSuccess)
+        assertEquals(expectedChunkCount(), server.chunks.size)
+        assertArrayEquals(file.readBytes(), server.assemble())
+        assertEquals(1, server.moves.get())
+        assertEquals(result.checksum, server.moveChecksum)
+    }
+
+    @Test
+    fun `cancel aborts all chunks in flight over NextcloudClient`() {
+        server.stallChunks = true
+        val sut = newOperation(PARALLELISM)
+        var result: RemoteOperationResult<*>? = null
+        val thread = Thread { result = sut.execute(server.nextcloudClient) }
+
+        thread.start()
+        assertTrue(server.chunksReceived.await(TIMEOUT_SECONDS, TimeUnit.SECONDS))
+        sut.cancel(null)
+        thread.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS))
+
+        assertFalse(thread.isAlive)
+        assertTrue(result!!.isCancelled)
+        assertEquals(0, server.moves.get())
+    }
+
+    @Test
+    fun `single upload over NextcloudClient sends the file at once`() {
+        val sut =
+            UploadFileRemoteOperation(
+                file.absolutePath,
+                "/upload.bin",
+                "application/octet-stream",
+                System.currentTimeMillis() / MILLIS_PER_SECOND
+            )
+
+        val result = sut.execute(server.nextcloudClient)
+
+        assertTrue(result.isSuccess)
+        assertArrayEquals(file.readBytes(), server.chunks["upload.bin"])
+        assertEquals(0, server.moves.get())
+    }
+
+    @Test
+    fun `parallel upload keeps one chunk in flight per connection`() {
+        server.stallChunks = true
+        val sut = newOperation(PARALLELISM)
+        val thread = Thread { sut.execute(server.client) }
+
+        thread.start()
+        assertTrue(server.chunksReceived.await(TIMEOUT_SECONDS, TimeUnit.SECONDS))
+        // no chunk was answered yet, so all of them were sent at the same time, and no further one
+        assertEquals(PARALLELISM, server.chunks.size)
+        sut.cancel(null)
+        thread.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS))
+
+        assertFalse(thread.isAlive)
+    }
+
+    private fun upload(
+        parallelism: Int,
+        listener: OnDatatransferProgressListener? = null
+    ): RemoteOperationResult<*> {
+        val sut = newOperation(parallelism)
+        listener?.let { sut.addDataTransferProgressListener(it) }
+        return sut.execute(server.client)
+    }
+
+    private fun newOperation(parallelism: Int): ChunkedFileUploadRemoteOperation =
+        ChunkedFileUploadRemoteOperation(
+            file.absolutePath,
+            "/upload.bin",
+            "application/octet-stream",
+            null,
+            System.currentTimeMillis() / MILLIS_PER_SECOND,
+            true
+        ).apply {
+            setChunkSize(CHUNK_SIZE)
+            setParallelism(parallelism)
+        }
+
+    private fun expectedChunkCount(): Int = ((FILE_SIZE + CHUNK_SIZE - 1) / CHUNK_SIZE).toInt()
+
+    companion object {
+        private const val SEED = 42
+        private const val FILE_SIZE = 4 * 1024 * 1024
+        private const val CHUNK_SIZE = 256L * 1024
+        private const val PARALLELISM = 4
+        private const val TIMEOUT_SECONDS = 10L
+        private const val MILLIS_PER_SECOND = 1000
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.resources.files
+
+import com.nhaarman.mockitokotlin2.any
+import com.nhaarman.mockitokotlin2.doReturn
+import com.nhaarman.mockitokotlin2.mock
+import com.nhaarman.mockitokotlin2.whenever
+import com.owncloud.android.lib.common.OwnCloudClient
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import okhttp3.mockwebserver.SocketPolicy
+import okio.Buffer
+import org.apache.commons.httpclient.HttpClient
+import org.apache.commons.httpclient.HttpMethod
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager
+import java.io.Closeable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Local stand-in for the WebDAV files endpoint serving a single file, with byte ranges, If-Range and a throttled
+ * download bandwidth per connection.
+ */
+internal class RangeTestServer(
+    @Volatile var content: ByteArray,
+    maxConnections: Int = DEFAULT_MAX_CONNECTIONS
+) : Dispatcher(), Closeable {
+    private val server = MockWebServer()
+    private val httpClient =
+        HttpClient(
+            MultiThreadedHttpConnectionManager().apply {
+                params.defaultMaxConnectionsPerHost = maxConnections
+            }
+        )
+
+    @Volatile
+    var etag = "\"v1\""
+
+    @Volatile
+    var acceptRanges = true
+
+    /**
+     * Called once a HEAD request was answered, e.g. to change the file before its ranges are requested.
+     */
+    @Volatile
+    var afterHead: (() -> Unit)? = null
+
+    /**
+     * Drops the connection halfway through the body of the next GET response.
+     */
+    @Volatile
+    var breakNextBody = false
+
+    val rangeRequests = AtomicInteger()
+    val fullRequests = AtomicInteger()
+
+    /**
+     * If set, every range request counts it down and is held back until it reached zero, i.e. until that many
+     * ranges were requested at the same time; see [lateRanges].
+     */
+    @Volatile
+    var concurrentRanges: CountDownLatch? = null
+
+    /**
+     * Number of range requests that gave up waiting for [concurrentRanges].
+     */
+    val lateRanges = AtomicInteger()
+
+    /**
+     * Download bandwidth of every single connection, in bytes per [THROTTLE_PERIOD_MILLIS].
+     */
+    @Volatile
+    var throttleBytesPerPeriod = Long.MAX_VALUE
+
+    val client: OwnCloudClient by lazy { mockClient() }
+
+    init {
+        server.dispatcher = this
+        server.start()
+    }
+
+    override fun dispatch(request: RecordedRequest): MockResponse =
+        when (request.method) {
+            "HEAD" -> head().also { afterHead?.invoke() }
+            "GET" -> get(request)
+            else -> MockResponse().setResponseCode(HTTP_METHOD_NOT_ALLOWED)
+        }
+
+    private fun head(): MockResponse =
+        MockResponse()
+            .setResponseCode(HTTP_OK)
+            .setHeader("Content-Length", content.size)
+            .setHeader("ETag", etag)
+            .setHeader("Last-Modified", LAST_MODIFIED)
+            .apply {
+                if (acceptRanges) {
+                    setHeader("Accept-Ranges", "bytes")
+                }
+            }
+
+    private fun get(request: RecordedRequest): MockResponse =
+        range(request).apply {
+            if (breakNextBody) {
+                breakNextBody = false
+                socketPolicy = SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY
+            }
+        }
+
+    private fun range(request: RecordedRequest): MockResponse {
+        val body = content
+        val range = request.getHeader("Range")?.removePrefix("bytes=")?.split('-')
+        val ifRange = request.getHeader("If-Range")
+
+        if (!acceptRanges || range == null || (ifRange != null && ifRange != etag)) {
+            fullRequests.incrementAndGet()
+            return MockResponse()
+                .setResponseCode(HTTP_OK)
+                .setHeader("ETag", etag)
+                .setHeader("Last-Modified", LAST_MODIFIED)
+                .setBody(Buffer().write(body))
+                .throttleBody(throttleBytesPerPeriod, THROTTLE_PERIOD_MILLIS, TimeUnit.MILLISECONDS)
+        }
+
+        rangeRequests.incrementAndGet()
+        concurrentRanges?.let {
+            it.countDown()
+            if (!it.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                lateRanges.incrementAndGet()
+            }
+        }
+        val start = range[0].toInt()
+        val end = minOf(range[1].toIntOrNull()?.plus(1) ?: body.size, body.size) - 1
+        if (start > end) {
+            return MockResponse().setResponseCode(HTTP_RANGE_NOT_SATISFIABLE)
+        }
+        return MockResponse()
+            .setResponseCode(HTTP_PARTIAL_CONTENT)
+            .setHeader("ETag", etag)
+            .setHeader("Content-Range", "bytes $start-$end/${body.size}")
+            .setBody(Buffer().write(body, start, end - start + 1))
+            .throttleBody(throttleBytesPerPeriod, THROTTLE_PERIOD_MILLIS, TimeUnit.MILLISECONDS)
+    }
+
+    override fun close() {
+        server.shutdown()
+    }
+
+    private fun mockClient(): OwnCloudClient {
+        val url = server.url("/remote.php/dav/files/test/download.bin").toString()
+
+        return mock<OwnCloudClient> {
+            on { getFilesDavUri(any<String>()) } doReturn url
+        }.also {
+            whenever(it.executeMethod(any<HttpMethod>())).thenAnswer { invocation ->
+                httpClient.executeMethod(invocation.getArgument<HttpMethod>(0))
+            }
+        }
+    }
+
+    companion object {
+        const val THROTTLE_PERIOD_MILLIS = 10L
+        private const val DEFAULT_MAX_CONNECTIONS = 8
+        private const val TIMEOUT_SECONDS = 10L
+        private const val LAST_MODIFIED = "Fri, 07 Jan 2022 14:42:34 GMT"
+        private const val HTTP_OK = 200
+        private const val HTTP_PARTIAL_CONTENT = 206
+        private const val HTTP_METHOD_NOT_ALLOWED = 405
+        private const val HTTP_RANGE_NOT_SATISFIABLE = 416
+    }
+}
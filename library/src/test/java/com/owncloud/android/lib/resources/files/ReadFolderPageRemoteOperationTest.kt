@@ -0,0 +1,195 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.resources.files
+
+import android.content.Context
+import android.net.Uri
+import com.nextcloud.common.NextcloudClient
+import com.nhaarman.mockitokotlin2.any
+import com.nhaarman.mockitokotlin2.doAnswer
+import com.nhaarman.mockitokotlin2.doReturn
+import com.nhaarman.mockitokotlin2.mock
+import com.nhaarman.mockitokotlin2.spy
+import com.nhaarman.mockitokotlin2.whenever
+import com.owncloud.android.lib.common.operations.OperationExecutor
+import com.owncloud.android.lib.resources.files.model.FolderPage
+import com.owncloud.android.lib.resources.files.model.RemoteFile
+import okhttp3.Credentials
+import okhttp3.OkHttpClient
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.mockito.ArgumentMatchers.anyString
+import org.mockito.MockedStatic
+import org.mockito.Mockito
+import java.util.concurrent.Future
+import java.util.concurrent.FutureTask
+
+class ReadFolderPageRemoteOperationTest {
+    private lateinit var server: MockWebServer
+    private lateinit var client: NextcloudClient
+    private lateinit var uri: MockedStatic<Uri>
+
+    @Before
+    fun setUp() {
+        // the stubbed android.jar decodes paths to null
+        uri = Mockito.mockStatic(Uri::class.java)
+        uri.`when`<String> { Uri.decode(anyString()) }.thenAnswer { it.getArgument<String>(0) }
+        server = MockWebServer()
+        server.start()
+        val filesDavUrl = server.url(DAV_FILES_PATH).toString()
+        val filesDavUri = mock<Uri> { on { encodedPath } doReturn DAV_FILES_PATH }
+        client =
+            spy(NextcloudClient(mock<Uri>(), USER, Credentials.basic(USER, USER), OkHttpClient(), mock<Context>()))
+        doReturn(filesDavUri).whenever(client).filesDavUri
+        doAnswer { filesDavUrl + it.getArgument<String>(0) }.whenever(client).getFilesDavUri(any())
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+        uri.close()
+    }
+
+    @Test
+    fun `first page asks the server to paginate`() {
+        server.enqueue(paginated(listOf("", "1.txt"), TOKEN, TOTAL))
+
+        val page = read(null)
+
+        val request = server.takeRequest()
+        assertEquals("true", request.getHeader(ReadFolderPageRemoteOperation.HEADER_PAGINATE))
+        assertEquals(PAGE_SIZE.toString(), request.getHeader(ReadFolderPageRemoteOperation.HEADER_PAGINATE_COUNT))
+        assertNull(request.getHeader(ReadFolderPageRemoteOperation.HEADER_PAGINATE_TOKEN))
+        assertEquals(listOf(FOLDER, "${FOLDER}1.txt"), page.files.map { it.remotePath })
+        assertEquals(FolderPage(page.files, TOKEN, 0, TOTAL), page)
+        assertTrue(page.hasMore)
+    }
+
+    @Test
+    fun `next page is requested by token and offset`() {
+        server.enqueue(paginated(listOf("2.txt", "3.txt"), TOKEN, TOTAL))
+
+        val page = read(firstPage())
+
+        val request = server.takeRequest()
+        assertNull(request.getHeader(ReadFolderPageRemoteOperation.HEADER_PAGINATE))
+        assertEquals(TOKEN, request.getHeader(ReadFolderPageRemoteOperation.HEADER_PAGINATE_TOKEN))
+        assertEquals("2", request.getHeader(ReadFolderPageRemoteOperation.HEADER_PAGINATE_OFFSET))
+        assertEquals(listOf("${FOLDER}2.txt", "${FOLDER}3.txt"), page.files.map { it.remotePath })
+        assertEquals(2, page.offset)
+        assertFalse(page.hasMore)
+    }
+
+    @Test
+    fun `expired token falls back to the whole listing`() {
+        server.enqueue(multiStatus(listOf("", "1.txt", "2.txt", "3.txt")))
+
+        val page = read(firstPage())
+
+        assertEquals(listOf("${FOLDER}2.txt", "${FOLDER}3.txt"), page.files.map { it.remotePath })
+        assertEquals(FolderPage(page.files, null, 2, TOTAL), page)
+        assertFalse(page.hasMore)
+    }
+
+    @Test
+    fun `token page without the paginate header is not taken for the whole listing`() {
+        server.enqueue(
+            multiStatus(listOf("2.txt", "3.txt"))
+                .setHeader(ReadFolderPageRemoteOperation.HEADER_PAGINATE_TOTAL, TOTAL.toString())
+        )
+
+        val page = read(firstPage())
+
+        assertEquals(listOf("${FOLDER}2.txt", "${FOLDER}3.txt"), page.files.map { it.remotePath })
+        assertEquals(FolderPage(page.files, TOKEN, 2, TOTAL), page)
+        assertFalse(page.hasMore)
+    }
+
+    @Test
+    fun `whole listing without the folder itself is told by its size`() {
+        server.enqueue(multiStatus(listOf("1.txt", "2.txt", "3.txt")))
+
+        val page = read(firstPage())
+
+        assertEquals(listOf("${FOLDER}3.txt"), page.files.map { it.remotePath })
+        assertEquals(FolderPage(page.files, null, 2, 3), page)
+    }
+
+    @Test
+    fun `pages no worker started are read by the iterating thread`() {
+        server.enqueue(paginated(listOf("", "1.txt"), TOKEN, TOTAL))
+        server.enqueue(paginated(listOf("2.txt", "3.txt"), TOKEN, TOTAL))
+        // all workers busy, e.g. with the caller itself: queued pages never start
+        val busy =
+            object : OperationExecutor {
+                override fun submit(
+                    task: Runnable,
+                    priority: Int
+                ): Future<*> = FutureTask(task, null)
+
+                override fun getMetrics(): OperationExecutor.Metrics =
+                    OperationExecutor.Metrics(0, 0, 0, 0, 0, 0, 0, 0, 0, 0)
+            }
+
+        val sut = FolderPageIterator(client, FOLDER, PAGE_SIZE, executor = busy)
+        val count = sut.asSequence().count()
+        sut.close()
+
+        assertEquals(TOTAL, count)
+        assertNull(sut.failure)
+        assertEquals(2, server.requestCount)
+    }
+
+    private fun firstPage(): FolderPage =
+        FolderPage(listOf(RemoteFile(FOLDER), RemoteFile("${FOLDER}1.txt")), TOKEN, 0, TOTAL)
+
+    private fun read(previous: FolderPage?): FolderPage {
+        val result = ReadFolderPageRemoteOperation(FOLDER, PAGE_SIZE, previous).execute(client)
+        assertTrue(result.isSuccess)
+        return result.resultData
+    }
+
+    private fun paginated(
+        names: List<String>,
+        token: String,
+        total: Int
+    ): MockResponse =
+        multiStatus(names)
+            .setHeader(ReadFolderPageRemoteOperation.HEADER_PAGINATE, "true")
+            .setHeader(ReadFolderPageRemoteOperation.HEADER_PAGINATE_TOKEN, token)
+            .setHeader(ReadFolderPageRemoteOperation.HEADER_PAGINATE_TOTAL, total.toString())
+
+    private fun multiStatus(names: List<String>): MockResponse {
+        val body = StringBuilder("<?xml version=\"1.0\"?><d:multistatus xmlns:d=\"DAV:\">")
+        names.forEach { name ->
+            val resourceType = if (name.isEmpty()) "<d:resourcetype><d:collection/></d:resourcetype>" else ""
+            body.append("<d:response><d:href>$DAV_FILES_PATH$FOLDER$name</d:href><d:propstat><d:prop>")
+                .append("<d:getetag>&quot;$name&quot;</d:getetag>$resourceType")
+                .append("</d:prop><d:status>HTTP/1.1 200 OK</d:status></d:propstat></d:response>")
+        }
+        return MockResponse()
+            .setResponseCode(HTTP_MULTI_STATUS)
+            .setBody(body.append("</d:multistatus>").toString())
+    }
+
+    companion object {
+        private const val USER = "test"
+        private const val DAV_FILES_PATH = "/remote.php/dav/files/test"
+        private const val FOLDER = "/folder/"
+        private const val TOKEN = "token"
+        private const val PAGE_SIZE = 2
+        private const val TOTAL = 4
+        private const val HTTP_MULTI_STATUS = 207
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.resources.files
+
+import com.owncloud.android.lib.common.network.PropertyProfile
+import com.owncloud.android.lib.common.network.WebdavEntry
+import com.owncloud.android.lib.resources.files.model.DeltaCursor
+import com.owncloud.android.lib.resources.files.model.RemoteFile
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertSame
+import org.apache.jackrabbit.webdav.property.DavPropertyName
+import org.apache.jackrabbit.webdav.xml.Namespace
+import org.junit.Test
+import org.w3c.dom.Document
+import org.w3c.dom.Element
+import javax.xml.parsers.DocumentBuilderFactory
+
+class ReadModifiedFilesRemoteOperationTest {
+    @Test
+    fun `first page selects everything modified after the timestamp`() {
+        val document = parse(DeltaCursor(TIMESTAMP))
+
+        assertEquals(SCOPE, text(document, "href"))
+        assertEquals("infinity", text(document, "depth"))
+        assertEquals(LIMIT.toString(), text(document, "nresults"))
+
+        val where = element(document, "where").firstElementChild()
+        assertEquals("gt", where.localName)
+        assertEquals("getlastmodified", where.firstElementChild().firstElementChild().localName)
+        assertEquals(TIMESTAMP.toString(), text(where, "literal"))
+
+        val orders = document.getElementsByTagNameNS(DAV, "order")
+        assertEquals(2, orders.length)
+        assertEquals("getlastmodified", (orders.item(0) as Element).firstElementChild().firstElementChild().localName)
+        assertEquals("fileid", (orders.item(1) as Element).firstElementChild().firstElementChild().localName)
+    }
+
+    @Test
+    fun `following pages continue after the last entry`() {
+        val document = parse(DeltaCursor(TIMESTAMP, FILE_ID))
+
+        val or = element(document, "where").firstElementChild()
+        assertEquals("or", or.localName)
+        val and = or.getElementsByTagNameNS(DAV, "and").item(0) as Element
+        val literals = and.getElementsByTagNameNS(DAV, "literal")
+        assertEquals(TIMESTAMP.toString(), literals.item(0).textContent)
+        assertEquals(FILE_ID.toString(), literals.item(1).textContent)
+    }
+
+    @Test
+    fun `only profile properties are selected`() {
+        val document = parse(DeltaCursor(TIMESTAMP))
+
+        val select = element(document, "select").firstElementChild()
+        val expected =
+            PropertyProfile.ETAG_ONLY.newPropertySet().content.map { it.name }.toSet() +
+                DavPropertyName.GETLASTMODIFIED.name + WebdavEntry.EXTENDED_PROPERTY_NAME_LOCAL_ID
+        val selected = HashSet<String>()
+        var child = select.firstElementChild()
+        while (true) {
+            selected.add(child.localName)
+            child = child.nextSibling as? Element ?: break
+        }
+        assertEquals(expected, selected)
+    }
+
+    @Test
+    fun `cursor points after the last file`() {
+        val cursor = DeltaCursor(TIMESTAMP)
+        val first =
+            RemoteFile("/a.txt").apply {
+                modifiedTimestamp = TIMESTAMP * MILLIS_PER_SECOND
+                localId = 1
+            }
+        val last =
+            RemoteFile("/b.txt").apply {
+                modifiedTimestamp = (TIMESTAMP + 1) * MILLIS_PER_SECOND + MILLIS_PER_SECOND - 1
+                localId = FILE_ID
+            }
+
+        assertSame(cursor, ReadModifiedFilesRemoteOperation.nextCursor(emptyList(), cursor))
+        assertEquals(
+            DeltaCursor(TIMESTAMP + 1, FILE_ID),
+            ReadModifiedFilesRemoteOperation.nextCursor(listOf(first, last), cursor)
+        )
+    }
+
+    private fun parse(cursor: DeltaCursor): Document {
+        // as the operation does: the profile plus the properties the cursor is built from
+        val propertySet =
+            PropertyProfile.ETAG_ONLY.newPropertySet().apply {
+                add(DavPropertyName.GETLASTMODIFIED)
+                add(WebdavEntry.EXTENDED_PROPERTY_NAME_LOCAL_ID, Namespace.getNamespace(WebdavEntry.NAMESPACE_OC))
+            }
+        val body = ReadModifiedFilesRemoteOperation.buildBody(SCOPE, cursor, LIMIT, propertySet)
+
+        return DocumentBuilderFactory.newInstance()
+            .apply { isNamespaceAware = true }
+            .newDocumentBuilder()
+            .parse(body.byteInputStream())
+    }
+
+    private fun element(
+        document: Document,
+        name: String
+    ): Element = document.getElementsByTagNameNS(DAV, name).item(0) as Element
+
+    private fun text(
+        document: Document,
+        name: String
+    ): String = element(document, name).textContent
+
+    private fun text(
+        parent: Element,
+        name: String
+    ): String = parent.getElementsByTagNameNS(DAV, name).item(0).textContent
+
+    private fun Element.firstElementChild(): Element {
+        var child = firstChild
+        while (child !is Element) {
+            child = child.nextSibling
+        }
+        return child
+    }
+
+    companion object {
+        private const val DAV = "DAV:"
+        private const val SCOPE = "/files/test/Photos"
+        private const val LIMIT = 100
+        private const val TIMESTAMP = 1700000000L
+        private const val FILE_ID = 4711L
+        private const val MILLIS_PER_SECOND = 1000L
+    }
+}
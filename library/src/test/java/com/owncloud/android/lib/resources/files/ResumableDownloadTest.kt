@@ -0,0 +1,123 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.resources.files
+
+import com.owncloud.android.lib.common.network.OnDatatransferProgressListener
+import org.junit.After
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import kotlin.random.Random
+
+/**
+ * Breaks downloads from a [RangeTestServer] halfway and resumes them.
+ */
+class ResumableDownloadTest {
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    private lateinit var server: RangeTestServer
+    private lateinit var content: ByteArray
+
+    @Before
+    fun setUp() {
+        content = Random(SEED).nextBytes(FILE_SIZE)
+        server = RangeTestServer(content)
+    }
+
+    @After
+    fun tearDown() {
+        server.close()
+    }
+
+    @Test
+    fun `broken download keeps the partial file`() {
+        server.breakNextBody = true
+
+        assertFalse(newOperation().execute(server.client).isSuccess)
+
+        val partialLength = downloadedFile().length()
+        assertTrue(partialLength in 1 until FILE_SIZE)
+        assertArrayEquals(content.copyOf(partialLength.toInt()), downloadedFile().readBytes())
+    }
+
+    @Test
+    fun `download resumes from the partial file`() {
+        server.breakNextBody = true
+        newOperation().execute(server.client)
+        val partialLength = downloadedFile().length()
+
+        val rates = ArrayList<Long>()
+        val totals = ArrayList<Long>()
+        val sut = newOperation()
+        sut.addDatatransferProgressListener(
+            OnDatatransferProgressListener { progressRate, totalTransferredSoFar, totalToTransfer, _ ->
+                assertEquals(FILE_SIZE.toLong(), totalToTransfer)
+                rates.add(progressRate)
+                totals.add(totalTransferredSoFar)
+            }
+        )
+
+        assertTrue(sut.execute(server.client).isSuccess)
+
+        assertArrayEquals(content, downloadedFile().readBytes())
+        assertEquals(1, server.rangeRequests.get())
+        assertEquals(partialLength, sut.resumedBytes)
+        // resumed bytes are reported first and on their own, new bytes only count as progress
+        assertEquals(0L, rates.first())
+        assertEquals(partialLength, totals.first())
+        assertEquals(FILE_SIZE - partialLength, rates.sum())
+        assertEquals(FILE_SIZE.toLong(), totals.last())
+        assertFalse(File(downloadedFile().path + ".etag").exists())
+    }
+
+    @Test
+    fun `changed file is downloaded completely`() {
+        server.breakNextBody = true
+        newOperation().execute(server.client)
+        val changedContent = Random(SEED + 1).nextBytes(FILE_SIZE)
+        server.content = changedContent
+        server.etag = "\"v2\""
+
+        val sut = newOperation()
+        assertTrue(sut.execute(server.client).isSuccess)
+
+        assertArrayEquals(changedContent, downloadedFile().readBytes())
+        assertEquals(0, server.rangeRequests.get())
+        assertEquals(0L, sut.resumedBytes)
+    }
+
+    @Test
+    fun `partial file longer than the remote file is downloaded again`() {
+        server.breakNextBody = true
+        newOperation().execute(server.client)
+        val shorterContent = content.copyOf(downloadedFile().length().toInt() / 2)
+        // same ETag, so that If-Range matches and the server answers the range it cannot satisfy
+        server.content = shorterContent
+
+        assertTrue(newOperation().execute(server.client).isSuccess)
+
+        assertArrayEquals(shorterContent, downloadedFile().readBytes())
+    }
+
+    private fun newOperation(): DownloadFileRemoteOperation =
+        DownloadFileRemoteOperation(REMOTE_PATH, temporaryFolder.root.absolutePath)
+
+    private fun downloadedFile(): File = File(temporaryFolder.root, REMOTE_PATH)
+
+    companion object {
+        private const val SEED = 42
+        private const val FILE_SIZE = 1024 * 1024
+        private const val REMOTE_PATH = "/download.bin"
+    }
+}
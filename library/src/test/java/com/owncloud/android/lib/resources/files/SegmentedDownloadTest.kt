@@ -0,0 +1,140 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.resources.files
+
+import com.owncloud.android.lib.common.network.OnDatatransferProgressListener
+import org.junit.After
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.util.Collections
+import java.util.concurrent.CountDownLatch
+import kotlin.random.Random
+
+/**
+ * Runs [DownloadFileRemoteOperation] with several ranges against a [RangeTestServer].
+ */
+class SegmentedDownloadTest {
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    private lateinit var server: RangeTestServer
+    private lateinit var content: ByteArray
+
+    @Before
+    fun setUp() {
+        content = Random(SEED).nextBytes(FILE_SIZE)
+        server = RangeTestServer(content)
+    }
+
+    @After
+    fun tearDown() {
+        server.close()
+    }
+
+    @Test
+    fun `ranges are downloaded in parallel and assembled`() {
+        val sut = newOperation(SEGMENTS)
+
+        val result = sut.execute(server.client)
+
+        assertTrue(result.isSuccess)
+        assertArrayEquals(content, downloadedFile().readBytes())
+        assertEquals(SEGMENTS, server.rangeRequests.get())
+        assertEquals(0, server.fullRequests.get())
+        assertEquals("v1", sut.etag)
+    }
+
+    @Test
+    fun `progress is aggregated over all ranges`() {
+        val rates = Collections.synchronizedList(ArrayList<Long>())
+        val totals = Collections.synchronizedList(ArrayList<Long>())
+        val sut = newOperation(SEGMENTS)
+        sut.addDatatransferProgressListener(
+            OnDatatransferProgressListener { progressRate, totalTransferredSoFar, totalToTransfer, _ ->
+                assertEquals(FILE_SIZE.toLong(), totalToTransfer)
+                rates.add(progressRate)
+                totals.add(totalTransferredSoFar)
+            }
+        )
+
+        assertTrue(sut.execute(server.client).isSuccess)
+
+        assertEquals(FILE_SIZE.toLong(), rates.sum())
+        assertEquals(FILE_SIZE.toLong(), totals.last())
+        assertEquals(totals.sorted(), totals)
+    }
+
+    @Test
+    fun `file changed after HEAD is downloaded again`() {
+        val changedContent = Random(SEED + 1).nextBytes(FILE_SIZE)
+        server.afterHead = {
+            server.afterHead = null
+            server.content = changedContent
+            server.etag = "\"v2\""
+        }
+
+        val sut = newOperation(SEGMENTS)
+        val result = sut.execute(server.client)
+
+        assertTrue(result.isSuccess)
+        assertArrayEquals(changedContent, downloadedFile().readBytes())
+        assertEquals("v2", sut.etag)
+    }
+
+    @Test
+    fun `server without ranges is downloaded with a single GET`() {
+        server.acceptRanges = false
+
+        assertTrue(newOperation(SEGMENTS).execute(server.client).isSuccess)
+
+        assertArrayEquals(content, downloadedFile().readBytes())
+        assertEquals(0, server.rangeRequests.get())
+        assertEquals(1, server.fullRequests.get())
+    }
+
+    @Test
+    fun `small file is downloaded with a single GET`() {
+        server.content = content.copyOf(DownloadFileRemoteOperation.MIN_SEGMENT_SIZE.toInt())
+
+        assertTrue(newOperation(SEGMENTS).execute(server.client).isSuccess)
+
+        assertEquals(0, server.rangeRequests.get())
+        assertEquals(1, server.fullRequests.get())
+    }
+
+    @Test
+    fun `all ranges are requested at the same time`() {
+        val ranges = CountDownLatch(SEGMENTS)
+        server.concurrentRanges = ranges
+
+        assertTrue(newOperation(SEGMENTS).execute(server.client).isSuccess)
+
+        assertEquals(0L, ranges.count)
+        assertEquals(0, server.lateRanges.get())
+        assertArrayEquals(content, downloadedFile().readBytes())
+    }
+
+    private fun newOperation(segments: Int): DownloadFileRemoteOperation =
+        DownloadFileRemoteOperation(REMOTE_PATH, temporaryFolder.root.absolutePath).apply {
+            setSegments(segments)
+        }
+
+    private fun downloadedFile(): File = File(temporaryFolder.root, REMOTE_PATH)
+
+    companion object {
+        private const val SEED = 42
+        private const val SEGMENTS = 4
+        private const val FILE_SIZE = 16 * 1024 * 1024
+        private const val REMOTE_PATH = "/download.bin"
+    }
+}
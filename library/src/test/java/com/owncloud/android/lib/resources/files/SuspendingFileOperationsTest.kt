@@ -0,0 +1,168 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.resources.files
+
+import android.content.Context
+import android.net.Uri
+import com.nextcloud.common.NextcloudClient
+import com.nextcloud.common.await
+import com.nhaarman.mockitokotlin2.any
+import com.nhaarman.mockitokotlin2.doAnswer
+import com.nhaarman.mockitokotlin2.doReturn
+import com.nhaarman.mockitokotlin2.mock
+import com.nhaarman.mockitokotlin2.spy
+import com.nhaarman.mockitokotlin2.whenever
+import com.owncloud.android.lib.resources.files.model.RemoteFile
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import okhttp3.Credentials
+import okhttp3.OkHttpClient
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.mockito.ArgumentMatchers.anyString
+import org.mockito.MockedStatic
+import org.mockito.Mockito
+import java.util.concurrent.TimeUnit
+
+class SuspendingFileOperationsTest {
+    private lateinit var server: MockWebServer
+    private lateinit var okHttpClient: OkHttpClient
+    private lateinit var client: NextcloudClient
+    private lateinit var uri: MockedStatic<Uri>
+
+    @Before
+    fun setUp() {
+        // the stubbed android.jar decodes paths to null
+        uri = Mockito.mockStatic(Uri::class.java)
+        uri.`when`<String> { Uri.decode(anyString()) }.thenAnswer { it.getArgument<String>(0) }
+        server = MockWebServer()
+        server.start()
+        val filesDavUrl = server.url(DAV_FILES_PATH).toString()
+        val filesDavUri = mock<Uri> { on { encodedPath } doReturn DAV_FILES_PATH }
+        // redirects are left to the library, as the shared transport does
+        okHttpClient = OkHttpClient.Builder().followRedirects(false).build()
+        client = spy(NextcloudClient(mock<Uri>(), USER, Credentials.basic(USER, USER), okHttpClient, mock<Context>()))
+        doReturn(filesDavUri).whenever(client).filesDavUri
+        doAnswer { filesDavUrl + it.getArgument<String>(0) }.whenever(client).getFilesDavUri(any())
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+        uri.close()
+    }
+
+    @Test
+    fun `read folder is enqueued and processed like in run`() {
+        server.enqueue(multiStatus(listOf("", "1.txt")))
+
+        val result = runBlocking { ReadFolderRemoteOperation(FOLDER).await(client) }
+
+        val request = server.takeRequest()
+        assertEquals("PROPFIND", request.method)
+        assertEquals("1", request.getHeader("Depth"))
+        assertTrue(result.isSuccess)
+        assertEquals(listOf(FOLDER, "${FOLDER}1.txt"), result.data.map { (it as RemoteFile).remotePath })
+    }
+
+    @Test
+    fun `cancelling the coroutine cancels the call`() {
+        server.enqueue(MockResponse().setHeadersDelay(SERVER_DELAY_SECONDS, TimeUnit.SECONDS))
+
+        runBlocking {
+            val job = launch(start = CoroutineStart.UNDISPATCHED) { ReadFileRemoteOperation(FILE).await(client) }
+
+            // the call is enqueued, the coroutine suspended without holding a thread
+            assertTrue(job.isActive)
+            assertEquals(1, okHttpClient.dispatcher.runningCallsCount())
+
+            job.cancel()
+            job.join()
+        }
+
+        val deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SERVER_DELAY_SECONDS / 2)
+        while (okHttpClient.dispatcher.runningCallsCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(POLL_MILLIS)
+        }
+        assertEquals(0, okHttpClient.dispatcher.runningCallsCount())
+    }
+
+    @Test
+    fun `existence check follows redirects without changing the client`() {
+        server.enqueue(MockResponse().setResponseCode(HTTP_FOUND).setHeader("Location", server.url("/target")))
+        server.enqueue(MockResponse())
+        val sut = ExistenceCheckRemoteOperation(FILE, false)
+
+        val result = runBlocking { sut.await(client) }
+
+        assertTrue(result.isSuccess)
+        assertTrue(sut.wasRedirected())
+        assertTrue(client.followRedirects)
+        assertEquals(2, server.requestCount)
+    }
+
+    @Test
+    fun `rename checks the target before moving`() {
+        server.enqueue(MockResponse().setResponseCode(HTTP_NOT_FOUND))
+        server.enqueue(MockResponse().setResponseCode(HTTP_CREATED))
+
+        val result = runBlocking { RenameFileRemoteOperation("1.txt", FILE, "2.txt", false).await(client) }
+
+        assertTrue(result.isSuccess)
+        assertEquals("HEAD", server.takeRequest().method)
+        val move = server.takeRequest()
+        assertEquals("MOVE", move.method)
+        assertEquals("$DAV_FILES_PATH$FILE", move.path)
+    }
+
+    @Test
+    fun `missing parents are created before the folder`() {
+        server.enqueue(MockResponse().setResponseCode(HTTP_CONFLICT))
+        server.enqueue(MockResponse().setResponseCode(HTTP_CREATED))
+        server.enqueue(MockResponse().setResponseCode(HTTP_CREATED))
+
+        val result = runBlocking { CreateFolderRemoteOperation("${FOLDER}sub/", true).await(client) }
+
+        assertTrue(result.isSuccess)
+        assertEquals("$DAV_FILES_PATH${FOLDER}sub/", server.takeRequest().path)
+        assertEquals("$DAV_FILES_PATH$FOLDER", server.takeRequest().path)
+        assertEquals("$DAV_FILES_PATH${FOLDER}sub/", server.takeRequest().path)
+    }
+
+    private fun multiStatus(names: List<String>): MockResponse {
+        val body = StringBuilder("<?xml version=\"1.0\"?><d:multistatus xmlns:d=\"DAV:\">")
+        names.forEach { name ->
+            val resourceType = if (name.isEmpty()) "<d:resourcetype><d:collection/></d:resourcetype>" else ""
+            body.append("<d:response><d:href>$DAV_FILES_PATH$FOLDER$name</d:href><d:propstat><d:prop>")
+                .append("<d:getetag>&quot;$name&quot;</d:getetag>$resourceType")
+                .append("</d:prop><d:status>HTTP/1.1 200 OK</d:status></d:propstat></d:response>")
+        }
+        return MockResponse()
+            .setResponseCode(HTTP_MULTI_STATUS)
+            .setBody(body.append("</d:multistatus>").toString())
+    }
+
+    companion object {
+        private const val USER = "test"
+        private const val DAV_FILES_PATH = "/remote.php/dav/files/test"
+        private const val FOLDER = "/folder/"
+        private const val FILE = "/folder/1.txt"
+        private const val SERVER_DELAY_SECONDS = 10L
+        private const val POLL_MILLIS = 10L
+        private const val HTTP_MULTI_STATUS = 207
+        private const val HTTP_CREATED = 201
+        private const val HTTP_FOUND = 302
+        private const val HTTP_NOT_FOUND = 404
+        private const val HTTP_CONFLICT = 409
+    }
+}
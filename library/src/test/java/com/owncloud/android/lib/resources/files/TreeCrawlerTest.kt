@@ -0,0 +1,290 @@
+/*
+ * Nextcloud Android Library
+ *
+ * SPDX-FileCopyrightText: 2024 Nextcloud GmbH and Nextcloud contributors
+ * SPDX-License-Identifier: MIT
+ */
+package com.owncloud.android.lib.resources.files
+
+import android.net.Uri
+import com.nextcloud.common.NextcloudClient
+import com.nhaarman.mockitokotlin2.any
+import com.nhaarman.mockitokotlin2.doAnswer
+import com.nhaarman.mockitokotlin2.doReturn
+import com.nhaarman.mockitokotlin2.mock
+import com.nhaarman.mockitokotlin2.spy
+import com.nhaarman.mockitokotlin2.whenever
+import com.owncloud.android.lib.common.network.PropertyProfile
+import com.owncloud.android.lib.common.operations.RemoteOperationResult
+import com.owncloud.android.lib.common.operations.RemoteOperationResult.ResultCode
+import com.owncloud.android.lib.resources.files.model.FolderChangeSet
+import kotlinx.coroutines.asCoroutineDispatcher
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.runBlocking
+import okhttp3.Credentials
+import okhttp3.OkHttpClient
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import org.apache.jackrabbit.webdav.DavConstants
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.mockito.ArgumentMatchers.anyString
+import org.mockito.Mockito
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+class TreeCrawlerTest {
+    private lateinit var server: MockWebServer
+    private lateinit var client: NextcloudClient
+    private lateinit var tree: SyntheticTree
+    private lateinit var workers: ExecutorService
+    private lateinit var lister: TreeCrawler.RemoteFolderLister
+    private val requests = AtomicInteger()
+    private val inFlight = AtomicInteger()
+    private val peakInFlight = AtomicInteger()
+
+    @Before
+    fun setUp() {
+        tree = SyntheticTree()
+        server = MockWebServer()
+        server.dispatcher = tree
+        server.start()
+        workers = Executors.newFixedThreadPool(PARALLELISM) { runnable -> Thread { withDecodedPaths(runnable) } }
+        client = mockNextcloudClient()
+        lister = TreeCrawler.RemoteFolderLister(client, PropertyProfile.ETAG_ONLY)
+    }
+
+    @After
+    fun tearDown() {
+        workers.shutdownNow()
+        server.shutdown()
+    }
+
+    @Test
+    fun `parallel crawl reads every folder once`() {
+        val sequential = crawl(newCrawler(1))
+        assertEquals(1, peakInFlight.get())
+
+        val parallel = crawl(newCrawler(PARALLELISM))
+
+        assertEquals(tree.folderCount, parallel.size)
+        assertEquals(tree.folderCount, requests.get())
+        assertEquals(sequential.keys, parallel.keys)
+        assertEquals(tree.etags.size - 1, parallel.values.sumOf { it.added.size })
+        assertTrue(parallel.values.all { it.isSuccess && it.changed.isEmpty() && it.removed.isEmpty() })
+        assertTrue("peak of ${peakInFlight.get()} requests", peakInFlight.get() in 2..PARALLELISM)
+    }
+
+    @Test
+    fun `unchanged tree costs one request`() {
+        val known = HashMap(tree.etags)
+
+        val changeSets = crawl(newCrawler(PARALLELISM), known)
+
+        assertTrue(changeSets.isEmpty())
+        assertEquals(1, requests.get())
+    }
+
+    @Test
+    fun `unchanged subtrees are pruned`() {
+        val known = HashMap(tree.etags)
+        val deepFile = ROOT + "d0/d1/d2/d0/f0.txt"
+        val removedFile = ROOT + "d1/f1.txt"
+        val addedFile = ROOT + "new.txt"
+        tree.touch(deepFile)
+        tree.remove(removedFile)
+        tree.add(addedFile)
+
+        val changeSets = crawl(newCrawler(PARALLELISM), known)
+
+        val expectedFolders =
+            setOf(ROOT, ROOT + "d0/", ROOT + "d0/d1/", ROOT + "d0/d1/d2/", ROOT + "d0/d1/d2/d0/", ROOT + "d1/")
+        assertEquals(expectedFolders, changeSets.keys)
+        // one ETag check of the root plus one listing per changed folder
+        assertEquals(1 + expectedFolders.size, requests.get())
+
+        val root = changeSets.getValue(ROOT)
+        assertEquals(listOf(addedFile), root.added.map { it.remotePath })
+        assertEquals(setOf(ROOT + "d0/", ROOT + "d1/"), root.changed.map { it.remotePath }.toSet())
+        assertEquals(listOf(deepFile), changeSets.getValue(ROOT + "d0/d1/d2/d0/").changed.map { it.remotePath })
+        assertEquals(listOf(removedFile), changeSets.getValue(ROOT + "d1/").removed)
+    }
+
+    @Test
+    fun `empty listing fails the folder`() {
+        val empty =
+            object : TreeCrawler.FolderLister {
+                override fun list(remotePath: String): RemoteOperationResult<*> =
+                    RemoteOperationResult<Any>(ResultCode.OK).apply { setData(ArrayList()) }
+
+                override fun checkEtag(
+                    remotePath: String,
+                    etag: String
+                ): RemoteOperationResult<*> = RemoteOperationResult<Any>(ResultCode.OK)
+            }
+
+        val changeSets = crawl(TreeCrawler(empty, PARALLELISM, workers.asCoroutineDispatcher()))
+
+        val root = changeSets.getValue(ROOT)
+        assertFalse(root.isSuccess)
+        assertTrue(root.isEmpty)
+        assertNull(root.folder)
+    }
+
+    private fun newCrawler(parallelism: Int): TreeCrawler =
+        TreeCrawler(lister, parallelism, workers.asCoroutineDispatcher())
+
+    private fun crawl(
+        crawler: TreeCrawler,
+        known: Map<String, String> = emptyMap()
+    ): Map<String, FolderChangeSet> {
+        requests.set(0)
+        peakInFlight.set(0)
+        val changeSets = runBlocking { crawler.crawl(ROOT, known).toList() }
+        val folders = changeSets.map { it.remotePath }.toSet()
+        assertEquals("every folder must be emitted once", changeSets.size, folders.size)
+        return changeSets.associateBy { it.remotePath }
+    }
+
+    /**
+     * Real client against the mock server, counting requests and how many of them run at the same time.
+     */
+    private fun mockNextcloudClient(): NextcloudClient {
+        val okHttpClient =
+            OkHttpClient.Builder()
+                .addInterceptor { chain ->
+                    requests.incrementAndGet()
+                    val running = inFlight.incrementAndGet()
+                    peakInFlight.updateAndGet { maxOf(it, running) }
+                    try {
+                        chain.proceed(chain.request())
+                    } finally {
+                        inFlight.decrementAndGet()
+                    }
+                }
+                .build()
+        val filesDavUrl = server.url(DAV_PATH).toString()
+        val filesDavUri = mock<Uri> { on { encodedPath } doReturn DAV_PATH }
+        val client = NextcloudClient(mock<Uri>(), "test", Credentials.basic("test", "test"), okHttpClient, mock())
+
+        return spy(client).also {
+            doReturn(filesDavUri).whenever(it).filesDavUri
+            doAnswer { invocation -> filesDavUrl + invocation.getArgument<String>(0) }
+                .whenever(it)
+                .getFilesDavUri(any())
+        }
+    }
+
+    /**
+     * Runs a worker with Uri.decode passing paths through, as the stubbed android.jar returns null; static mocks
+     * only apply to the thread registering them.
+     */
+    private fun withDecodedPaths(worker: Runnable) {
+        Mockito.mockStatic(Uri::class.java).use { uri ->
+            uri.`when`<String> { Uri.decode(anyString()) }.thenAnswer { it.getArgument<String>(0) }
+            worker.run()
+        }
+    }
+
+    /**
+     * Folder tree served over WebDAV: every folder above [TREE_DEPTH] has [SUBFOLDERS] subfolders, every folder
+     * has [FILES] files. Changing an entry changes the ETags of all its ancestors, as Nextcloud does.
+     */
+    private class SyntheticTree : Dispatcher() {
+        private val version = AtomicLong()
+        val etags: MutableMap<String, String> = ConcurrentHashMap()
+        var folderCount = 0
+            private set
+
+        init {
+            create(ROOT, 0)
+        }
+
+        private fun create(
+            folder: String,
+            depth: Int
+        ) {
+            etags[folder] = nextEtag()
+            folderCount++
+            repeat(FILES) { etags[folder + "f$it.txt"] = nextEtag() }
+            if (depth < TREE_DEPTH) {
+                repeat(SUBFOLDERS) { create(folder + "d$it/", depth + 1) }
+            }
+        }
+
+        fun touch(path: String) {
+            var current = path
+            while (current.startsWith(ROOT)) {
+                etags[current] = nextEtag()
+                current = current.trimEnd('/').substringBeforeLast('/') + "/"
+            }
+        }
+
+        fun add(path: String) = touch(path)
+
+        fun remove(path: String) {
+            touch(path)
+            etags.remove(path)
+        }
+
+        override fun dispatch(request: RecordedRequest): MockResponse {
+            val path = request.path!!.removePrefix(DAV_PATH)
+            val etag = etags[path] ?: return MockResponse().setResponseCode(NOT_FOUND)
+            val body = StringBuilder("<?xml version=\"1.0\"?><d:multistatus xmlns:d=\"DAV:\">")
+            appendResponse(body, path, etag)
+            if (request.getHeader(DavConstants.HEADER_DEPTH) == "1") {
+                etags.filterKeys { it != path && it.startsWith(path) && isChild(path, it) }
+                    .toSortedMap()
+                    .forEach { (child, childEtag) -> appendResponse(body, child, childEtag) }
+            }
+            body.append("</d:multistatus>")
+
+            return MockResponse()
+                .setResponseCode(MULTI_STATUS)
+                .setHeadersDelay(LATENCY_MS, TimeUnit.MILLISECONDS)
+                .setBody(body.toString())
+        }
+
+        private fun isChild(
+            folder: String,
+            path: String
+        ): Boolean = !path.substring(folder.length).trimEnd('/').contains('/')
+
+        private fun appendResponse(
+            body: StringBuilder,
+            path: String,
+            etag: String
+        ) {
+            val resourceType = if (path.endsWith("/")) "<d:collection/>" else ""
+            body.append("<d:response><d:href>$DAV_PATH$path</d:href><d:propstat><d:prop>")
+                .append("<d:getetag>&quot;$etag&quot;</d:getetag>")
+                .append("<d:resourcetype>$resourceType</d:resourcetype>")
+                .append("</d:prop><d:status>HTTP/1.1 200 OK</d:status></d:propstat></d:response>")
+        }
+
+        private fun nextEtag(): String = "etag" + version.incrementAndGet()
+    }
+
+    companion object {
+        private const val DAV_PATH = "/remote.php/dav/files/test"
+        private const val ROOT = "/tree/"
+        private const val TREE_DEPTH = 4
+        private const val SUBFOLDERS = 3
+        private const val FILES = 2
+        private const val PARALLELISM = 8
+        private const val LATENCY_MS = 20L
+        private const val MULTI_STATUS = 207
+        private const val NOT_FOUND = 404
+    }
+}